@@ -0,0 +1,174 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.springframework.integration.hazelcast.serializer.HazelcastIntegrationSerializers;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * A cluster of Hazelcast members embedded in the benchmark JVM. The members join
+ * each other over TCP/IP on the loopback interface in a group of their own,
+ * so no external infrastructure is involved.
+ * <p>
+ * Members can also be started in JVMs of their own, for the benchmarks where the
+ * members of the benchmark JVM must not all count as local.
+ *
+ * @since 1.0.0
+ */
+public final class EmbeddedHazelcastCluster {
+
+	private final List<HazelcastInstance> members = new ArrayList<HazelcastInstance>();
+
+	private final List<Process> remoteMembers = new ArrayList<Process>();
+
+	private final String groupName = "si-benchmark-" + UUID.randomUUID();
+
+	private EmbeddedHazelcastCluster() {
+		super();
+	}
+
+	/**
+	 * Start a cluster of the provided number of members and wait for all of them to join.
+	 * @param size the number of members.
+	 * @return the cluster.
+	 */
+	public static EmbeddedHazelcastCluster start(int size) {
+		EmbeddedHazelcastCluster cluster = new EmbeddedHazelcastCluster();
+		for (int i = 0; i < size; i++) {
+			cluster.addMember();
+		}
+		return cluster;
+	}
+
+	/**
+	 * Start a new member and wait for the cluster to see it.
+	 * @return the new member.
+	 */
+	public HazelcastInstance addMember() {
+		HazelcastInstance member = Hazelcast.newHazelcastInstance(config(this.groupName));
+		this.members.add(member);
+		while (member.getCluster().getMembers().size() < size()) {
+			sleep();
+		}
+		return member;
+	}
+
+	/**
+	 * Start a new member in a JVM of its own and wait for the cluster to see it.
+	 * The JVM runs the {@code main} method of the provided class, with the group name
+	 * of the cluster as first argument, followed by the provided arguments; it must
+	 * join the cluster with the {@link #config(String)} of that group and exit once
+	 * its standard input is closed. The cluster must have a member in this JVM.
+	 * @param mainClass the class to run.
+	 * @param args the additional arguments.
+	 * @throws IOException if the JVM cannot be started.
+	 */
+	public void addRemoteMember(Class<?> mainClass, String... args) throws IOException {
+		List<String> command = new ArrayList<String>();
+		command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(mainClass.getName());
+		command.add(this.groupName);
+		command.addAll(Arrays.asList(args));
+		Process process = new ProcessBuilder(command)
+				.redirectOutput(ProcessBuilder.Redirect.INHERIT)
+				.redirectError(ProcessBuilder.Redirect.INHERIT)
+				.start();
+		this.remoteMembers.add(process);
+		while (getMember(0).getCluster().getMembers().size() < size()) {
+			sleep();
+		}
+	}
+
+	public HazelcastInstance getMember(int index) {
+		return this.members.get(index);
+	}
+
+	public List<HazelcastInstance> getMembers() {
+		return this.members;
+	}
+
+	/**
+	 * Terminate the member abruptly, as on a crash.
+	 * @param member the member to terminate.
+	 */
+	public void crash(HazelcastInstance member) {
+		this.members.remove(member);
+		member.getLifecycleService().terminate();
+	}
+
+	public void shutdown() {
+		for (Process remoteMember : this.remoteMembers) {
+			remoteMember.destroy();
+			try {
+				remoteMember.waitFor();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		this.remoteMembers.clear();
+		for (HazelcastInstance member : this.members) {
+			member.getLifecycleService().terminate();
+		}
+		this.members.clear();
+	}
+
+	/**
+	 * Build the configuration of a member of the provided group.
+	 * @param groupName the group name.
+	 * @return the configuration.
+	 */
+	static Config config(String groupName) {
+		Config config = new Config();
+		config.getGroupConfig().setName(groupName);
+		config.setProperty("hazelcast.logging.type", "none");
+		config.setProperty("hazelcast.phone.home.enabled", "false");
+		JoinConfig joinConfig = config.getNetworkConfig().getJoin();
+		joinConfig.getMulticastConfig().setEnabled(false);
+		joinConfig.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1");
+		HazelcastIntegrationSerializers.registerSerializers(config.getSerializationConfig());
+		return config;
+	}
+
+	private int size() {
+		return this.members.size() + this.remoteMembers.size();
+	}
+
+	private static void sleep() {
+		try {
+			Thread.sleep(10);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.benchmark;
+
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.hazelcast.CacheListeningPolicyType;
+import org.springframework.integration.hazelcast.HazelcastLocalInstanceRegistrar;
+import org.springframework.integration.hazelcast.inbound.HazelcastEventDrivenMessageProducer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.ITopic;
+
+/**
+ * A member of the {@link HazelcastEventDrivenMessageProducerBenchmark} cluster, run in a JVM
+ * of its own by {@link EmbeddedHazelcastCluster#addRemoteMember(Class, String...)} so that
+ * the {@link CacheListeningPolicyType#SINGLE} policy of its producer sees only its own events
+ * as local.
+ * <p>
+ * Arguments: the group name of the cluster and the {@link CacheListeningPolicyType}.
+ *
+ * @since 1.0.0
+ */
+public final class EventProducerMember {
+
+	static final String MAP_NAME = "benchmarkEventMap";
+
+	/**
+	 * The topic each event message is reported to, by the producer which emitted it.
+	 */
+	static final String DELIVERIES_TOPIC = "benchmarkEventDeliveries";
+
+	/**
+	 * The counter of the started producers.
+	 */
+	static final String PRODUCERS_COUNTER = "benchmarkEventProducers";
+
+	private EventProducerMember() {
+		super();
+	}
+
+	public static void main(String[] args) throws Exception {
+		HazelcastInstance member = Hazelcast.newHazelcastInstance(EmbeddedHazelcastCluster.config(args[0]));
+		new HazelcastLocalInstanceRegistrar().afterSingletonsInstantiated();
+		GenericApplicationContext applicationContext = new GenericApplicationContext();
+		applicationContext.refresh();
+		HazelcastEventDrivenMessageProducer producer =
+				startProducer(member, CacheListeningPolicyType.valueOf(args[1]), applicationContext);
+		// the benchmark JVM closes the standard input when it exits, even on a crash
+		while (System.in.read() >= 0) {
+			// keep running
+		}
+		producer.stop();
+		applicationContext.close();
+		member.getLifecycleService().terminate();
+		System.exit(0);
+	}
+
+	/**
+	 * Start a producer listening to the benchmark map with the provided policy, which reports
+	 * each event message to the {@link #DELIVERIES_TOPIC}.
+	 * @param member the member to listen on.
+	 * @param cacheListeningPolicy the cache listening policy.
+	 * @param beanFactory the bean factory of the producer.
+	 * @return the producer.
+	 */
+	static HazelcastEventDrivenMessageProducer startProducer(HazelcastInstance member,
+			CacheListeningPolicyType cacheListeningPolicy, BeanFactory beanFactory) {
+		final ITopic<String> deliveries = member.getTopic(DELIVERIES_TOPIC);
+		final String address = member.getLocalEndpoint().getSocketAddress().toString();
+		DirectChannel outputChannel = new DirectChannel();
+		outputChannel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				deliveries.publish(address);
+			}
+
+		});
+		HazelcastEventDrivenMessageProducer producer =
+				new HazelcastEventDrivenMessageProducer(member.getMap(MAP_NAME));
+		producer.setCacheEventTypes("ADDED,UPDATED");
+		producer.setCacheListeningPolicy(cacheListeningPolicy);
+		producer.setOutputChannel(outputChannel);
+		producer.setBeanFactory(beanFactory);
+		producer.afterPropertiesSet();
+		producer.start();
+		member.getAtomicLong(PRODUCERS_COUNTER).incrementAndGet();
+		return producer;
+	}
+
+}
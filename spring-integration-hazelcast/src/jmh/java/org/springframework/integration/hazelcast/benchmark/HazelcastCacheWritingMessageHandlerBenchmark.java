@@ -0,0 +1,89 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.hazelcast.outbound.HazelcastCacheWritingMessageHandler;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+/**
+ * Measures the put throughput of the {@link HazelcastCacheWritingMessageHandler}
+ * into an {@code IMap}, storing either the payload or the whole message.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class HazelcastCacheWritingMessageHandlerBenchmark {
+
+	@Param({ "1", "2", "3" })
+	public int members;
+
+	@Param({ "true", "false" })
+	public boolean extractPayload;
+
+	private final AtomicLong keys = new AtomicLong();
+
+	private EmbeddedHazelcastCluster cluster;
+
+	private GenericApplicationContext applicationContext;
+
+	private HazelcastCacheWritingMessageHandler handler;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.cluster = EmbeddedHazelcastCluster.start(this.members);
+		this.applicationContext = new GenericApplicationContext();
+		this.applicationContext.refresh();
+		this.handler = new HazelcastCacheWritingMessageHandler();
+		this.handler.setDistributedObject(this.cluster.getMember(0).getMap("benchmarkMap"));
+		this.handler.setKeyExpression(new SpelExpressionParser().parseExpression("headers.id"));
+		this.handler.setExtractPayload(this.extractPayload);
+		this.handler.setBeanFactory(this.applicationContext);
+		this.handler.afterPropertiesSet();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.applicationContext.close();
+		this.cluster.shutdown();
+	}
+
+	@Benchmark
+	public void put() {
+		Message<String> message = new GenericMessage<String>("payload-" + (this.keys.incrementAndGet() % 10000));
+		this.handler.handleMessage(message);
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.benchmark;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.hazelcast.DistributedSQLIterationType;
+import org.springframework.integration.hazelcast.inbound.HazelcastDistributedSQLMessageSource;
+import org.springframework.messaging.Message;
+
+import com.hazelcast.core.IMap;
+
+/**
+ * Measures the cost of a single poll of the {@link HazelcastDistributedSQLMessageSource}
+ * selecting a tenth of the map entries.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HazelcastDistributedSQLMessageSourceBenchmark {
+
+	@Param({ "1", "2", "3" })
+	public int members;
+
+	@Param({ "1000", "100000" })
+	public int entries;
+
+	@Param({ "VALUE", "LOCAL_KEY" })
+	public DistributedSQLIterationType iterationType;
+
+	private EmbeddedHazelcastCluster cluster;
+
+	private GenericApplicationContext applicationContext;
+
+	private HazelcastDistributedSQLMessageSource messageSource;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.cluster = EmbeddedHazelcastCluster.start(this.members);
+		IMap<Integer, Entity> map = this.cluster.getMember(0).getMap("benchmarkSqlMap");
+		Map<Integer, Entity> batch = new HashMap<Integer, Entity>();
+		for (int i = 0; i < this.entries; i++) {
+			batch.put(i, new Entity(i, i % 10));
+			if (batch.size() == 1000) {
+				map.putAll(batch);
+				batch.clear();
+			}
+		}
+		map.putAll(batch);
+		this.applicationContext = new GenericApplicationContext();
+		this.applicationContext.refresh();
+		this.messageSource = new HazelcastDistributedSQLMessageSource(map, "category = 0");
+		this.messageSource.setIterationType(this.iterationType);
+		this.messageSource.setBeanFactory(this.applicationContext);
+		this.messageSource.afterPropertiesSet();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.applicationContext.close();
+		this.cluster.shutdown();
+	}
+
+	@Benchmark
+	public Message<?> poll() {
+		return this.messageSource.receive();
+	}
+
+	/**
+	 * The benchmark map value.
+	 */
+	public static class Entity implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int id;
+
+		private final int category;
+
+		public Entity(int id, int category) {
+			this.id = id;
+			this.category = category;
+		}
+
+		public int getId() {
+			return this.id;
+		}
+
+		public int getCategory() {
+			return this.category;
+		}
+
+	}
+
+}
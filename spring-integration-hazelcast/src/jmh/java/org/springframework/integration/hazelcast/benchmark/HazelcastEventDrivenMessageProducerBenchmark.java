@@ -0,0 +1,144 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.benchmark;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.hazelcast.CacheListeningPolicyType;
+import org.springframework.integration.hazelcast.HazelcastLocalInstanceRegistrar;
+import org.springframework.integration.hazelcast.inbound.HazelcastEventDrivenMessageProducer;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.Message;
+import com.hazelcast.core.MessageListener;
+
+/**
+ * Measures the end-to-end latency from an {@code IMap} put to the reception of all the
+ * event messages produced for it by the {@link HazelcastEventDrivenMessageProducer}s
+ * listening on every member, for both {@link CacheListeningPolicyType}s: one event message
+ * per put with {@code SINGLE}, one per member with {@code ALL}.
+ * <p>
+ * Only the first member lives in the benchmark JVM; the others run in JVMs of their own
+ * ({@link EventProducerMember}), since all the members of a JVM count as local and
+ * {@code SINGLE} would accept there exactly the events {@code ALL} does. Every producer
+ * reports its event messages over a topic, whatever its JVM.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HazelcastEventDrivenMessageProducerBenchmark {
+
+	@Param({ "1", "2", "3" })
+	public int members;
+
+	@Param({ "SINGLE", "ALL" })
+	public CacheListeningPolicyType cacheListeningPolicy;
+
+	private final Semaphore deliveries = new Semaphore(0);
+
+	private EmbeddedHazelcastCluster cluster;
+
+	private GenericApplicationContext applicationContext;
+
+	private HazelcastEventDrivenMessageProducer producer;
+
+	private IMap<Integer, String> map;
+
+	private int deliveriesPerPut;
+
+	private int key;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		this.cluster = EmbeddedHazelcastCluster.start(1);
+		HazelcastInstance member = this.cluster.getMember(0);
+		new HazelcastLocalInstanceRegistrar().afterSingletonsInstantiated();
+		member.<String>getTopic(EventProducerMember.DELIVERIES_TOPIC)
+				.addMessageListener(new MessageListener<String>() {
+
+					@Override
+					public void onMessage(Message<String> message) {
+						HazelcastEventDrivenMessageProducerBenchmark.this.deliveries.release();
+					}
+
+				});
+		this.applicationContext = new GenericApplicationContext();
+		this.applicationContext.refresh();
+		this.producer = EventProducerMember.startProducer(member, this.cacheListeningPolicy,
+				this.applicationContext);
+		for (int i = 1; i < this.members; i++) {
+			this.cluster.addRemoteMember(EventProducerMember.class, this.cacheListeningPolicy.name());
+		}
+		long deadline = System.currentTimeMillis() + 60000;
+		while (member.getAtomicLong(EventProducerMember.PRODUCERS_COUNTER).get() < this.members) {
+			if (System.currentTimeMillis() > deadline) {
+				throw new IllegalStateException("The producers of the remote members did not start in 60 seconds");
+			}
+			Thread.sleep(10);
+		}
+		this.map = member.getMap(EventProducerMember.MAP_NAME);
+		this.deliveriesPerPut = this.cacheListeningPolicy == CacheListeningPolicyType.ALL ? this.members : 1;
+	}
+
+	/**
+	 * Fail the run if more event messages were produced than the policy allows, since the
+	 * surplus would let the next puts complete early.
+	 * @throws InterruptedException if interrupted while the last event messages settle.
+	 */
+	@TearDown(Level.Iteration)
+	public void checkDeliveries() throws InterruptedException {
+		Thread.sleep(500);
+		int surplus = this.deliveries.drainPermits();
+		if (surplus > 0) {
+			throw new IllegalStateException(surplus + " event messages beyond the " + this.deliveriesPerPut
+					+ " per put expected with the " + this.cacheListeningPolicy + " policy");
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		this.producer.stop();
+		this.applicationContext.close();
+		this.cluster.shutdown();
+	}
+
+	@Benchmark
+	public void putAndReceive() throws InterruptedException {
+		this.map.set(this.key++ % 10000, "value");
+		if (!this.deliveries.tryAcquire(this.deliveriesPerPut, 10, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("Fewer than " + this.deliveriesPerPut
+					+ " event messages received in 10 seconds");
+		}
+	}
+
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import org.springframework.integration.hazelcast.leader.LeaderInitiator;
+import org.springframework.integration.leader.Context;
+import org.springframework.integration.leader.DefaultCandidate;
+import org.springframework.integration.leader.event.LeaderEventPublisher;
+
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Measures the {@link LeaderInitiator} failover time: from the crash of the leader's
+ * member to the leadership being granted to a candidate on another member.
+ * A fresh cluster is started for each invocation.
+ *
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 10)
+public class LeaderInitiatorFailoverBenchmark {
+
+	@Param({ "2", "3" })
+	public int members;
+
+	private final List<LeaderInitiator> initiators = new ArrayList<LeaderInitiator>();
+
+	private EmbeddedHazelcastCluster cluster;
+
+	private volatile LeaderInitiator leader;
+
+	private volatile CountDownLatch failover;
+
+	@Setup(Level.Invocation)
+	public void setUp() throws Exception {
+		this.cluster = EmbeddedHazelcastCluster.start(this.members);
+		this.failover = new CountDownLatch(1);
+		final CountDownLatch granted = new CountDownLatch(1);
+		LeaderEventPublisher publisher = new LeaderEventPublisher() {
+
+			@Override
+			public void publishOnGranted(Object source, Context context, String role) {
+				if (LeaderInitiatorFailoverBenchmark.this.leader == null) {
+					LeaderInitiatorFailoverBenchmark.this.leader = (LeaderInitiator) source;
+					granted.countDown();
+				}
+				else if (source != LeaderInitiatorFailoverBenchmark.this.leader) {
+					LeaderInitiatorFailoverBenchmark.this.failover.countDown();
+				}
+			}
+
+			@Override
+			public void publishOnRevoked(Object source, Context context, String role) {
+			}
+
+		};
+		for (HazelcastInstance member : this.cluster.getMembers()) {
+			LeaderInitiator initiator = new LeaderInitiator(member,
+					new DefaultCandidate(member.getLocalEndpoint().getUuid(), "benchmark"));
+			initiator.setLeaderEventPublisher(publisher);
+			initiator.start();
+			this.initiators.add(initiator);
+		}
+		if (!granted.await(30, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("No leader elected in 30 seconds");
+		}
+	}
+
+	@TearDown(Level.Invocation)
+	public void tearDown() throws Exception {
+		for (LeaderInitiator initiator : this.initiators) {
+			initiator.destroy();
+		}
+		this.initiators.clear();
+		this.leader = null;
+		this.cluster.shutdown();
+	}
+
+	@Benchmark
+	public void failover() throws Exception {
+		HazelcastInstance leaderMember = this.cluster.getMembers().get(this.initiators.indexOf(this.leader));
+		this.cluster.crash(leaderMember);
+		if (!this.failover.await(60, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("No failover in 60 seconds");
+		}
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -27,9 +27,11 @@ package org.springframework.integration.hazelcast;
  * @see com.hazelcast.core.MigrationListener
  * @see com.hazelcast.core.LifecycleListener
  * @see com.hazelcast.core.ClientListener
+ * @see com.hazelcast.monitor.LocalMapStats
+ * @see com.hazelcast.monitor.LocalQueueStats
  */
 public enum ClusterMonitorType {
 
-	MEMBERSHIP, DISTRIBUTED_OBJECT, MIGRATION, LIFECYCLE, CLIENT;
+	MEMBERSHIP, DISTRIBUTED_OBJECT, MIGRATION, LIFECYCLE, CLIENT, STATISTICS;
 
 }
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.channel;
+
+import java.io.Serializable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.integration.channel.AbstractSubscribableChannel;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.dispatcher.MessageDispatcher;
+import org.springframework.integration.dispatcher.UnicastingDispatcher;
+import org.springframework.integration.expression.ExpressionUtils;
+import org.springframework.integration.support.channel.BeanFactoryChannelResolver;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+import com.hazelcast.core.ExecutionCallback;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.HazelcastInstanceAware;
+import com.hazelcast.core.IExecutorService;
+import com.hazelcast.core.Member;
+
+/**
+ * A {@link org.springframework.messaging.SubscribableChannel} which dispatches each
+ * {@link Message} on the cluster member owning the partition of a key evaluated
+ * against the message. Messages whose key is owned by the local member are dispatched
+ * on the caller's thread, like a {@code DirectChannel}; all others are shipped to the
+ * key owner via {@link IExecutorService#submitToKeyOwner}, so the processing runs next
+ * to the data stored under the same key.
+ * <p>
+ * The channel must be declared as a bean with the same name on each member taking part
+ * in the dispatching, and the messages must be {@link Serializable}.
+ * Failures of remote dispatching are delivered to the {@link ErrorHandler}, which is a
+ * {@link MessagePublishingErrorHandler} by default.
+ * <p>
+ * The owner of a key is deterministic, therefore all messages for the same key are
+ * processed on the same member. Strict per-key ordering additionally requires
+ * a single-threaded {@link IExecutorService} (see
+ * {@code com.hazelcast.config.ExecutorConfig#setPoolSize}).
+ *
+ * @since 1.0.0
+ */
+public class HazelcastPartitionAffineChannel extends AbstractSubscribableChannel implements DisposableBean {
+
+	private static final ConcurrentMap<String, HazelcastPartitionAffineChannel> channels =
+			new ConcurrentHashMap<String, HazelcastPartitionAffineChannel>();
+
+	private final HazelcastInstance hazelcastInstance;
+
+	private final IExecutorService executorService;
+
+	private final UnicastingDispatcher dispatcher = new UnicastingDispatcher();
+
+	private final ExecutionCallback<Object> executionCallback = new ExecutionCallback<Object>() {
+
+		@Override
+		public void onResponse(Object response) {
+		}
+
+		@Override
+		public void onFailure(Throwable t) {
+			HazelcastPartitionAffineChannel.this.errorHandler.handleError(t);
+		}
+
+	};
+
+	private volatile Expression keyExpression;
+
+	private volatile ErrorHandler errorHandler;
+
+	private EvaluationContext evaluationContext;
+
+	private String registrationKey;
+
+	/**
+	 * Construct a channel which dispatches via the default {@link IExecutorService}
+	 * of the provided {@link HazelcastInstance}.
+	 * @param hazelcastInstance the {@link HazelcastInstance} to use.
+	 */
+	public HazelcastPartitionAffineChannel(HazelcastInstance hazelcastInstance) {
+		this(hazelcastInstance, null);
+	}
+
+	/**
+	 * Construct a channel which dispatches via the provided {@link IExecutorService}.
+	 * @param hazelcastInstance the {@link HazelcastInstance} to use.
+	 * @param executorService the {@link IExecutorService} to submit messages to key owners.
+	 */
+	public HazelcastPartitionAffineChannel(HazelcastInstance hazelcastInstance, IExecutorService executorService) {
+		Assert.notNull(hazelcastInstance, "'hazelcastInstance' must not be null");
+		this.hazelcastInstance = hazelcastInstance;
+		this.executorService = executorService != null
+				? executorService
+				: hazelcastInstance.getExecutorService("default");
+	}
+
+	/**
+	 * Specify a SpEL {@link Expression} to evaluate the partition key against a message.
+	 * A {@code null} key means the message is dispatched locally.
+	 * @param keyExpression the key expression.
+	 */
+	public void setKeyExpression(Expression keyExpression) {
+		Assert.notNull(keyExpression, "'keyExpression' must not be null");
+		this.keyExpression = keyExpression;
+	}
+
+	/**
+	 * Specify an {@link ErrorHandler} for exceptions thrown during remote dispatching.
+	 * @param errorHandler the error handler.
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		Assert.notNull(errorHandler, "'errorHandler' must not be null");
+		this.errorHandler = errorHandler;
+	}
+
+	@Override
+	protected MessageDispatcher getDispatcher() {
+		return this.dispatcher;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "hazelcast:partition-affine-channel";
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		super.onInit();
+		Assert.state(this.keyExpression != null, "'keyExpression' must be set");
+		Assert.state(getComponentName() != null, "The 'HazelcastPartitionAffineChannel' must have a name " +
+				"to be resolved on the key owner member");
+		this.evaluationContext = ExpressionUtils.createStandardEvaluationContext(getBeanFactory());
+		if (this.errorHandler == null) {
+			this.errorHandler = new MessagePublishingErrorHandler(new BeanFactoryChannelResolver(getBeanFactory()));
+		}
+		this.registrationKey = registrationKey(this.hazelcastInstance, getComponentName());
+		channels.put(this.registrationKey, this);
+	}
+
+	@Override
+	protected boolean doSend(Message<?> message, long timeout) {
+		Object key = this.keyExpression.getValue(this.evaluationContext, message);
+		if (key == null || isLocalKeyOwner(key)) {
+			return super.doSend(message, timeout);
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("Submitting message to the owner of key [" + key + "]: " + message);
+		}
+		this.executorService.submitToKeyOwner(new PartitionAffineDispatchTask(getComponentName(), message), key,
+				this.executionCallback);
+		return true;
+	}
+
+	private boolean isLocalKeyOwner(Object key) {
+		Member owner = this.hazelcastInstance.getPartitionService().getPartition(key).getOwner();
+		return owner != null && owner.localMember();
+	}
+
+	@Override
+	public void destroy() throws Exception {
+		if (this.registrationKey != null) {
+			channels.remove(this.registrationKey, this);
+		}
+	}
+
+	private static String registrationKey(HazelcastInstance hazelcastInstance, String channelName) {
+		return hazelcastInstance.getName() + ":" + channelName;
+	}
+
+	/**
+	 * The task shipped to the key owner member, which dispatches the message to the
+	 * subscribers of the channel with the same name registered on that member.
+	 */
+	private static final class PartitionAffineDispatchTask implements Runnable, Serializable,
+			HazelcastInstanceAware {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String channelName;
+
+		private final Message<?> message;
+
+		private transient HazelcastInstance hazelcastInstance;
+
+		PartitionAffineDispatchTask(String channelName, Message<?> message) {
+			this.channelName = channelName;
+			this.message = message;
+		}
+
+		@Override
+		public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+			this.hazelcastInstance = hazelcastInstance;
+		}
+
+		@Override
+		public void run() {
+			HazelcastPartitionAffineChannel channel =
+					channels.get(registrationKey(this.hazelcastInstance, this.channelName));
+			if (channel == null) {
+				throw new MessageDeliveryException(this.message, "No HazelcastPartitionAffineChannel '" +
+						this.channelName + "' is registered on member " +
+						this.hazelcastInstance.getCluster().getLocalMember());
+			}
+			if (!channel.dispatcher.dispatch(this.message)) {
+				throw new MessageDeliveryException(this.message, "Dispatcher failed to deliver Message.");
+			}
+		}
+
+	}
+
+}
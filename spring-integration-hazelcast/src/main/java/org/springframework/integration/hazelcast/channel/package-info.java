@@ -0,0 +1,4 @@
+/**
+ * Provides classes supporting message channels.
+ */
+package org.springframework.integration.hazelcast.channel;
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,14 +17,18 @@
 package org.springframework.integration.hazelcast.config;
 
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.integration.config.IntegrationConfigurationInitializer;
 import org.springframework.integration.hazelcast.HazelcastLocalInstanceRegistrar;
+import org.springframework.integration.hazelcast.serializer.HazelcastIntegrationSerializersPostProcessor;
 
 /**
  * The Hazelcast Integration infrastructure {@code beanFactory} initializer.
+ * Registers the {@link HazelcastLocalInstanceRegistrar} and the
+ * {@link HazelcastIntegrationSerializersPostProcessor}.
  *
  * @author Eren Avsarogullari
  * @since 1.0.0
@@ -34,6 +38,9 @@ public class HazelcastIntegrationConfigurationInitializer implements Integration
 	private static final String HAZELCAST_LOCAL_INSTANCE_REGISTRAR_BEAN_NAME =
 			HazelcastLocalInstanceRegistrar.class.getName();
 
+	private static final String HAZELCAST_INTEGRATION_SERIALIZERS_POST_PROCESSOR_BEAN_NAME =
+			HazelcastIntegrationSerializersPostProcessor.class.getName();
+
 	@Override
 	public void initialize(ConfigurableListableBeanFactory beanFactory) throws BeansException {
 		BeanDefinitionRegistry beanDefinitionRegistry = (BeanDefinitionRegistry) beanFactory;
@@ -41,6 +48,13 @@ public class HazelcastIntegrationConfigurationInitializer implements Integration
 			beanDefinitionRegistry.registerBeanDefinition(HAZELCAST_LOCAL_INSTANCE_REGISTRAR_BEAN_NAME,
 					new RootBeanDefinition(HazelcastLocalInstanceRegistrar.class));
 		}
+		if (!beanDefinitionRegistry.containsBeanDefinition(HAZELCAST_INTEGRATION_SERIALIZERS_POST_PROCESSOR_BEAN_NAME)) {
+			RootBeanDefinition beanDefinition =
+					new RootBeanDefinition(HazelcastIntegrationSerializersPostProcessor.class);
+			beanDefinition.setRole(BeanDefinition.ROLE_INFRASTRUCTURE);
+			beanDefinitionRegistry.registerBeanDefinition(HAZELCAST_INTEGRATION_SERIALIZERS_POST_PROCESSOR_BEAN_NAME,
+					beanDefinition);
+		}
 	}
 
 }
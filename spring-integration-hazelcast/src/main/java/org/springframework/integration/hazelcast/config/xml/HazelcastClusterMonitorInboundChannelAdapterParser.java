@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -44,6 +44,12 @@ public class HazelcastClusterMonitorInboundChannelAdapterParser extends
 
 	private static final String MONITOR_TYPES_ATTRIBUTE = "monitor-types";
 
+	private static final String STATISTICS_MAPS_ATTRIBUTE = "statistics-maps";
+
+	private static final String STATISTICS_QUEUES_ATTRIBUTE = "statistics-queues";
+
+	private static final String STATISTICS_INTERVAL_ATTRIBUTE = "statistics-interval";
+
 	private static final String OUTPUT_CHANNEL = "outputChannel";
 
 	private static final String MONITOR_EVENT_TYPES = "monitorEventTypes";
@@ -90,6 +96,12 @@ public class HazelcastClusterMonitorInboundChannelAdapterParser extends
 				.getAttribute(HAZELCAST_INSTANCE_ATTRIBUTE));
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
 				MONITOR_TYPES_ATTRIBUTE, MONITOR_EVENT_TYPES);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+				STATISTICS_MAPS_ATTRIBUTE, "statisticsMapNames");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+				STATISTICS_QUEUES_ATTRIBUTE, "statisticsQueueNames");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
+				STATISTICS_INTERVAL_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
 				IntegrationNamespaceUtils.AUTO_STARTUP);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element,
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -49,6 +49,14 @@ public class HazelcastContinuousQueryInboundChannelAdapterParser extends Abstrac
 
 	private static final String CACHE_LISTENING_POLICY_ATTRIBUTE = "cache-listening-policy";
 
+	private static final String CONFLATION_INTERVAL_ATTRIBUTE = "conflation-interval";
+
+	private static final String CONFLATION_BUFFER_SIZE_ATTRIBUTE = "conflation-buffer-size";
+
+	private static final String MIGRATION_AWARE_ATTRIBUTE = "migration-aware";
+
+	private static final String HAZELCAST_INSTANCE_ATTRIBUTE = "hazelcast-instance";
+
 	private static final String OUTPUT_CHANNEL = "outputChannel";
 
 	private static final String CACHE_EVENT_TYPES = "cacheEventTypes";
@@ -101,6 +109,10 @@ public class HazelcastContinuousQueryInboundChannelAdapterParser extends Abstrac
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, CACHE_EVENTS_ATTRIBUTE, CACHE_EVENT_TYPES);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, INCLUDE_VALUE_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, CACHE_LISTENING_POLICY_ATTRIBUTE);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, CONFLATION_INTERVAL_ATTRIBUTE);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, CONFLATION_BUFFER_SIZE_ATTRIBUTE);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, MIGRATION_AWARE_ATTRIBUTE);
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, HAZELCAST_INSTANCE_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, IntegrationNamespaceUtils.AUTO_STARTUP);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, IntegrationNamespaceUtils.PHASE);
 	}
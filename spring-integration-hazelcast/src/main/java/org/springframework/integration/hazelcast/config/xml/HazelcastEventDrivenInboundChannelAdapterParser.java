@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -45,6 +45,10 @@ public class HazelcastEventDrivenInboundChannelAdapterParser extends AbstractSin
 
 	private static final String CACHE_LISTENING_POLICY_ATTRIBUTE = "cache-listening-policy";
 
+	private static final String MIGRATION_AWARE_ATTRIBUTE = "migration-aware";
+
+	private static final String HAZELCAST_INSTANCE_ATTRIBUTE = "hazelcast-instance";
+
 	private static final String OUTPUT_CHANNEL = "outputChannel";
 
 	private static final String CACHE_EVENT_TYPES = "cacheEventTypes";
@@ -92,6 +96,8 @@ public class HazelcastEventDrivenInboundChannelAdapterParser extends AbstractSin
 		builder.addConstructorArgReference(element.getAttribute(CACHE_ATTRIBUTE));
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, CACHE_EVENTS_ATTRIBUTE, CACHE_EVENT_TYPES);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, CACHE_LISTENING_POLICY_ATTRIBUTE);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, MIGRATION_AWARE_ATTRIBUTE);
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, element, HAZELCAST_INSTANCE_ATTRIBUTE);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, IntegrationNamespaceUtils.AUTO_STARTUP);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, element, IntegrationNamespaceUtils.PHASE);
 	}
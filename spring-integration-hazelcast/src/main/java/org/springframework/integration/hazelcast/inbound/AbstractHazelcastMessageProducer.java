@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,9 +18,11 @@ package org.springframework.integration.hazelcast.inbound;
 
 import java.net.InetSocketAddress;
 import java.net.SocketAddress;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -41,10 +43,20 @@ import com.hazelcast.core.EntryListener;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.MapEvent;
+import com.hazelcast.core.MigrationEvent;
+import com.hazelcast.core.MigrationListener;
 import com.hazelcast.core.MultiMap;
+import com.hazelcast.core.PartitionService;
 
 /**
  * Hazelcast Base Event-Driven Message Producer.
+ * <p>
+ * When {@link #setMigrationAware migration-aware}, the entry event messages for the keys of
+ * partitions which are being migrated are buffered in order and released when the migration
+ * completes (or fails). The buffered messages are sent outside of the lock guarding the buffers,
+ * so that a slow consumer only holds up the events of the partition being released.
+ * Migrations are tracked by a {@link MigrationListener} registered on the provided
+ * {@link HazelcastInstance}.
  *
  * @author Eren Avsarogullari
  * @author Artem Bilan
@@ -60,6 +72,14 @@ public abstract class AbstractHazelcastMessageProducer extends MessageProducerSu
 
 	private Set<String> cacheEvents = Collections.singleton(CacheEventType.ADDED.name());
 
+	private final Map<Integer, MigrationBuffer> migrationBuffers = new HashMap<>();
+
+	private volatile HazelcastInstance hazelcastInstance;
+
+	private volatile boolean migrationAware;
+
+	private volatile String migrationListenerId;
+
 	public AbstractHazelcastMessageProducer(DistributedObject distributedObject) {
 		Assert.notNull(distributedObject, "'distributedObject' must not be null");
 		this.distributedObject = distributedObject;
@@ -87,6 +107,116 @@ public abstract class AbstractHazelcastMessageProducer extends MessageProducerSu
 		this.cacheListeningPolicy = cacheListeningPolicy;
 	}
 
+	/**
+	 * Specify the {@link HazelcastInstance} hosting the distributed object; required
+	 * when the producer is {@link #setMigrationAware migration-aware}.
+	 * @param hazelcastInstance the {@link HazelcastInstance}.
+	 */
+	public void setHazelcastInstance(HazelcastInstance hazelcastInstance) {
+		Assert.notNull(hazelcastInstance, "'hazelcastInstance' must not be null");
+		this.hazelcastInstance = hazelcastInstance;
+	}
+
+	/**
+	 * Specify whether the entry event messages for migrating partitions are buffered
+	 * until the end of the migration; defaults to {@code false}.
+	 * @param migrationAware true to buffer the events of migrating partitions.
+	 */
+	public void setMigrationAware(boolean migrationAware) {
+		this.migrationAware = migrationAware;
+	}
+
+	@Override
+	protected void onInit() {
+		super.onInit();
+		Assert.state(!this.migrationAware || this.hazelcastInstance != null,
+				"A 'hazelcastInstance' is required for a migration-aware producer");
+	}
+
+	/**
+	 * Start tracking partition migrations if the producer is migration-aware.
+	 * To be called from {@link #doStart()}.
+	 */
+	protected void startMigrationTracking() {
+		if (this.migrationAware) {
+			this.migrationListenerId = this.hazelcastInstance.getPartitionService()
+					.addMigrationListener(new HazelcastMigrationListener());
+		}
+	}
+
+	/**
+	 * Stop tracking partition migrations and release all the buffered messages.
+	 * To be called from {@link #doStop()}.
+	 */
+	protected void stopMigrationTracking() {
+		if (this.migrationListenerId != null) {
+			if (this.hazelcastInstance.getLifecycleService().isRunning()) {
+				this.hazelcastInstance.getPartitionService().removeMigrationListener(this.migrationListenerId);
+			}
+			this.migrationListenerId = null;
+			List<Integer> partitionIds;
+			synchronized (this.migrationBuffers) {
+				partitionIds = new ArrayList<>(this.migrationBuffers.keySet());
+			}
+			for (Integer partitionId : partitionIds) {
+				releaseMigrationBuffer(partitionId);
+			}
+		}
+	}
+
+	private void sendOrBuffer(Object event, Message<?> message) {
+		if (this.migrationListenerId != null && event instanceof EntryEvent) {
+			PartitionService partitionService = this.hazelcastInstance.getPartitionService();
+			Integer partitionId = partitionService.getPartition(((EntryEvent<?, ?>) event).getKey()).getPartitionId();
+			synchronized (this.migrationBuffers) {
+				MigrationBuffer buffer = this.migrationBuffers.get(partitionId);
+				if (buffer != null) {
+					// also while releasing, to stay behind the messages buffered before
+					buffer.messages.add(message);
+					return;
+				}
+			}
+		}
+		sendMessage(message);
+	}
+
+	private void releaseMigrationBuffer(Integer partitionId) {
+		synchronized (this.migrationBuffers) {
+			MigrationBuffer buffer = this.migrationBuffers.get(partitionId);
+			if (buffer == null) {
+				return;
+			}
+			buffer.migrating = false;
+			if (buffer.releasing) {
+				return;
+			}
+			buffer.releasing = true;
+			if (logger.isDebugEnabled()) {
+				logger.debug("Releasing " + buffer.messages.size()
+						+ " messages buffered during the migration of partition " + partitionId);
+			}
+		}
+		while (true) {
+			List<Message<?>> messages;
+			synchronized (this.migrationBuffers) {
+				MigrationBuffer buffer = this.migrationBuffers.get(partitionId);
+				if (buffer.migrating || buffer.messages.isEmpty()) {
+					// done, or a new migration of the partition started: keep buffering
+					buffer.releasing = false;
+					if (!buffer.migrating) {
+						this.migrationBuffers.remove(partitionId);
+					}
+					return;
+				}
+				messages = new ArrayList<>(buffer.messages);
+				buffer.messages.clear();
+			}
+			for (Message<?> message : messages) {
+				sendMessage(message);
+			}
+		}
+	}
+
 	protected String getHazelcastRegisteredEventListenerId() {
 		return hazelcastRegisteredEventListenerId;
 	}
@@ -104,7 +234,7 @@ public abstract class AbstractHazelcastMessageProducer extends MessageProducerSu
 		protected void sendMessage(E event, InetSocketAddress socketAddress,
 								   CacheListeningPolicyType cacheListeningPolicyType) {
 			if (CacheListeningPolicyType.ALL == cacheListeningPolicyType || isEventAcceptable(socketAddress)) {
-				AbstractHazelcastMessageProducer.this.sendMessage(toMessage(event));
+				sendOrBuffer(event, toMessage(event));
 			}
 		}
 
@@ -141,6 +271,48 @@ public abstract class AbstractHazelcastMessageProducer extends MessageProducerSu
 
 	}
 
+	/**
+	 * The messages of a partition, guarded by the lock of the migration buffers. A buffer being
+	 * released keeps collecting the new messages of its partition until it is empty.
+	 */
+	private static final class MigrationBuffer {
+
+		private final List<Message<?>> messages = new ArrayList<>();
+
+		private boolean migrating;
+
+		private boolean releasing;
+
+	}
+
+	private final class HazelcastMigrationListener implements MigrationListener {
+
+		@Override
+		public void migrationStarted(MigrationEvent migrationEvent) {
+			synchronized (AbstractHazelcastMessageProducer.this.migrationBuffers) {
+				MigrationBuffer buffer = AbstractHazelcastMessageProducer.this.migrationBuffers
+						.get(migrationEvent.getPartitionId());
+				if (buffer == null) {
+					buffer = new MigrationBuffer();
+					AbstractHazelcastMessageProducer.this.migrationBuffers
+							.put(migrationEvent.getPartitionId(), buffer);
+				}
+				buffer.migrating = true;
+			}
+		}
+
+		@Override
+		public void migrationCompleted(MigrationEvent migrationEvent) {
+			releaseMigrationBuffer(migrationEvent.getPartitionId());
+		}
+
+		@Override
+		public void migrationFailed(MigrationEvent migrationEvent) {
+			releaseMigrationBuffer(migrationEvent.getPartitionId());
+		}
+
+	}
+
 	protected final class HazelcastEntryListener<K, V> extends
 			AbstractHazelcastEventListener<AbstractIMapEvent> implements EntryListener<K, V> {
 
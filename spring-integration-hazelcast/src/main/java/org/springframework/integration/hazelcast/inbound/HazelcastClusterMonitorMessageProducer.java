@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,13 +17,19 @@
 package org.springframework.integration.hazelcast.inbound;
 
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 
 import org.springframework.integration.endpoint.MessageProducerSupport;
 import org.springframework.integration.hazelcast.ClusterMonitorType;
+import org.springframework.integration.hazelcast.HazelcastHeaders;
 import org.springframework.integration.hazelcast.HazelcastIntegrationDefinitionValidator;
+import org.springframework.integration.hazelcast.message.DistributedObjectStatisticsPayload;
 import org.springframework.util.Assert;
 
 import com.hazelcast.core.Client;
@@ -31,6 +37,8 @@ import com.hazelcast.core.ClientListener;
 import com.hazelcast.core.DistributedObjectEvent;
 import com.hazelcast.core.DistributedObjectListener;
 import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.IQueue;
 import com.hazelcast.core.LifecycleEvent;
 import com.hazelcast.core.LifecycleListener;
 import com.hazelcast.core.MemberAttributeEvent;
@@ -38,11 +46,20 @@ import com.hazelcast.core.MembershipEvent;
 import com.hazelcast.core.MembershipListener;
 import com.hazelcast.core.MigrationEvent;
 import com.hazelcast.core.MigrationListener;
+import com.hazelcast.monitor.LocalMapStats;
+import com.hazelcast.monitor.LocalQueueStats;
 
 /**
  * Hazelcast Cluster Monitor Event Driven Message Producer is a message producer which
  * enables {@link HazelcastClusterMonitorMessageProducer.HazelcastClusterMonitorListener}
  * listener in order to listen cluster related events and sends events to related channel.
+ * <p>
+ * With the {@link ClusterMonitorType#STATISTICS} monitor type, the local statistics of the
+ * configured maps and queues are sampled every {@link #setStatisticsInterval statistics interval}
+ * and sent as {@link DistributedObjectStatisticsPayload} messages, one per changed object.
+ * A baseline sample is taken on start and not sent, so that every message carries the
+ * deltas over an actual interval.
+ * This monitor type requires a cluster member {@link HazelcastInstance} and a {@code TaskScheduler}.
  *
  * @author Eren Avsarogullari
  * @since 1.0.0
@@ -55,6 +72,18 @@ public class HazelcastClusterMonitorMessageProducer extends MessageProducerSuppo
 
 	private final Map<ClusterMonitorType, String> hazelcastRegisteredListenerIdMap = new ConcurrentHashMap<>(5);
 
+	private final Map<String, StatisticsSample> previousStatisticsSamples = new HashMap<>();
+
+	private String[] statisticsMapNames = new String[0];
+
+	private String[] statisticsQueueNames = new String[0];
+
+	private long statisticsInterval = 10000;
+
+	private volatile ScheduledFuture<?> statisticsFuture;
+
+	private boolean sampling;
+
 	public HazelcastClusterMonitorMessageProducer(HazelcastInstance hazelcastInstance) {
 		Assert.notNull(hazelcastInstance, "'hazelcastInstance' must not be null");
 		this.hazelcastInstance = hazelcastInstance;
@@ -67,6 +96,33 @@ public class HazelcastClusterMonitorMessageProducer extends MessageProducerSuppo
 		this.monitorTypes = monitorTypes;
 	}
 
+	/**
+	 * Specify the names of the maps to sample with the {@link ClusterMonitorType#STATISTICS} monitor type.
+	 * @param statisticsMapNames the map names.
+	 */
+	public void setStatisticsMapNames(String... statisticsMapNames) {
+		Assert.noNullElements(statisticsMapNames, "'statisticsMapNames' must not contain null elements");
+		this.statisticsMapNames = statisticsMapNames;
+	}
+
+	/**
+	 * Specify the names of the queues to sample with the {@link ClusterMonitorType#STATISTICS} monitor type.
+	 * @param statisticsQueueNames the queue names.
+	 */
+	public void setStatisticsQueueNames(String... statisticsQueueNames) {
+		Assert.noNullElements(statisticsQueueNames, "'statisticsQueueNames' must not contain null elements");
+		this.statisticsQueueNames = statisticsQueueNames;
+	}
+
+	/**
+	 * Specify the interval in milliseconds between statistics samples; defaults to 10 seconds.
+	 * @param statisticsInterval the statistics interval.
+	 */
+	public void setStatisticsInterval(long statisticsInterval) {
+		Assert.isTrue(statisticsInterval > 0, "'statisticsInterval' must be positive");
+		this.statisticsInterval = statisticsInterval;
+	}
+
 	@Override
 	protected void doStart() {
 		final HazelcastClusterMonitorListener clusterMonitorListener = new HazelcastClusterMonitorListener();
@@ -100,10 +156,38 @@ public class HazelcastClusterMonitorMessageProducer extends MessageProducerSuppo
 					.addClientListener(clusterMonitorListener);
 			this.hazelcastRegisteredListenerIdMap.put(ClusterMonitorType.CLIENT, registrationId);
 		}
+
+		if (this.monitorTypes.contains(ClusterMonitorType.STATISTICS.name())) {
+			Assert.state(this.statisticsMapNames.length > 0 || this.statisticsQueueNames.length > 0,
+					"At least one map or queue name is required for the STATISTICS monitor type");
+			Assert.state(getTaskScheduler() != null, "A 'taskScheduler' is required for the STATISTICS monitor type");
+			synchronized (this) {
+				this.sampling = true;
+			}
+			sampleStatistics();
+			this.statisticsFuture = getTaskScheduler().scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					sampleStatistics();
+				}
+
+			}, new Date(System.currentTimeMillis() + this.statisticsInterval), this.statisticsInterval);
+		}
 	}
 
 	@Override
 	protected void doStop() {
+		if (this.statisticsFuture != null) {
+			this.statisticsFuture.cancel(false);
+			this.statisticsFuture = null;
+		}
+		synchronized (this) {
+			// the next start takes a new baseline, rather than computing deltas over the stop
+			this.sampling = false;
+			this.previousStatisticsSamples.clear();
+		}
+
 		if (this.hazelcastInstance.getLifecycleService().isRunning()) {
 			String id = this.hazelcastRegisteredListenerIdMap.remove(ClusterMonitorType.MEMBERSHIP);
 			if (id != null) {
@@ -146,6 +230,97 @@ public class HazelcastClusterMonitorMessageProducer extends MessageProducerSuppo
 
 	}
 
+	/**
+	 * Sample the local statistics of the configured maps and queues and send a message
+	 * with the metrics which changed since the previous sample for each of them. The first
+	 * sample of an object after a start is only recorded as the baseline.
+	 */
+	protected synchronized void sampleStatistics() {
+		if (!this.sampling || !this.hazelcastInstance.getLifecycleService().isRunning()) {
+			return;
+		}
+		for (String mapName : this.statisticsMapNames) {
+			IMap<?, ?> map = this.hazelcastInstance.getMap(mapName);
+			LocalMapStats stats = map.getLocalMapStats();
+			Map<String, Long> metrics = new LinkedHashMap<>();
+			metrics.put(DistributedObjectStatisticsPayload.OPERATIONS, stats.total());
+			metrics.put(DistributedObjectStatisticsPayload.OWNED_ENTRY_COUNT, stats.getOwnedEntryCount());
+			metrics.put(DistributedObjectStatisticsPayload.OWNED_ENTRY_MEMORY_COST, stats.getOwnedEntryMemoryCost());
+			metrics.put(DistributedObjectStatisticsPayload.HITS, stats.getHits());
+			metrics.put(DistributedObjectStatisticsPayload.PUTS, stats.getPutOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.GETS, stats.getGetOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.REMOVES, stats.getRemoveOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.PUT_LATENCY, stats.getTotalPutLatency());
+			metrics.put(DistributedObjectStatisticsPayload.GET_LATENCY, stats.getTotalGetLatency());
+			metrics.put(DistributedObjectStatisticsPayload.REMOVE_LATENCY, stats.getTotalRemoveLatency());
+			metrics.put(DistributedObjectStatisticsPayload.EVENTS, stats.getEventOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.OTHER_OPERATIONS, stats.getOtherOperationCount());
+			processStatistics(map.getName(), map.getServiceName(), metrics);
+		}
+		for (String queueName : this.statisticsQueueNames) {
+			IQueue<?> queue = this.hazelcastInstance.getQueue(queueName);
+			LocalQueueStats stats = queue.getLocalQueueStats();
+			Map<String, Long> metrics = new LinkedHashMap<>();
+			metrics.put(DistributedObjectStatisticsPayload.OPERATIONS, stats.getOfferOperationCount()
+					+ stats.getPollOperationCount() + stats.getOtherOperationsCount());
+			metrics.put(DistributedObjectStatisticsPayload.OWNED_ITEM_COUNT, stats.getOwnedItemCount());
+			metrics.put(DistributedObjectStatisticsPayload.OFFERS, stats.getOfferOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.REJECTED_OFFERS, stats.getRejectedOfferOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.POLLS, stats.getPollOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.EMPTY_POLLS, stats.getEmptyPollOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.EVENTS, stats.getEventOperationCount());
+			metrics.put(DistributedObjectStatisticsPayload.OTHER_OPERATIONS, stats.getOtherOperationsCount());
+			processStatistics(queue.getName(), queue.getServiceName(), metrics);
+		}
+	}
+
+	private void processStatistics(String name, String serviceName, Map<String, Long> metrics) {
+		long now = System.currentTimeMillis();
+		String sampleKey = serviceName + ":" + name;
+		StatisticsSample previous = this.previousStatisticsSamples.put(sampleKey, new StatisticsSample(now, metrics));
+		if (previous == null) {
+			return;
+		}
+		Map<String, Long> deltas = new LinkedHashMap<>();
+		for (Map.Entry<String, Long> metric : metrics.entrySet()) {
+			long delta = metric.getValue() - previous.getMetric(metric.getKey());
+			if (delta != 0) {
+				deltas.put(metric.getKey(), delta);
+			}
+		}
+		if (deltas.isEmpty()) {
+			return;
+		}
+		DistributedObjectStatisticsPayload payload = new DistributedObjectStatisticsPayload(name, serviceName,
+				now - previous.timestamp, deltas);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Sampled Statistics : " + payload);
+		}
+		Map<String, Object> headers = new HashMap<>();
+		headers.put(HazelcastHeaders.EVENT_TYPE, ClusterMonitorType.STATISTICS.name());
+		headers.put(HazelcastHeaders.MEMBER, this.hazelcastInstance.getCluster().getLocalMember().getSocketAddress());
+		headers.put(HazelcastHeaders.CACHE_NAME, name);
+		this.sendMessage(getMessageBuilderFactory().withPayload(payload).copyHeaders(headers).build());
+	}
+
+	private static final class StatisticsSample {
+
+		private final long timestamp;
+
+		private final Map<String, Long> metrics;
+
+		StatisticsSample(long timestamp, Map<String, Long> metrics) {
+			this.timestamp = timestamp;
+			this.metrics = metrics;
+		}
+
+		long getMetric(String metric) {
+			Long value = this.metrics.get(metric);
+			return value != null ? value : 0;
+		}
+
+	}
+
 	private final class HazelcastClusterMonitorListener implements MembershipListener,
 			DistributedObjectListener, MigrationListener, LifecycleListener,
 			ClientListener {
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,6 +16,14 @@
 
 package org.springframework.integration.hazelcast.inbound;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+
+import org.springframework.integration.hazelcast.message.EntryEventMessagePayload;
+import org.springframework.messaging.Message;
 import org.springframework.util.Assert;
 
 import com.hazelcast.core.IMap;
@@ -27,6 +35,12 @@ import com.hazelcast.query.SqlPredicate;
  * {@link AbstractHazelcastMessageProducer.HazelcastEntryListener} with a
  * {@link SqlPredicate} in order to listen related distributed map events in the light of
  * defined predicate and sends events to related channel.
+ * <p>
+ * When a {@link #setConflationInterval(long) conflation interval} is set, the entry
+ * event messages are conflated by key in a bounded local buffer which keeps only
+ * the latest message for each key. The buffer is flushed on each interval tick, when
+ * it reaches its {@link #setConflationBufferSize(int) size}, on demand via
+ * {@link #flush()} and on stop. Map-wide events flush the buffer before being sent.
  *
  * @author Eren Avsarogullari
  * @since 1.0.0
@@ -37,6 +51,16 @@ public class HazelcastContinuousQueryMessageProducer extends AbstractHazelcastMe
 
 	private boolean includeValue = true;
 
+	private final Map<Object, Message<?>> conflationBuffer = new LinkedHashMap<Object, Message<?>>();
+
+	private final Object sendLock = new Object();
+
+	private long conflationInterval;
+
+	private int conflationBufferSize = 1000;
+
+	private volatile ScheduledFuture<?> conflationFuture;
+
 	@SuppressWarnings("rawtypes")
 	public HazelcastContinuousQueryMessageProducer(IMap distributedMap, String predicate) {
 		super(distributedMap);
@@ -48,9 +72,41 @@ public class HazelcastContinuousQueryMessageProducer extends AbstractHazelcastMe
 		this.includeValue = includeValue;
 	}
 
+	/**
+	 * Specify the interval in milliseconds to flush the conflated entry event messages.
+	 * Defaults to 0 - no conflation.
+	 * @param conflationInterval the conflation interval.
+	 */
+	public void setConflationInterval(long conflationInterval) {
+		Assert.isTrue(conflationInterval >= 0, "'conflationInterval' must not be negative");
+		this.conflationInterval = conflationInterval;
+	}
+
+	/**
+	 * Specify the maximum number of keys in the conflation buffer; when reached,
+	 * the buffer is flushed before the next interval tick. Defaults to 1000.
+	 * @param conflationBufferSize the conflation buffer size.
+	 */
+	public void setConflationBufferSize(int conflationBufferSize) {
+		Assert.isTrue(conflationBufferSize > 0, "'conflationBufferSize' must be greater than 0");
+		this.conflationBufferSize = conflationBufferSize;
+	}
+
 	@SuppressWarnings({"rawtypes", "unchecked"})
 	@Override
 	protected void doStart() {
+		if (this.conflationInterval > 0) {
+			Assert.state(getTaskScheduler() != null, "A 'taskScheduler' is required for conflation");
+			this.conflationFuture = getTaskScheduler().scheduleAtFixedRate(new Runnable() {
+
+				@Override
+				public void run() {
+					flush();
+				}
+
+			}, this.conflationInterval);
+		}
+		startMigrationTracking();
 		setHazelcastRegisteredEventListenerId(((IMap<?, ?>) this.distributedObject)
 				.addEntryListener((MapListener) new HazelcastEntryListener(), new SqlPredicate(this.predicate),
 						this.includeValue));
@@ -59,6 +115,73 @@ public class HazelcastContinuousQueryMessageProducer extends AbstractHazelcastMe
 	@Override
 	protected void doStop() {
 		((IMap<?, ?>) this.distributedObject).removeEntryListener(getHazelcastRegisteredEventListenerId());
+		stopMigrationTracking();
+		if (this.conflationFuture != null) {
+			this.conflationFuture.cancel(false);
+			this.conflationFuture = null;
+			flush();
+		}
+	}
+
+	@Override
+	protected void sendMessage(Message<?> message) {
+		if (this.conflationInterval > 0) {
+			if (message.getPayload() instanceof EntryEventMessagePayload) {
+				boolean full;
+				synchronized (this.conflationBuffer) {
+					this.conflationBuffer.put(((EntryEventMessagePayload<?, ?>) message.getPayload()).key, message);
+					full = this.conflationBuffer.size() >= this.conflationBufferSize;
+				}
+				if (full) {
+					flush();
+				}
+			}
+			else {
+				synchronized (this.sendLock) {
+					List<Message<?>> messagesToSend;
+					synchronized (this.conflationBuffer) {
+						messagesToSend = drainConflationBuffer();
+					}
+					messagesToSend.add(message);
+					sendMessages(messagesToSend);
+				}
+			}
+		}
+		else {
+			super.sendMessage(message);
+		}
+	}
+
+	/**
+	 * Send the latest conflated entry event message for each key buffered
+	 * since the previous flush.
+	 * <p>Draining and sending happen under one send lock, so that concurrent flushes
+	 * (interval tick, full buffer, map-wide event) never deliver an older message
+	 * for a key after a newer one.
+	 */
+	public void flush() {
+		synchronized (this.sendLock) {
+			List<Message<?>> messagesToSend;
+			synchronized (this.conflationBuffer) {
+				if (this.conflationBuffer.isEmpty()) {
+					return;
+				}
+				messagesToSend = drainConflationBuffer();
+			}
+			sendMessages(messagesToSend);
+		}
+	}
+
+	private List<Message<?>> drainConflationBuffer() {
+		List<Message<?>> messages = new ArrayList<Message<?>>(this.conflationBuffer.values());
+		this.conflationBuffer.clear();
+		return messages;
+	}
+
+	private void sendMessages(List<Message<?>> messages) {
+		for (Message<?> message : messages) {
+			super.sendMessage(message);
+		}
 	}
 
 	@Override
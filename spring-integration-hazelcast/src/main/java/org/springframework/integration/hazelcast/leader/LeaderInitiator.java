@@ -1,5 +1,5 @@
 /*
- * Copyright 2014-2015 the original author or authors.
+ * Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,12 +16,17 @@
 
 package org.springframework.integration.hazelcast.leader;
 
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
+import java.io.Serializable;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationEventPublisher;
@@ -33,14 +38,39 @@ import org.springframework.integration.leader.DefaultCandidate;
 import org.springframework.integration.leader.event.DefaultLeaderEventPublisher;
 import org.springframework.integration.leader.event.LeaderEventPublisher;
 import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
+import com.hazelcast.core.EntryEvent;
 import com.hazelcast.core.HazelcastInstance;
-import com.hazelcast.core.ILock;
+import com.hazelcast.core.IAtomicLong;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.LifecycleEvent;
+import com.hazelcast.core.LifecycleListener;
+import com.hazelcast.core.MemberAttributeEvent;
+import com.hazelcast.core.MembershipEvent;
+import com.hazelcast.core.MembershipListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
 
 /**
  * Bootstrap leadership {@link org.springframework.integration.leader.Candidate candidates}
  * with Hazelcast. Upon construction, {@link #start} must be invoked to
  * register the candidate for leadership election.
+ * <p>
+ * The leadership for a role is a record in the {@link #LEADERS_MAP} {@link IMap},
+ * acquired with {@link IMap#putIfAbsent} and stamped with a fencing token which grows
+ * monotonically for each new leader of the role. No thread is parked waiting for the
+ * leadership: acquisition attempts are triggered by the removal or eviction of the
+ * record and by the cluster membership events, so the leadership of a crashed member
+ * is taken over as soon as the member is reported as removed. The leader renews the
+ * record's lease every third of the {@link #setLeaseTime lease time}, which covers
+ * leaders connected as Hazelcast clients and split-brain situations.
+ * <p>
+ * All the election tasks and candidate callbacks are performed on a
+ * {@link ScheduledExecutorService}, which can be shared between many initiators via
+ * {@link #setExecutorService(ScheduledExecutorService)}. Only the leadership state
+ * transitions hold the monitor of the initiator: the Hazelcast operations and the
+ * candidate callbacks run outside of it, the callbacks in the order of the transitions.
  *
  * @author Patrick Peralta
  * @author Gary Russell
@@ -49,10 +79,19 @@ import com.hazelcast.core.ILock;
  */
 public class LeaderInitiator implements SmartLifecycle, DisposableBean, ApplicationEventPublisherAware {
 
+	/**
+	 * The name of the {@link IMap} holding the leadership records by role.
+	 */
+	public static final String LEADERS_MAP = "SPRING_INTEGRATION_LEADERS";
+
+	private static final String FENCING_TOKEN_PREFIX = "SPRING_INTEGRATION_LEADER_FENCING_TOKEN_";
+
 	private static int threadNameCount = 0;
 
 	private static final Context NULL_CONTEXT = new NullContext();
 
+	private final Log logger = LogFactory.getLog(getClass());
+
 	/**
 	 * Hazelcast client.
 	 */
@@ -63,32 +102,66 @@ public class LeaderInitiator implements SmartLifecycle, DisposableBean, Applicat
 	 */
 	private final Candidate candidate;
 
+	private final HazelcastContext context = new HazelcastContext();
+
+	private final LeadershipListener leadershipListener = new LeadershipListener();
+
+	private final AtomicLong grantedCount = new AtomicLong();
+
+	private final AtomicLong revokedCount = new AtomicLong();
+
 	/**
-	 * Executor service for running leadership daemon.
+	 * Executor service for running leadership tasks.
 	 */
-	private final ExecutorService executorService = Executors.newSingleThreadExecutor(new ThreadFactory() {
+	private volatile ScheduledExecutorService executorService;
 
-		@Override
-		public Thread newThread(Runnable r) {
-			Thread thread = new Thread(r, "Hazelcast-leadership-" + (threadNameCount++));
-			thread.setDaemon(true);
-			return thread;
-		}
+	private boolean internalExecutorService;
+
+	/**
+	 * Hazelcast distributed map of leadership records.
+	 */
+	private volatile IMap<String, LeadershipRecord> leaders;
+
+	/**
+	 * Hazelcast distributed fencing token for the {@link #candidate} role.
+	 */
+	private volatile IAtomicLong fencingToken;
+
+	/**
+	 * The leadership record owned by this initiator; {@code null} if not leader.
+	 */
+	private volatile LeadershipRecord leadership;
+
+	private volatile ScheduledFuture<?> renewFuture;
+
+	/**
+	 * The number of leadership transitions, guarded by the initiator monitor.
+	 */
+	private long transitions;
 
-	});
+	private final Object callbackMonitor = new Object();
 
 	/**
-	 * Future returned by submitting an {@link LeaderSelector} to {@link #executorService}.
-	 * This is used to cancel leadership.
+	 * The last transition whose callbacks have been run, guarded by the {@link #callbackMonitor}.
 	 */
-	private volatile Future<Void> future;
+	private long callbackTransition;
+
+	private volatile long leaseTime = 30000;
+
+	private volatile String entryListenerId;
+
+	private volatile String membershipListenerId;
+
+	private volatile String lifecycleListenerId;
 
 	/**
-	 * Hazelcast distributed lock.
+	 * {@link System#nanoTime()} when the vacancy of the leadership has been detected.
 	 */
-	private volatile ILock lock;
+	private volatile long vacancyDetectedAt;
+
+	private volatile long lastTimeToElect = -1;
 
-	private LeaderSelector leaderSelector;
+	private volatile long lastTimeToRevoke = -1;
 
 	/**
 	 * Leader event publisher.
@@ -145,14 +218,67 @@ public class LeaderInitiator implements SmartLifecycle, DisposableBean, Applicat
 		this.customPublisher = true;
 	}
 
+	/**
+	 * Set the {@link ScheduledExecutorService} to perform election tasks and candidate
+	 * callbacks. May be shared between several initiators; it is not shut down
+	 * by this initiator. By default a single-threaded executor is created for each
+	 * initiator.
+	 * @param executorService the executor service
+	 */
+	public void setExecutorService(ScheduledExecutorService executorService) {
+		Assert.notNull(executorService, "'executorService' must not be null");
+		this.executorService = executorService;
+	}
+
+	/**
+	 * Set the lease time in milliseconds of the leadership record; the leader renews it
+	 * every third of this time. A leader which is not able to renew the lease
+	 * revokes its leadership. Defaults to 30 seconds.
+	 * @param leaseTime the lease time in milliseconds
+	 */
+	public void setLeaseTime(long leaseTime) {
+		Assert.isTrue(leaseTime > 0, "'leaseTime' must be greater than 0");
+		this.leaseTime = leaseTime;
+	}
+
 	/**
 	 * @return the context (or null if not running)
 	 */
 	public Context getContext() {
-		if (this.leaderSelector == null) {
+		if (this.leaders == null) {
 			return NULL_CONTEXT;
 		}
-		return this.leaderSelector.context;
+		return this.context;
+	}
+
+	/**
+	 * @return the number of times the leadership has been granted to this initiator
+	 */
+	public long getGrantedCount() {
+		return this.grantedCount.get();
+	}
+
+	/**
+	 * @return the number of times the leadership of this initiator has been revoked
+	 */
+	public long getRevokedCount() {
+		return this.revokedCount.get();
+	}
+
+	/**
+	 * @return the time in milliseconds between the detection of the leadership vacancy
+	 * and the last grant to this initiator, or -1 if never granted
+	 */
+	public long getLastTimeToElect() {
+		return this.lastTimeToElect;
+	}
+
+	/**
+	 * @return the time in milliseconds the last revocation of this initiator's
+	 * leadership took including candidate callbacks, or -1 if never revoked
+	 */
+	public long getLastTimeToRevoke() {
+		return this.lastTimeToRevoke;
 	}
 
 	@Override
@@ -186,10 +312,35 @@ public class LeaderInitiator implements SmartLifecycle, DisposableBean, Applicat
 	@Override
 	public synchronized void start() {
 		if (!this.running) {
-			this.lock = this.client.getLock(this.candidate.getRole());
+			if (this.executorService == null) {
+				this.executorService = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "Hazelcast-leadership-" + (threadNameCount++));
+						thread.setDaemon(true);
+						return thread;
+					}
+
+				});
+				this.internalExecutorService = true;
+			}
+			String role = this.candidate.getRole();
+			this.leaders = this.client.getMap(LEADERS_MAP);
+			this.fencingToken = this.client.getAtomicLong(FENCING_TOKEN_PREFIX + role);
+			this.entryListenerId = this.leaders.addEntryListener(this.leadershipListener, role, false);
+			this.membershipListenerId = this.client.getCluster().addMembershipListener(this.leadershipListener);
+			this.lifecycleListenerId = this.client.getLifecycleService().addLifecycleListener(this.leadershipListener);
 			this.running = true;
-			this.leaderSelector = new LeaderSelector();
-			this.future = this.executorService.submit(this.leaderSelector);
+			this.vacancyDetectedAt = System.nanoTime();
+			submit(new Runnable() {
+
+				@Override
+				public void run() {
+					tryAcquire();
+				}
+
+			});
 		}
 	}
 
@@ -209,7 +360,20 @@ public class LeaderInitiator implements SmartLifecycle, DisposableBean, Applicat
 	public synchronized void stop() {
 		if (this.running) {
 			this.running = false;
-			this.future.cancel(true);
+			if (this.client.getLifecycleService().isRunning()) {
+				this.leaders.removeEntryListener(this.entryListenerId);
+				this.client.getCluster().removeMembershipListener(this.membershipListenerId);
+				this.client.getLifecycleService().removeLifecycleListener(this.lifecycleListenerId);
+			}
+			final long revocationStartedAt = System.nanoTime();
+			submit(new Runnable() {
+
+				@Override
+				public void run() {
+					revoke(revocationStartedAt);
+				}
+
+			});
 		}
 	}
 
@@ -224,64 +388,341 @@ public class LeaderInitiator implements SmartLifecycle, DisposableBean, Applicat
 	@Override
 	public void destroy() throws Exception {
 		stop();
-		this.executorService.shutdown();
+		if (this.internalExecutorService) {
+			this.executorService.shutdown();
+		}
+	}
+
+	private void submit(Runnable task) {
+		try {
+			this.executorService.execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			if (this.logger.isDebugEnabled()) {
+				this.logger.debug("Leadership task rejected for role [" + this.candidate.getRole() + "]", e);
+			}
+		}
 	}
 
 	/**
-	 * Callable that manages the acquisition of Hazelcast locks
-	 * for leadership election.
+	 * Attempt to become the leader if the leadership for the role is vacant.
 	 */
-	protected class LeaderSelector implements Callable<Void> {
+	protected void tryAcquire() {
+		String role = this.candidate.getRole();
+		try {
+			synchronized (this) {
+				if (!this.running || this.leadership != null) {
+					return;
+				}
+			}
+			if (this.leaders.containsKey(role)) {
+				return;
+			}
+			final LeadershipRecord record = new LeadershipRecord(this.client.getLocalEndpoint().getUuid(),
+					this.candidate.getId(), this.fencingToken.incrementAndGet());
+			if (this.leaders.putIfAbsent(role, record, this.leaseTime, TimeUnit.MILLISECONDS) == null) {
+				long transition;
+				synchronized (this) {
+					if (!this.running || this.leadership != null) {
+						transition = -1;
+					}
+					else {
+						this.leadership = record;
+						this.lastTimeToElect =
+								TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.vacancyDetectedAt);
+						this.grantedCount.incrementAndGet();
+						long renewPeriod = this.leaseTime / 3;
+						this.renewFuture = this.executorService.scheduleAtFixedRate(new Runnable() {
+
+							@Override
+							public void run() {
+								renew(record);
+							}
 
-		protected final HazelcastContext context = new HazelcastContext();
+						}, renewPeriod, renewPeriod, TimeUnit.MILLISECONDS);
+						transition = ++this.transitions;
+					}
+				}
+				if (transition < 0) {
+					// stopped, or granted by another task, meanwhile
+					this.leaders.remove(role, record);
+					return;
+				}
+				awaitCallbacks(transition);
+				try {
+					this.leaderEventPublisher.publishOnGranted(this, this.context, role);
+					this.candidate.onGranted(this.context);
+				}
+				finally {
+					callbacksRun(transition);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (RuntimeException e) {
+			this.logger.error("Failed to acquire leadership for role [" + role + "]", e);
+		}
+	}
 
-		protected final String role = LeaderInitiator.this.candidate.getRole();
+	/**
+	 * Prolong the lease of the leadership record or revoke the leadership
+	 * if the record doesn't belong to this initiator any more.
+	 */
+	protected void renew() {
+		LeadershipRecord record = this.leadership;
+		if (record != null) {
+			renew(record);
+		}
+	}
 
-		private volatile boolean locked = false;
+	private void renew(LeadershipRecord record) {
+		if (this.leadership != record) {
+			return;
+		}
+		long startedAt = System.nanoTime();
+		String role = this.candidate.getRole();
+		boolean renewed = false;
+		try {
+			if (this.leaders.tryLock(role, this.leaseTime / 3, TimeUnit.MILLISECONDS)) {
+				try {
+					if (record.equals(this.leaders.get(role))) {
+						this.leaders.set(role, record, this.leaseTime, TimeUnit.MILLISECONDS);
+						renewed = true;
+					}
+				}
+				finally {
+					this.leaders.unlock(role);
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (RuntimeException e) {
+			this.logger.error("Failed to renew leadership for role [" + role + "]", e);
+		}
+		if (!renewed) {
+			revoke(startedAt, record);
+		}
+	}
 
-		@Override
-		public Void call() throws Exception {
+	/**
+	 * Give up the leadership if this initiator is leader.
+	 * @param revocationStartedAt the {@link System#nanoTime()} when the revocation has been requested
+	 */
+	protected void revoke(long revocationStartedAt) {
+		revoke(revocationStartedAt, null);
+	}
+
+	/**
+	 * Give up the provided leadership, or the current one if {@code null}.
+	 */
+	private void revoke(long revocationStartedAt, LeadershipRecord expected) {
+		LeadershipRecord record;
+		long transition;
+		synchronized (this) {
+			record = this.leadership;
+			if (record == null || (expected != null && record != expected)) {
+				return;
+			}
+			this.leadership = null;
+			if (this.renewFuture != null) {
+				this.renewFuture.cancel(false);
+				this.renewFuture = null;
+			}
+			transition = ++this.transitions;
+		}
+		String role = this.candidate.getRole();
+		try {
+			if (this.client.getLifecycleService().isRunning()) {
+				this.leaders.remove(role, record);
+			}
+		}
+		catch (RuntimeException e) {
+			this.logger.error("Failed to remove leadership record for role [" + role + "]", e);
+		}
+		finally {
+			awaitCallbacks(transition);
 			try {
-				while (LeaderInitiator.this.running) {
+				this.candidate.onRevoked(this.context);
+				this.leaderEventPublisher.publishOnRevoked(this, this.context, role);
+				this.revokedCount.incrementAndGet();
+				this.lastTimeToRevoke = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - revocationStartedAt);
+			}
+			finally {
+				callbacksRun(transition);
+			}
+		}
+	}
+
+	/**
+	 * Wait for the callbacks of the previous leadership transitions to be run, so that
+	 * a candidate is never revoked before being granted.
+	 * @param transition the number of the transition
+	 */
+	private void awaitCallbacks(long transition) {
+		synchronized (this.callbackMonitor) {
+			while (this.callbackTransition < transition - 1) {
+				try {
+					this.callbackMonitor.wait();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	private void callbacksRun(long transition) {
+		synchronized (this.callbackMonitor) {
+			this.callbackTransition = Math.max(this.callbackTransition, transition);
+			this.callbackMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * Listener for the events which may change the leadership of the {@link #candidate}
+	 * role. The events are handed off to the {@link #executorService}.
+	 */
+	private final class LeadershipListener implements EntryRemovedListener<String, LeadershipRecord>,
+			EntryEvictedListener<String, LeadershipRecord>, MembershipListener, LifecycleListener {
+
+		LeadershipListener() {
+			super();
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<String, LeadershipRecord> event) {
+			vacancyDetected();
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<String, LeadershipRecord> event) {
+			vacancyDetected();
+		}
+
+		@Override
+		public void memberAdded(MembershipEvent membershipEvent) {
+		}
+
+		@Override
+		public void memberRemoved(final MembershipEvent membershipEvent) {
+			final long detectedAt = System.nanoTime();
+			submit(new Runnable() {
+
+				@Override
+				public void run() {
+					String role = LeaderInitiator.this.candidate.getRole();
 					try {
-						this.locked = LeaderInitiator.this.lock.tryLock(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-						if (this.locked) {
-							LeaderInitiator.this.leaderEventPublisher.publishOnGranted(LeaderInitiator.this,
-									this.context, this.role);
-							LeaderInitiator.this.candidate.onGranted(context);
-							Thread.sleep(Long.MAX_VALUE);
+						LeadershipRecord record = LeaderInitiator.this.leaders.get(role);
+						if (record != null && record.memberUuid.equals(membershipEvent.getMember().getUuid())) {
+							LeaderInitiator.this.vacancyDetectedAt = detectedAt;
+							LeaderInitiator.this.leaders.remove(role, record);
 						}
 					}
-					catch (InterruptedException e) {
-						if (this.locked) {
-							LeaderInitiator.this.lock.unlock();
-							this.locked = false;
-							// The lock was broken and we are no longer leader
-							LeaderInitiator.this.candidate.onRevoked(this.context);
-							if (LeaderInitiator.this.leaderEventPublisher != null) {
-								LeaderInitiator.this.leaderEventPublisher.publishOnRevoked(
-										LeaderInitiator.this, this.context,
-										LeaderInitiator.this.candidate.getRole());
-							}
-							Thread.currentThread().interrupt();
-							return null;
-						}
+					catch (RuntimeException e) {
+						LeaderInitiator.this.logger.error("Failed to check leadership for role [" + role
+								+ "] after member removal", e);
 					}
+					tryAcquire();
 				}
+
+			});
+		}
+
+		@Override
+		public void memberAttributeChanged(MemberAttributeEvent memberAttributeEvent) {
+		}
+
+		@Override
+		public void stateChanged(LifecycleEvent event) {
+			switch (event.getState()) {
+				case SHUTTING_DOWN:
+				case MERGING:
+				case CLIENT_DISCONNECTED:
+					final long revocationStartedAt = System.nanoTime();
+					submit(new Runnable() {
+
+						@Override
+						public void run() {
+							revoke(revocationStartedAt);
+						}
+
+					});
+					break;
+				case MERGED:
+				case CLIENT_CONNECTED:
+					vacancyDetected();
+					break;
+				default:
+					break;
 			}
-			finally {
-				if (this.locked) {
-					LeaderInitiator.this.lock.unlock();
-					this.locked = false;
-					// We are stopping, therefore not leading any more
-					LeaderInitiator.this.candidate.onRevoked(this.context);
-					if (LeaderInitiator.this.leaderEventPublisher != null) {
-						LeaderInitiator.this.leaderEventPublisher.publishOnRevoked(
-								LeaderInitiator.this, this.context, this.role);
-					}
+		}
+
+		private void vacancyDetected() {
+			if (LeaderInitiator.this.leadership == null) {
+				LeaderInitiator.this.vacancyDetectedAt = System.nanoTime();
+			}
+			submit(new Runnable() {
+
+				@Override
+				public void run() {
+					tryAcquire();
 				}
+
+			});
+		}
+
+	}
+
+	/**
+	 * The leadership record for a role, stored in the {@link #LEADERS_MAP}.
+	 */
+	protected static final class LeadershipRecord implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private final String memberUuid;
+
+		private final String candidateId;
+
+		private final long fencingToken;
+
+		LeadershipRecord(String memberUuid, String candidateId, long fencingToken) {
+			this.memberUuid = memberUuid;
+			this.candidateId = candidateId;
+			this.fencingToken = fencingToken;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (this == o) {
+				return true;
 			}
-			return null;
+			if (o == null || getClass() != o.getClass()) {
+				return false;
+			}
+			LeadershipRecord that = (LeadershipRecord) o;
+			return this.fencingToken == that.fencingToken
+					&& ObjectUtils.nullSafeEquals(this.memberUuid, that.memberUuid)
+					&& ObjectUtils.nullSafeEquals(this.candidateId, that.candidateId);
+		}
+
+		@Override
+		public int hashCode() {
+			int result = ObjectUtils.nullSafeHashCode(this.memberUuid);
+			result = 31 * result + ObjectUtils.nullSafeHashCode(this.candidateId);
+			result = 31 * result + (int) (this.fencingToken ^ (this.fencingToken >>> 32));
+			return result;
+		}
+
+		@Override
+		public String toString() {
+			return "LeadershipRecord{memberUuid=" + this.memberUuid + ", candidateId=" + this.candidateId +
+					", fencingToken=" + this.fencingToken + "}";
 		}
 
 	}
@@ -293,16 +734,30 @@ public class LeaderInitiator implements SmartLifecycle, DisposableBean, Applicat
 
 		@Override
 		public boolean isLeader() {
-			return LeaderInitiator.this.leaderSelector.locked;
+			return LeaderInitiator.this.leadership != null;
+		}
+
+		/**
+		 * @return the fencing token of the current leadership, or -1 if not leader.
+		 * The token grows monotonically with each new leader for the role, so it can be
+		 * used to reject the operations of a stale leader.
+		 */
+		public long getFencingToken() {
+			LeadershipRecord record = LeaderInitiator.this.leadership;
+			return record != null ? record.fencingToken : -1;
 		}
 
 		@Override
 		public void yield() {
-			if (LeaderInitiator.this.future != null) {
-				LeaderInitiator.this.future.cancel(true);
-				LeaderInitiator.this.future =
-						LeaderInitiator.this.executorService.submit(LeaderInitiator.this.leaderSelector);
-			}
+			final long revocationStartedAt = System.nanoTime();
+			submit(new Runnable() {
+
+				@Override
+				public void run() {
+					revoke(revocationStartedAt);
+				}
+
+			});
 		}
 
 		@Override
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.message;
+
+import java.io.Serializable;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.util.Assert;
+
+/**
+ * Hazelcast Message Payload for the local statistics of a distributed object sampled by
+ * the {@link org.springframework.integration.hazelcast.ClusterMonitorType#STATISTICS}
+ * monitor. Metrics are delta-encoded: each value is the difference from the previous
+ * sample of the same object on the same member (from zero for the first sample), and
+ * metrics which didn't change are omitted.
+ *
+ * @since 1.0.0
+ */
+public class DistributedObjectStatisticsPayload implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Total number of operations (map and queue).
+	 */
+	public static final String OPERATIONS = "operations";
+
+	/**
+	 * Number of event operations (map and queue).
+	 */
+	public static final String EVENTS = "events";
+
+	/**
+	 * Number of other operations (map and queue).
+	 */
+	public static final String OTHER_OPERATIONS = "otherOperations";
+
+	/**
+	 * Number of entries owned by the member (map).
+	 */
+	public static final String OWNED_ENTRY_COUNT = "ownedEntryCount";
+
+	/**
+	 * Memory cost in bytes of the entries owned by the member (map).
+	 */
+	public static final String OWNED_ENTRY_MEMORY_COST = "ownedEntryMemoryCost";
+
+	/**
+	 * Number of hits of the entries owned by the member (map).
+	 */
+	public static final String HITS = "hits";
+
+	/**
+	 * Number of put operations (map).
+	 */
+	public static final String PUTS = "puts";
+
+	/**
+	 * Number of get operations (map).
+	 */
+	public static final String GETS = "gets";
+
+	/**
+	 * Number of remove operations (map).
+	 */
+	public static final String REMOVES = "removes";
+
+	/**
+	 * Total latency in milliseconds of the put operations (map).
+	 */
+	public static final String PUT_LATENCY = "putLatency";
+
+	/**
+	 * Total latency in milliseconds of the get operations (map).
+	 */
+	public static final String GET_LATENCY = "getLatency";
+
+	/**
+	 * Total latency in milliseconds of the remove operations (map).
+	 */
+	public static final String REMOVE_LATENCY = "removeLatency";
+
+	/**
+	 * Number of items owned by the member (queue).
+	 */
+	public static final String OWNED_ITEM_COUNT = "ownedItemCount";
+
+	/**
+	 * Number of offer operations (queue).
+	 */
+	public static final String OFFERS = "offers";
+
+	/**
+	 * Number of rejected offer operations (queue).
+	 */
+	public static final String REJECTED_OFFERS = "rejectedOffers";
+
+	/**
+	 * Number of poll operations (queue).
+	 */
+	public static final String POLLS = "polls";
+
+	/**
+	 * Number of poll operations which returned nothing (queue).
+	 */
+	public static final String EMPTY_POLLS = "emptyPolls";
+
+	public final String name;
+
+	public final String serviceName;
+
+	public final long intervalMillis;
+
+	public final Map<String, Long> deltas;
+
+	public DistributedObjectStatisticsPayload(String name, String serviceName, long intervalMillis,
+			Map<String, Long> deltas) {
+		Assert.notNull(name, "'name' must not be null");
+		Assert.notNull(serviceName, "'serviceName' must not be null");
+		Assert.notNull(deltas, "'deltas' must not be null");
+		this.name = name;
+		this.serviceName = serviceName;
+		this.intervalMillis = intervalMillis;
+		this.deltas = Collections.unmodifiableMap(new LinkedHashMap<String, Long>(deltas));
+	}
+
+	/**
+	 * Return the delta of the metric since the previous sample.
+	 * @param metric the metric name.
+	 * @return the delta, {@code 0} if the metric didn't change.
+	 */
+	public long getDelta(String metric) {
+		Long delta = this.deltas.get(metric);
+		return delta != null ? delta : 0;
+	}
+
+	/**
+	 * Return the per second rate of the metric over the sampling interval,
+	 * e.g. {@code getRate(OPERATIONS)} for the operations per second.
+	 * @param metric the metric name.
+	 * @return the rate.
+	 */
+	public double getRate(String metric) {
+		return this.intervalMillis > 0 ? getDelta(metric) * 1000d / this.intervalMillis : 0;
+	}
+
+	/**
+	 * Return the average of a total metric per unit of a count metric over the sampling
+	 * interval, e.g. {@code getAverage(GET_LATENCY, GETS)} for the average get latency.
+	 * @param totalMetric the total metric name.
+	 * @param countMetric the count metric name.
+	 * @return the average.
+	 */
+	public double getAverage(String totalMetric, String countMetric) {
+		long count = getDelta(countMetric);
+		return count != 0 ? (double) getDelta(totalMetric) / count : 0;
+	}
+
+	@Override
+	public String toString() {
+		return "DistributedObjectStatisticsPayload [name=" + this.name + ", serviceName=" + this.serviceName
+				+ ", intervalMillis=" + this.intervalMillis + ", deltas=" + this.deltas + "]";
+	}
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.metadata;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.expression.Expression;
+import org.springframework.integration.handler.ExpressionEvaluatingMessageProcessor;
+import org.springframework.integration.handler.advice.IdempotentReceiverInterceptor;
+import org.springframework.integration.selector.MetadataStoreSelector;
+
+/**
+ * An {@link IdempotentReceiverInterceptor} which deduplicates messages cluster-wide by
+ * the key evaluated against them, recorded in a {@link HazelcastMetadataStore}.
+ * The first message with a given key is accepted by any member; the following ones are
+ * discarded (or marked as duplicates, see {@link IdempotentReceiverInterceptor}) until
+ * the key expires from the store.
+ *
+ * @since 1.0.0
+ */
+public class HazelcastIdempotentReceiverInterceptor extends IdempotentReceiverInterceptor {
+
+	private final ExpressionEvaluatingMessageProcessor<String> keyProcessor;
+
+	/**
+	 * Construct an interceptor which stores the time of the first reception for each key.
+	 * @param metadataStore the store of the received keys.
+	 * @param keyExpression the expression evaluating the idempotent key of a message.
+	 */
+	public HazelcastIdempotentReceiverInterceptor(HazelcastMetadataStore metadataStore, Expression keyExpression) {
+		this(metadataStore, new ExpressionEvaluatingMessageProcessor<String>(keyExpression, String.class));
+	}
+
+	private HazelcastIdempotentReceiverInterceptor(HazelcastMetadataStore metadataStore,
+			ExpressionEvaluatingMessageProcessor<String> keyProcessor) {
+		super(new MetadataStoreSelector(keyProcessor, metadataStore));
+		this.keyProcessor = keyProcessor;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		super.setBeanFactory(beanFactory);
+		this.keyProcessor.setBeanFactory(beanFactory);
+	}
+
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.metadata;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.integration.metadata.ListenableMetadataStore;
+import org.springframework.integration.metadata.MetadataStoreListener;
+import org.springframework.util.Assert;
+
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.map.listener.EntryAddedListener;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
+
+/**
+ * A {@link ListenableMetadataStore} backed by a Hazelcast {@link IMap}, shared by all the
+ * cluster members and clients. With a {@link #setTimeToLive time-to-live}, the entries
+ * added by {@link #put} and {@link #putIfAbsent} are evicted by Hazelcast when it expires,
+ * which bounds the size of the store when used for an idempotent receiver.
+ * <p>
+ * Listeners are notified of the entry events of the whole cluster; expired entries are
+ * reported via {@link MetadataStoreListener#onRemove}.
+ *
+ * @since 1.0.0
+ */
+public class HazelcastMetadataStore implements ListenableMetadataStore {
+
+	/**
+	 * The name of the {@link IMap} used by default.
+	 */
+	public static final String METADATA_STORE_MAP = "SPRING_INTEGRATION_METADATA_STORE";
+
+	private final IMap<String, String> map;
+
+	private final List<MetadataStoreListener> listeners = new CopyOnWriteArrayList<MetadataStoreListener>();
+
+	private volatile long timeToLive;
+
+	private volatile String entryListenerId;
+
+	/**
+	 * Construct a store backed by the {@link #METADATA_STORE_MAP} map of the provided
+	 * {@link HazelcastInstance}.
+	 * @param hazelcastInstance the {@link HazelcastInstance} to use.
+	 */
+	public HazelcastMetadataStore(HazelcastInstance hazelcastInstance) {
+		this(hazelcastInstance.<String, String>getMap(METADATA_STORE_MAP));
+	}
+
+	/**
+	 * Construct a store backed by the provided {@link IMap}.
+	 * @param map the {@link IMap} to use.
+	 */
+	public HazelcastMetadataStore(IMap<String, String> map) {
+		Assert.notNull(map, "'map' must not be null");
+		this.map = map;
+	}
+
+	/**
+	 * Specify the time-to-live in milliseconds of the entries added to the store;
+	 * defaults to 0 - the time-to-live of the map configuration.
+	 * {@link #replace} keeps the map default, since {@link IMap} doesn't support
+	 * a time-to-live for it.
+	 * @param timeToLive the time-to-live.
+	 */
+	public void setTimeToLive(long timeToLive) {
+		Assert.isTrue(timeToLive >= 0, "'timeToLive' must not be negative");
+		this.timeToLive = timeToLive;
+	}
+
+	@Override
+	public void put(String key, String value) {
+		Assert.notNull(key, "'key' must not be null");
+		Assert.notNull(value, "'value' must not be null");
+		if (this.timeToLive > 0) {
+			this.map.set(key, value, this.timeToLive, TimeUnit.MILLISECONDS);
+		}
+		else {
+			this.map.set(key, value);
+		}
+	}
+
+	@Override
+	public String putIfAbsent(String key, String value) {
+		Assert.notNull(key, "'key' must not be null");
+		Assert.notNull(value, "'value' must not be null");
+		if (this.timeToLive > 0) {
+			return this.map.putIfAbsent(key, value, this.timeToLive, TimeUnit.MILLISECONDS);
+		}
+		else {
+			return this.map.putIfAbsent(key, value);
+		}
+	}
+
+	@Override
+	public boolean replace(String key, String oldValue, String newValue) {
+		Assert.notNull(key, "'key' must not be null");
+		Assert.notNull(oldValue, "'oldValue' must not be null");
+		Assert.notNull(newValue, "'newValue' must not be null");
+		return this.map.replace(key, oldValue, newValue);
+	}
+
+	@Override
+	public String get(String key) {
+		Assert.notNull(key, "'key' must not be null");
+		return this.map.get(key);
+	}
+
+	@Override
+	public String remove(String key) {
+		Assert.notNull(key, "'key' must not be null");
+		return this.map.remove(key);
+	}
+
+	@Override
+	public synchronized void addListener(MetadataStoreListener listener) {
+		Assert.notNull(listener, "'listener' must not be null");
+		this.listeners.add(listener);
+		if (this.entryListenerId == null) {
+			this.entryListenerId = this.map.addEntryListener(new MetadataStoreEntryListener(), true);
+		}
+	}
+
+	@Override
+	public synchronized void removeListener(MetadataStoreListener listener) {
+		this.listeners.remove(listener);
+		if (this.listeners.isEmpty() && this.entryListenerId != null) {
+			this.map.removeEntryListener(this.entryListenerId);
+			this.entryListenerId = null;
+		}
+	}
+
+	private final class MetadataStoreEntryListener implements EntryAddedListener<String, String>,
+			EntryRemovedListener<String, String>, EntryUpdatedListener<String, String>,
+			EntryEvictedListener<String, String> {
+
+		@Override
+		public void entryAdded(EntryEvent<String, String> event) {
+			for (MetadataStoreListener listener : HazelcastMetadataStore.this.listeners) {
+				listener.onAdd(event.getKey(), event.getValue());
+			}
+		}
+
+		@Override
+		public void entryRemoved(EntryEvent<String, String> event) {
+			for (MetadataStoreListener listener : HazelcastMetadataStore.this.listeners) {
+				listener.onRemove(event.getKey(), event.getOldValue());
+			}
+		}
+
+		@Override
+		public void entryUpdated(EntryEvent<String, String> event) {
+			for (MetadataStoreListener listener : HazelcastMetadataStore.this.listeners) {
+				listener.onUpdate(event.getKey(), event.getValue());
+			}
+		}
+
+		@Override
+		public void entryEvicted(EntryEvent<String, String> event) {
+			for (MetadataStoreListener listener : HazelcastMetadataStore.this.listeners) {
+				listener.onRemove(event.getKey(), event.getOldValue());
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides classes supporting the metadata store and the idempotent receiver.
+ */
+package org.springframework.integration.hazelcast.metadata;
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.serializer;
+
+import java.io.IOException;
+
+import org.springframework.integration.hazelcast.message.EntryEventMessagePayload;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * The {@link StreamSerializer} for {@link EntryEventMessagePayload}. The key, value
+ * and old value are written via Hazelcast serialization.
+ *
+ * @since 1.0.0
+ */
+@SuppressWarnings("rawtypes")
+public class EntryEventMessagePayloadStreamSerializer implements StreamSerializer<EntryEventMessagePayload> {
+
+	@Override
+	public int getTypeId() {
+		return HazelcastIntegrationSerializers.ENTRY_EVENT_MESSAGE_PAYLOAD_TYPE_ID;
+	}
+
+	@Override
+	public void write(ObjectDataOutput out, EntryEventMessagePayload payload) throws IOException {
+		out.writeObject(payload.key);
+		out.writeObject(payload.value);
+		out.writeObject(payload.oldValue);
+	}
+
+	@Override
+	public EntryEventMessagePayload read(ObjectDataInput in) throws IOException {
+		Object key = in.readObject();
+		Object value = in.readObject();
+		Object oldValue = in.readObject();
+		return new EntryEventMessagePayload<Object, Object>(key, value, oldValue);
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.serializer;
+
+import java.io.IOException;
+
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.SerializationUtils;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * The {@link StreamSerializer} for {@link GenericMessage}. The payload and
+ * {@link MessageHeaders} are written via Hazelcast serialization.
+ * Subclasses of {@link GenericMessage} (e.g. {@code ErrorMessage}) fall back to
+ * Java serialization to preserve their type.
+ *
+ * @since 1.0.0
+ */
+@SuppressWarnings("rawtypes")
+public class GenericMessageStreamSerializer implements StreamSerializer<GenericMessage> {
+
+	@Override
+	public int getTypeId() {
+		return HazelcastIntegrationSerializers.GENERIC_MESSAGE_TYPE_ID;
+	}
+
+	@Override
+	public void write(ObjectDataOutput out, GenericMessage message) throws IOException {
+		boolean generic = GenericMessage.class.equals(message.getClass());
+		out.writeBoolean(generic);
+		if (generic) {
+			out.writeObject(message.getPayload());
+			out.writeObject(message.getHeaders());
+		}
+		else {
+			out.writeByteArray(SerializationUtils.serialize(message));
+		}
+	}
+
+	@Override
+	public GenericMessage read(ObjectDataInput in) throws IOException {
+		if (in.readBoolean()) {
+			Object payload = in.readObject();
+			MessageHeaders headers = in.readObject();
+			return new GenericMessage<Object>(payload, headers);
+		}
+		else {
+			return (GenericMessage) SerializationUtils.deserialize(in.readByteArray());
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.serializer;
+
+import org.springframework.integration.hazelcast.message.EntryEventMessagePayload;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.GenericMessage;
+import org.springframework.util.Assert;
+
+import com.hazelcast.config.SerializationConfig;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.nio.serialization.Serializer;
+
+/**
+ * The type ids of the Spring Integration Hazelcast serializers and a utility
+ * to register them in a {@link SerializationConfig}.
+ * <p>
+ * The serializers must be registered on all the cluster members and clients
+ * which exchange the serialized types.
+ *
+ * @since 1.0.0
+ */
+public final class HazelcastIntegrationSerializers {
+
+	public static final int MESSAGE_HEADERS_TYPE_ID = 7301;
+
+	public static final int GENERIC_MESSAGE_TYPE_ID = 7302;
+
+	public static final int ENTRY_EVENT_MESSAGE_PAYLOAD_TYPE_ID = 7303;
+
+	private HazelcastIntegrationSerializers() {
+		super();
+	}
+
+	/**
+	 * Register the {@link GenericMessage}, {@link MessageHeaders} and
+	 * {@link EntryEventMessagePayload} serializers in the provided
+	 * {@link SerializationConfig}, unless serializers for these types are
+	 * already configured.
+	 * @param serializationConfig the {@link SerializationConfig} to populate.
+	 */
+	public static void registerSerializers(SerializationConfig serializationConfig) {
+		Assert.notNull(serializationConfig, "'serializationConfig' must not be null");
+		registerSerializer(serializationConfig, MessageHeaders.class, new MessageHeadersStreamSerializer());
+		registerSerializer(serializationConfig, GenericMessage.class, new GenericMessageStreamSerializer());
+		registerSerializer(serializationConfig, EntryEventMessagePayload.class,
+				new EntryEventMessagePayloadStreamSerializer());
+	}
+
+	private static void registerSerializer(SerializationConfig serializationConfig, Class<?> typeClass,
+			Serializer serializer) {
+		for (SerializerConfig serializerConfig : serializationConfig.getSerializerConfigs()) {
+			if (typeClass.equals(serializerConfig.getTypeClass())
+					|| typeClass.getName().equals(serializerConfig.getTypeClassName())) {
+				return;
+			}
+		}
+		serializationConfig.addSerializerConfig(new SerializerConfig()
+				.setTypeClass(typeClass)
+				.setImplementation(serializer));
+	}
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.serializer;
+
+import java.lang.reflect.Method;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.SerializationConfig;
+
+/**
+ * The {@link BeanPostProcessor} which registers the Spring Integration Hazelcast
+ * serializers in the {@link Config} (and {@code ClientConfig}, if present on the
+ * classpath) beans before Hazelcast instances are created from them.
+ *
+ * @since 1.0.0
+ * @see HazelcastIntegrationSerializers#registerSerializers(SerializationConfig)
+ */
+public class HazelcastIntegrationSerializersPostProcessor implements BeanPostProcessor {
+
+	private static final String CLIENT_CONFIG_CLASS_NAME = "com.hazelcast.client.config.ClientConfig";
+
+	private static final Class<?> clientConfigClass;
+
+	private static final Method clientSerializationConfigMethod;
+
+	static {
+		ClassLoader classLoader = HazelcastIntegrationSerializersPostProcessor.class.getClassLoader();
+		if (ClassUtils.isPresent(CLIENT_CONFIG_CLASS_NAME, classLoader)) {
+			clientConfigClass = ClassUtils.resolveClassName(CLIENT_CONFIG_CLASS_NAME, classLoader);
+			clientSerializationConfigMethod = ReflectionUtils.findMethod(clientConfigClass, "getSerializationConfig");
+		}
+		else {
+			clientConfigClass = null;
+			clientSerializationConfigMethod = null;
+		}
+	}
+
+	@Override
+	public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+		if (bean instanceof Config) {
+			HazelcastIntegrationSerializers.registerSerializers(((Config) bean).getSerializationConfig());
+		}
+		else if (clientConfigClass != null && clientConfigClass.isInstance(bean)) {
+			HazelcastIntegrationSerializers.registerSerializers(
+					(SerializationConfig) ReflectionUtils.invokeMethod(clientSerializationConfigMethod, bean));
+		}
+		return bean;
+	}
+
+	@Override
+	public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+		return bean;
+	}
+
+}
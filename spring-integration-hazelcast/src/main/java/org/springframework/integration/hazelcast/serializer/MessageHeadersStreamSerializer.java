@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.serializer;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.springframework.messaging.MessageHeaders;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+import com.hazelcast.nio.serialization.StreamSerializer;
+
+/**
+ * The {@link StreamSerializer} for {@link MessageHeaders}. The {@code id} and
+ * {@code timestamp} are written as primitives and the other header values via
+ * Hazelcast serialization. Like the Java serialization of {@link MessageHeaders},
+ * the values which aren't {@link Serializable} (or {@link DataSerializable}) are skipped.
+ *
+ * @since 1.0.0
+ */
+public class MessageHeadersStreamSerializer implements StreamSerializer<MessageHeaders> {
+
+	@Override
+	public int getTypeId() {
+		return HazelcastIntegrationSerializers.MESSAGE_HEADERS_TYPE_ID;
+	}
+
+	@Override
+	public void write(ObjectDataOutput out, MessageHeaders headers) throws IOException {
+		UUID id = headers.getId();
+		out.writeLong(id.getMostSignificantBits());
+		out.writeLong(id.getLeastSignificantBits());
+		out.writeLong(headers.getTimestamp());
+
+		Map<String, Object> headersToWrite = new HashMap<String, Object>(headers.size());
+		for (Map.Entry<String, Object> entry : headers.entrySet()) {
+			String name = entry.getKey();
+			Object value = entry.getValue();
+			if (!MessageHeaders.ID.equals(name) && !MessageHeaders.TIMESTAMP.equals(name)
+					&& (value instanceof Serializable || value instanceof DataSerializable)) {
+				headersToWrite.put(name, value);
+			}
+		}
+		out.writeInt(headersToWrite.size());
+		for (Map.Entry<String, Object> entry : headersToWrite.entrySet()) {
+			out.writeUTF(entry.getKey());
+			out.writeObject(entry.getValue());
+		}
+	}
+
+	@Override
+	public MessageHeaders read(ObjectDataInput in) throws IOException {
+		UUID id = new UUID(in.readLong(), in.readLong());
+		long timestamp = in.readLong();
+		int size = in.readInt();
+		Map<String, Object> headers = new HashMap<String, Object>(size);
+		for (int i = 0; i < size; i++) {
+			String name = in.readUTF();
+			Object value = in.readObject();
+			headers.put(name, value);
+		}
+		return new DeserializedMessageHeaders(headers, id, timestamp);
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+	/**
+	 * The {@link MessageHeaders} which restores the original {@code id} and {@code timestamp}.
+	 */
+	private static final class DeserializedMessageHeaders extends MessageHeaders {
+
+		private static final long serialVersionUID = 1L;
+
+		DeserializedMessageHeaders(Map<String, Object> headers, UUID id, Long timestamp) {
+			super(headers, id, timestamp);
+		}
+
+	}
+
+}
@@ -0,0 +1,4 @@
+/**
+ * Provides Hazelcast serializers for Spring Integration types.
+ */
+package org.springframework.integration.hazelcast.serializer;
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.channel;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.handler.BridgeHandler;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.support.GenericMessage;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Tests for the {@link HazelcastPartitionAffineChannel}.
+ *
+ * @since 1.0.0
+ */
+public class HazelcastPartitionAffineChannelTests {
+
+	private static HazelcastInstance instance1;
+
+	private static HazelcastInstance instance2;
+
+	@BeforeClass
+	public static void setUp() {
+		instance1 = Hazelcast.newHazelcastInstance();
+		instance2 = Hazelcast.newHazelcastInstance();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		instance1.shutdown();
+		instance2.shutdown();
+	}
+
+	@Test
+	public void testMessagesAreDispatchedOnKeyOwner() throws Exception {
+		GenericApplicationContext context = TestUtils.createTestApplicationContext();
+		context.refresh();
+
+		QueueChannel received1 = new QueueChannel();
+		QueueChannel received2 = new QueueChannel();
+		HazelcastPartitionAffineChannel channel1 = createChannel(context, instance1, received1);
+		HazelcastPartitionAffineChannel channel2 = createChannel(context, instance2, received2);
+
+		try {
+			for (int i = 0; i < 20; i++) {
+				channel1.send(new GenericMessage<String>("foo" + i));
+			}
+
+			Set<Object> expected1 = new HashSet<Object>();
+			Set<Object> expected2 = new HashSet<Object>();
+			for (int i = 0; i < 20; i++) {
+				String key = "foo" + i;
+				if (instance1.getPartitionService().getPartition(key).getOwner().localMember()) {
+					expected1.add(key);
+				}
+				else {
+					expected2.add(key);
+				}
+			}
+
+			assertThat(receivePayloads(received1, expected1.size()), is(expected1));
+			assertThat(receivePayloads(received2, expected2.size()), is(expected2));
+			assertThat(received1.receive(0), nullValue());
+			assertThat(received2.receive(0), nullValue());
+		}
+		finally {
+			channel1.destroy();
+			channel2.destroy();
+			context.close();
+		}
+	}
+
+	private Set<Object> receivePayloads(QueueChannel channel, int count) {
+		Set<Object> payloads = new HashSet<Object>();
+		for (int i = 0; i < count; i++) {
+			Message<?> message = channel.receive(10000);
+			assertThat(message, notNullValue());
+			payloads.add(message.getPayload());
+		}
+		return payloads;
+	}
+
+	private HazelcastPartitionAffineChannel createChannel(GenericApplicationContext context,
+			HazelcastInstance hazelcastInstance, QueueChannel outputChannel) {
+		HazelcastPartitionAffineChannel channel = new HazelcastPartitionAffineChannel(hazelcastInstance);
+		channel.setBeanName("partitionAffineChannel");
+		channel.setBeanFactory(context);
+		channel.setKeyExpression(new SpelExpressionParser().parseExpression("payload"));
+		channel.afterPropertiesSet();
+		BridgeHandler handler = new BridgeHandler();
+		handler.setOutputChannel(outputChannel);
+		handler.setBeanFactory(context);
+		handler.afterPropertiesSet();
+		channel.subscribe(handler);
+		return channel;
+	}
+
+}
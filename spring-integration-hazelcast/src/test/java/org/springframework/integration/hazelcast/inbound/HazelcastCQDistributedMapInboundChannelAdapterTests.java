@@ -20,18 +20,29 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
 import javax.annotation.Resource;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
 import org.springframework.integration.hazelcast.HazelcastHeaders;
 import org.springframework.integration.hazelcast.HazelcastIntegrationTestUser;
 import org.springframework.integration.hazelcast.inbound.util.HazelcastInboundChannelAdapterTestUtils;
 import org.springframework.integration.hazelcast.message.EntryEventMessagePayload;
+import org.springframework.integration.test.util.TestUtils;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.PollableChannel;
+import org.springframework.messaging.support.GenericMessage;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -66,6 +77,9 @@ public class HazelcastCQDistributedMapInboundChannelAdapterTests {
     @Autowired
     private PollableChannel cqMapChannel5;
 
+    @Autowired
+    private PollableChannel cqMapChannel6;
+
     @Resource
     private IMap<Integer, HazelcastIntegrationTestUser> cqDistributedMap1;
 
@@ -81,6 +95,9 @@ public class HazelcastCQDistributedMapInboundChannelAdapterTests {
     @Resource
     private IMap<Integer, HazelcastIntegrationTestUser> cqDistributedMap5;
 
+    @Resource
+    private IMap<Integer, HazelcastIntegrationTestUser> cqDistributedMap6;
+
     @Test
     public void testContinuousQueryForOnlyADDEDEntryEvent() {
         HazelcastInboundChannelAdapterTestUtils
@@ -174,4 +191,103 @@ public class HazelcastCQDistributedMapInboundChannelAdapterTests {
                 cqDistributedMap5, cqMapChannel5, "cqDistributedMap5");
     }
 
+    @Test
+    public void testContinuousQueryWithConflation() {
+        for (int i = 0; i < 10; i++) {
+            cqDistributedMap6
+                .put(1, new HazelcastIntegrationTestUser(i, "TestName" + i, "TestSurname1"));
+            cqDistributedMap6
+                .put(2, new HazelcastIntegrationTestUser(i, "TestName" + i, "TestSurname1"));
+        }
+
+        // A flush tick may happen in the middle of the puts, so allow one extra message per key
+        Map<Integer, Integer> lastIds = new HashMap<>();
+        int received = 0;
+        Message<?> msg = cqMapChannel6.receive(HazelcastInboundChannelAdapterTestUtils.TIMEOUT);
+        while (msg != null) {
+            received++;
+            EntryEventMessagePayload<Integer, HazelcastIntegrationTestUser> payload =
+                (EntryEventMessagePayload<Integer, HazelcastIntegrationTestUser>) msg.getPayload();
+            Integer previous = lastIds.put(payload.key, payload.value.getId());
+            if (previous != null) {
+                assertTrue(payload.value.getId() > previous);
+            }
+            msg = cqMapChannel6.receive(1000);
+        }
+        assertTrue(received <= 4);
+        assertEquals(2, lastIds.size());
+        assertEquals(Integer.valueOf(9), lastIds.get(1));
+        assertEquals(Integer.valueOf(9), lastIds.get(2));
+    }
+
+    @Test
+    public void testConcurrentConflationFlushesKeepOrderPerKey() throws Exception {
+        GenericApplicationContext context = TestUtils.createTestApplicationContext();
+        context.refresh();
+        // Slow down the deliveries of the flusher thread, so that a buffer-full drain on the
+        // sending thread would overtake them if the deliveries were not serialized
+        final QueueChannel received = new QueueChannel();
+        DirectChannel outputChannel = new DirectChannel();
+        outputChannel.subscribe(new MessageHandler() {
+
+            @Override
+            public void handleMessage(Message<?> message) {
+                if ("conflation-flusher".equals(Thread.currentThread().getName())) {
+                    LockSupport.parkNanos(1000000);
+                }
+                received.send(message);
+            }
+
+        });
+        final HazelcastContinuousQueryMessageProducer producer =
+            new HazelcastContinuousQueryMessageProducer(cqDistributedMap6, "name like 'TestName%'");
+        producer.setConflationInterval(1000);
+        producer.setConflationBufferSize(2);
+        producer.setOutputChannel(outputChannel);
+        producer.setBeanFactory(context);
+        producer.afterPropertiesSet();
+
+        final int updates = 500;
+        final AtomicBoolean done = new AtomicBoolean();
+        Thread flusher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                while (!done.get()) {
+                    producer.flush();
+                }
+            }
+
+        }, "conflation-flusher");
+        flusher.start();
+        try {
+            for (int i = 0; i < updates; i++) {
+                for (int key = 1; key <= 2; key++) {
+                    producer.sendMessage(new GenericMessage<>(new EntryEventMessagePayload<>(key,
+                        new HazelcastIntegrationTestUser(i, "TestName", "TestSurname"), null)));
+                }
+            }
+        }
+        finally {
+            done.set(true);
+            flusher.join(10000);
+            context.close();
+        }
+        producer.flush();
+
+        Map<Integer, Integer> lastIds = new HashMap<>();
+        Message<?> msg = received.receive(0);
+        while (msg != null) {
+            EntryEventMessagePayload<Integer, HazelcastIntegrationTestUser> payload =
+                (EntryEventMessagePayload<Integer, HazelcastIntegrationTestUser>) msg.getPayload();
+            Integer previous = lastIds.put(payload.key, payload.value.getId());
+            if (previous != null) {
+                assertTrue(payload.value.getId() > previous);
+            }
+            msg = received.receive(0);
+        }
+        assertEquals(Integer.valueOf(updates - 1), lastIds.get(1));
+        assertEquals(Integer.valueOf(updates - 1), lastIds.get(2));
+    }
+
 }
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.inbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.endpoint.MessageProducerSupport;
+import org.springframework.integration.hazelcast.HazelcastHeaders;
+import org.springframework.integration.hazelcast.inbound.util.HazelcastInboundChannelAdapterTestUtils;
+import org.springframework.integration.hazelcast.message.DistributedObjectStatisticsPayload;
+import org.springframework.messaging.Message;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.IQueue;
+
+/**
+ * Hazelcast Cluster Monitor Inbound Channel Adapter Unit Test Class for the
+ * STATISTICS monitor type.
+ *
+ * @since 1.0.0
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration
+@DirtiesContext
+public class HazelcastClusterMonitorStatisticsTests {
+
+    @Autowired
+    private QueueChannel statisticsChannel;
+
+    @Autowired
+    private MessageProducerSupport statisticsAdapter;
+
+    @Autowired
+    private HazelcastInstance statisticsHazelcastInstance;
+
+    @Test
+    public void testStatistics() {
+        statisticsChannel.clear();
+        final IMap<Integer, String> distributedMap =
+            statisticsHazelcastInstance.getMap("Test_Statistics_Map");
+        final IQueue<String> distributedQueue =
+            statisticsHazelcastInstance.getQueue("Test_Statistics_Queue");
+        for (int i = 0; i < 100; i++) {
+            distributedMap.put(i, "TestValue" + i);
+            distributedMap.get(i);
+            distributedQueue.offer("TestItem" + i);
+        }
+
+        long puts = 0;
+        long gets = 0;
+        long offers = 0;
+        long ownedEntryCount = 0;
+        while (puts < 100 || gets < 100 || offers < 100) {
+            final Message<?> msg =
+                statisticsChannel.receive(HazelcastInboundChannelAdapterTestUtils.TIMEOUT);
+            assertNotNull(msg);
+            assertEquals("STATISTICS", msg.getHeaders().get(HazelcastHeaders.EVENT_TYPE));
+            assertNotNull(msg.getHeaders().get(HazelcastHeaders.MEMBER));
+            assertTrue(msg.getPayload() instanceof DistributedObjectStatisticsPayload);
+
+            final DistributedObjectStatisticsPayload payload =
+                (DistributedObjectStatisticsPayload) msg.getPayload();
+            assertEquals(payload.name, msg.getHeaders().get(HazelcastHeaders.CACHE_NAME));
+            assertFalse(payload.deltas.isEmpty());
+            assertFalse(payload.deltas.containsValue(0L));
+            assertTrue(payload.intervalMillis > 0);
+            if ("Test_Statistics_Map".equals(payload.name)) {
+                puts += payload.getDelta(DistributedObjectStatisticsPayload.PUTS);
+                gets += payload.getDelta(DistributedObjectStatisticsPayload.GETS);
+                ownedEntryCount += payload.getDelta(DistributedObjectStatisticsPayload.OWNED_ENTRY_COUNT);
+            }
+            else {
+                assertEquals("Test_Statistics_Queue", payload.name);
+                offers += payload.getDelta(DistributedObjectStatisticsPayload.OFFERS);
+            }
+        }
+        assertEquals(100, puts);
+        assertEquals(100, gets);
+        assertEquals(100, offers);
+        assertEquals(100, ownedEntryCount);
+    }
+
+    @Test
+    public void testStatisticsAfterRestart() {
+        final IMap<Integer, String> distributedMap =
+            statisticsHazelcastInstance.getMap("Test_Statistics_Map");
+        statisticsAdapter.stop();
+        for (int i = 0; i < 50; i++) {
+            distributedMap.put(1000 + i, "TestValue" + i);
+        }
+        statisticsAdapter.start();
+        statisticsChannel.clear();
+        for (int i = 0; i < 10; i++) {
+            distributedMap.put(2000 + i, "TestValue" + i);
+        }
+
+        long puts = 0;
+        while (puts < 10) {
+            final Message<?> msg =
+                statisticsChannel.receive(HazelcastInboundChannelAdapterTestUtils.TIMEOUT);
+            assertNotNull(msg);
+            final DistributedObjectStatisticsPayload payload =
+                (DistributedObjectStatisticsPayload) msg.getPayload();
+            assertTrue(payload.intervalMillis > 0);
+            if ("Test_Statistics_Map".equals(payload.name)) {
+                puts += payload.getDelta(DistributedObjectStatisticsPayload.PUTS);
+            }
+        }
+        // the puts made while the adapter was stopped are not reported
+        assertEquals(10, puts);
+    }
+
+}
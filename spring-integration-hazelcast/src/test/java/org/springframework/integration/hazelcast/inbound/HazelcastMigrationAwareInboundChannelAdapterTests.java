@@ -0,0 +1,322 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.inbound;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.hazelcast.CacheListeningPolicyType;
+import org.springframework.integration.hazelcast.message.EntryEventMessagePayload;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.core.EntryEvent;
+import com.hazelcast.core.EntryEventType;
+import com.hazelcast.core.EntryListener;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+import com.hazelcast.core.LifecycleService;
+import com.hazelcast.core.Member;
+import com.hazelcast.core.MigrationEvent;
+import com.hazelcast.core.MigrationListener;
+import com.hazelcast.core.Partition;
+import com.hazelcast.core.PartitionService;
+import com.hazelcast.map.listener.MapListener;
+
+/**
+ * Tests for the migration-aware {@link HazelcastEventDrivenMessageProducer}.
+ *
+ * @since 1.0.0
+ */
+public class HazelcastMigrationAwareInboundChannelAdapterTests {
+
+	private static final int KEYS = 20;
+
+	private static final int UPDATES = 50;
+
+	private HazelcastInstance instance1;
+
+	private HazelcastInstance instance2;
+
+	@After
+	public void tearDown() {
+		if (this.instance2 != null) {
+			this.instance2.getLifecycleService().terminate();
+		}
+		if (this.instance1 != null) {
+			this.instance1.getLifecycleService().terminate();
+		}
+	}
+
+	@Test
+	public void testEntryEventsAreReleasedInOrderAfterMigration() throws Exception {
+		this.instance1 = Hazelcast.newHazelcastInstance(config());
+		final AtomicInteger completedMigrations = new AtomicInteger();
+		this.instance1.getPartitionService().addMigrationListener(new MigrationListener() {
+
+			@Override
+			public void migrationStarted(MigrationEvent migrationEvent) {
+			}
+
+			@Override
+			public void migrationCompleted(MigrationEvent migrationEvent) {
+				completedMigrations.incrementAndGet();
+			}
+
+			@Override
+			public void migrationFailed(MigrationEvent migrationEvent) {
+			}
+
+		});
+
+		GenericApplicationContext context = TestUtils.createTestApplicationContext();
+		context.refresh();
+		QueueChannel outputChannel = new QueueChannel();
+		IMap<Integer, Integer> map = this.instance1.getMap("Test_Migration_Aware_Map");
+		HazelcastEventDrivenMessageProducer producer = new HazelcastEventDrivenMessageProducer(map);
+		producer.setCacheEventTypes("ADDED,UPDATED");
+		producer.setCacheListeningPolicy(CacheListeningPolicyType.ALL);
+		producer.setHazelcastInstance(this.instance1);
+		producer.setMigrationAware(true);
+		producer.setOutputChannel(outputChannel);
+		producer.setBeanFactory(context);
+		producer.afterPropertiesSet();
+		producer.start();
+
+		try {
+			for (int update = 0; update < UPDATES; update++) {
+				if (update == UPDATES / 5) {
+					this.instance2 = Hazelcast.newHazelcastInstance(config());
+				}
+				for (int key = 0; key < KEYS; key++) {
+					map.put(key, update);
+				}
+			}
+
+			Map<Integer, Integer> lastValues = new HashMap<Integer, Integer>();
+			for (int i = 0; i < KEYS * UPDATES; i++) {
+				Message<?> message = outputChannel.receive(10000);
+				assertThat(message, notNullValue());
+				@SuppressWarnings("unchecked")
+				EntryEventMessagePayload<Integer, Integer> payload =
+						(EntryEventMessagePayload<Integer, Integer>) message.getPayload();
+				Integer previous = lastValues.put(payload.key, payload.value);
+				assertThat(payload.value, is(previous == null ? 0 : previous + 1));
+			}
+			assertThat(outputChannel.receive(100), nullValue());
+			assertThat(completedMigrations.get(), greaterThan(0));
+		}
+		finally {
+			producer.stop();
+			context.close();
+		}
+	}
+
+	@Test
+	public void testIdenticalEntryEventsAreAllReleased() throws Exception {
+		QueueChannel outputChannel = new QueueChannel();
+		MockCluster cluster = new MockCluster(outputChannel);
+		try {
+			cluster.migrationListener.migrationStarted(cluster.migration(1));
+			cluster.entryListener.entryUpdated(cluster.event(1, 5));
+			cluster.entryListener.entryUpdated(cluster.event(1, 5));
+			assertThat(outputChannel.receive(0), nullValue());
+			cluster.migrationListener.migrationCompleted(cluster.migration(1));
+
+			assertThat(outputChannel.receive(0), notNullValue());
+			assertThat(outputChannel.receive(0), notNullValue());
+			assertThat(outputChannel.receive(0), nullValue());
+		}
+		finally {
+			cluster.close();
+		}
+	}
+
+	@Test
+	public void testSlowReleaseDoesNotBlockOtherPartitions() throws Exception {
+		final CountDownLatch releasing = new CountDownLatch(1);
+		final CountDownLatch consumerBlocked = new CountDownLatch(1);
+		final List<String> received = new CopyOnWriteArrayList<>();
+		DirectChannel outputChannel = new DirectChannel();
+		outputChannel.subscribe(new MessageHandler() {
+
+			@Override
+			public void handleMessage(Message<?> message) throws MessagingException {
+				@SuppressWarnings("unchecked")
+				EntryEventMessagePayload<Integer, Integer> payload =
+						(EntryEventMessagePayload<Integer, Integer>) message.getPayload();
+				if (payload.key == 1 && payload.value == 0) {
+					releasing.countDown();
+					try {
+						consumerBlocked.await(10, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+				received.add(payload.key + "=" + payload.value);
+			}
+
+		});
+		final MockCluster cluster = new MockCluster(outputChannel);
+		try {
+			cluster.migrationListener.migrationStarted(cluster.migration(1));
+			cluster.entryListener.entryUpdated(cluster.event(1, 0));
+			Thread releaser = new Thread(new Runnable() {
+
+				@Override
+				public void run() {
+					cluster.migrationListener.migrationCompleted(cluster.migration(1));
+				}
+
+			});
+			releaser.start();
+			assertThat(releasing.await(10, TimeUnit.SECONDS), is(true));
+
+			// neither blocked by the release nor sent ahead of the messages being released
+			cluster.entryListener.entryUpdated(cluster.event(2, 0));
+			cluster.entryListener.entryUpdated(cluster.event(1, 1));
+			assertThat(received, contains("2=0"));
+
+			consumerBlocked.countDown();
+			releaser.join(10000);
+			assertThat(received, contains("2=0", "1=0", "1=1"));
+			cluster.entryListener.entryUpdated(cluster.event(1, 2));
+			assertThat(received, contains("2=0", "1=0", "1=1", "1=2"));
+		}
+		finally {
+			consumerBlocked.countDown();
+			cluster.close();
+		}
+	}
+
+	private static Config config() {
+		Config config = new Config();
+		config.getGroupConfig().setName("Test_Migration_Aware_Group_Name");
+		config.getNetworkConfig().setPort(5721);
+		JoinConfig join = config.getNetworkConfig().getJoin();
+		join.getMulticastConfig().setEnabled(false);
+		join.getTcpIpConfig().setEnabled(true).addMember("127.0.0.1:5721,127.0.0.1:5722");
+		return config;
+	}
+
+	/**
+	 * A producer on a mocked map and instance, exposing the listeners it registers; the
+	 * partition of a key is the key itself.
+	 */
+	private static final class MockCluster {
+
+		private final Member member = mock(Member.class);
+
+		private final GenericApplicationContext context = TestUtils.createTestApplicationContext();
+
+		private final HazelcastEventDrivenMessageProducer producer;
+
+		private final MigrationListener migrationListener;
+
+		private final EntryListener<Integer, Integer> entryListener;
+
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private MockCluster(MessageChannel outputChannel) {
+			when(this.member.getSocketAddress()).thenReturn(new InetSocketAddress("127.0.0.1", 5701));
+			HazelcastInstance instance = mock(HazelcastInstance.class);
+			PartitionService partitionService = mock(PartitionService.class);
+			when(instance.getPartitionService()).thenReturn(partitionService);
+			when(partitionService.addMigrationListener(any(MigrationListener.class))).thenReturn("migrationListener");
+			LifecycleService lifecycleService = mock(LifecycleService.class);
+			when(lifecycleService.isRunning()).thenReturn(true);
+			when(instance.getLifecycleService()).thenReturn(lifecycleService);
+			when(partitionService.getPartition(any())).thenAnswer(new Answer<Partition>() {
+
+				@Override
+				public Partition answer(InvocationOnMock invocation) throws Throwable {
+					Partition partition = mock(Partition.class);
+					when(partition.getPartitionId()).thenReturn((Integer) invocation.getArguments()[0]);
+					return partition;
+				}
+
+			});
+			IMap map = mock(IMap.class);
+
+			this.context.refresh();
+			this.producer = new HazelcastEventDrivenMessageProducer(map);
+			this.producer.setCacheEventTypes("UPDATED");
+			this.producer.setCacheListeningPolicy(CacheListeningPolicyType.ALL);
+			this.producer.setHazelcastInstance(instance);
+			this.producer.setMigrationAware(true);
+			this.producer.setOutputChannel(outputChannel);
+			this.producer.setBeanFactory(this.context);
+			this.producer.afterPropertiesSet();
+			this.producer.start();
+
+			ArgumentCaptor<MigrationListener> migrationListenerCaptor = ArgumentCaptor.forClass(MigrationListener.class);
+			verify(partitionService).addMigrationListener(migrationListenerCaptor.capture());
+			this.migrationListener = migrationListenerCaptor.getValue();
+			ArgumentCaptor<MapListener> entryListenerCaptor = ArgumentCaptor.forClass(MapListener.class);
+			verify(map).addEntryListener(entryListenerCaptor.capture(), eq(true));
+			this.entryListener = (EntryListener<Integer, Integer>) entryListenerCaptor.getValue();
+		}
+
+		private MigrationEvent migration(int partitionId) {
+			return new MigrationEvent(partitionId, this.member, this.member, MigrationEvent.MigrationStatus.STARTED);
+		}
+
+		private EntryEvent<Integer, Integer> event(int key, int value) {
+			return new EntryEvent<>("Test_Mock_Map", this.member, EntryEventType.UPDATED.getType(), key, value, value);
+		}
+
+		private void close() {
+			this.producer.stop();
+			this.context.close();
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2015 the original author or authors.
+ * Copyright 2015-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,6 +22,8 @@ import static org.junit.Assert.assertThat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
@@ -169,6 +171,91 @@ public class LeaderInitiatorTests {
 		initiator1.destroy();
 	}
 
+	@Test
+	public void testLeadershipFailoverOnMemberCrash() throws Exception {
+		HazelcastInstance crashingInstance = Hazelcast.newHazelcastInstance();
+		ScheduledExecutorService executorService = Executors.newScheduledThreadPool(2);
+		try {
+			CountDownLatch granted1 = new CountDownLatch(1);
+			LeaderInitiator initiator1 = new LeaderInitiator(crashingInstance, new DefaultCandidate("foo", "failover"));
+			initiator1.setExecutorService(executorService);
+			initiator1.setLeaderEventPublisher(new CountingPublisher(granted1));
+			initiator1.start();
+
+			assertThat(granted1.await(10, TimeUnit.SECONDS), is(true));
+			assertThat(initiator1.getGrantedCount(), is(1L));
+			long fencingToken1 = ((LeaderInitiator.HazelcastContext) initiator1.getContext()).getFencingToken();
+
+			CountDownLatch granted2 = new CountDownLatch(1);
+			LeaderInitiator initiator2 =
+					new LeaderInitiator(this.hazelcastInstance, new DefaultCandidate("bar", "failover"));
+			initiator2.setExecutorService(executorService);
+			initiator2.setLeaderEventPublisher(new CountingPublisher(granted2));
+			initiator2.start();
+
+			assertThat(granted2.await(500, TimeUnit.MILLISECONDS), is(false));
+
+			crashingInstance.getLifecycleService().terminate();
+
+			assertThat(granted2.await(10, TimeUnit.SECONDS), is(true));
+			assertThat(initiator2.getContext().isLeader(), is(true));
+			assertThat(initiator2.getLastTimeToElect() >= 0, is(true));
+			assertThat(((LeaderInitiator.HazelcastContext) initiator2.getContext()).getFencingToken() > fencingToken1,
+					is(true));
+
+			initiator2.destroy();
+		}
+		finally {
+			crashingInstance.getLifecycleService().terminate();
+			executorService.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testSlowCandidateCallbackDoesNotBlockTheInitiator() throws Exception {
+		final CountDownLatch granting = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		DefaultCandidate candidate = new DefaultCandidate("slow", "slowCallback") {
+
+			@Override
+			public void onGranted(Context ctx) {
+				granting.countDown();
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+		};
+		final LeaderInitiator initiator = new LeaderInitiator(this.hazelcastInstance, candidate);
+		CountDownLatch revoked = new CountDownLatch(1);
+		initiator.setLeaderEventPublisher(new CountingPublisher(new CountDownLatch(1), revoked));
+		initiator.start();
+		assertThat(granting.await(10, TimeUnit.SECONDS), is(true));
+
+		final CountDownLatch stopped = new CountDownLatch(1);
+		new Thread() {
+
+			@Override
+			public void run() {
+				initiator.stop();
+				stopped.countDown();
+			}
+
+		}.start();
+		assertThat(stopped.await(2, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.getContext().isLeader(), is(true));
+		// the revocation waits for the end of the grant
+		assertThat(revoked.await(100, TimeUnit.MILLISECONDS), is(false));
+
+		release.countDown();
+		assertThat(revoked.await(10, TimeUnit.SECONDS), is(true));
+		assertThat(initiator.getContext().isLeader(), is(false));
+		initiator.destroy();
+	}
+
 	@Configuration
 	public static class TestConfig {
 
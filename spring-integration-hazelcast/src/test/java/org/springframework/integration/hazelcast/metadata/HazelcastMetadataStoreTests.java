@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.metadata;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.handler.BridgeHandler;
+import org.springframework.integration.metadata.MetadataStoreListenerAdapter;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.support.MessageBuilder;
+
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+
+/**
+ * Tests for the {@link HazelcastMetadataStore} and the {@link HazelcastIdempotentReceiverInterceptor}.
+ *
+ * @since 1.0.0
+ */
+public class HazelcastMetadataStoreTests {
+
+	private static HazelcastInstance instance1;
+
+	private static HazelcastInstance instance2;
+
+	@BeforeClass
+	public static void setUp() {
+		instance1 = Hazelcast.newHazelcastInstance();
+		instance2 = Hazelcast.newHazelcastInstance();
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		instance1.shutdown();
+		instance2.shutdown();
+	}
+
+	@Test
+	public void testStoreIsSharedByMembers() {
+		HazelcastMetadataStore store1 = new HazelcastMetadataStore(instance1.<String, String>getMap("sharedStore"));
+		HazelcastMetadataStore store2 = new HazelcastMetadataStore(instance2.<String, String>getMap("sharedStore"));
+
+		assertThat(store1.putIfAbsent("foo", "bar"), nullValue());
+		assertThat(store2.putIfAbsent("foo", "baz"), is("bar"));
+		assertThat(store2.replace("foo", "baz", "qux"), is(false));
+		assertThat(store2.replace("foo", "bar", "qux"), is(true));
+		assertThat(store1.get("foo"), is("qux"));
+		store2.put("foo", "bar");
+		assertThat(store1.remove("foo"), is("bar"));
+		assertThat(store2.get("foo"), nullValue());
+	}
+
+	@Test
+	public void testEntriesExpire() throws Exception {
+		HazelcastMetadataStore store = new HazelcastMetadataStore(instance1.<String, String>getMap("ttlStore"));
+		store.setTimeToLive(500);
+		final CountDownLatch removed = new CountDownLatch(1);
+		store.addListener(new MetadataStoreListenerAdapter() {
+
+			@Override
+			public void onRemove(String key, String oldValue) {
+				removed.countDown();
+			}
+
+		});
+
+		assertThat(store.putIfAbsent("foo", "bar"), nullValue());
+		assertThat(store.putIfAbsent("foo", "baz"), is("bar"));
+		assertTrue(removed.await(10, TimeUnit.SECONDS));
+		assertThat(store.putIfAbsent("foo", "baz"), nullValue());
+	}
+
+	@Test
+	public void testIdempotentReceiverAcrossMembers() {
+		GenericApplicationContext context = TestUtils.createTestApplicationContext();
+		context.refresh();
+		QueueChannel outputChannel = new QueueChannel();
+		QueueChannel discardChannel = new QueueChannel();
+		MessageHandler handler1 = createIdempotentHandler(context, instance1, outputChannel, discardChannel);
+		MessageHandler handler2 = createIdempotentHandler(context, instance2, outputChannel, discardChannel);
+
+		handler1.handleMessage(MessageBuilder.withPayload("foo").setHeader("orderId", 42).build());
+		handler2.handleMessage(MessageBuilder.withPayload("foo").setHeader("orderId", 42).build());
+		handler2.handleMessage(MessageBuilder.withPayload("bar").setHeader("orderId", 43).build());
+
+		Message<?> received = outputChannel.receive(10000);
+		assertThat(received, notNullValue());
+		assertThat(received.getPayload(), is((Object) "foo"));
+		received = outputChannel.receive(10000);
+		assertThat(received, notNullValue());
+		assertThat(received.getPayload(), is((Object) "bar"));
+		assertThat(outputChannel.receive(0), nullValue());
+
+		Message<?> discarded = discardChannel.receive(10000);
+		assertThat(discarded, notNullValue());
+		assertThat(discarded.getHeaders().get("orderId"), is((Object) 42));
+
+		context.close();
+	}
+
+	private MessageHandler createIdempotentHandler(GenericApplicationContext context, HazelcastInstance instance,
+			QueueChannel outputChannel, QueueChannel discardChannel) {
+		HazelcastMetadataStore store = new HazelcastMetadataStore(instance);
+		store.setTimeToLive(60000);
+		HazelcastIdempotentReceiverInterceptor interceptor = new HazelcastIdempotentReceiverInterceptor(store,
+				new SpelExpressionParser().parseExpression("'order-' + headers.orderId"));
+		interceptor.setDiscardChannel(discardChannel);
+		interceptor.setBeanFactory(context);
+		BridgeHandler handler = new BridgeHandler();
+		handler.setOutputChannel(outputChannel);
+		handler.setBeanFactory(context);
+		handler.afterPropertiesSet();
+		ProxyFactory proxyFactory = new ProxyFactory(handler);
+		proxyFactory.addAdvice(interceptor);
+		return (MessageHandler) proxyFactory.getProxy();
+	}
+
+}
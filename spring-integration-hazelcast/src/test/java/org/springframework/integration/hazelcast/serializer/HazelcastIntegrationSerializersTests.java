@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.integration.hazelcast.serializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import org.springframework.integration.hazelcast.HazelcastIntegrationTestUser;
+import org.springframework.integration.hazelcast.message.EntryEventMessagePayload;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.messaging.support.GenericMessage;
+
+import com.hazelcast.config.Config;
+import com.hazelcast.config.SerializerConfig;
+import com.hazelcast.core.Hazelcast;
+import com.hazelcast.core.HazelcastInstance;
+import com.hazelcast.core.IMap;
+
+/**
+ * Tests for the Spring Integration Hazelcast serializers.
+ *
+ * @since 1.0.0
+ */
+public class HazelcastIntegrationSerializersTests {
+
+	private static HazelcastInstance instance;
+
+	private static IMap<Integer, Object> map;
+
+	@BeforeClass
+	public static void setUp() {
+		Config config = new Config();
+		HazelcastIntegrationSerializers.registerSerializers(config.getSerializationConfig());
+		instance = Hazelcast.newHazelcastInstance(config);
+		map = instance.getMap("serializersTestMap");
+	}
+
+	@AfterClass
+	public static void tearDown() {
+		instance.shutdown();
+	}
+
+	@Test
+	public void testGenericMessageRoundTrip() {
+		Message<?> message = MessageBuilder.withPayload(new HazelcastIntegrationTestUser(1, "foo", "bar"))
+				.setHeader("foo", "bar")
+				.setHeader("nonSerializable", new Object())
+				.build();
+		map.put(1, message);
+
+		Message<?> result = (Message<?>) map.get(1);
+		assertEquals(GenericMessage.class, result.getClass());
+		assertEquals(message.getPayload(), result.getPayload());
+		assertEquals(message.getHeaders().getId(), result.getHeaders().getId());
+		assertEquals(message.getHeaders().getTimestamp(), result.getHeaders().getTimestamp());
+		assertEquals("bar", result.getHeaders().get("foo"));
+		assertFalse(result.getHeaders().containsKey("nonSerializable"));
+	}
+
+	@Test
+	public void testErrorMessageRoundTrip() {
+		ErrorMessage message = new ErrorMessage(new IllegalStateException("foo"));
+		map.put(2, message);
+
+		Object result = map.get(2);
+		assertTrue(result instanceof ErrorMessage);
+		assertEquals("foo", ((ErrorMessage) result).getPayload().getMessage());
+		assertEquals(message.getHeaders().getId(), ((ErrorMessage) result).getHeaders().getId());
+	}
+
+	@Test
+	public void testEntryEventMessagePayloadRoundTrip() {
+		EntryEventMessagePayload<Integer, String> payload = new EntryEventMessagePayload<>(1, "foo", "bar");
+		map.put(3, payload);
+
+		assertEquals(payload, map.get(3));
+	}
+
+	@Test
+	public void testExistingSerializersAreNotOverridden() {
+		Config config = new Config();
+		SerializerConfig serializerConfig = new SerializerConfig()
+				.setTypeClass(MessageHeaders.class)
+				.setImplementation(new MessageHeadersStreamSerializer());
+		config.getSerializationConfig().addSerializerConfig(serializerConfig);
+
+		HazelcastIntegrationSerializers.registerSerializers(config.getSerializationConfig());
+
+		assertEquals(3, config.getSerializationConfig().getSerializerConfigs().size());
+		assertTrue(config.getSerializationConfig().getSerializerConfigs().contains(serializerConfig));
+	}
+
+}
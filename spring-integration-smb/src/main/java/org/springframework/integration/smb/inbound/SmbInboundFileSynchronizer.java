@@ -1,5 +1,5 @@
 /**
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,24 +15,71 @@
  */
 package org.springframework.integration.smb.inbound;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
 import jcifs.smb.SmbFile;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.file.remote.session.Session;
 import org.springframework.integration.file.remote.session.SessionFactory;
 import org.springframework.integration.file.remote.synchronizer.AbstractInboundFileSynchronizer;
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
 
 /**
  * An implementation of {@link AbstractInboundFileSynchronizer} for SMB.
  *
+ * By default the remote files are copied one after the other. With a {@link #setConcurrency(int) concurrency}
+ * greater than 1, up to that many files are copied at the same time, each worker copying over its own
+ * session; use a caching session factory such as
+ * {@link org.springframework.integration.smb.session.CachingSmbSessionFactory} so that the sessions are
+ * not opened again on each poll. The filter, the local file name generation, the temporary file suffix
+ * and the deletion of the remote files apply as in the sequential mode, and
+ * {@link #setMaxInFlightBytes(long) maxInFlightBytes} caps the size of the files being copied at once.
+ *
  * @author Markus Spann
  * @since 1.0
  */
 public class SmbInboundFileSynchronizer extends AbstractInboundFileSynchronizer<SmbFile> {
 
-	private final Log    logger = LogFactory.getLog(SmbInboundFileSynchronizer.class);
+	private final Log                              logger            = LogFactory.getLog(SmbInboundFileSynchronizer.class);
+
+	private final String                           toString;
+
+	private final SessionFactory<SmbFile>          sessionFactory;
+
+	private final StandardEvaluationContext        evaluationContext = new StandardEvaluationContext();
+
+	private volatile String                        remoteDirectory;
+
+	private volatile String                        remoteFileSeparator = "/";
+
+	private volatile Expression                    localFilenameGeneratorExpression;
+
+	private volatile boolean                       deleteRemoteFiles;
+
+	private volatile int                           concurrency       = 1;
+
+	private volatile long                          maxInFlightBytes  = Long.MAX_VALUE;
 
-	private final String toString;
+	private volatile Executor                      taskExecutor      = new SimpleAsyncTaskExecutor("smb-sync-");
+
+	private final Object                           inFlightMonitor   = new Object();
+
+	private long                                   inFlightBytes;
 
 	/**
 	 * Create a synchronizer with the {@link SessionFactory} used to acquire
@@ -40,9 +87,204 @@ public class SmbInboundFileSynchronizer extends AbstractInboundFileSynchronizer<
 	 */
 	public SmbInboundFileSynchronizer(SessionFactory<SmbFile> _sessionFactory) {
 		super(_sessionFactory);
+		sessionFactory = _sessionFactory;
 		toString = getClass().getName() + "[sessionFactory=" + _sessionFactory + "]";
 	}
 
+	@Override
+	public void setRemoteDirectory(String _remoteDirectory) {
+		super.setRemoteDirectory(_remoteDirectory);
+		remoteDirectory = _remoteDirectory;
+	}
+
+	@Override
+	public void setRemoteFileSeparator(String _remoteFileSeparator) {
+		super.setRemoteFileSeparator(_remoteFileSeparator);
+		remoteFileSeparator = _remoteFileSeparator;
+	}
+
+	@Override
+	public void setLocalFilenameGeneratorExpression(Expression _localFilenameGeneratorExpression) {
+		super.setLocalFilenameGeneratorExpression(_localFilenameGeneratorExpression);
+		localFilenameGeneratorExpression = _localFilenameGeneratorExpression;
+	}
+
+	@Override
+	public void setDeleteRemoteFiles(boolean _deleteRemoteFiles) {
+		super.setDeleteRemoteFiles(_deleteRemoteFiles);
+		deleteRemoteFiles = _deleteRemoteFiles;
+	}
+
+	/**
+	 * Sets the maximum number of files copied at the same time, each over its own session.
+	 * Default is 1: the files are copied one after the other over a single session.
+	 * @param _concurrency the number of concurrent copies
+	 */
+	public void setConcurrency(int _concurrency) {
+		Assert.isTrue(_concurrency > 0, "concurrency must be greater than 0");
+		concurrency = _concurrency;
+	}
+
+	/**
+	 * Sets the maximum total size of the files being copied at the same time, in bytes, when the
+	 * {@link #setConcurrency(int) concurrency} is greater than 1. A file larger than the limit is
+	 * copied alone. Default is unlimited.
+	 * @param _maxInFlightBytes the maximum number of bytes in flight
+	 */
+	public void setMaxInFlightBytes(long _maxInFlightBytes) {
+		Assert.isTrue(_maxInFlightBytes > 0, "maxInFlightBytes must be greater than 0");
+		maxInFlightBytes = _maxInFlightBytes;
+	}
+
+	/**
+	 * Sets the executor running the concurrent copies. Default is a {@link SimpleAsyncTaskExecutor}
+	 * starting a thread per worker.
+	 * @param _taskExecutor the executor
+	 */
+	public void setTaskExecutor(Executor _taskExecutor) {
+		Assert.notNull(_taskExecutor, "taskExecutor must not be null");
+		taskExecutor = _taskExecutor;
+	}
+
+	@Override
+	public void synchronizeToLocalDirectory(File _localDirectory) {
+		if (concurrency == 1) {
+			super.synchronizeToLocalDirectory(_localDirectory);
+			return;
+		}
+		List<SmbFile> files = listRemoteFiles();
+		Queue<SmbFile> queue = new ConcurrentLinkedQueue<SmbFile>();
+		for (SmbFile file : files) {
+			if (file != null) {
+				queue.add(file);
+			}
+		}
+		if (queue.isEmpty()) {
+			return;
+		}
+		int workers = Math.min(concurrency, queue.size());
+		CountDownLatch done = new CountDownLatch(workers);
+		AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		for (int i = 0; i < workers; i++) {
+			Worker worker = new Worker(queue, _localDirectory, done, failure);
+			try {
+				taskExecutor.execute(worker);
+			} catch (RuntimeException _ex) {
+				failure.compareAndSet(null, _ex);
+				done.countDown();
+			}
+		}
+		try {
+			done.await();
+		} catch (InterruptedException _ex) {
+			Thread.currentThread().interrupt();
+			failure.compareAndSet(null, _ex);
+		}
+		Throwable cause = failure.get();
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		} else if (cause != null) {
+			throw new MessagingException("Problem occurred while synchronizing remote to local directory", cause);
+		}
+	}
+
+	private List<SmbFile> listRemoteFiles() {
+		Session<SmbFile> session = sessionFactory.getSession();
+		Assert.state(session != null, "failed to acquire a Session");
+		try {
+			SmbFile[] files = session.list(remoteDirectory);
+			return filterFiles(ObjectUtils.isEmpty(files) ? new SmbFile[0] : files);
+		} catch (IOException _ex) {
+			throw new MessagingException("Problem occurred while synchronizing remote to local directory", _ex);
+		} finally {
+			closeSession(session);
+		}
+	}
+
+	private void copyFileToLocalDirectory(SmbFile _file, File _localDirectory, Session<SmbFile> _session) throws IOException {
+		String remoteFileName = getFilename(_file);
+		String remoteFilePath = remoteDirectory + remoteFileSeparator + remoteFileName;
+		if (!isFile(_file)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("cannot copy, not a file: " + remoteFilePath);
+			}
+			return;
+		}
+		File localFile = new File(_localDirectory, generateLocalFileName(remoteFileName));
+		if (localFile.exists()) {
+			return;
+		}
+		long bytes = acquireInFlightBytes(_file.length());
+		try {
+			File tempFile = new File(localFile.getAbsolutePath() + getTemporaryFileSuffix());
+			FileOutputStream outputStream = new FileOutputStream(tempFile);
+			boolean copied = false;
+			try {
+				_session.read(remoteFilePath, outputStream);
+				copied = true;
+			} catch (IOException _ex) {
+				throw new MessagingException("Failure occurred while copying from remote to local directory", _ex);
+			} finally {
+				outputStream.close();
+				if (!copied) {
+					tempFile.delete();
+				}
+			}
+			if (tempFile.renameTo(localFile) && deleteRemoteFiles) {
+				_session.remove(remoteFilePath);
+				if (logger.isDebugEnabled()) {
+					logger.debug("deleted " + remoteFilePath);
+				}
+			}
+		} finally {
+			releaseInFlightBytes(bytes);
+		}
+	}
+
+	private String generateLocalFileName(String _remoteFileName) {
+		if (localFilenameGeneratorExpression != null) {
+			return localFilenameGeneratorExpression.getValue(evaluationContext, _remoteFileName, String.class);
+		}
+		return _remoteFileName;
+	}
+
+	/**
+	 * Waits until the file fits within {@link #setMaxInFlightBytes(long) maxInFlightBytes}, or no other
+	 * file is in flight.
+	 */
+	private long acquireInFlightBytes(long _bytes) throws IOException {
+		long bytes = Math.max(_bytes, 0);
+		synchronized (inFlightMonitor) {
+			while (inFlightBytes > 0 && inFlightBytes + bytes > maxInFlightBytes) {
+				try {
+					inFlightMonitor.wait();
+				} catch (InterruptedException _ex) {
+					Thread.currentThread().interrupt();
+					throw new IOException("Interrupted while waiting for in-flight bytes");
+				}
+			}
+			inFlightBytes += bytes;
+		}
+		return bytes;
+	}
+
+	private void releaseInFlightBytes(long _bytes) {
+		synchronized (inFlightMonitor) {
+			inFlightBytes -= _bytes;
+			inFlightMonitor.notifyAll();
+		}
+	}
+
+	private void closeSession(Session<SmbFile> _session) {
+		try {
+			_session.close();
+		} catch (Exception _ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("failed to close Session", _ex);
+			}
+		}
+	}
+
 	@Override
 	protected boolean isFile(SmbFile _file) {
 		try {
@@ -63,4 +305,48 @@ public class SmbInboundFileSynchronizer extends AbstractInboundFileSynchronizer<
 		return toString;
 	}
 
+	/**
+	 * Copies files from the shared queue over its own session until the queue is empty
+	 * or another worker failed.
+	 */
+	private final class Worker implements Runnable {
+
+		private final Queue<SmbFile>             queue;
+
+		private final File                       localDirectory;
+
+		private final CountDownLatch             done;
+
+		private final AtomicReference<Throwable> failure;
+
+		private Worker(Queue<SmbFile> _queue, File _localDirectory, CountDownLatch _done, AtomicReference<Throwable> _failure) {
+			queue = _queue;
+			localDirectory = _localDirectory;
+			done = _done;
+			failure = _failure;
+		}
+
+		public void run() {
+			Session<SmbFile> session = null;
+			try {
+				SmbFile file;
+				while (failure.get() == null && (file = queue.poll()) != null) {
+					if (session == null) {
+						session = sessionFactory.getSession();
+						Assert.state(session != null, "failed to acquire a Session");
+					}
+					copyFileToLocalDirectory(file, localDirectory, session);
+				}
+			} catch (Throwable _ex) {
+				failure.compareAndSet(null, _ex);
+			} finally {
+				if (session != null) {
+					closeSession(session);
+				}
+				done.countDown();
+			}
+		}
+
+	}
+
 }
@@ -0,0 +1,269 @@
+/**
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smb.session;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import jcifs.smb.SmbFile;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.util.SimplePool;
+import org.springframework.util.Assert;
+
+/**
+ * A {@link SessionFactory} caching the sessions of an {@link SmbSessionFactory}, so that
+ * the share checks done when opening a session (existence, creation, read access) are
+ * paid once rather than on each poll.
+ *
+ * Unlike the generic {@link org.springframework.integration.file.remote.session.CachingSessionFactory},
+ * a cached session is not validated by listing the share before it is reused. A session is
+ * reused as long as it has not been idle for longer than {@link #setMaxIdleTime(long) maxIdleTime}
+ * and no operation on it failed with an {@link IOException}; otherwise it is discarded and
+ * a new session is opened. The connection itself is kept alive and re-established by JCIFS.
+ *
+ * Closing a session returns it to the cache.
+ *
+ * @since 1.0
+ */
+public class CachingSmbSessionFactory implements SessionFactory<SmbFile>, DisposableBean {
+
+	public static final long DEFAULT_MAX_IDLE_TIME = 5 * 60 * 1000;
+
+	private final Log                          logger      = LogFactory.getLog(CachingSmbSessionFactory.class);
+
+	private final SmbSessionFactory            sessionFactory;
+
+	private final SimplePool<CachedSmbShare>   pool;
+
+	private volatile long                      maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+
+	/**
+	 * Create a factory caching an unbounded number of sessions.
+	 * @param _sessionFactory the factory opening the sessions
+	 */
+	public CachingSmbSessionFactory(SmbSessionFactory _sessionFactory) {
+		this(_sessionFactory, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Create a factory opening at most the specified number of sessions at a time. Callers
+	 * wait for a session to be closed beyond it.
+	 * @param _sessionFactory the factory opening the sessions
+	 * @param _sessionCacheSize the maximum number of sessions
+	 */
+	public CachingSmbSessionFactory(SmbSessionFactory _sessionFactory, int _sessionCacheSize) {
+		Assert.notNull(_sessionFactory, "sessionFactory must not be null");
+		sessionFactory = _sessionFactory;
+		pool = new SimplePool<CachedSmbShare>(_sessionCacheSize, new SimplePool.PoolItemCallback<CachedSmbShare>() {
+
+			public CachedSmbShare createForPool() {
+				return new CachedSmbShare(sessionFactory.getSession());
+			}
+
+			public boolean isStale(CachedSmbShare _share) {
+				if (!_share.session.isShareOpened()) {
+					return true;
+				}
+				long idle = System.currentTimeMillis() - _share.lastUsed;
+				if (idle > maxIdleTime) {
+					logger.debug("Discarding SMB session idle for " + idle + "ms.");
+					// the pool drops stale items without calling removedFromPool()
+					_share.session.close();
+					return true;
+				}
+				return false;
+			}
+
+			public void removedFromPool(CachedSmbShare _share) {
+				_share.session.close();
+			}
+
+		});
+	}
+
+	/**
+	 * Sets the time after which an unused session is discarded rather than reused,
+	 * in milliseconds. Default is {@link #DEFAULT_MAX_IDLE_TIME} (5 minutes).
+	 * @param _maxIdleTime the maximum idle time
+	 */
+	public void setMaxIdleTime(long _maxIdleTime) {
+		Assert.isTrue(_maxIdleTime >= 0, "maxIdleTime must not be negative");
+		maxIdleTime = _maxIdleTime;
+	}
+
+	/**
+	 * Sets how long to wait for a session when the maximum number of sessions is in use,
+	 * in milliseconds. Default is unlimited.
+	 * @param _sessionWaitTimeout the timeout
+	 */
+	public void setSessionWaitTimeout(long _sessionWaitTimeout) {
+		pool.setWaitTimeout(_sessionWaitTimeout);
+	}
+
+	/**
+	 * Modifies the maximum number of sessions.
+	 * @param _poolSize the maximum number of sessions
+	 */
+	public void setPoolSize(int _poolSize) {
+		pool.setPoolSize(_poolSize);
+	}
+
+	/**
+	 * @return the number of cached sessions not currently in use
+	 */
+	public int getIdleCount() {
+		return pool.getIdleCount();
+	}
+
+	/**
+	 * @return the number of sessions currently in use
+	 */
+	public int getActiveCount() {
+		return pool.getActiveCount();
+	}
+
+	public Session<SmbFile> getSession() {
+		return new CachedSmbSession(pool.getItem());
+	}
+
+	/**
+	 * Closes the cached sessions not currently in use.
+	 */
+	public void destroy() {
+		pool.removeAllIdleItems();
+	}
+
+	/**
+	 * A session in the pool, with the time it was last returned.
+	 */
+	private static final class CachedSmbShare {
+
+		private final SmbSession session;
+
+		private volatile long    lastUsed = System.currentTimeMillis();
+
+		private CachedSmbShare(SmbSession _session) {
+			session = _session;
+		}
+
+	}
+
+	/**
+	 * The session handed to a caller, returning the cached session to the pool when closed.
+	 * A failed operation closes the cached session so that it is not reused.
+	 */
+	private final class CachedSmbSession implements Session<SmbFile> {
+
+		private final CachedSmbShare share;
+
+		private boolean              released;
+
+		private CachedSmbSession(CachedSmbShare _share) {
+			share = _share;
+		}
+
+		public synchronized void close() {
+			if (released) {
+				return;
+			}
+			released = true;
+			share.lastUsed = System.currentTimeMillis();
+			pool.releaseItem(share);
+		}
+
+		public boolean isOpen() {
+			return !released && share.session.isShareOpened();
+		}
+
+		public boolean remove(String _path) throws IOException {
+			try {
+				return share.session.remove(_path);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public SmbFile[] list(String _path) throws IOException {
+			try {
+				return share.session.list(_path);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public void read(String _path, OutputStream _outputStream) throws IOException {
+			try {
+				share.session.read(_path, _outputStream);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public void write(InputStream _inputStream, String _path) throws IOException {
+			try {
+				share.session.write(_inputStream, _path);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public boolean mkdir(String _path) throws IOException {
+			try {
+				return share.session.mkdir(_path);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public void rename(String _pathFrom, String _pathTo) throws IOException {
+			try {
+				share.session.rename(_pathFrom, _pathTo);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public boolean exists(String _path) throws IOException {
+			try {
+				return share.session.exists(_path);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		public String[] listNames(String _path) throws IOException {
+			try {
+				return share.session.listNames(_path);
+			} catch (IOException _ex) {
+				throw invalidate(_ex);
+			}
+		}
+
+		private IOException invalidate(IOException _ex) {
+			logger.debug("Closing cached SMB session after failure.", _ex);
+			share.session.close();
+			return _ex;
+		}
+
+	}
+
+}
@@ -1,5 +1,5 @@
 /**
- * Copyright 2002-2012 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -363,6 +363,15 @@ public class SmbSession implements Session<SmbFile> {
 		return smbShare.isOpened();
 	}
 
+	/**
+	 * Checks whether this SMB session has been initialized and not closed since, without
+	 * any round trip to the CIFS server.
+	 * @return true if the share is open
+	 */
+	boolean isShareOpened() {
+		return smbShare.isOpened();
+	}
+
 	/**
 	 * Convenience method to write the specified input stream to a remote path and return
 	 * the path as an SMB file object.
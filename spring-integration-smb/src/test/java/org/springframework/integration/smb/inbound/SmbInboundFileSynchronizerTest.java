@@ -0,0 +1,215 @@
+/**
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smb.inbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jcifs.smb.SmbFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.integration.MessagingException;
+import org.springframework.integration.file.remote.session.Session;
+import org.springframework.integration.file.remote.session.SessionFactory;
+import org.springframework.integration.smb.AbstractBaseTest;
+import org.springframework.integration.smb.filters.SmbRegexPatternFileListFilter;
+import org.springframework.util.FileCopyUtils;
+
+/**
+ * @since 1.0
+ */
+public class SmbInboundFileSynchronizerTest extends AbstractBaseTest {
+
+	@Rule
+	public final TemporaryFolder localDirectory = new TemporaryFolder();
+
+	private final AtomicInteger  sessions       = new AtomicInteger();
+
+	private final AtomicInteger  reading        = new AtomicInteger();
+
+	private final AtomicInteger  maxReading     = new AtomicInteger();
+
+	private final List<String>   removed        = new CopyOnWriteArrayList<String>();
+
+	private volatile String      failingPath;
+
+	@Test
+	public void testFilesAreCopiedConcurrently() throws Exception {
+		SmbInboundFileSynchronizer synchronizer = synchronizer(files(100, "a.test", "b.test", "c.test", "d.test",
+				"e.test", "f.test", "g.test", "h.test", "skipped.txt"));
+		synchronizer.setConcurrency(4);
+		synchronizer.setFilter(new SmbRegexPatternFileListFilter(".*\\.test$"));
+		synchronizer.setLocalFilenameGeneratorExpression(new SpelExpressionParser().parseExpression("#this + '.local'"));
+		synchronizer.setDeleteRemoteFiles(true);
+
+		synchronizer.synchronizeToLocalDirectory(localDirectory.getRoot());
+
+		Set<String> names = new HashSet<String>(Arrays.asList(localDirectory.getRoot().list()));
+		assertEquals(new HashSet<String>(Arrays.asList("a.test.local", "b.test.local", "c.test.local",
+				"d.test.local", "e.test.local", "f.test.local", "g.test.local", "h.test.local")), names);
+		assertEquals("remote/a.test", FileCopyUtils.copyToString(
+				new FileReader(new File(localDirectory.getRoot(), "a.test.local"))));
+		assertEquals(8, removed.size());
+		assertTrue(maxReading.get() > 1);
+		assertTrue(maxReading.get() <= 4);
+		// one session to list, one per worker
+		assertEquals(5, sessions.get());
+	}
+
+	@Test
+	public void testInFlightBytesAreCapped() throws Exception {
+		SmbInboundFileSynchronizer synchronizer = synchronizer(files(100, "a", "b", "c", "d", "e", "f"));
+		synchronizer.setConcurrency(4);
+		synchronizer.setMaxInFlightBytes(250);
+
+		synchronizer.synchronizeToLocalDirectory(localDirectory.getRoot());
+
+		assertEquals(6, localDirectory.getRoot().list().length);
+		assertTrue(maxReading.get() <= 2);
+	}
+
+	@Test
+	public void testFailuresAreReportedAndTemporaryFilesRemoved() throws Exception {
+		SmbInboundFileSynchronizer synchronizer = synchronizer(files(100, "a", "b", "c"));
+		synchronizer.setConcurrency(2);
+		failingPath = "remote/b";
+
+		try {
+			synchronizer.synchronizeToLocalDirectory(localDirectory.getRoot());
+			fail("MessagingException expected");
+		} catch (MessagingException _ex) {
+			assertTrue(_ex.getCause() instanceof IOException);
+		}
+		assertFalse(new File(localDirectory.getRoot(), "b").exists());
+		assertFalse(new File(localDirectory.getRoot(), "b.writing").exists());
+	}
+
+	private SmbInboundFileSynchronizer synchronizer(final SmbFile[] _files) {
+		SmbInboundFileSynchronizer synchronizer = new SmbInboundFileSynchronizer(new SessionFactory<SmbFile>() {
+
+			public Session<SmbFile> getSession() {
+				sessions.incrementAndGet();
+				return new StubSession(_files);
+			}
+
+		});
+		synchronizer.setRemoteDirectory("remote");
+		return synchronizer;
+	}
+
+	private static SmbFile[] files(final long _length, String... _names) throws MalformedURLException {
+		SmbFile[] files = new SmbFile[_names.length];
+		for (int i = 0; i < _names.length; i++) {
+			files[i] = new SmbFile("smb://localhost/share/remote/" + _names[i]) {
+
+				@Override
+				public boolean isFile() {
+					return true;
+				}
+
+				@Override
+				public long length() {
+					return _length;
+				}
+
+			};
+		}
+		return files;
+	}
+
+	private final class StubSession implements Session<SmbFile> {
+
+		private final SmbFile[] files;
+
+		private StubSession(SmbFile[] _files) {
+			files = _files;
+		}
+
+		public SmbFile[] list(String _path) {
+			return files;
+		}
+
+		public void read(String _path, OutputStream _outputStream) throws IOException {
+			int current = reading.incrementAndGet();
+			try {
+				synchronized (maxReading) {
+					maxReading.set(Math.max(maxReading.get(), current));
+				}
+				Thread.sleep(50);
+				if (_path.equals(failingPath)) {
+					throw new IOException("connection reset");
+				}
+				writeToFile(_path.getBytes(), _outputStream);
+			} catch (InterruptedException _ex) {
+				Thread.currentThread().interrupt();
+			} finally {
+				reading.decrementAndGet();
+			}
+		}
+
+		public boolean remove(String _path) {
+			removed.add(_path);
+			return true;
+		}
+
+		public void write(InputStream _inputStream, String _path) {
+			throw new UnsupportedOperationException();
+		}
+
+		public boolean mkdir(String _path) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void rename(String _pathFrom, String _pathTo) {
+			throw new UnsupportedOperationException();
+		}
+
+		public void close() {
+		}
+
+		public boolean isOpen() {
+			return true;
+		}
+
+		public boolean exists(String _path) {
+			throw new UnsupportedOperationException();
+		}
+
+		public String[] listNames(String _path) {
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+}
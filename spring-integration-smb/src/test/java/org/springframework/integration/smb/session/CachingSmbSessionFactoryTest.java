@@ -0,0 +1,153 @@
+/**
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smb.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import jcifs.smb.SmbFile;
+
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.springframework.integration.file.remote.session.Session;
+
+/**
+ * @since 1.0
+ */
+public class CachingSmbSessionFactoryTest {
+
+	private final List<SmbSession> created = new ArrayList<SmbSession>();
+
+	private final SmbSessionFactory sessionFactory = new SmbSessionFactory() {
+
+		@Override
+		protected SmbSession createSession() throws IOException {
+			final AtomicBoolean open = new AtomicBoolean(true);
+			SmbSession session = mock(SmbSession.class);
+			when(session.isShareOpened()).thenAnswer(new Answer<Boolean>() {
+
+				public Boolean answer(InvocationOnMock _invocation) {
+					return open.get();
+				}
+
+			});
+			doAnswer(new Answer<Void>() {
+
+				public Void answer(InvocationOnMock _invocation) {
+					open.set(false);
+					return null;
+				}
+
+			}).when(session).close();
+			created.add(session);
+			return session;
+		}
+
+	};
+
+	@Test
+	public void testSessionsAreReused() throws IOException {
+		CachingSmbSessionFactory factory = new CachingSmbSessionFactory(sessionFactory);
+
+		Session<SmbFile> session = factory.getSession();
+		session.list("dir");
+		session.close();
+		assertFalse(session.isOpen());
+		assertEquals(1, factory.getIdleCount());
+		factory.getSession().list("dir");
+
+		assertEquals(1, created.size());
+		verify(created.get(0), times(2)).list("dir");
+	}
+
+	@Test
+	public void testIdleSessionsAreDiscarded() throws Exception {
+		CachingSmbSessionFactory factory = new CachingSmbSessionFactory(sessionFactory);
+		factory.setMaxIdleTime(10);
+
+		factory.getSession().close();
+		Thread.sleep(50);
+		Session<SmbFile> session = factory.getSession();
+
+		assertEquals(2, created.size());
+		verify(created.get(0)).close();
+		assertTrue(session.isOpen());
+	}
+
+	@Test
+	public void testFailedSessionsAreDiscarded() throws IOException {
+		CachingSmbSessionFactory factory = new CachingSmbSessionFactory(sessionFactory);
+		Session<SmbFile> session = factory.getSession();
+		when(created.get(0).list("dir")).thenThrow(new IOException("connection reset"));
+
+		try {
+			session.list("dir");
+			fail("IOException expected");
+		} catch (IOException _ex) {
+			assertEquals("connection reset", _ex.getMessage());
+		}
+		session.close();
+		factory.getSession();
+
+		assertEquals(2, created.size());
+	}
+
+	@Test
+	public void testSessionsFailingToListNamesAreDiscarded() throws IOException {
+		CachingSmbSessionFactory factory = new CachingSmbSessionFactory(sessionFactory);
+		Session<SmbFile> session = factory.getSession();
+		when(created.get(0).listNames("dir")).thenThrow(new IOException("connection reset"));
+
+		try {
+			session.listNames("dir");
+			fail("IOException expected");
+		} catch (IOException _ex) {
+			assertEquals("connection reset", _ex.getMessage());
+		}
+		session.close();
+		factory.getSession();
+
+		assertEquals(2, created.size());
+	}
+
+	@Test
+	public void testDestroyClosesIdleSessions() {
+		CachingSmbSessionFactory factory = new CachingSmbSessionFactory(sessionFactory, 2);
+		Session<SmbFile> session1 = factory.getSession();
+		Session<SmbFile> session2 = factory.getSession();
+		session1.close();
+		assertEquals(1, factory.getActiveCount());
+
+		factory.destroy();
+
+		verify(created.get(0)).close();
+		assertTrue(session2.isOpen());
+	}
+
+}
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -49,6 +49,12 @@ public class SmppInboundChannelAdapterParser extends AbstractChannelAdapterParse
 		SmppParserUtils.setSession(e, "smpp-session-ref", "session", "smppSession", context, builder);
 		builder.addPropertyReference("channel", channelName);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "auto-startup","autoStartup");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "delivery-receipt-correlator");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "metrics");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "delivery-receipt-channel");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "task-executor");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "queue-capacity");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "concatenated-message-assembler");
 		return builder.getBeanDefinition();
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -40,6 +40,9 @@ public class SmppInboundGatewayParser extends AbstractInboundGatewayParser {
 	protected boolean isEligibleAttribute(String n) {
 		return !n.equals("source-address") && !n.equals("source-ton") && !n.equals("smpp-session-ref")
 				&& !n.equals("request-mapper") && !n.equals("reply-mapper")
+				&& !n.equals("delivery-receipt-correlator") && !n.equals("delivery-receipt-channel")
+				&& !n.equals("task-executor") && !n.equals("queue-capacity") && !n.equals("reply-window-size")
+				&& !n.equals("concatenated-message-assembler") && !n.equals("metrics")
 				&& super.isEligibleAttribute(n);
 	}
 
@@ -57,9 +60,16 @@ public class SmppInboundGatewayParser extends AbstractInboundGatewayParser {
 		SmppParserUtils.setTon(e, "source-ton", "defaultSourceAddressTypeOfNumber", builder);
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "reply-timeout", "replyTimeout");
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "request-timeout", "requestTimeout");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "queue-capacity");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "reply-window-size");
 
 		// reference
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "request-mapper", "requestMapper");
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "reply-mapper", "replyMapper");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "delivery-receipt-correlator");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "metrics");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "delivery-receipt-channel");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "task-executor");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "concatenated-message-assembler");
 	}
 }
@@ -1,5 +1,5 @@
 /*
-   * Copyright 2002-2013 the original author or authors.
+   * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -43,9 +43,15 @@ public class SmppOutboundChannelAdapterParser extends AbstractOutboundChannelAda
 		// value attributes
 		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "source-address", "defaultSourceAddress");
 		SmppParserUtils.setTon(e, "source-ton", "defaultSourceAddressTypeOfNumber", builder);
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "window-size");
+		IntegrationNamespaceUtils.setValueIfAttributeDefined(builder, e, "window-timeout");
 		// reference attributes
 		SmppParserUtils.setSession(e, "smpp-session-ref", "session", "smppSession", parserContext, builder);
 		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "time-formatter", "timeFormatter");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "task-executor");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "submit-callback");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "delivery-receipt-correlator");
+		IntegrationNamespaceUtils.setReferenceIfAttributeDefined(builder, e, "metrics");
 		return builder.getBeanDefinition();
 	}
 
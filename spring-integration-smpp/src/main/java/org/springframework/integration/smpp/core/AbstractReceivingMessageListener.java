@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -17,13 +17,26 @@ package org.springframework.integration.smpp.core;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jsmpp.SMPPConstant;
 import org.jsmpp.bean.*;
 import org.jsmpp.extra.ProcessRequestException;
 import org.jsmpp.session.DataSmResult;
 import org.jsmpp.session.MessageReceiverListener;
 import org.jsmpp.session.Session;
+import org.springframework.integration.smpp.util.KeyedSerialExecutor;
 
 /**
+ * Dispatches the <code>deliver_sm</code> PDUs either to {@link #onDeliveryReceipt} or to {@link #onTextMessage}.
+ * <p/>
+ * By default the callbacks run on the jsmpp thread which read the PDU, and the <code>deliver_sm_resp</code>
+ * is only sent once they returned. With a {@link #setDispatcher(KeyedSerialExecutor) dispatcher} the PDU is
+ * acknowledged as soon as it is queued, and the callbacks run on the threads of the dispatcher, in order
+ * for each source address. When the dispatcher is full the PDU is refused with <code>ESME_RMSGQFUL</code>
+ * so that the SMSC delivers it again later.
+ * <p/>
+ * With a {@link #setConcatenatedMessageAssembler(ConcatenatedMessageAssembler) concatenated message assembler}
+ * the segments of the long messages are buffered, and {@link #onTextMessage} is invoked once with the whole text.
+ *
  * @author Josh Long
  * @since 1.0
  */
@@ -31,7 +44,80 @@ abstract public class AbstractReceivingMessageListener implements MessageReceive
 
 	private Log logger = LogFactory.getLog(getClass());
 
-	public void onAcceptDeliverSm(DeliverSm deliverSm) throws ProcessRequestException {
+	private volatile KeyedSerialExecutor dispatcher;
+
+	private volatile ConcatenatedMessageAssembler concatenatedMessageAssembler;
+
+	private volatile SmppMetrics metrics;
+
+	/**
+	 * Set the executor processing the PDUs asynchronously, keyed by source address.
+	 *
+	 * @param dispatcher the dispatcher, or null to process the PDUs on the jsmpp thread
+	 * @since 1.1
+	 */
+	public void setDispatcher(KeyedSerialExecutor dispatcher) {
+		this.dispatcher = dispatcher;
+	}
+
+	/**
+	 * Set the assembler reassembling the long messages received in several segments and decoding
+	 * their text according to their data coding. {@link #onTextMessage} is then invoked once per
+	 * complete message, with the <code>deliver_sm</code> of its last segment.
+	 *
+	 * @param concatenatedMessageAssembler the assembler, or null to pass each short message as is
+	 * @since 1.1
+	 */
+	public void setConcatenatedMessageAssembler(ConcatenatedMessageAssembler concatenatedMessageAssembler) {
+		this.concatenatedMessageAssembler = concatenatedMessageAssembler;
+	}
+
+	/**
+	 * Set the metrics recording the time taken to process each PDU.
+	 *
+	 * @param metrics the metrics, or null
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	public void onAcceptDeliverSm(final DeliverSm deliverSm) throws ProcessRequestException {
+		KeyedSerialExecutor dispatcher = this.dispatcher;
+		if (dispatcher == null) {
+			process(deliverSm);
+			return;
+		}
+		boolean accepted = dispatcher.execute(deliverSm.getSourceAddr(), new Runnable() {
+
+			public void run() {
+				process(deliverSm);
+			}
+
+		});
+		if (!accepted) {
+			logger.warn("Refusing deliver_sm from '" + deliverSm.getSourceAddr()
+					+ "': " + dispatcher.getPending() + " messages are already being processed");
+			throw new ProcessRequestException("inbound message queue is full", SMPPConstant.STAT_ESME_RMSGQFUL);
+		}
+	}
+
+	private void process(DeliverSm deliverSm) {
+		SmppMetrics metrics = this.metrics;
+		if (metrics == null) {
+			doProcess(deliverSm);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			doProcess(deliverSm);
+		}
+		finally {
+			metrics.deliverSmProcessed(start);
+		}
+	}
+
+	private void doProcess(DeliverSm deliverSm) {
 		if (MessageType.SMSC_DEL_RECEIPT.containedIn(deliverSm.getEsmClass())) {	// delivery receipt
 			try {
 				DeliveryReceipt delReceipt = deliverSm.getShortMessageAsDeliveryReceipt();
@@ -52,8 +138,18 @@ abstract public class AbstractReceivingMessageListener implements MessageReceive
 			}
 		} else {
 			try {// this is an actual SMS message
-				byte[] shortMessage = deliverSm.getShortMessage();
-				String txtSms = shortMessage == null ? new String() : new String(shortMessage);
+				String txtSms;
+				if (this.concatenatedMessageAssembler != null) {
+					txtSms = this.concatenatedMessageAssembler.assemble(deliverSm);
+					if (txtSms == null) {
+						// waiting for the other segments of the message
+						return;
+					}
+				}
+				else {
+					byte[] shortMessage = deliverSm.getShortMessage();
+					txtSms = shortMessage == null ? new String() : new String(shortMessage);
+				}
 				logger.debug("Receiving message : " + txtSms);
 				onTextMessage(deliverSm, txtSms);
 			} catch (Exception e) {
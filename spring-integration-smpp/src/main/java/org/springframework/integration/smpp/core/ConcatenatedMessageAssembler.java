@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.GSMSpecificFeature;
+import org.jsmpp.bean.OptionalParameter;
+
+import org.springframework.util.Assert;
+
+/**
+ * Reassembles the long messages received as several <code>deliver_sm</code> segments, and decodes
+ * the text of the messages with {@link DataCodingSpecification}.
+ * <p/>
+ * The segments are recognized either by a concatenation information element in the user data
+ * header (8 or 16 bit reference), or by the <code>sar_msg_ref_num</code>, <code>sar_total_segments</code>
+ * and <code>sar_segment_seqnum</code> optional parameters. A message carried by the
+ * <code>message_payload</code> optional parameter is decoded as a whole.
+ * <p/>
+ * The segments of the incomplete messages are buffered by source address and reference number.
+ * The buffer is bounded both in size and in time: beyond {@link #getCapacity() capacity} the oldest
+ * incomplete messages are discarded, and so are the messages which did not complete within the
+ * {@link #getTimeout() timeout}.
+ *
+ * @since 1.1
+ */
+public class ConcatenatedMessageAssembler {
+
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	public static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+	private static final byte IEI_CONCATENATED_8BIT_REF = 0x00;
+
+	private static final byte IEI_CONCATENATED_16BIT_REF = 0x08;
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final int capacity;
+
+	private final long timeout;
+
+	/**
+	 * Incomplete messages by source address and reference, in order of their first segment.
+	 */
+	private final LinkedHashMap<String, Segments> incomplete = new LinkedHashMap<String, Segments>();
+
+	/**
+	 * Create an assembler with the {@link #DEFAULT_CAPACITY} and the {@link #DEFAULT_TIMEOUT}.
+	 */
+	public ConcatenatedMessageAssembler() {
+		this(DEFAULT_CAPACITY, DEFAULT_TIMEOUT);
+	}
+
+	/**
+	 * @param capacity the maximum number of incomplete messages
+	 * @param timeout how long to wait for the missing segments of a message, in milliseconds
+	 */
+	public ConcatenatedMessageAssembler(int capacity, long timeout) {
+		Assert.isTrue(capacity > 0, "'capacity' must be greater than 0");
+		Assert.isTrue(timeout > 0, "'timeout' must be greater than 0");
+		this.capacity = capacity;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Add a received <code>deliver_sm</code>.
+	 *
+	 * @param deliverSm the <code>deliver_sm</code> carrying a message or a segment of a message
+	 * @return the text of the message once all its segments were received, or null if segments
+	 * are still missing
+	 */
+	public String assemble(DeliverSm deliverSm) {
+		byte dataCoding = deliverSm.getDataCoding();
+		byte[] payload = getOptionalParameterValue(deliverSm, OptionalParameter.Tag.MESSAGE_PAYLOAD);
+		if (payload != null) {
+			return DataCodingSpecification.getMessageFromBytes(payload, dataCoding);
+		}
+		byte[] shortMessage = deliverSm.getShortMessage() != null ? deliverSm.getShortMessage() : new byte[0];
+
+		int reference = -1;
+		int total = 0;
+		int sequence = 0;
+		int offset = 0;
+		if (GSMSpecificFeature.UDHI.containedIn(deliverSm.getEsmClass()) && shortMessage.length > 0) {
+			int headerLength = shortMessage[0] & 0xFF;
+			offset = Math.min(headerLength + 1, shortMessage.length);
+			int i = 1;
+			while (i + 1 < offset) {
+				byte iei = shortMessage[i];
+				int length = shortMessage[i + 1] & 0xFF;
+				if (iei == IEI_CONCATENATED_8BIT_REF && length == 3 && i + 4 < offset) {
+					reference = shortMessage[i + 2] & 0xFF;
+					total = shortMessage[i + 3] & 0xFF;
+					sequence = shortMessage[i + 4] & 0xFF;
+				}
+				else if (iei == IEI_CONCATENATED_16BIT_REF && length == 4 && i + 5 < offset) {
+					reference = ((shortMessage[i + 2] & 0xFF) << 8) | (shortMessage[i + 3] & 0xFF);
+					total = shortMessage[i + 4] & 0xFF;
+					sequence = shortMessage[i + 5] & 0xFF;
+				}
+				i += length + 2;
+			}
+		}
+		else {
+			byte[] sarReference = getOptionalParameterValue(deliverSm, OptionalParameter.Tag.SAR_MSG_REF_NUM);
+			byte[] sarTotal = getOptionalParameterValue(deliverSm, OptionalParameter.Tag.SAR_TOTAL_SEGMENTS);
+			byte[] sarSequence = getOptionalParameterValue(deliverSm, OptionalParameter.Tag.SAR_SEGMENT_SEQNUM);
+			if (sarReference != null && sarTotal != null && sarSequence != null) {
+				reference = toInt(sarReference);
+				total = toInt(sarTotal);
+				sequence = toInt(sarSequence);
+			}
+		}
+
+		byte[] content = new byte[shortMessage.length - offset];
+		System.arraycopy(shortMessage, offset, content, 0, content.length);
+		if (reference < 0 || total < 2 || sequence < 1 || sequence > total) {
+			return DataCodingSpecification.getMessageFromBytes(content, dataCoding);
+		}
+
+		String key = deliverSm.getSourceAddr() + '/' + reference + '/' + total;
+		byte[][] completed = null;
+		int evicted = 0;
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			Segments segments = this.incomplete.get(key);
+			if (segments == null) {
+				segments = new Segments(total, now);
+				this.incomplete.put(key, segments);
+			}
+			if (segments.parts[sequence - 1] == null) {
+				segments.received++;
+			}
+			segments.parts[sequence - 1] = content;
+			if (segments.received == total) {
+				this.incomplete.remove(key);
+				completed = segments.parts;
+			}
+			Iterator<Segments> iterator = this.incomplete.values().iterator();
+			while (iterator.hasNext()) {
+				Segments eldest = iterator.next();
+				if (this.incomplete.size() <= this.capacity && eldest.firstReceivedAt + this.timeout >= now) {
+					break;
+				}
+				iterator.remove();
+				evicted++;
+			}
+		}
+		if (evicted > 0) {
+			logger.warn("Discarding " + evicted + " incomplete concatenated message(s)");
+		}
+		if (completed == null) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Received segment " + sequence + "/" + total + " of message '" + key + "'");
+			}
+			return null;
+		}
+		int length = 0;
+		for (byte[] part : completed) {
+			length += part.length;
+		}
+		byte[] message = new byte[length];
+		int position = 0;
+		for (byte[] part : completed) {
+			System.arraycopy(part, 0, message, position, part.length);
+			position += part.length;
+		}
+		return DataCodingSpecification.getMessageFromBytes(message, dataCoding);
+	}
+
+	/**
+	 * @return the number of messages awaiting some of their segments
+	 */
+	public synchronized int getIncompleteCount() {
+		return this.incomplete.size();
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	public long getTimeout() {
+		return this.timeout;
+	}
+
+	private static byte[] getOptionalParameterValue(DeliverSm deliverSm, OptionalParameter.Tag tag) {
+		OptionalParameter[] parameters = deliverSm.getOptionalParameters();
+		if (parameters != null) {
+			for (OptionalParameter parameter : parameters) {
+				if (parameter != null && parameter.tag == tag.code()) {
+					// tag and length come first
+					byte[] serialized = parameter.serialize();
+					byte[] value = new byte[serialized.length - 4];
+					System.arraycopy(serialized, 4, value, 0, value.length);
+					return value;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static int toInt(byte[] value) {
+		int result = 0;
+		for (byte b : value) {
+			result = (result << 8) | (b & 0xFF);
+		}
+		return result;
+	}
+
+	private static final class Segments {
+
+		private final byte[][] parts;
+
+		private final long firstReceivedAt;
+
+		private int received;
+
+		private Segments(int total, long firstReceivedAt) {
+			this.parts = new byte[total][];
+			this.firstReceivedAt = firstReceivedAt;
+		}
+
+	}
+
+}
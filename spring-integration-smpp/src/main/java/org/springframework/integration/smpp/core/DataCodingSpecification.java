@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -41,7 +41,8 @@ public class DataCodingSpecification {
     /**
      * Get maximum characters for data coding. Returns
      * <ul>
-     *     <li>160 for data coding 0/1</li>
+     *     <li>160 for data coding 0/1 and the other data codings of the GSM default alphabet, e.g. 0x11</li>
+     *     <li>70 for the data codings of UCS2 above 0x0F, e.g. 0x18</li>
      *     <li>70 for data coding 5/8/10/13/14</li>
      *     <li>140 for others</li>
      * </ul>
@@ -51,6 +52,9 @@ public class DataCodingSpecification {
      */
     // reference https://www.cisco.com/en/US/docs/voice_ip_comm/connection/7x/administration/guide/7xcucsag200.pdf
     public static int getMaxCharacters(byte dataCoding) {
+        if (SmsSegmenter.supports(dataCoding)) {
+            return SmsSegmenter.isGsm(dataCoding) ? 160 : 70;
+        }
         switch (dataCoding) {
             case 0:case 1: return 160; // these are 7bit, return full length
             // JP and KR are suppose to use multi-byte character. This is probably needed to be tested once we get more
@@ -90,18 +94,24 @@ public class DataCodingSpecification {
             case 14: return EUC_KR;
             case 5: case 10: case 13: return EUC_JP;
             case 2: case 4: // since both 2 and 4 is unspecified binary, use UTF-8 encoding
-            case 0: // since dataCoding 0 is gsm 7bit, it is quite safe to use UTF-8
+            case 0: // dataCoding 0 is gsm 7bit, encoded by Gsm7BitCodec rather than with this charset
             default: return UTF_8;
         }
     }
 
     /**
-     * Get message in bytes. This will use {@link #getCharsetName(byte)} to get the message in bytes.
+     * Get message in bytes. The GSM default alphabet (data coding 0, or any data coding scheme denoting it, see
+     * {@link SmsSegmenter}) is encoded with {@link Gsm7BitCodec}, one septet per octet, and UCS2 (data coding 8 and
+     * alike) as big endian UTF-16 without byte order mark. Other data codings use {@link #getCharsetName(byte)} to
+     * get the message in bytes.
      * @param message short message
      * @param dataCoding data coding
      * @return message in bytes based on the data coding
      */
     public static byte[] getMessageInBytes(String message, byte dataCoding) {
+        if (SmsSegmenter.supports(dataCoding)) {
+            return SmsSegmenter.encode(message, dataCoding);
+        }
         final String charsetName = getCharsetName(dataCoding);
         if (!charsetName.equals(UTF_8)) {
             try {
@@ -113,4 +123,28 @@ public class DataCodingSpecification {
         }
         return message.getBytes();
     }
+
+    /**
+     * Get message from bytes. This is the reverse of {@link #getMessageInBytes(String, byte)}, and uses
+     * {@link #getCharsetName(byte)} to decode the bytes.
+     * @param message short message content, without user data header
+     * @param dataCoding data coding
+     * @return the text of the message
+     * @since 1.1
+     */
+    public static String getMessageFromBytes(byte[] message, byte dataCoding) {
+        if (SmsSegmenter.isGsm(dataCoding)) {
+            return Gsm7BitCodec.decode(message, 0, message.length);
+        }
+        final String charsetName = SmsSegmenter.isUcs2(dataCoding) ? UTF_16 : getCharsetName(dataCoding);
+        if (!charsetName.equals(UTF_8)) {
+            try {
+                return new String(message, charsetName);
+            }
+            catch (UnsupportedEncodingException e) {
+                log.warn("Fail to decode message using charset '{}'", charsetName);
+            }
+        }
+        return new String(message);
+    }
 }
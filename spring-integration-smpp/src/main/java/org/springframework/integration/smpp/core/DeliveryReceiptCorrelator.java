@@ -0,0 +1,495 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.util.Assert;
+
+/**
+ * Correlates the delivery receipts received from the SMSC with the messages submitted
+ * with a <code>registered_delivery</code> request.
+ * <p/>
+ * The outbound endpoints {@link #register(String, Message) register} the SMSC message ID of
+ * each submitted message, and the inbound endpoints hand each receipt to
+ * {@link #correlate(DeliverSm, String, DeliveryReceipt)}, which completes the
+ * {@link Future} of the message and returns the receipt as a message whose
+ * <code>correlationId</code> is the ID of the submitted message.
+ * <p/>
+ * The message ID of a <code>submit_multi</code> covers several destinations, each reporting its own
+ * receipt: such messages are {@link #register(String, Collection, Message) registered} once per
+ * destination, and a receipt is matched on its message ID and its source address, which is the
+ * destination of the submitted message.
+ * <p/>
+ * The index is kept in memory, so a receipt is correlated without any lookup in a database,
+ * and it is bounded both in size and in time: the oldest entries are evicted beyond
+ * {@link #getCapacity() capacity}, and entries older than the {@link #getTimeToLive() time to live}
+ * are discarded, failing their future with a {@link TimeoutException}. Expired entries are
+ * discarded while registering and correlating; {@link #purgeExpired()} may also be scheduled.
+ * <p/>
+ * A receipt may arrive before the submitting thread registered the message ID, typically when the
+ * receipts are received on another bind than the one which submitted the messages; such receipts
+ * are kept for the {@link #setEarlyReceiptTimeToLive(long) early receipt time to live} and complete
+ * the registration when it happens. An inbound endpoint may also have such a receipt
+ * {@link #correlate(DeliverSm, String, DeliveryReceipt, MessageHandler) held} until then, rather than
+ * emitted without <code>correlationId</code>.
+ *
+ * @since 1.1
+ */
+public class DeliveryReceiptCorrelator {
+
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(1);
+
+	public static final long DEFAULT_EARLY_RECEIPT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(1);
+
+	private static final int EARLY_RECEIPTS_CAPACITY = 1000;
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final int capacity;
+
+	private final long timeToLive;
+
+	private volatile long earlyReceiptTimeToLive = DEFAULT_EARLY_RECEIPT_TIME_TO_LIVE;
+
+	/**
+	 * Pending registrations by message ID, or by message ID and destination, in registration order,
+	 * hence in expiration order.
+	 */
+	private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<String, Pending>();
+
+	/**
+	 * Receipts which could not be correlated yet, in arrival order, under each key they may be
+	 * registered under.
+	 */
+	private final LinkedHashMap<String, EarlyReceipt> earlyReceipts = new LinkedHashMap<String, EarlyReceipt>();
+
+	/**
+	 * Create a correlator with the {@link #DEFAULT_CAPACITY} and the {@link #DEFAULT_TIME_TO_LIVE}.
+	 */
+	public DeliveryReceiptCorrelator() {
+		this(DEFAULT_CAPACITY, DEFAULT_TIME_TO_LIVE);
+	}
+
+	/**
+	 * @param capacity the maximum number of messages awaiting their receipt
+	 * @param timeToLive how long to wait for the receipt of a message, in milliseconds
+	 */
+	public DeliveryReceiptCorrelator(int capacity, long timeToLive) {
+		Assert.isTrue(capacity > 0, "'capacity' must be greater than 0");
+		Assert.isTrue(timeToLive > 0, "'timeToLive' must be greater than 0");
+		this.capacity = capacity;
+		this.timeToLive = timeToLive;
+	}
+
+	/**
+	 * Set how long a receipt received before the registration of its message ID is kept,
+	 * in milliseconds. A held receipt which is not correlated within that time is handed
+	 * over without <code>correlationId</code>. Default is {@link #DEFAULT_EARLY_RECEIPT_TIME_TO_LIVE}.
+	 *
+	 * @param earlyReceiptTimeToLive the time to live
+	 */
+	public void setEarlyReceiptTimeToLive(long earlyReceiptTimeToLive) {
+		Assert.isTrue(earlyReceiptTimeToLive > 0, "'earlyReceiptTimeToLive' must be greater than 0");
+		this.earlyReceiptTimeToLive = earlyReceiptTimeToLive;
+	}
+
+	/**
+	 * Record a submitted message awaiting its delivery receipt.
+	 *
+	 * @param messageId the message ID returned by the SMSC
+	 * @param request the message which was submitted
+	 * @return the future completed with the delivery receipt
+	 */
+	public Future<DeliveryReceipt> register(String messageId, Message<?> request) {
+		Assert.hasText(messageId, "'messageId' must not be empty");
+		Assert.notNull(request, "'request' must not be null");
+		return registerKey(normalize(messageId), request);
+	}
+
+	/**
+	 * Record a message submitted to several destinations under one message ID, awaiting a
+	 * delivery receipt from each destination.
+	 *
+	 * @param messageId the message ID returned by the SMSC
+	 * @param destinationAddresses the destinations the SMSC accepted the message for
+	 * @param request the message which was submitted
+	 * @return the future completed with the delivery receipt of each destination, by destination
+	 */
+	public Map<String, Future<DeliveryReceipt>> register(String messageId, Collection<String> destinationAddresses,
+			Message<?> request) {
+		Assert.hasText(messageId, "'messageId' must not be empty");
+		Assert.notEmpty(destinationAddresses, "'destinationAddresses' must not be empty");
+		Assert.notNull(request, "'request' must not be null");
+		Map<String, Future<DeliveryReceipt>> futures = new LinkedHashMap<String, Future<DeliveryReceipt>>();
+		for (String destinationAddress : destinationAddresses) {
+			futures.put(destinationAddress, registerKey(key(messageId, destinationAddress), request));
+		}
+		return futures;
+	}
+
+	private Future<DeliveryReceipt> registerKey(String key, Message<?> request) {
+		ReceiptFuture future = new ReceiptFuture();
+		EarlyReceipt earlyReceipt;
+		List<Pending> evicted = new ArrayList<Pending>();
+		List<EarlyReceipt> released = new ArrayList<EarlyReceipt>();
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			evictEarlyReceipts(now, released);
+			earlyReceipt = this.earlyReceipts.get(key);
+			if (earlyReceipt != null) {
+				// a receipt correlates with one registration only
+				removeEarlyReceipt(earlyReceipt);
+			}
+			else {
+				this.pending.put(key, new Pending(request.getHeaders().getId(), now, future));
+				evict(now, evicted);
+			}
+		}
+		expire(evicted);
+		release(released);
+		if (earlyReceipt != null) {
+			future.complete(earlyReceipt.receipt);
+			if (earlyReceipt.handler != null) {
+				handle(earlyReceipt, MessageBuilder.fromMessage(earlyReceipt.message)
+						.setCorrelationId(request.getHeaders().getId())
+						.build());
+			}
+		}
+		return future;
+	}
+
+	/**
+	 * Correlate a delivery receipt with the message it is about, completing the future of
+	 * the message.
+	 *
+	 * @param deliverSm the <code>deliver_sm</code> which carried the receipt
+	 * @param messageId the message ID of the receipt, as a hexadecimal value when it was decimal
+	 * @param deliveryReceipt the receipt
+	 * @return the receipt as a message, with the ID of the submitted message as
+	 * <code>correlationId</code> when it is known
+	 */
+	public Message<DeliveryReceipt> correlate(DeliverSm deliverSm, String messageId, DeliveryReceipt deliveryReceipt) {
+		return correlate(deliverSm, messageId, deliveryReceipt, null);
+	}
+
+	/**
+	 * Correlate a delivery receipt with the message it is about, completing the future of
+	 * the message. A receipt which arrived before the registration of its message ID is held
+	 * and handed to the provided handler once correlated, on the registering thread, or without
+	 * <code>correlationId</code> once it outlived the {@link #setEarlyReceiptTimeToLive(long) early
+	 * receipt time to live}.
+	 *
+	 * @param deliverSm the <code>deliver_sm</code> which carried the receipt
+	 * @param messageId the message ID of the receipt, as a hexadecimal value when it was decimal
+	 * @param deliveryReceipt the receipt
+	 * @param earlyReceiptHandler the handler of the receipt when it is held, or null to return
+	 * it without <code>correlationId</code> instead
+	 * @return the receipt as a message, with the ID of the submitted message as
+	 * <code>correlationId</code> when it is known, or null when the receipt is held
+	 */
+	public Message<DeliveryReceipt> correlate(DeliverSm deliverSm, String messageId, DeliveryReceipt deliveryReceipt,
+			MessageHandler earlyReceiptHandler) {
+		Pending matched = null;
+		EarlyReceipt earlyReceipt = null;
+		List<Pending> evicted = new ArrayList<Pending>();
+		List<EarlyReceipt> released = new ArrayList<EarlyReceipt>();
+		long now = System.currentTimeMillis();
+		List<String> keys = keys(deliverSm.getSourceAddr(), messageId, deliveryReceipt.getId());
+		MessageBuilder<DeliveryReceipt> builder =
+				SmesMessageSpecification.toMessageFromDeliveryReceipt(deliverSm, messageId, deliveryReceipt);
+		synchronized (this) {
+			evict(now, evicted);
+			for (String key : keys) {
+				matched = this.pending.remove(key);
+				if (matched != null) {
+					break;
+				}
+			}
+			if (matched == null && messageId != null) {
+				earlyReceipt = new EarlyReceipt(deliveryReceipt, now, keys,
+						earlyReceiptHandler != null ? builder.build() : null, earlyReceiptHandler);
+				for (String key : keys) {
+					// removed first, so that the receipts stay in arrival order
+					EarlyReceipt replaced = this.earlyReceipts.remove(key);
+					this.earlyReceipts.put(key, earlyReceipt);
+					if (replaced != null && replaced != earlyReceipt && !isKept(replaced)) {
+						// all the keys of the replaced receipt now belong to this one
+						released.add(replaced);
+					}
+				}
+				evictEarlyReceipts(now, released);
+			}
+		}
+		expire(evicted);
+		release(released);
+		if (matched != null) {
+			matched.future.complete(deliveryReceipt);
+			builder.setCorrelationId(matched.requestId);
+		}
+		else {
+			if (logger.isDebugEnabled()) {
+				logger.debug("No submitted message awaits the delivery receipt for message '" + messageId + "'");
+			}
+			if (earlyReceipt != null && earlyReceipt.message != null) {
+				return null;
+			}
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @param messageId the message ID returned by the SMSC
+	 * @return the future of a message awaiting its receipt, or null if the message is unknown,
+	 * or already received its receipt
+	 */
+	public synchronized Future<DeliveryReceipt> getPendingReceipt(String messageId) {
+		Pending pending = this.pending.get(normalize(messageId));
+		return pending != null ? pending.future : null;
+	}
+
+	/**
+	 * @param messageId the message ID returned by the SMSC for a message sent to several destinations
+	 * @param destinationAddress the destination
+	 * @return the future of the destination awaiting its receipt, or null if the message or the
+	 * destination is unknown, or the destination already reported its receipt
+	 */
+	public synchronized Future<DeliveryReceipt> getPendingReceipt(String messageId, String destinationAddress) {
+		Pending pending = this.pending.get(key(messageId, destinationAddress));
+		return pending != null ? pending.future : null;
+	}
+
+	/**
+	 * Discard the messages which have been waiting for their receipt longer than the
+	 * time to live, failing their future with a {@link TimeoutException}.
+	 */
+	public void purgeExpired() {
+		List<Pending> evicted = new ArrayList<Pending>();
+		List<EarlyReceipt> released = new ArrayList<EarlyReceipt>();
+		long now = System.currentTimeMillis();
+		synchronized (this) {
+			evict(now, evicted);
+			evictEarlyReceipts(now, released);
+		}
+		expire(evicted);
+		release(released);
+	}
+
+	/**
+	 * @return the number of receipts awaited, one per destination of a message sent to several destinations
+	 */
+	public synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	public long getTimeToLive() {
+		return this.timeToLive;
+	}
+
+	private void evict(long now, List<Pending> evicted) {
+		Iterator<Pending> iterator = this.pending.values().iterator();
+		while (iterator.hasNext()) {
+			Pending eldest = iterator.next();
+			if (this.pending.size() <= this.capacity && eldest.registeredAt + this.timeToLive >= now) {
+				break;
+			}
+			iterator.remove();
+			evicted.add(eldest);
+		}
+	}
+
+	private void expire(List<Pending> evicted) {
+		if (!evicted.isEmpty()) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Discarding " + evicted.size() + " message(s) which got no delivery receipt");
+			}
+			for (Pending pending : evicted) {
+				pending.future.fail(new TimeoutException("No delivery receipt received for the message "
+						+ pending.requestId));
+			}
+		}
+	}
+
+	private void evictEarlyReceipts(long now, List<EarlyReceipt> released) {
+		while (!this.earlyReceipts.isEmpty()) {
+			EarlyReceipt eldest = this.earlyReceipts.values().iterator().next();
+			if (this.earlyReceipts.size() <= EARLY_RECEIPTS_CAPACITY
+					&& eldest.receivedAt + this.earlyReceiptTimeToLive >= now) {
+				break;
+			}
+			removeEarlyReceipt(eldest);
+			released.add(eldest);
+		}
+	}
+
+	private boolean isKept(EarlyReceipt earlyReceipt) {
+		for (String key : earlyReceipt.keys) {
+			if (this.earlyReceipts.get(key) == earlyReceipt) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void removeEarlyReceipt(EarlyReceipt earlyReceipt) {
+		for (String key : earlyReceipt.keys) {
+			if (this.earlyReceipts.get(key) == earlyReceipt) {
+				this.earlyReceipts.remove(key);
+			}
+		}
+	}
+
+	/**
+	 * Hand the held receipts which could not be correlated over without <code>correlationId</code>.
+	 */
+	private void release(List<EarlyReceipt> released) {
+		for (EarlyReceipt earlyReceipt : released) {
+			if (earlyReceipt.handler != null) {
+				handle(earlyReceipt, earlyReceipt.message);
+			}
+		}
+	}
+
+	private void handle(EarlyReceipt earlyReceipt, Message<DeliveryReceipt> message) {
+		try {
+			earlyReceipt.handler.handleMessage(message);
+		}
+		catch (Exception e) {
+			logger.error("Cannot handle the delivery receipt " + earlyReceipt.receipt.getId(), e);
+		}
+	}
+
+	/**
+	 * @return the keys a receipt may be registered under, the ones qualified by the destination first
+	 */
+	private static List<String> keys(String destinationAddress, String... messageIds) {
+		List<String> keys = new ArrayList<String>(2 * messageIds.length);
+		if (destinationAddress != null) {
+			for (String messageId : messageIds) {
+				if (messageId != null) {
+					keys.add(key(messageId, destinationAddress));
+				}
+			}
+		}
+		for (String messageId : messageIds) {
+			if (messageId != null) {
+				keys.add(normalize(messageId));
+			}
+		}
+		return keys;
+	}
+
+	private static String key(String messageId, String destinationAddress) {
+		return normalize(messageId) + '/' + destinationAddress.trim();
+	}
+
+	private static String normalize(String messageId) {
+		return messageId.trim().toUpperCase(Locale.ENGLISH);
+	}
+
+	private static final class Pending {
+
+		private final UUID requestId;
+
+		private final long registeredAt;
+
+		private final ReceiptFuture future;
+
+		private Pending(UUID requestId, long registeredAt, ReceiptFuture future) {
+			this.requestId = requestId;
+			this.registeredAt = registeredAt;
+			this.future = future;
+		}
+
+	}
+
+	private static final class EarlyReceipt {
+
+		private final DeliveryReceipt receipt;
+
+		private final long receivedAt;
+
+		private final List<String> keys;
+
+		/**
+		 * The receipt as a message, when it is held for the handler.
+		 */
+		private final Message<DeliveryReceipt> message;
+
+		private final MessageHandler handler;
+
+		private EarlyReceipt(DeliveryReceipt receipt, long receivedAt, List<String> keys,
+				Message<DeliveryReceipt> message, MessageHandler handler) {
+			this.receipt = receipt;
+			this.receivedAt = receivedAt;
+			this.keys = keys;
+			this.message = message;
+			this.handler = handler;
+		}
+
+	}
+
+	private static final class ReceiptFuture extends FutureTask<DeliveryReceipt> {
+
+		private static final Callable<DeliveryReceipt> NOOP = new Callable<DeliveryReceipt>() {
+
+			public DeliveryReceipt call() {
+				return null;
+			}
+
+		};
+
+		private ReceiptFuture() {
+			super(NOOP);
+		}
+
+		private void complete(DeliveryReceipt receipt) {
+			set(receipt);
+		}
+
+		private void fail(Throwable cause) {
+			setException(cause);
+		}
+
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import java.util.Arrays;
+
+/**
+ * Encoder and decoder for the GSM 03.38 default alphabet, including the characters of the
+ * extension table which are sent as an escape followed by a second septet.
+ * <p/>
+ * SMPP carries the default alphabet unpacked, one septet per octet, in the <code>short_message</code>
+ * of a message with data coding 0; {@link #encode} and {@link #decode} work on that form, writing
+ * into the caller's buffer. {@link #pack} and {@link #unpack} convert to and from the packed form used
+ * on the air interface, for the SMSCs expecting it. Characters outside of the alphabet are replaced by
+ * <code>'?'</code>.
+ *
+ * @since 1.1
+ */
+public final class Gsm7BitCodec {
+
+	/**
+	 * The septet announcing a character of the extension table.
+	 */
+	public static final byte ESCAPE = 0x1B;
+
+	private static final byte REPLACEMENT = '?';
+
+	private static final String BASIC_TABLE =
+			"@\u00a3$\u00a5\u00e8\u00e9\u00f9\u00ec\u00f2\u00c7\n\u00d8\u00f8\r\u00c5\u00e5"
+			+ "\u0394_\u03a6\u0393\u039b\u03a9\u03a0\u03a8\u03a3\u0398\u039e\u001b\u00c6\u00e6\u00df\u00c9"
+			+ " !\"#\u00a4%&'()*+,-./"
+			+ "0123456789:;<=>?"
+			+ "\u00a1ABCDEFGHIJKLMNO"
+			+ "PQRSTUVWXYZ\u00c4\u00d6\u00d1\u00dc\u00a7"
+			+ "\u00bfabcdefghijklmno"
+			+ "pqrstuvwxyz\u00e4\u00f6\u00f1\u00fc\u00e0";
+
+	private static final char[] BASIC = BASIC_TABLE.toCharArray();
+
+	private static final char[] EXTENSION = new char[128];
+
+	/**
+	 * Septet of each character below {@link #LOOKUP_SIZE}: the basic septet, or the extension
+	 * septet with bit 8 set, or -1 when the character is not in the alphabet.
+	 */
+	private static final short[] LOOKUP;
+
+	private static final int LOOKUP_SIZE = 0x400;
+
+	private static final char EURO = '\u20ac';
+
+	private static final short EURO_SEPTETS = 0x100 | 0x65;
+
+	static {
+		EXTENSION[0x0A] = '\f';
+		EXTENSION[0x14] = '^';
+		EXTENSION[0x28] = '{';
+		EXTENSION[0x29] = '}';
+		EXTENSION[0x2F] = '\\';
+		EXTENSION[0x3C] = '[';
+		EXTENSION[0x3D] = '~';
+		EXTENSION[0x3E] = ']';
+		EXTENSION[0x40] = '|';
+		EXTENSION[0x65] = EURO;
+		LOOKUP = new short[LOOKUP_SIZE];
+		Arrays.fill(LOOKUP, (short) -1);
+		for (int septet = 0; septet < BASIC.length; septet++) {
+			if (septet != ESCAPE) {
+				LOOKUP[BASIC[septet]] = (short) septet;
+			}
+		}
+		for (int septet = 0; septet < EXTENSION.length; septet++) {
+			char c = EXTENSION[septet];
+			if (c != 0 && c < LOOKUP_SIZE) {
+				LOOKUP[c] = (short) (0x100 | septet);
+			}
+		}
+	}
+
+	private Gsm7BitCodec() {
+	}
+
+	/**
+	 * @param text the text
+	 * @return true if every character of the text is in the default alphabet or its extension table
+	 */
+	public static boolean canEncode(CharSequence text) {
+		for (int i = 0; i < text.length(); i++) {
+			if (lookup(text.charAt(i)) < 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @param c a character
+	 * @return the number of septets encoding the character: 2 for the extension table, 1 otherwise
+	 */
+	public static int septetCount(char c) {
+		return lookup(c) > 0xFF ? 2 : 1;
+	}
+
+	/**
+	 * @param text the text
+	 * @param start the index of the first character
+	 * @param end the index after the last character
+	 * @return the number of septets encoding the characters
+	 */
+	public static int septetCount(CharSequence text, int start, int end) {
+		int count = 0;
+		for (int i = start; i < end; i++) {
+			count += septetCount(text.charAt(i));
+		}
+		return count;
+	}
+
+	/**
+	 * Encode characters as unpacked septets, one per octet.
+	 *
+	 * @param text the text
+	 * @param start the index of the first character
+	 * @param end the index after the last character
+	 * @param destination the buffer, with room for {@link #septetCount(CharSequence, int, int)} octets
+	 * @param offset the position of the first septet in the buffer
+	 * @return the number of septets written
+	 */
+	public static int encode(CharSequence text, int start, int end, byte[] destination, int offset) {
+		int position = offset;
+		for (int i = start; i < end; i++) {
+			int septets = lookup(text.charAt(i));
+			if (septets < 0) {
+				destination[position++] = REPLACEMENT;
+			}
+			else if (septets > 0xFF) {
+				destination[position++] = ESCAPE;
+				destination[position++] = (byte) (septets & 0x7F);
+			}
+			else {
+				destination[position++] = (byte) septets;
+			}
+		}
+		return position - offset;
+	}
+
+	/**
+	 * Decode unpacked septets, one per octet.
+	 *
+	 * @param septets the septets
+	 * @param offset the position of the first septet
+	 * @param length the number of septets
+	 * @return the text
+	 */
+	public static String decode(byte[] septets, int offset, int length) {
+		char[] chars = new char[length];
+		int count = 0;
+		int end = offset + length;
+		for (int i = offset; i < end; i++) {
+			int septet = septets[i] & 0x7F;
+			if (septet == ESCAPE && i + 1 < end) {
+				char c = EXTENSION[septets[++i] & 0x7F];
+				// an unknown extension shows as its basic character
+				chars[count++] = c != 0 ? c : BASIC[septets[i] & 0x7F];
+			}
+			else {
+				chars[count++] = septet == ESCAPE ? ' ' : BASIC[septet];
+			}
+		}
+		return new String(chars, 0, count);
+	}
+
+	/**
+	 * Pack septets into octets, the first septet taking the low order bits of the first octet.
+	 *
+	 * @param septets the unpacked septets
+	 * @param offset the position of the first septet
+	 * @param length the number of septets
+	 * @param destination the buffer, with room for <code>(fillBits + 7 * length + 7) / 8</code> octets
+	 * @param destinationOffset the position of the first octet in the buffer
+	 * @param fillBits the number of bits to skip before the first septet, to align the text on a septet
+	 * boundary after a user data header
+	 * @return the number of octets written
+	 */
+	public static int pack(byte[] septets, int offset, int length, byte[] destination, int destinationOffset,
+			int fillBits) {
+		int octets = (fillBits + 7 * length + 7) / 8;
+		Arrays.fill(destination, destinationOffset, destinationOffset + octets, (byte) 0);
+		for (int i = 0; i < length; i++) {
+			int septet = septets[offset + i] & 0x7F;
+			int bit = fillBits + 7 * i;
+			int index = destinationOffset + (bit >> 3);
+			int shift = bit & 7;
+			destination[index] |= (byte) (septet << shift);
+			if (shift > 1) {
+				destination[index + 1] |= (byte) (septet >> (8 - shift));
+			}
+		}
+		return octets;
+	}
+
+	/**
+	 * Unpack septets packed by {@link #pack}.
+	 *
+	 * @param packed the packed octets
+	 * @param offset the position of the first octet
+	 * @param septetCount the number of septets to unpack
+	 * @param destination the buffer, with room for <code>septetCount</code> octets
+	 * @param destinationOffset the position of the first septet in the buffer
+	 * @param fillBits the number of bits before the first septet
+	 * @return the number of septets written
+	 */
+	public static int unpack(byte[] packed, int offset, int septetCount, byte[] destination, int destinationOffset,
+			int fillBits) {
+		for (int i = 0; i < septetCount; i++) {
+			int bit = fillBits + 7 * i;
+			int index = offset + (bit >> 3);
+			int shift = bit & 7;
+			int septet = (packed[index] & 0xFF) >> shift;
+			if (shift > 1) {
+				septet |= (packed[index + 1] & 0xFF) << (8 - shift);
+			}
+			destination[destinationOffset + i] = (byte) (septet & 0x7F);
+		}
+		return septetCount;
+	}
+
+	private static int lookup(char c) {
+		if (c < LOOKUP_SIZE) {
+			return LOOKUP[c];
+		}
+		return c == EURO ? EURO_SEPTETS : -1;
+	}
+
+}
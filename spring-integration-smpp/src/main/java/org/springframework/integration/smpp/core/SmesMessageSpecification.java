@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2014 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -36,18 +36,28 @@ import static org.springframework.integration.smpp.core.SmppConstants.SRC_TON;
 import static org.springframework.integration.smpp.core.SmppConstants.VALIDITY_PERIOD;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang.math.RandomUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.jsmpp.bean.Address;
 import org.jsmpp.bean.Alphabet;
 import org.jsmpp.bean.DataCoding;
 import org.jsmpp.bean.DataCodings;
 import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
 import org.jsmpp.bean.ESMClass;
 import org.jsmpp.bean.GSMSpecificFeature;
 import org.jsmpp.bean.GeneralDataCoding;
@@ -56,8 +66,12 @@ import org.jsmpp.bean.NumberingPlanIndicator;
 import org.jsmpp.bean.OptionalParameter;
 import org.jsmpp.bean.OptionalParameters;
 import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceIfPresentFlag;
 import org.jsmpp.bean.SMSCDeliveryReceipt;
+import org.jsmpp.bean.SubmitMultiResult;
 import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.bean.UnsuccessDelivery;
+import org.jsmpp.extra.NegativeResponseException;
 import org.jsmpp.session.ClientSession;
 import org.jsmpp.session.SMPPSession;
 import org.jsmpp.util.AbsoluteTimeFormatter;
@@ -71,6 +85,12 @@ import org.springframework.util.StringUtils;
 /**
  * Fluent API to help make specifying all these parameters just a <em>tiny</em> bit easier.
  * For internal use only.
+ * <p/>
+ * The specifications returned by {@link #fromMessage} and {@link #newSmesMessageSpecification} come from
+ * a bounded pool: once a specification has been sent and its results read, {@link #release()} resets it
+ * and makes it available for the next message. A specification which is never released is simply garbage
+ * collected. The default values, and the data codings, ESM classes and registered deliveries built from
+ * the message headers, are shared between the specifications and must not be modified.
  *
  * @author Josh Long
  * @author Edge Dalmacio
@@ -79,16 +99,64 @@ import org.springframework.util.StringUtils;
  */
 public class SmesMessageSpecification {
 
+	/**
+	 * The maximum number of destination addresses of a <code>submit_multi</code> PDU.
+	 */
+	public static final int MAX_SUBMIT_MULTI_DESTINATIONS = 254;
+
+	/**
+	 * The maximum number of released specifications kept for reuse.
+	 * @since 1.1
+	 */
+	public static final int POOL_CAPACITY = 256;
+
 	private static Log log = LogFactory.getLog(SmesMessageSpecification.class);
 
-	private TimeFormatter timeFormatter = new AbsoluteTimeFormatter();
+	private static final TimeFormatter DEFAULT_TIME_FORMATTER = new AbsoluteTimeFormatter();
+
+	private static final ESMClass DEFAULT_ESM_CLASS = new ESMClass();
+
+	private static final RegisteredDelivery DEFAULT_REGISTERED_DELIVERY =
+			new RegisteredDelivery(SMSCDeliveryReceipt.DEFAULT);
+
+	private static final DataCoding DEFAULT_DATA_CODING =
+			new GeneralDataCoding(Alphabet.ALPHA_DEFAULT, MessageClass.CLASS1, false);
+
+	private static final DataCoding[] DATA_CODINGS = new DataCoding[256];
+
+	private static final ESMClass[] ESM_CLASSES = new ESMClass[256];
+
+	private static final Map<SMSCDeliveryReceipt, RegisteredDelivery> REGISTERED_DELIVERIES =
+			new EnumMap<SMSCDeliveryReceipt, RegisteredDelivery>(SMSCDeliveryReceipt.class);
+
+	static {
+		for (int i = 0; i < 256; i++) {
+			DATA_CODINGS[i] = DataCodings.newInstance((byte) i);
+			ESM_CLASSES[i] = new ESMClass((byte) i);
+		}
+		for (SMSCDeliveryReceipt receipt : SMSCDeliveryReceipt.values()) {
+			REGISTERED_DELIVERIES.put(receipt, new RegisteredDelivery(receipt));
+		}
+	}
+
+	private static final Queue<SmesMessageSpecification> pool = new ConcurrentLinkedQueue<SmesMessageSpecification>();
+
+	private static final AtomicInteger pooled = new AtomicInteger();
+
+	private final AtomicBoolean released = new AtomicBoolean();
 
-	private int maxLengthSmsMessages = 140;
+	private TimeFormatter timeFormatter;
+
+	private int maxLengthSmsMessages;
 
 	private String sourceAddress;
 
 	private String destinationAddress;
 
+	private List<String> destinationAddresses;
+
+	private Map<String, Integer> unsuccessfulDeliveries = new LinkedHashMap<String, Integer>();
+
 	private String serviceType;
 
 	private TypeOfNumber sourceAddressTypeOfNumber;
@@ -105,7 +173,7 @@ public class SmesMessageSpecification {
 
 	private byte priorityFlag;
 
-	private String scheduleDeliveryTime = timeFormatter.format(new Date());
+	private String scheduleDeliveryTime;
 
 	private String validityPeriod;
 
@@ -119,12 +187,20 @@ public class SmesMessageSpecification {
 
 	private byte[] shortMessage;
 
-	private List<byte[]> shortMessageParts;
+	private final List<byte[]> shortMessageParts = new ArrayList<byte[]>();
+
+	private boolean concatenateWithUdh;
+
+	private boolean partsWithUdh;
 
 	private ClientSession smppSession;
 
 	private OptionalParameter messagePayloadParameter;
 
+	private DeliveryReceiptCorrelator deliveryReceiptCorrelator;
+
+	private Message<?> deliveryReceiptRequest;
+
 	/**
 	 * This method takes an inbound SMS message and converts it to a Spring Integration message
 	 * @param dsm the {@link DeliverSm} from
@@ -178,6 +254,27 @@ public class SmesMessageSpecification {
 		return mb.build();
 	}
 
+	/**
+	 * This method takes a delivery receipt and converts it to a Spring Integration message builder,
+	 * so that the correlation can be added.
+	 * @param dsm the {@link DeliverSm} carrying the receipt
+	 * @param messageId the ID of the message the receipt is about
+	 * @param deliveryReceipt the receipt
+	 * @return a Spring Integration message builder with the receipt as payload
+	 * @since 1.1
+	 */
+	public static MessageBuilder<DeliveryReceipt> toMessageFromDeliveryReceipt(DeliverSm dsm, String messageId,
+			DeliveryReceipt deliveryReceipt) {
+		MessageBuilder<DeliveryReceipt> mb = MessageBuilder.withPayload(deliveryReceipt);
+		mb.setHeader(SmppConstants.SMS, dsm);
+		mb.setHeader(SmppConstants.SMSC_DELIVERY_RECEIPT, true);
+		mb.setHeader(SmppConstants.DELIVERY_RECEIPT_MESSAGE_ID, messageId);
+		mb.setHeader(SmppConstants.SOURCE_ADDR, dsm.getSourceAddr());
+		mb.setHeader(SmppConstants.DEST_ADDRESS, dsm.getDestAddress());
+		mb.setHeader(SmppConstants.SEQUENCE_NUMBER, dsm.getSequenceNumber());
+		return mb;
+	}
+
 	/**
 	 * this method will take an inbound Spring Integration {@link Message}
 	 * and map it to a {@link SmesMessageSpecification}
@@ -191,7 +288,8 @@ public class SmesMessageSpecification {
 			log.debug("Message: " + msg);
 		}
 		String srcAddy = valueIfHeaderExists(SRC_ADDR, msg);
-		String dstAddy = valueIfHeaderExists(DST_ADDR, msg);
+		List<String> dstAddies = destinationAddressesFromHeader(msg);
+		String dstAddy = dstAddies != null && dstAddies.size() == 1 ? dstAddies.get(0) : null;
 		String smsTxt = valueIfHeaderExists(SMS_MSG, msg);
 		if (!StringUtils.hasText(smsTxt)) {
 			Object payload = msg.getPayload();
@@ -200,14 +298,17 @@ public class SmesMessageSpecification {
 			}
 		}
 		final DataCoding dataCodingFromHeader = SmesMessageSpecification.dataCodingFromHeader(msg);
-		final SmesMessageSpecification spec = new SmesMessageSpecification()
-				.reset()
+		final SmesMessageSpecification spec = obtain()
 				.setSmppSession(smppSession)
 				.setSourceAddress(srcAddy)
 				.setDestinationAddress(dstAddy)
 				.setDataCoding(dataCodingFromHeader);
+		if (dstAddies != null && dstAddies.size() > 1) {
+			spec.setDestinationAddresses(dstAddies);
+		}
 		spec.setMaxLengthSmsMessages(maximumCharactersFromHeader(msg));
 		spec.setEsmClass(SmesMessageSpecification.esmClassFromHeader(msg));
+		spec.setConcatenateWithUdh(Boolean.TRUE.equals(msg.getHeaders().get(SmppConstants.CONCATENATE_WITH_UDH)));
 		if (msg.getHeaders().containsKey(SmppConstants.USE_MSG_PAYLOAD_PARAM)) {
 			spec.setShortMessageUsingPayload(smsTxt);
 		}
@@ -250,13 +351,41 @@ public class SmesMessageSpecification {
 		return spec;
 	}
 
+	/**
+	 * The {@link SmppConstants#DST_ADDR} header can be a single address, or a {@link Collection}
+	 * or an array of addresses to send the message to all of them.
+	 * @param msg the Spring Integration message
+	 * @return the destination addresses or null if the header is not set
+	 */
+	private static List<String> destinationAddressesFromHeader(Message<?> msg) {
+		Object dst = valueIfHeaderExists(DST_ADDR, msg);
+		if (dst == null) {
+			return null;
+		}
+		List<String> addresses = new ArrayList<String>();
+		if (dst instanceof Collection) {
+			for (Object address : (Collection<?>) dst) {
+				addresses.add(address.toString());
+			}
+		}
+		else if (dst instanceof Object[]) {
+			for (Object address : (Object[]) dst) {
+				addresses.add(address.toString());
+			}
+		}
+		else {
+			addresses.add(dst.toString());
+		}
+		return addresses;
+	}
+
 	private static DataCoding dataCodingFromHeader(Message<?> msg) {
 		Object dc = msg.getHeaders().get(DATA_CODING);
 		if (dc instanceof DataCoding) {
 			return (DataCoding) dc;
 		}
 		if (dc instanceof Byte) {
-			return DataCodings.newInstance((Byte) dc);
+			return DATA_CODINGS[(Byte) dc & 0xFF];
 		}
 
 		return null;
@@ -271,7 +400,8 @@ public class SmesMessageSpecification {
 	 * <ol>
 	 *     <li>If {@link SmppConstants#MAXIMUM_CHARACTERS} is set, use it</li>
 	 *     <li>If {@link SmppConstants#DATA_CODING} is set, find maximum character for the data coding</li>
-	 *     <li>Using default maximum character which is 140</li>
+	 *     <li>Using the maximum character of the default data coding, which is 160 septets of the GSM
+	 *     default alphabet</li>
 	 * </ol>
 	 * @param msg the Spring Integration message
 	 * @return maximum character can be sent through the session
@@ -289,7 +419,7 @@ public class SmesMessageSpecification {
 				return DataCodingSpecification.getMaxCharacters(((DataCoding) dc).toByte());
 			}
 		}
-		return 140;
+		return DataCodingSpecification.getMaxCharacters(DEFAULT_DATA_CODING.toByte());
 	}
 
 	/**
@@ -307,12 +437,12 @@ public class SmesMessageSpecification {
 			String rdString = (String) rd;
 			SMSCDeliveryReceipt smscDeliveryReceipt = SMSCDeliveryReceipt.valueOf(rdString);
 			Assert.notNull(smscDeliveryReceipt, "the registeredDelivery can't be null");
-			return new RegisteredDelivery(smscDeliveryReceipt);
+			return REGISTERED_DELIVERIES.get(smscDeliveryReceipt);
 		}
 
 		if (rd instanceof SMSCDeliveryReceipt) {
 			SMSCDeliveryReceipt smscDeliveryReceipt = (SMSCDeliveryReceipt) rd;
-			return new RegisteredDelivery(smscDeliveryReceipt);
+			return REGISTERED_DELIVERIES.get(smscDeliveryReceipt);
 		}
 
 		if (rd instanceof RegisteredDelivery) {
@@ -328,6 +458,7 @@ public class SmesMessageSpecification {
 	 * @see SmesMessageSpecification#SmesMessageSpecification()
 	 */
 	SmesMessageSpecification(SMPPSession smppSession) {
+		reset();
 		this.smppSession = smppSession;
 	}
 
@@ -341,8 +472,7 @@ public class SmesMessageSpecification {
 		Object o = valueIfHeaderExists(h, im);
 		ESMClass response = null;
 		if (o instanceof Byte) {
-			response = new ESMClass((Byte) o);
-
+			response = ESM_CLASSES[(Byte) o & 0xFF];
 		}
 		else if (o instanceof ESMClass) {
 			response = (ESMClass) o;
@@ -388,10 +518,9 @@ public class SmesMessageSpecification {
 	public static SmesMessageSpecification newSmesMessageSpecification(ClientSession ss, String srcAddress,
 			String destAddress, String txtMessage) {
 
-		SmesMessageSpecification smesMessageSpecification = new SmesMessageSpecification();
+		SmesMessageSpecification smesMessageSpecification = obtain();
 
 		smesMessageSpecification
-				.reset()
 				.setSmppSession(ss)
 				.setSourceAddress(srcAddress)
 				.setDestinationAddress(destAddress)
@@ -400,6 +529,38 @@ public class SmesMessageSpecification {
 		return smesMessageSpecification;
 	}
 
+	/**
+	 * @return a released specification from the pool, or a new one when the pool is empty
+	 */
+	private static SmesMessageSpecification obtain() {
+		SmesMessageSpecification spec = pool.poll();
+		if (spec == null) {
+			return new SmesMessageSpecification();
+		}
+		pooled.decrementAndGet();
+		spec.released.set(false);
+		return spec;
+	}
+
+	/**
+	 * Reset this specification and return it to the pool, once it has been sent and its
+	 * {@link #getUnsuccessfulDeliveries() results} read. The specification must not be used afterwards;
+	 * releasing it again has no effect.
+	 * @since 1.1
+	 */
+	public void release() {
+		if (!this.released.compareAndSet(false, true)) {
+			return;
+		}
+		reset();
+		if (pooled.incrementAndGet() <= POOL_CAPACITY) {
+			pool.offer(this);
+		}
+		else {
+			pooled.decrementAndGet();
+		}
+	}
+
 	/**
 	 * Only sets the #sourceAddressTypeOfNumber if the current value is null, otherwise, it leaves it.
 	 * @param sourceAddressTypeOfNumberIfRequired
@@ -432,6 +593,9 @@ public class SmesMessageSpecification {
 	 */
 	public List<String> send() throws Exception {
 		validate();
+		if (this.destinationAddresses != null) {
+			return sendMultiple();
+		}
 		List<String> msgIds = new LinkedList<String>();
 		if (messagePayloadParameter == null) {
 			if (this.shortMessageParts.isEmpty()) {
@@ -459,11 +623,12 @@ public class SmesMessageSpecification {
 			}
 			else {
 				if (log.isDebugEnabled()) {
-					log.debug("Sending message using sar_msg_ref_num, sar_segment_seqnum and sar_total_segments");
+					log.debug(this.partsWithUdh ? "Sending message using concatenation user data headers"
+							: "Sending message using sar_msg_ref_num, sar_segment_seqnum and sar_total_segments");
 				}
 				OptionalParameter sarMsgRefNum = OptionalParameters.newSarMsgRefNum(RandomUtils.nextInt(0x10000));
 				OptionalParameter sarTotalSegments = OptionalParameters.newSarTotalSegments(shortMessageParts.size());
-				String charsetName = DataCodingSpecification.getCharsetName(dataCoding.toByte());
+				ESMClass partEsmClass = partEsmClass();
 				for (int i = 0; i < shortMessageParts.size(); i++) {
 					byte[] shortMessagePart = shortMessageParts.get(i);
 					String msgId = this.smppSession.submitShortMessage(
@@ -476,7 +641,7 @@ public class SmesMessageSpecification {
 							this.destinationAddressNumberingPlanIndicator,
 							this.destinationAddress,
 
-							this.esmClass,
+							partEsmClass,
 							this.protocolId,
 							this.priorityFlag,
 							this.scheduleDeliveryTime,
@@ -486,11 +651,10 @@ public class SmesMessageSpecification {
 							this.dataCoding,
 							this.smDefaultMsgId,
 							shortMessagePart,
-							sarMsgRefNum,
-							OptionalParameters.newSarSegmentSeqnum(i + 1),
-							sarTotalSegments);
+							partParameters(sarMsgRefNum, sarTotalSegments, i));
 					if (log.isDebugEnabled()) {
-						log.debug("sent message : " + new String(shortMessagePart, charsetName));
+						log.debug("sent message : "
+								+ DataCodingSpecification.getMessageFromBytes(shortMessagePart, dataCoding.toByte()));
 						log.debug("message ID for the sent message is: " + msgId);
 					}
 					msgIds.add(msgId);
@@ -525,12 +689,197 @@ public class SmesMessageSpecification {
 			msgIds.add(msgId);
 		}
 
+		registerForDeliveryReceipts(msgIds);
 		return Collections.unmodifiableList(msgIds);
 	}
 
+	/**
+	 * Send the message to the {@link #setDestinationAddresses(Collection) destination addresses} with
+	 * <code>submit_multi</code>, {@link #MAX_SUBMIT_MULTI_DESTINATIONS} addresses per PDU.
+	 * <p/>
+	 * The addresses the SMSC reports as unsuccessful, and all the addresses of a PDU it rejected
+	 * with a negative response, are made available through {@link #getUnsuccessfulDeliveries()}.
+	 * The negative response is only thrown when every PDU has been rejected.
+	 * @return the messageId of each PDU accepted by the SMSC
+	 * @throws Exception as {@link #send()}
+	 */
+	private List<String> sendMultiple() throws Exception {
+		this.unsuccessfulDeliveries.clear();
+		List<String> msgIds = new LinkedList<String>();
+		Map<String, List<String>> msgIdDestinations = new LinkedHashMap<String, List<String>>();
+		NegativeResponseException lastRejection = null;
+		for (int from = 0; from < this.destinationAddresses.size(); from += MAX_SUBMIT_MULTI_DESTINATIONS) {
+			int to = Math.min(this.destinationAddresses.size(), from + MAX_SUBMIT_MULTI_DESTINATIONS);
+			Address[] chunk = new Address[to - from];
+			for (int i = from; i < to; i++) {
+				chunk[i - from] = new Address(this.destinationAddressTypeOfNumber,
+						this.destinationAddressNumberingPlanIndicator, this.destinationAddresses.get(i));
+			}
+			int chunkFirstMsgId = msgIds.size();
+			try {
+				if (this.messagePayloadParameter != null) {
+					msgIds.add(submitMultiple(chunk, this.esmClass, new byte[0], this.messagePayloadParameter));
+				}
+				else if (this.shortMessageParts.isEmpty()) {
+					msgIds.add(submitMultiple(chunk, this.esmClass, this.shortMessage));
+				}
+				else {
+					OptionalParameter sarMsgRefNum = OptionalParameters.newSarMsgRefNum(RandomUtils.nextInt(0x10000));
+					OptionalParameter sarTotalSegments = OptionalParameters.newSarTotalSegments(shortMessageParts.size());
+					for (int i = 0; i < this.shortMessageParts.size(); i++) {
+						msgIds.add(submitMultiple(chunk, partEsmClass(), this.shortMessageParts.get(i),
+								partParameters(sarMsgRefNum, sarTotalSegments, i)));
+					}
+				}
+			}
+			catch (NegativeResponseException e) {
+				log.warn("submit_multi to " + chunk.length + " destinations was rejected with status "
+						+ e.getCommandStatus());
+				lastRejection = e;
+				for (Address address : chunk) {
+					addUnsuccessfulDelivery(address.getAddress(), e.getCommandStatus());
+				}
+			}
+			for (String msgId : msgIds.subList(chunkFirstMsgId, msgIds.size())) {
+				List<String> destinations = new ArrayList<String>(chunk.length);
+				for (Address address : chunk) {
+					if (!this.unsuccessfulDeliveries.containsKey(address.getAddress())) {
+						destinations.add(address.getAddress());
+					}
+				}
+				msgIdDestinations.put(msgId, destinations);
+			}
+		}
+		if (msgIds.isEmpty() && lastRejection != null) {
+			throw lastRejection;
+		}
+		registerForDeliveryReceipts(msgIdDestinations);
+		return Collections.unmodifiableList(msgIds);
+	}
+
+	private String submitMultiple(Address[] destinations, ESMClass esmClass, byte[] message,
+			OptionalParameter... optionalParameters) throws Exception {
+		SubmitMultiResult result = this.smppSession.submitMultiple(
+				this.serviceType,
+				this.sourceAddressTypeOfNumber,
+				this.sourceAddressNumberingPlanIndicator,
+				this.sourceAddress,
+				destinations,
+				esmClass,
+				this.protocolId,
+				this.priorityFlag,
+				this.scheduleDeliveryTime,
+				this.validityPeriod,
+				this.registeredDelivery,
+				new ReplaceIfPresentFlag(this.replaceIfPresentFlag),
+				this.dataCoding,
+				this.smDefaultMsgId,
+				message,
+				optionalParameters);
+		if (result.getUnsuccessDeliveries() != null) {
+			for (UnsuccessDelivery unsuccessDelivery : result.getUnsuccessDeliveries()) {
+				addUnsuccessfulDelivery(unsuccessDelivery.getDestinationAddress().getAddress(),
+						unsuccessDelivery.getErrorStatusCode());
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("message ID for the message sent to " + destinations.length + " destinations is: "
+					+ result.getMessageId());
+		}
+		return result.getMessageId();
+	}
+
+	/**
+	 * @return the ESM class of the parts of a long message, which flags the user data headers
+	 * when the parts carry them
+	 */
+	private ESMClass partEsmClass() {
+		if (!this.partsWithUdh) {
+			return this.esmClass;
+		}
+		return new ESMClass(GSMSpecificFeature.compose(this.esmClass.value(), GSMSpecificFeature.UDHI));
+	}
+
+	/**
+	 * @return the optional parameters of a part of a long message: the <code>sar_*</code> parameters,
+	 * or none when the parts carry user data headers
+	 */
+	private OptionalParameter[] partParameters(OptionalParameter sarMsgRefNum, OptionalParameter sarTotalSegments,
+			int index) {
+		if (this.partsWithUdh) {
+			return new OptionalParameter[0];
+		}
+		return new OptionalParameter[] {sarMsgRefNum, OptionalParameters.newSarSegmentSeqnum(index + 1),
+				sarTotalSegments};
+	}
+
+	private void registerForDeliveryReceipts(List<String> msgIds) {
+		if (this.deliveryReceiptCorrelator != null && isDeliveryReceiptRequested()) {
+			for (String msgId : msgIds) {
+				this.deliveryReceiptCorrelator.register(msgId, this.deliveryReceiptRequest);
+			}
+		}
+	}
+
+	/**
+	 * Register the message IDs of a <code>submit_multi</code> once per destination the SMSC accepted,
+	 * since each destination reports its own receipt.
+	 */
+	private void registerForDeliveryReceipts(Map<String, List<String>> msgIdDestinations) {
+		if (this.deliveryReceiptCorrelator != null && isDeliveryReceiptRequested()) {
+			for (Map.Entry<String, List<String>> entry : msgIdDestinations.entrySet()) {
+				if (!entry.getValue().isEmpty()) {
+					this.deliveryReceiptCorrelator.register(entry.getKey(), entry.getValue(),
+							this.deliveryReceiptRequest);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Register the message IDs of the sent message with the correlator when a delivery receipt
+	 * is requested, so that the receipts can be correlated with the request.
+	 * @param correlator the delivery receipt correlator
+	 * @param request the message being sent
+	 * @return the current spec
+	 * @since 1.1
+	 */
+	public SmesMessageSpecification setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator correlator,
+			Message<?> request) {
+		Assert.isTrue(correlator == null || request != null, "the request must not be null");
+		this.deliveryReceiptCorrelator = correlator;
+		this.deliveryReceiptRequest = request;
+		return this;
+	}
+
+	/**
+	 * @return whether the SMSC is asked to send a delivery receipt
+	 * @since 1.1
+	 */
+	public boolean isDeliveryReceiptRequested() {
+		return this.registeredDelivery != null && !SMSCDeliveryReceipt.DEFAULT.containedIn(this.registeredDelivery);
+	}
+
+	private void addUnsuccessfulDelivery(String address, int errorStatusCode) {
+		// keep the first failure when a segment of a long message fails again
+		if (!this.unsuccessfulDeliveries.containsKey(address)) {
+			this.unsuccessfulDeliveries.put(address, errorStatusCode);
+		}
+	}
+
+	/**
+	 * The destination addresses the message could not be submitted to with <code>submit_multi</code>,
+	 * mapped to the error status reported by the SMSC. Populated by {@link #send()}.
+	 * @return the unsuccessful deliveries by destination address; empty if none
+	 */
+	public Map<String, Integer> getUnsuccessfulDeliveries() {
+		return Collections.unmodifiableMap(this.unsuccessfulDeliveries);
+	}
+
 	protected void validate() {
 		Assert.notNull(this.sourceAddress, "the source address must not be null");
-		Assert.notNull(this.destinationAddress, "the destination address must not be null");
+		Assert.isTrue(this.destinationAddress != null || this.destinationAddresses != null,
+				"the destination address must not be null");
 		final boolean shortMessageSet = this.shortMessage != null && this.shortMessage.length > 0
 				|| !shortMessageParts.isEmpty();
 		Assert.isTrue(messagePayloadParameter != null ^ shortMessageSet,
@@ -558,6 +907,19 @@ public class SmesMessageSpecification {
 		return this;
 	}
 
+	/**
+	 * the 'to' phone numbers, for a message sent with <code>submit_multi</code>.
+	 * The addresses share the destination type of number and numbering plan indicator.
+	 *
+	 * @param destinationAddrs the phone numbers
+	 * @return the current spec
+	 */
+	public SmesMessageSpecification setDestinationAddresses(Collection<String> destinationAddrs) {
+		Assert.notEmpty(destinationAddrs, "the destination addresses must not be empty");
+		this.destinationAddresses = new ArrayList<String>(destinationAddrs);
+		return this;
+	}
+
 	public SmesMessageSpecification setServiceType(String serviceType) {
 		if (!nullHeaderWillOverwriteDefault(serviceType)) {
 			this.serviceType = serviceType;
@@ -702,6 +1064,10 @@ public class SmesMessageSpecification {
 	 * Setting short message. This will take into account if {@link #dataCoding}
 	 * or if {@link #maxLengthSmsMessages}
 	 * is set through header to validate the maximum characters can be set.
+	 * <p/>
+	 * The data codings of the GSM default alphabet (0, and the default 0x11) and of UCS2 (8) are split by
+	 * {@link SmsSegmenter}, counting the maximum length in septets or UCS2 characters and keeping room for
+	 * the concatenation header in each part.
 	 * @param s the text message body
 	 * @return the SmesMessageSpecification
 	 */
@@ -711,6 +1077,19 @@ public class SmesMessageSpecification {
 			log.debug("Setting short message with UDH");
 			this.shortMessage = UdhUtil.getMessageWithUdhInBytes(s, dataCoding.toByte());
 		}
+		else if (SmsSegmenter.supports(dataCoding.toByte())) {
+			List<byte[]> parts = this.concatenateWithUdh
+					? SmsSegmenter.splitWithUdh(s, dataCoding.toByte(), this.maxLengthSmsMessages,
+							RandomUtils.nextInt(0x100))
+					: SmsSegmenter.split(s, dataCoding.toByte(), this.maxLengthSmsMessages);
+			if (parts.size() == 1) {
+				this.shortMessage = parts.get(0);
+			}
+			else {
+				this.shortMessageParts.addAll(parts);
+				this.partsWithUdh = this.concatenateWithUdh;
+			}
+		}
 		else {
 			if (s.length() > this.maxLengthSmsMessages) {
 				for (String split : splitToLength(s, this.maxLengthSmsMessages - 5)) {
@@ -746,6 +1125,20 @@ public class SmesMessageSpecification {
 		return this;
 	}
 
+	/**
+	 * Set whether the parts of a long message carry a concatenation user data header instead of the
+	 * <code>sar_*</code> optional parameters. Only applies to the data codings supported by {@link SmsSegmenter};
+	 * must be set before the text.
+	 *
+	 * @param concatenateWithUdh true to send the parts with user data headers
+	 * @return the SmesMessageSpecification
+	 * @see SmppConstants#CONCATENATE_WITH_UDH
+	 */
+	public SmesMessageSpecification setConcatenateWithUdh(boolean concatenateWithUdh) {
+		this.concatenateWithUdh = concatenateWithUdh;
+		return this;
+	}
+
 	/**
 	 * this is a good value, but not strictly speaking universal.
 	 * This is intended only for exceptional configuration cases
@@ -760,7 +1153,7 @@ public class SmesMessageSpecification {
 	}
 
 	/**
-	 * Resets the thread local, pooled objects to a known state before reuse.
+	 * Resets the pooled objects to a known state before reuse.
 	 * <p/>
 	 * Resetting the variables is trivially cheap compared to proxying a new one each time.
 	 *
@@ -769,29 +1162,38 @@ public class SmesMessageSpecification {
 	protected SmesMessageSpecification reset() {
 
 		// configuration params - should they be reset?
-		maxLengthSmsMessages = 140;
-		timeFormatter = new AbsoluteTimeFormatter();
+		maxLengthSmsMessages = DataCodingSpecification.getMaxCharacters(DEFAULT_DATA_CODING.toByte());
+		timeFormatter = DEFAULT_TIME_FORMATTER;
 
 		sourceAddress = null;
 		destinationAddress = null;
+		destinationAddresses = null;
+		if (!unsuccessfulDeliveries.isEmpty()) {
+			// the previous map may still be referenced by a reply header
+			unsuccessfulDeliveries = new LinkedHashMap<String, Integer>();
+		}
 		serviceType = "CMT";
 		sourceAddressTypeOfNumber = TypeOfNumber.UNKNOWN;
 		sourceAddressNumberingPlanIndicator = NumberingPlanIndicator.UNKNOWN;
 		destinationAddressTypeOfNumber = TypeOfNumber.UNKNOWN;
 		destinationAddressNumberingPlanIndicator = NumberingPlanIndicator.UNKNOWN;
-		esmClass = new ESMClass();
+		esmClass = DEFAULT_ESM_CLASS;
 		protocolId = 0;
 		priorityFlag = 1;
 		scheduleDeliveryTime = null;
 		validityPeriod = null;
-		registeredDelivery = new RegisteredDelivery(SMSCDeliveryReceipt.DEFAULT);
+		registeredDelivery = DEFAULT_REGISTERED_DELIVERY;
 		replaceIfPresentFlag = 0;
-		dataCoding = new GeneralDataCoding(Alphabet.ALPHA_DEFAULT, MessageClass.CLASS1, false);
+		dataCoding = DEFAULT_DATA_CODING;
 		smDefaultMsgId = 0;
 		shortMessage = null; // the bytes to the 140 character text message
-		shortMessageParts = new ArrayList<byte[]>();
+		shortMessageParts.clear();
+		concatenateWithUdh = false;
+		partsWithUdh = false;
 		smppSession = null;
 		messagePayloadParameter = null;
+		deliveryReceiptCorrelator = null;
+		deliveryReceiptRequest = null;
 		return this;
 	}
 
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -64,9 +64,9 @@ public abstract class SmppConstants {
 	public static final String DEST_ADDRESS = DST_ADDR;
 	public static final String OPTIONAL_PARAMETERS = "OPTIONAL_PARAMETERS";
     /** Additional support header to allow user to customise the maximum characters can be sent. Unless this header
-     * is set, the default is 140 characters or if {@link #DATA_CODING} header is set, the maximum character will
-     * be based on {@link DataCodingSpecification#getMaxCharacters(byte)}. Setting this header manually may have
-     * unintended consequences.
+     * is set, the default is 160 septets for the default GSM data coding or if {@link #DATA_CODING} header is set,
+     * the maximum character will be based on {@link DataCodingSpecification#getMaxCharacters(byte)}. Setting this
+     * header manually may have unintended consequences.
      */
     public static final String MAXIMUM_CHARACTERS = "MAXIMUM_CHARACTERS";
     /** Additional support header to send the sms using message_payload instead of setting using short_message.
@@ -79,4 +79,29 @@ public abstract class SmppConstants {
      * </ul>
      */
     public static final String USE_MSG_PAYLOAD_PARAM = "USE_MSG_PAYLOAD_PARAM";
+    /** Header which, set to {@link Boolean#TRUE}, sends the parts of a long message with a concatenation user data
+     * header instead of the sar_msg_ref_num, sar_segment_seqnum and sar_total_segments optional parameters. Applies to
+     * the GSM default alphabet and UCS2 data codings. */
+    public static final String CONCATENATE_WITH_UDH = "CONCATENATE_WITH_UDH";
+    /** Header of the reply of the outbound gateway for a message sent to several destinations with submit_multi:
+     * a {@link java.util.Map} of the destination addresses the SMSC did not accept to their error status. Only set
+     * when there is at least one unsuccessful delivery.
+     * @since 1.1
+     */
+    public static final String UNSUCCESSFUL_DELIVERIES = "UNSUCCESSFUL_DELIVERIES";
+    /** Header of a delivery receipt message: the ID of the message the receipt is about.
+     * @since 1.1
+     */
+    public static final String DELIVERY_RECEIPT_MESSAGE_ID = "DELIVERY_RECEIPT_MESSAGE_ID";
+    /** Header of the messages submitted to a {@link org.springframework.integration.smpp.session.SmppServer}: the
+     * system ID of the ESME which submitted the message. Also the ESME to which the server outbound channel adapter
+     * delivers a message.
+     * @since 1.1
+     */
+    public static final String SYSTEM_ID = "SYSTEM_ID";
+    /** Header of the messages submitted to a {@link org.springframework.integration.smpp.session.SmppServer}: the
+     * message ID returned to the ESME, to which its delivery receipt refers.
+     * @since 1.1
+     */
+    public static final String MESSAGE_ID = "MESSAGE_ID";
 }
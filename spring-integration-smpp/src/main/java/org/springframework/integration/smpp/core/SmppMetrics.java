@@ -0,0 +1,364 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.MessageType;
+
+import org.springframework.integration.smpp.util.LatencyHistogram;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedOperation;
+import org.springframework.jmx.export.annotation.ManagedResource;
+
+/**
+ * Counters and latency histograms of the SMPP binds and endpoints sharing this instance, telling apart
+ * the time spent at the SMSC from the time spent in the flow:
+ * <ul>
+ *     <li>submit latency - round trip of a <code>submit_sm</code> or <code>submit_multi</code> on the bind,
+ *     recorded by the session</li>
+ *     <li>send latency - from the outbound endpoint receiving the message to the last response, including
+ *     the segmentation, the throttling and the wait for a slot of the window</li>
+ *     <li>deliver_sm latency - time taken by the inbound endpoint to process a <code>deliver_sm</code></li>
+ * </ul>
+ * along with the requests outstanding on the binds and in the submit windows, the failures by command
+ * status, the <code>deliver_sm</code> rate and the reconnections.
+ * <p/>
+ * The class is annotated for the Spring JMX exporter, so declaring it as a bean and exporting it with
+ * <code>&lt;context:mbean-export/&gt;</code> or Spring Integration's <code>&lt;int-jmx:mbean-export/&gt;</code>
+ * publishes the metrics next to those of the channels and handlers.
+ *
+ * @since 1.1
+ */
+@ManagedResource(description = "SMPP binds, windows and PDU latency")
+public class SmppMetrics {
+
+	private static final Map<Integer, String> COMMAND_STATUS_NAMES = commandStatusNames();
+
+	/**
+	 * Period over which the <code>deliver_sm</code> rate is averaged.
+	 */
+	private static final long RATE_WINDOW = TimeUnit.MINUTES.toNanos(1);
+
+	private final LatencyHistogram submitLatency = new LatencyHistogram();
+
+	private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+	private final LatencyHistogram deliverSmLatency = new LatencyHistogram();
+
+	private final AtomicInteger outstanding = new AtomicInteger();
+
+	private final AtomicInteger peakOutstanding = new AtomicInteger();
+
+	private final AtomicInteger windowOutstanding = new AtomicInteger();
+
+	private final AtomicLong failureCount = new AtomicLong();
+
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	private final ConcurrentMap<Integer, AtomicLong> commandStatusCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+
+	private final AtomicLong deliverSmCount = new AtomicLong();
+
+	private final AtomicLong deliveryReceiptCount = new AtomicLong();
+
+	private final AtomicLong reconnectCount = new AtomicLong();
+
+	private volatile long enquireLinkLatency = -1;
+
+	/** decayed number of deliver_sm over the last {@link #RATE_WINDOW} */
+	private double deliverSmWeight;
+
+	private long deliverSmLastNanos = System.nanoTime();
+
+	/**
+	 * Record that a request is sent on a bind.
+	 * @return the start time, to pass to {@link #submitCompleted}
+	 */
+	public long submitStarted() {
+		int outstanding = this.outstanding.incrementAndGet();
+		int peak = this.peakOutstanding.get();
+		while (outstanding > peak && !this.peakOutstanding.compareAndSet(peak, outstanding)) {
+			peak = this.peakOutstanding.get();
+		}
+		return System.nanoTime();
+	}
+
+	/**
+	 * Record the end of a request started by {@link #submitStarted()}.
+	 * @param start the start time
+	 * @param successful whether a positive response was received; the reason of a failure is recorded
+	 * with {@link #submitRejected(int)} or {@link #submitTimedOut()}
+	 */
+	public void submitCompleted(long start, boolean successful) {
+		this.outstanding.decrementAndGet();
+		if (successful) {
+			this.submitLatency.recordSince(start);
+		}
+		else {
+			this.failureCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * @param commandStatus the command status of the negative response
+	 */
+	public void submitRejected(int commandStatus) {
+		AtomicLong count = this.commandStatusCounts.get(commandStatus);
+		if (count == null) {
+			AtomicLong newCount = new AtomicLong();
+			count = this.commandStatusCounts.putIfAbsent(commandStatus, newCount);
+			if (count == null) {
+				count = newCount;
+			}
+		}
+		count.incrementAndGet();
+	}
+
+	public void submitTimedOut() {
+		this.timeoutCount.incrementAndGet();
+	}
+
+	/**
+	 * Record the end of the sending of a message by an outbound endpoint.
+	 * @param start the {@link System#nanoTime()} when the endpoint received the message
+	 */
+	public void messageSent(long start) {
+		this.sendLatency.recordSince(start);
+	}
+
+	public void windowAcquired() {
+		this.windowOutstanding.incrementAndGet();
+	}
+
+	public void windowReleased() {
+		this.windowOutstanding.decrementAndGet();
+	}
+
+	/**
+	 * Record the arrival of a <code>deliver_sm</code> on a bind.
+	 * @param deliverSm the PDU
+	 */
+	public void deliverSmReceived(DeliverSm deliverSm) {
+		this.deliverSmCount.incrementAndGet();
+		if (MessageType.SMSC_DEL_RECEIPT.containedIn(deliverSm.getEsmClass())) {
+			this.deliveryReceiptCount.incrementAndGet();
+		}
+		synchronized (this) {
+			long now = System.nanoTime();
+			this.deliverSmWeight = decayedDeliverSmWeight(now) + 1;
+			this.deliverSmLastNanos = now;
+		}
+	}
+
+	/**
+	 * @param start the {@link System#nanoTime()} when the inbound endpoint started processing the PDU
+	 */
+	public void deliverSmProcessed(long start) {
+		this.deliverSmLatency.recordSince(start);
+	}
+
+	public void reconnected() {
+		this.reconnectCount.incrementAndGet();
+	}
+
+	/**
+	 * @param latency the latency of an <code>enquire_link</code> in milliseconds
+	 */
+	public void enquireLinkCompleted(long latency) {
+		this.enquireLinkLatency = latency;
+	}
+
+	public LatencyHistogram getSubmitLatency() {
+		return this.submitLatency;
+	}
+
+	public LatencyHistogram getSendLatency() {
+		return this.sendLatency;
+	}
+
+	public LatencyHistogram getDeliverSmLatency() {
+		return this.deliverSmLatency;
+	}
+
+	@ManagedAttribute(description = "Positive submit_sm and submit_multi responses")
+	public long getSubmitCount() {
+		return this.submitLatency.getCount();
+	}
+
+	@ManagedAttribute(description = "Mean submit_sm round trip (ms)")
+	public double getSubmitLatencyMean() {
+		return this.submitLatency.getMean();
+	}
+
+	@ManagedAttribute(description = "99th percentile of the submit_sm round trip (ms)")
+	public double getSubmitLatency99thPercentile() {
+		return this.submitLatency.getPercentile(99);
+	}
+
+	@ManagedAttribute(description = "Maximum submit_sm round trip (ms)")
+	public double getSubmitLatencyMax() {
+		return this.submitLatency.getMax();
+	}
+
+	@ManagedAttribute(description = "submit_sm round trips by bucket")
+	public Map<String, Long> getSubmitLatencyHistogram() {
+		return this.submitLatency.getBuckets();
+	}
+
+	@ManagedAttribute(description = "Mean time to send a message from the outbound endpoint (ms)")
+	public double getSendLatencyMean() {
+		return this.sendLatency.getMean();
+	}
+
+	@ManagedAttribute(description = "99th percentile of the time to send a message from the outbound endpoint (ms)")
+	public double getSendLatency99thPercentile() {
+		return this.sendLatency.getPercentile(99);
+	}
+
+	@ManagedAttribute(description = "Mean time to process a deliver_sm in the inbound endpoint (ms)")
+	public double getDeliverSmLatencyMean() {
+		return this.deliverSmLatency.getMean();
+	}
+
+	@ManagedAttribute(description = "Requests awaiting their response on the binds")
+	public int getOutstanding() {
+		return this.outstanding.get();
+	}
+
+	@ManagedAttribute(description = "Highest number of requests awaiting their response on the binds")
+	public int getPeakOutstanding() {
+		return this.peakOutstanding.get();
+	}
+
+	@ManagedAttribute(description = "Slots taken in the submit windows of the outbound endpoints")
+	public int getWindowOutstanding() {
+		return this.windowOutstanding.get();
+	}
+
+	@ManagedAttribute(description = "Failed submit_sm and submit_multi requests")
+	public long getFailureCount() {
+		return this.failureCount.get();
+	}
+
+	@ManagedAttribute(description = "Requests without response within the transaction timer")
+	public long getTimeoutCount() {
+		return this.timeoutCount.get();
+	}
+
+	@ManagedAttribute(description = "Requests rejected with ESME_RTHROTTLED")
+	public long getThrottledCount() {
+		AtomicLong count = this.commandStatusCounts.get(SMPPConstant.STAT_ESME_RTHROTTLED);
+		return count != null ? count.get() : 0;
+	}
+
+	/**
+	 * @return the number of negative responses by command status, keyed by the name of the status,
+	 * e.g. <code>ESME_RTHROTTLED</code>, or its hexadecimal value when it is not a standard status
+	 */
+	@ManagedAttribute(description = "Negative responses by command status")
+	public Map<String, Long> getCommandStatusCounts() {
+		Map<String, Long> counts = new TreeMap<String, Long>();
+		for (Map.Entry<Integer, AtomicLong> entry : this.commandStatusCounts.entrySet()) {
+			String name = COMMAND_STATUS_NAMES.get(entry.getKey());
+			if (name == null) {
+				name = String.format("0x%08X", entry.getKey());
+			}
+			counts.put(name, entry.getValue().get());
+		}
+		return counts;
+	}
+
+	@ManagedAttribute(description = "deliver_sm received, including delivery receipts")
+	public long getDeliverSmCount() {
+		return this.deliverSmCount.get();
+	}
+
+	@ManagedAttribute(description = "Delivery receipts received")
+	public long getDeliveryReceiptCount() {
+		return this.deliveryReceiptCount.get();
+	}
+
+	/**
+	 * @return the number of <code>deliver_sm</code> per second, exponentially averaged over a minute
+	 */
+	@ManagedAttribute(description = "deliver_sm per second, averaged over a minute")
+	public synchronized double getDeliverSmRate() {
+		return decayedDeliverSmWeight(System.nanoTime()) * TimeUnit.SECONDS.toNanos(1) / RATE_WINDOW;
+	}
+
+	@ManagedAttribute(description = "Binds established again after they were lost")
+	public long getReconnectCount() {
+		return this.reconnectCount.get();
+	}
+
+	@ManagedAttribute(description = "Latency of the last enquire_link probe (ms), -1 if none")
+	public long getEnquireLinkLatency() {
+		return this.enquireLinkLatency;
+	}
+
+	/**
+	 * Reset the counters and the histograms; the outstanding requests are still counted.
+	 */
+	@ManagedOperation(description = "Reset the counters and the histograms")
+	public void reset() {
+		this.submitLatency.reset();
+		this.sendLatency.reset();
+		this.deliverSmLatency.reset();
+		this.peakOutstanding.set(this.outstanding.get());
+		this.failureCount.set(0);
+		this.timeoutCount.set(0);
+		this.commandStatusCounts.clear();
+		this.deliverSmCount.set(0);
+		this.deliveryReceiptCount.set(0);
+		this.reconnectCount.set(0);
+		synchronized (this) {
+			this.deliverSmWeight = 0;
+		}
+	}
+
+	private double decayedDeliverSmWeight(long now) {
+		return this.deliverSmWeight * Math.exp(-(double) (now - this.deliverSmLastNanos) / RATE_WINDOW);
+	}
+
+	private static Map<Integer, String> commandStatusNames() {
+		Map<Integer, String> names = new HashMap<Integer, String>();
+		for (Field field : SMPPConstant.class.getFields()) {
+			if (field.getName().startsWith("STAT_") && field.getType() == int.class
+					&& Modifier.isStatic(field.getModifiers())) {
+				try {
+					names.put(field.getInt(null), field.getName().substring(5));
+				}
+				catch (IllegalAccessException e) {
+					// public constants
+				}
+			}
+		}
+		return names;
+	}
+
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.util.Assert;
+
+/**
+ * Splits a text into the short messages of a concatenated message, for the GSM default alphabet
+ * and UCS2.
+ * <p/>
+ * The alphabet is worked out from the data coding scheme: the SMPP values 0 and 8 are the GSM default
+ * alphabet and UCS2, the other values below 0x10 are left to {@link DataCodingSpecification}. Above them,
+ * the general data coding groups give the alphabet in bits 2-3 unless the text is compressed, the
+ * data coding/message class group (0xF0) in bit 2, and the message waiting groups store GSM (0xC0-0xDF)
+ * or UCS2 (0xE0-0xEF) text. The default data coding of {@link SmesMessageSpecification}, 0x11, is thus
+ * the GSM default alphabet.
+ * <p/>
+ * The budget of a message is counted in the unit of its alphabet, septets or UTF-16 code units, so a
+ * character of the GSM extension table counts twice. A text within the budget is sent as a single
+ * message; a longer text is split into parts leaving room for the 6 octets of a concatenation user data
+ * header, which gives the usual 153 septets or 67 characters per part. An escape sequence or a surrogate
+ * pair is never split between two parts.
+ * <p/>
+ * Each part is encoded directly into an array of its exact size, without intermediate strings.
+ *
+ * @since 1.1
+ */
+public final class SmsSegmenter {
+
+	/**
+	 * The length of the concatenation user data header with an 8 bit reference, including its length octet.
+	 */
+	public static final int UDH_LENGTH = 6;
+
+	/**
+	 * The maximum number of parts of a concatenated message.
+	 */
+	public static final int MAX_PARTS = 255;
+
+	private static final int GSM = 0;
+
+	private static final int UCS2 = 8;
+
+	private static final int OTHER = -1;
+
+	private SmsSegmenter() {
+	}
+
+	/**
+	 * @param dataCoding the data coding of the message
+	 * @return true if the text of a message with this data coding can be split by this class
+	 */
+	public static boolean supports(byte dataCoding) {
+		return alphabet(dataCoding) != OTHER;
+	}
+
+	/**
+	 * @param dataCoding the data coding of the message
+	 * @return true if the data coding denotes the GSM default alphabet
+	 */
+	public static boolean isGsm(byte dataCoding) {
+		return alphabet(dataCoding) == GSM;
+	}
+
+	/**
+	 * @param dataCoding the data coding of the message
+	 * @return true if the data coding denotes UCS2
+	 */
+	public static boolean isUcs2(byte dataCoding) {
+		return alphabet(dataCoding) == UCS2;
+	}
+
+	private static int alphabet(byte dataCoding) {
+		int dc = dataCoding & 0xFF;
+		if (dc < 0x10) {
+			// SMPP values: IA5, Latin 1, JIS... are not GSM 03.38 coding groups
+			return dc == GSM || dc == UCS2 ? dc : OTHER;
+		}
+		if ((dc & 0x80) == 0) {
+			// general data coding groups
+			if ((dc & 0x20) != 0) {
+				return OTHER;
+			}
+			switch ((dc >> 2) & 0x03) {
+				case 0:
+					return GSM;
+				case 2:
+					return UCS2;
+				default:
+					return OTHER;
+			}
+		}
+		if ((dc & 0xF0) == 0xF0) {
+			return (dc & 0x04) == 0 ? GSM : OTHER;
+		}
+		if ((dc & 0xF0) == 0xE0) {
+			return UCS2;
+		}
+		if ((dc & 0xE0) == 0xC0) {
+			return GSM;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * Encode the whole text as one message.
+	 *
+	 * @param text the text
+	 * @param dataCoding a data coding {@link #supports(byte) supported} by this class
+	 * @return the encoded text
+	 */
+	public static byte[] encode(CharSequence text, byte dataCoding) {
+		Assert.notNull(text, "'text' must not be null");
+		Assert.isTrue(supports(dataCoding), "unsupported data coding " + dataCoding);
+		return encode(text, 0, text.length(), isGsm(dataCoding), null);
+	}
+
+	/**
+	 * Encode the text, splitting it into parts without user data header, e.g. to be sent with the
+	 * <code>sar_*</code> optional parameters.
+	 *
+	 * @param text the text
+	 * @param dataCoding a data coding {@link #supports(byte) supported} by this class
+	 * @param maxCharacters the budget of a single message: 160 for GSM, 70 for UCS2
+	 * @return the encoded parts; a single one if the text fits within the budget
+	 */
+	public static List<byte[]> split(CharSequence text, byte dataCoding, int maxCharacters) {
+		return split(text, dataCoding, maxCharacters, -1);
+	}
+
+	/**
+	 * Encode the text, splitting it into parts starting with a concatenation user data header. The
+	 * parts must be sent with the UDHI flag of the ESM class.
+	 *
+	 * @param text the text
+	 * @param dataCoding a data coding {@link #supports(byte) supported} by this class
+	 * @param maxCharacters the budget of a single message: 160 for GSM, 70 for UCS2
+	 * @param reference the reference number of the concatenated message; only its low order octet is used
+	 * @return the encoded parts; a single one without user data header if the text fits within the budget
+	 */
+	public static List<byte[]> splitWithUdh(CharSequence text, byte dataCoding, int maxCharacters, int reference) {
+		Assert.isTrue(reference >= 0, "'reference' must not be negative");
+		return split(text, dataCoding, maxCharacters, reference & 0xFF);
+	}
+
+	private static List<byte[]> split(CharSequence text, byte dataCoding, int maxCharacters, int reference) {
+		Assert.notNull(text, "'text' must not be null");
+		Assert.isTrue(supports(dataCoding), "unsupported data coding " + dataCoding);
+		boolean gsm = isGsm(dataCoding);
+		int length = text.length();
+		int total = gsm ? Gsm7BitCodec.septetCount(text, 0, length) : length;
+		if (total <= maxCharacters) {
+			List<byte[]> parts = new ArrayList<byte[]>(1);
+			parts.add(encode(text, 0, length, gsm, null));
+			return parts;
+		}
+		// 6 octets of header take 7 septets or 3 UCS2 characters
+		int budget = maxCharacters - (gsm ? (UDH_LENGTH * 8 + 6) / 7 : UDH_LENGTH / 2);
+		Assert.isTrue(budget > 1, "'maxCharacters' leaves no room for the text of a part");
+
+		int count = 0;
+		for (int start = 0; start < length; start = nextBoundary(text, start, budget, gsm)) {
+			count++;
+		}
+		Assert.isTrue(count <= MAX_PARTS, "the text needs " + count + " parts, more than " + MAX_PARTS);
+
+		List<byte[]> parts = new ArrayList<byte[]>(count);
+		byte[] header = null;
+		if (reference >= 0) {
+			header = new byte[] {UDH_LENGTH - 1, 0x00, 0x03, (byte) reference, (byte) count, 0};
+		}
+		int start = 0;
+		while (start < length) {
+			int end = nextBoundary(text, start, budget, gsm);
+			if (header != null) {
+				header[UDH_LENGTH - 1] = (byte) (parts.size() + 1);
+			}
+			parts.add(encode(text, start, end, gsm, header));
+			start = end;
+		}
+		return parts;
+	}
+
+	private static int nextBoundary(CharSequence text, int start, int budget, boolean gsm) {
+		int used = 0;
+		int i = start;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			int cost = gsm ? Gsm7BitCodec.septetCount(c) : 1;
+			if (!gsm && Character.isHighSurrogate(c) && i + 1 < text.length()) {
+				// keep the pair together
+				cost = 2;
+			}
+			if (used + cost > budget) {
+				break;
+			}
+			used += cost;
+			i += !gsm && cost == 2 ? 2 : 1;
+		}
+		return i;
+	}
+
+	private static byte[] encode(CharSequence text, int start, int end, boolean gsm, byte[] header) {
+		int offset = header != null ? header.length : 0;
+		byte[] part;
+		if (gsm) {
+			part = new byte[offset + Gsm7BitCodec.septetCount(text, start, end)];
+			Gsm7BitCodec.encode(text, start, end, part, offset);
+		}
+		else {
+			part = new byte[offset + 2 * (end - start)];
+			int position = offset;
+			for (int i = start; i < end; i++) {
+				char c = text.charAt(i);
+				part[position++] = (byte) (c >> 8);
+				part[position++] = (byte) c;
+			}
+		}
+		if (header != null) {
+			System.arraycopy(header, 0, part, 0, header.length);
+		}
+		return part;
+	}
+
+}
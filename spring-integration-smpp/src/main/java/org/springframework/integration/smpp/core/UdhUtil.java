@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -22,19 +22,21 @@ package org.springframework.integration.smpp.core;
 public class UdhUtil {
 
     /**
-     * Get message with UDH to byte[]. This method converts the UDH to byte[] using {@link String#getBytes()} and
-     * converts the string using {@link DataCodingSpecification#getMessageInBytes(String, byte)}.
+     * Get message with UDH to byte[]. This method takes each character of the UDH as one octet and
+     * converts the rest of the string using {@link DataCodingSpecification#getMessageInBytes(String, byte)}.
      *
      * @param s string message
      * @param dataCoding data coding
      * @return byte array result
      */
     public static byte[] getMessageWithUdhInBytes(String s, byte dataCoding) {
-        final int udhLength = ((byte)s.charAt(0))+1;
-        final byte[] udh = s.substring(0, udhLength).getBytes();
+        final int udhLength = (s.charAt(0) & 0xFF) + 1;
         final byte[] content = DataCodingSpecification.getMessageInBytes(s.substring(udhLength), dataCoding);
         final byte[] contentWithUdh = new byte[udhLength + content.length];
-        System.arraycopy(udh, 0, contentWithUdh, 0, udhLength);
+        // the header is binary, so each character stands for one octet whatever the platform charset
+        for (int i = 0; i < udhLength; i++) {
+            contentWithUdh[i] = (byte) s.charAt(i);
+        }
         System.arraycopy(content, 0, contentWithUdh, udhLength, content.length);
         return contentWithUdh;
     }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,31 +15,53 @@
  */
 package org.springframework.integration.smpp.inbound;
 
+import java.util.concurrent.Executor;
+
 import org.jsmpp.bean.BindType;
 import org.jsmpp.bean.DeliverSm;
 import org.jsmpp.bean.DeliveryReceipt;
 import org.springframework.messaging.Message;
 import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
 import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.endpoint.AbstractEndpoint;
 import org.springframework.integration.smpp.core.AbstractReceivingMessageListener;
+import org.springframework.integration.smpp.core.ConcatenatedMessageAssembler;
+import org.springframework.integration.smpp.core.DeliveryReceiptCorrelator;
 import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.smpp.core.SmppMetrics;
 import org.springframework.integration.smpp.session.ExtendedSmppSession;
+import org.springframework.integration.smpp.util.KeyedSerialExecutor;
 import org.springframework.util.Assert;
 
 /**
  * Supports receiving messages of a payload specified by the SMPP protocol from a <em>short message service center</em> (SMSC).
+ * <p/>
+ * By default the messages are sent to the channel on the jsmpp thread reading the session, which only
+ * acknowledges the <code>deliver_sm</code> once the message is sent. With a
+ * {@link #setTaskExecutor(Executor) task executor} the <code>deliver_sm</code> is acknowledged at once and the
+ * messages are sent on the threads of the executor, in order for each source address.
  *
  * @author Josh Long
  * @since 1.0
- *
- * TODO find some way to configure the {@link java.util.concurrent.Executor} running for the JSMPP library
  */
 public class SmppInboundChannelAdapter extends AbstractEndpoint {
 
+	/**
+	 * The default maximum number of received messages waiting for or being processed by the task executor.
+	 */
+	public static final int DEFAULT_QUEUE_CAPACITY = 1000;
+
 	private MessagingTemplate messagingTemplate;
 	private MessageChannel channel;
 	private ExtendedSmppSession smppSession;
+	private DeliveryReceiptCorrelator deliveryReceiptCorrelator;
+	private MessageChannel deliveryReceiptChannel;
+	private ConcatenatedMessageAssembler concatenatedMessageAssembler;
+
+	private SmppMetrics metrics;
+	private Executor taskExecutor;
+	private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
 
 	/**
 	 * the channel on which inbound SMS messages should be delivered to Spring Integration components.
@@ -59,6 +81,12 @@ public class SmppInboundChannelAdapter extends AbstractEndpoint {
 				this.smppSession.getBindType().equals(BindType.BIND_TRX),
 				"this session's bind type should support " +
 						"receiving messages or both sending *and* receiving messages!");
+		this.abstractReceivingMessageListener.setConcatenatedMessageAssembler(this.concatenatedMessageAssembler);
+		this.abstractReceivingMessageListener.setMetrics(this.metrics);
+		if (this.taskExecutor != null) {
+			this.abstractReceivingMessageListener.setDispatcher(
+					new KeyedSerialExecutor(this.taskExecutor, this.queueCapacity));
+		}
 	}
 
 	/**
@@ -69,11 +97,108 @@ public class SmppInboundChannelAdapter extends AbstractEndpoint {
 		this.smppSession = s;
 	}
 
-	private AbstractReceivingMessageListener abstractReceivingMessageListener =
+	/**
+	 * Set the correlator shared with the outbound endpoints, which completes the futures of the
+	 * submitted messages and sets their ID as <code>correlationId</code> of the receipts. A receipt
+	 * received before its message ID was registered, as happens when the messages are submitted on
+	 * another bind, is held until the registration, for the early receipt time to live of the correlator.
+	 *
+	 * @param deliveryReceiptCorrelator the correlator
+	 */
+	public void setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator deliveryReceiptCorrelator) {
+		this.deliveryReceiptCorrelator = deliveryReceiptCorrelator;
+	}
+
+	/**
+	 * Set the channel on which the delivery receipts are sent, with the
+	 * {@link org.jsmpp.bean.DeliveryReceipt} as payload. By default receipts are not emitted.
+	 *
+	 * @param deliveryReceiptChannel the channel
+	 */
+	public void setDeliveryReceiptChannel(MessageChannel deliveryReceiptChannel) {
+		this.deliveryReceiptChannel = deliveryReceiptChannel;
+	}
+
+	/**
+	 * Set the assembler reassembling the long messages received in several segments, so that one
+	 * message is produced per complete message, with the text decoded according to its data coding.
+	 * By default each segment produces a message.
+	 *
+	 * @param concatenatedMessageAssembler the assembler
+	 * @since 1.1
+	 */
+	public void setConcatenatedMessageAssembler(ConcatenatedMessageAssembler concatenatedMessageAssembler) {
+		this.concatenatedMessageAssembler = concatenatedMessageAssembler;
+	}
+
+	/**
+	 * Set the metrics recording the time taken by the flow to process each received message.
+	 * Usually shared with the session factory.
+	 *
+	 * @param metrics the metrics
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Set the executor processing the received messages, so that the <code>deliver_sm</code> PDUs are
+	 * acknowledged without waiting for the flow. The messages of each source address are processed in
+	 * the order they were received. By default the messages are processed on the jsmpp thread.
+	 *
+	 * @param taskExecutor the executor
+	 * @since 1.1
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the maximum number of received messages waiting for or being processed by the
+	 * {@link #setTaskExecutor(Executor) task executor}. Beyond it the <code>deliver_sm</code> PDUs are refused
+	 * with <code>ESME_RMSGQFUL</code>, so that the SMSC delivers them later. Default is
+	 * {@link #DEFAULT_QUEUE_CAPACITY}.
+	 *
+	 * @param queueCapacity the capacity
+	 * @since 1.1
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.isTrue(queueCapacity > 0, "'queueCapacity' must be greater than 0");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Sends the receipts held by the correlator, once correlated or expired.
+	 */
+	private final MessageHandler earlyReceiptHandler = new MessageHandler() {
+
+		public void handleMessage(Message<?> message) {
+			messagingTemplate.send(deliveryReceiptChannel, message);
+		}
+
+	};
+
+	private final AbstractReceivingMessageListener abstractReceivingMessageListener =
 		new AbstractReceivingMessageListener() {
 			@Override
 			protected void onDeliveryReceipt(DeliverSm deliverSm, String ogMessageId, DeliveryReceipt deliveryReceipt) throws Exception {
-				// noop don't care
+				Message<?> msg = null;
+				if (deliveryReceiptCorrelator != null) {
+					msg = deliveryReceiptCorrelator.correlate(deliverSm, ogMessageId, deliveryReceipt,
+							deliveryReceiptChannel != null ? earlyReceiptHandler : null);
+					if (msg == null) {
+						// held until the message ID is registered
+						return;
+					}
+				}
+				if (deliveryReceiptChannel != null) {
+					if (msg == null) {
+						msg = SmesMessageSpecification.toMessageFromDeliveryReceipt(deliverSm, ogMessageId,
+								deliveryReceipt).build();
+					}
+					messagingTemplate.send(deliveryReceiptChannel, msg);
+				}
 			}
 
 			@Override
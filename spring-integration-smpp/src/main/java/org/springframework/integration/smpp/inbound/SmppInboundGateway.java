@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,30 +15,85 @@
  */
 package org.springframework.integration.smpp.inbound;
 
+import java.util.List;
+import java.util.concurrent.Executor;
+
 import org.jsmpp.bean.BindType;
 import org.jsmpp.bean.DeliverSm;
 import org.jsmpp.bean.DeliveryReceipt;
 import org.jsmpp.bean.TypeOfNumber;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.core.MessagingTemplate;
 import org.springframework.integration.gateway.MessagingGatewaySupport;
 import org.springframework.integration.smpp.core.AbstractReceivingMessageListener;
+import org.springframework.integration.smpp.core.ConcatenatedMessageAssembler;
+import org.springframework.integration.smpp.core.DeliveryReceiptCorrelator;
 import org.springframework.integration.smpp.core.SmesMessageSpecification;
 import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.core.SmppMetrics;
+import org.springframework.integration.smpp.outbound.SmppSubmitCallback;
+import org.springframework.integration.smpp.outbound.SmppSubmitWindow;
 import org.springframework.integration.smpp.session.ExtendedSmppSession;
+import org.springframework.integration.smpp.util.KeyedSerialExecutor;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
 /**
  * What'running an inbound gateway in this case? Receive a text message and then automatically send a response.
+ * <p/>
+ * By default the request is processed and the reply sent on the jsmpp thread reading the session, which only
+ * acknowledges the <code>deliver_sm</code> once the reply is sent. With a
+ * {@link #setTaskExecutor(Executor) task executor} the <code>deliver_sm</code> is acknowledged at once and the
+ * requests are processed on the threads of the executor, in order for each source address. With a
+ * {@link #setReplyWindowSize(int) reply window size} greater than 1 the replies are submitted through a
+ * {@link SmppSubmitWindow}, so that the processing of the next request does not wait for the
+ * <code>submit_sm_resp</code> of the reply.
  *
  * @author Josh Long
  * @since 1.0
  */
-public class SmppInboundGateway extends MessagingGatewaySupport {
+public class SmppInboundGateway extends MessagingGatewaySupport implements DisposableBean {
 
 	private ExtendedSmppSession smppSession;
 	private TypeOfNumber defaultSourceAddressTypeOfNumber;
 	private String defaultSourceAddress;
+	private DeliveryReceiptCorrelator deliveryReceiptCorrelator;
+	private MessageChannel deliveryReceiptChannel;
+	private final MessagingTemplate deliveryReceiptTemplate = new MessagingTemplate();
+	private ConcatenatedMessageAssembler concatenatedMessageAssembler;
+
+	private SmppMetrics metrics;
+	private Executor taskExecutor;
+	private int queueCapacity = SmppInboundChannelAdapter.DEFAULT_QUEUE_CAPACITY;
+	private int replyWindowSize = 1;
+	private SmppSubmitWindow replyWindow;
+
+	private final SmppSubmitCallback replyCallback = new SmppSubmitCallback() {
+
+		private volatile MessagePublishingErrorHandler errorHandler;
+
+		public void onSubmitted(Message<?> message, List<String> messageIds) {
+			logger.debug("the reply SMS message has been sent: " + messageIds);
+		}
+
+		public void onFailure(Message<?> message, Exception exception) {
+			if (this.errorHandler == null) {
+				MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+				if (getBeanFactory() != null) {
+					errorHandler.setBeanFactory(getBeanFactory());
+				}
+				this.errorHandler = errorHandler;
+			}
+			this.errorHandler.handleError(new MessageHandlingException(message,
+					"Exception in trying to send the reply SMS message", exception));
+		}
+
+	};
 
 	/**
 	 * Set default source address type of number.
@@ -65,6 +120,90 @@ public class SmppInboundGateway extends MessagingGatewaySupport {
 		this.smppSession = s;
 	}
 
+	/**
+	 * Set the correlator shared with the outbound endpoints, which completes the futures of the
+	 * submitted messages and sets their ID as <code>correlationId</code> of the receipts. A receipt
+	 * received before its message ID was registered, as happens when the messages are submitted on
+	 * another bind, is held until the registration, for the early receipt time to live of the correlator.
+	 *
+	 * @param deliveryReceiptCorrelator the correlator
+	 */
+	public void setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator deliveryReceiptCorrelator) {
+		this.deliveryReceiptCorrelator = deliveryReceiptCorrelator;
+	}
+
+	/**
+	 * Set the channel on which the delivery receipts are sent, with the
+	 * {@link org.jsmpp.bean.DeliveryReceipt} as payload. By default receipts are not emitted.
+	 *
+	 * @param deliveryReceiptChannel the channel
+	 */
+	public void setDeliveryReceiptChannel(MessageChannel deliveryReceiptChannel) {
+		this.deliveryReceiptChannel = deliveryReceiptChannel;
+	}
+
+	/**
+	 * Set the assembler reassembling the long messages received in several segments, so that one
+	 * request is produced per complete message, with the text decoded according to its data coding.
+	 * By default each segment produces a request.
+	 *
+	 * @param concatenatedMessageAssembler the assembler
+	 * @since 1.1
+	 */
+	public void setConcatenatedMessageAssembler(ConcatenatedMessageAssembler concatenatedMessageAssembler) {
+		this.concatenatedMessageAssembler = concatenatedMessageAssembler;
+	}
+
+	/**
+	 * Set the metrics recording the time taken by the flow to process each received request.
+	 * Usually shared with the session factory.
+	 *
+	 * @param metrics the metrics
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Set the executor processing the received requests, so that the <code>deliver_sm</code> PDUs are
+	 * acknowledged without waiting for the reply. The requests of each source address are processed in
+	 * the order they were received. By default the requests are processed on the jsmpp thread.
+	 *
+	 * @param taskExecutor the executor
+	 * @since 1.1
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the maximum number of received requests waiting for or being processed by the
+	 * {@link #setTaskExecutor(Executor) task executor}. Beyond it the <code>deliver_sm</code> PDUs are refused
+	 * with <code>ESME_RMSGQFUL</code>, so that the SMSC delivers them later. Default is
+	 * {@link SmppInboundChannelAdapter#DEFAULT_QUEUE_CAPACITY}.
+	 *
+	 * @param queueCapacity the capacity
+	 * @since 1.1
+	 */
+	public void setQueueCapacity(int queueCapacity) {
+		Assert.isTrue(queueCapacity > 0, "'queueCapacity' must be greater than 0");
+		this.queueCapacity = queueCapacity;
+	}
+
+	/**
+	 * Set the maximum number of replies awaiting their <code>submit_sm_resp</code> at the same time.
+	 * Default is 1, which sends each reply synchronously on the thread processing the request.
+	 * Replies which cannot be sent are reported to the error channel.
+	 *
+	 * @param replyWindowSize the window size
+	 * @since 1.1
+	 */
+	public void setReplyWindowSize(int replyWindowSize) {
+		Assert.isTrue(replyWindowSize > 0, "'replyWindowSize' must be greater than 0");
+		this.replyWindowSize = replyWindowSize;
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		Assert.notNull(this.smppSession, "the 'smppSession' property must be set");
@@ -72,13 +211,49 @@ public class SmppInboundGateway extends MessagingGatewaySupport {
 				this.smppSession.getBindType().equals(BindType.BIND_TRX),
 				"this session's bind type should support " +
 						"receiving messages or both sending *and* receiving messages!");
+		this.abstractReceivingMessageListener.setConcatenatedMessageAssembler(this.concatenatedMessageAssembler);
+		this.abstractReceivingMessageListener.setMetrics(this.metrics);
+		if (this.taskExecutor != null) {
+			this.abstractReceivingMessageListener.setDispatcher(
+					new KeyedSerialExecutor(this.taskExecutor, this.queueCapacity));
+		}
+		if (this.replyWindowSize > 1) {
+			this.replyWindow = new SmppSubmitWindow(this.replyWindowSize);
+			this.replyWindow.setMetrics(this.metrics);
+		}
 	}
 
-	private AbstractReceivingMessageListener abstractReceivingMessageListener =
+	/**
+	 * Sends the receipts held by the correlator, once correlated or expired.
+	 */
+	private final MessageHandler earlyReceiptHandler = new MessageHandler() {
+
+		public void handleMessage(Message<?> message) {
+			deliveryReceiptTemplate.send(deliveryReceiptChannel, message);
+		}
+
+	};
+
+	private final AbstractReceivingMessageListener abstractReceivingMessageListener =
 			new AbstractReceivingMessageListener() {
 				@Override
 				protected void onDeliveryReceipt(DeliverSm deliverSm, String ogMessageId, DeliveryReceipt deliveryReceipt) throws Exception {
-					// noop don't care
+					Message<?> msg = null;
+					if (deliveryReceiptCorrelator != null) {
+						msg = deliveryReceiptCorrelator.correlate(deliverSm, ogMessageId, deliveryReceipt,
+								deliveryReceiptChannel != null ? earlyReceiptHandler : null);
+						if (msg == null) {
+							// held until the message ID is registered
+							return;
+						}
+					}
+					if (deliveryReceiptChannel != null) {
+						if (msg == null) {
+							msg = SmesMessageSpecification.toMessageFromDeliveryReceipt(deliverSm, ogMessageId,
+									deliveryReceipt).build();
+						}
+						deliveryReceiptTemplate.send(deliveryReceiptChannel, msg);
+					}
 				}
 
 				@Override
@@ -94,8 +269,21 @@ public class SmppInboundGateway extends MessagingGatewaySupport {
 					logger.debug("received a reply message; will handle as in outbound adapter");
 
 					/// todo figure out relationship between inbound-gw and replyChannel
-					applyDefaults(msg, response, SmesMessageSpecification.fromMessage(smppSession, response)).send();
-					logger.debug("the reply SMS message has been sent.");
+					SmesMessageSpecification reply = applyDefaults(msg, response,
+							SmesMessageSpecification.fromMessage(smppSession, response));
+					if (replyWindow != null) {
+						// waits for a free slot, which pushes back on the requests of the dispatcher
+						replyWindow.submit(response, reply, replyCallback, -1);
+					}
+					else {
+						try {
+							reply.send();
+							logger.debug("the reply SMS message has been sent.");
+						}
+						finally {
+							reply.release();
+						}
+					}
 				}
 			};
 
@@ -144,6 +332,12 @@ public class SmppInboundGateway extends MessagingGatewaySupport {
 		this.smppSession.stop();
 	}
 
+	public void destroy() throws Exception {
+		if (this.replyWindow != null) {
+			this.replyWindow.shutdown();
+		}
+	}
+
 	@Override
 	public String getComponentType() {
 		return "smpp:inbound-gateway";
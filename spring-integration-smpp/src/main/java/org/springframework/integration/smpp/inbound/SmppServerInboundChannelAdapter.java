@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.inbound;
+
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.SubmitSm;
+import org.jsmpp.bean.TypeOfNumber;
+
+import org.springframework.integration.core.MessagingTemplate;
+import org.springframework.integration.endpoint.AbstractEndpoint;
+import org.springframework.integration.smpp.core.ConcatenatedMessageAssembler;
+import org.springframework.integration.smpp.core.DataCodingSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.session.SmppServer;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.util.Assert;
+
+/**
+ * Sends the messages submitted by the ESMEs bound to a {@link SmppServer} to a channel.
+ * <p/>
+ * The messages are sent on the task executor of the server, once the ESME got the message ID in its
+ * <code>submit_sm_resp</code>. The text is the payload, and the headers carry the
+ * {@link SmppConstants#SYSTEM_ID system ID} of the ESME, the {@link SmppConstants#MESSAGE_ID message ID}, the
+ * addresses, the data coding and the requested delivery receipt, so that the message can be forwarded
+ * upstream with an outbound channel adapter.
+ *
+ * @since 1.1
+ * @see org.springframework.integration.smpp.outbound.SmppServerOutboundChannelAdapter
+ */
+public class SmppServerInboundChannelAdapter extends AbstractEndpoint {
+
+	private final MessagingTemplate messagingTemplate = new MessagingTemplate();
+
+	private MessageChannel channel;
+
+	private SmppServer smppServer;
+
+	private ConcatenatedMessageAssembler concatenatedMessageAssembler;
+
+	private final SmppServer.SubmitSmHandler submitSmHandler = new SmppServer.SubmitSmHandler() {
+
+		public void onSubmitSm(String systemId, String messageId, SubmitSm submitSm) throws Exception {
+			String text = decode(submitSm);
+			if (text != null) {
+				messagingTemplate.send(channel, toMessage(systemId, messageId, submitSm, text));
+			}
+		}
+
+	};
+
+	/**
+	 * @param channel the channel to which the submitted messages are sent
+	 */
+	public void setChannel(MessageChannel channel) {
+		this.channel = channel;
+	}
+
+	/**
+	 * @param smppServer the server accepting the binds of the ESMEs
+	 */
+	public void setSmppServer(SmppServer smppServer) {
+		this.smppServer = smppServer;
+	}
+
+	/**
+	 * Set the assembler reassembling the long messages submitted in several segments, so that one
+	 * message is produced per complete message, with the message ID of its last segment. By default each
+	 * segment produces a message.
+	 *
+	 * @param concatenatedMessageAssembler the assembler
+	 */
+	public void setConcatenatedMessageAssembler(ConcatenatedMessageAssembler concatenatedMessageAssembler) {
+		this.concatenatedMessageAssembler = concatenatedMessageAssembler;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		Assert.notNull(this.channel, "the 'channel' property must be set");
+		Assert.notNull(this.smppServer, "the 'smppServer' property must be set");
+	}
+
+	/**
+	 * The <code>submit_sm</code> are refused with <code>ESME_RSYSERR</code> while the adapter is stopped.
+	 */
+	@Override
+	protected void doStart() {
+		this.smppServer.setSubmitSmHandler(this.submitSmHandler);
+	}
+
+	@Override
+	protected void doStop() {
+		this.smppServer.setSubmitSmHandler(null);
+	}
+
+	private String decode(SubmitSm submitSm) {
+		if (this.concatenatedMessageAssembler != null) {
+			// the assembler only reads the fields shared by both PDUs
+			DeliverSm segment = new DeliverSm();
+			segment.setSourceAddr(submitSm.getSourceAddr());
+			segment.setEsmClass(submitSm.getEsmClass());
+			segment.setDataCoding(submitSm.getDataCoding());
+			segment.setShortMessage(submitSm.getShortMessage());
+			segment.setOptionalParameters(submitSm.getOptionalParameters());
+			return this.concatenatedMessageAssembler.assemble(segment);
+		}
+		byte[] shortMessage = submitSm.getShortMessage() != null ? submitSm.getShortMessage() : new byte[0];
+		return DataCodingSpecification.getMessageFromBytes(shortMessage, submitSm.getDataCoding());
+	}
+
+	private Message<String> toMessage(String systemId, String messageId, SubmitSm submitSm, String text) {
+		return MessageBuilder.withPayload(text)
+				.setHeader(SmppConstants.SYSTEM_ID, systemId)
+				.setHeader(SmppConstants.MESSAGE_ID, messageId)
+				.setHeader(SmppConstants.SRC_ADDR, submitSm.getSourceAddr())
+				.setHeader(SmppConstants.SRC_TON, TypeOfNumber.valueOf(submitSm.getSourceAddrTon()))
+				.setHeader(SmppConstants.SRC_NPI, NumberingPlanIndicator.valueOf(submitSm.getSourceAddrNpi()))
+				.setHeader(SmppConstants.DST_ADDR, submitSm.getDestAddress())
+				.setHeader(SmppConstants.DST_TON, TypeOfNumber.valueOf(submitSm.getDestAddrTon()))
+				.setHeader(SmppConstants.DST_NPI, NumberingPlanIndicator.valueOf(submitSm.getDestAddrNpi()))
+				.setHeader(SmppConstants.DATA_CODING, submitSm.getDataCoding())
+				.setHeader(SmppConstants.SERVICE_TYPE, submitSm.getServiceType())
+				.setHeader(SmppConstants.PROTOCOL_ID, submitSm.getProtocolId())
+				.setHeader(SmppConstants.PRIORITY_FLAG, submitSm.getPriorityFlag())
+				.setHeader(SmppConstants.VALIDITY_PERIOD, submitSm.getValidityPeriod())
+				.setHeader(SmppConstants.REGISTERED_DELIVERY_MODE, new RegisteredDelivery(submitSm.getRegisteredDelivery()))
+				.setHeader(SmppConstants.OPTIONAL_PARAMETERS, submitSm.getOptionalParameters())
+				.build();
+	}
+
+	@Override
+	public String getComponentType() {
+		return "smpp:server-inbound-channel-adapter";
+	}
+
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.RandomAccessFile;
+import java.io.Serializable;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.ESMClass;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * An append-only file journal of the messages waiting to be submitted.
+ * <p/>
+ * Each message is {@link #append(Message) appended} as a record holding its payload and headers, and
+ * {@link #remove(long) removed} by appending a second record once it was submitted or given up. When
+ * the journal is opened the records are replayed, so the messages which were pending when the
+ * application stopped are {@link #getPending() pending} again. A torn record at the end of the file,
+ * left by a crash in the middle of a write, is detected by its checksum and discarded.
+ * <p/>
+ * The records are written through to the operating system, which survives a crash of the application;
+ * with {@link #setForce(boolean) force} they are also forced to the disk, which survives a crash of
+ * the host at the cost of throughput. Once the removed records outnumber the pending ones, the file is
+ * compacted by rewriting the pending records into a new file.
+ * <p/>
+ * The payload and the header values must be {@link Serializable}. The jsmpp {@link DataCoding} and
+ * {@link ESMClass} headers are stored as their byte value, which the message specification accepts as
+ * well; the other headers which are not serializable, e.g. a reply channel, are dropped.
+ *
+ * @since 1.1
+ */
+public class FileSubmitJournal {
+
+	/**
+	 * The minimum number of records of the file before it is compacted.
+	 */
+	public static final int COMPACTION_THRESHOLD = 1000;
+
+	private static final byte APPEND = 'A';
+
+	private static final byte REMOVE = 'R';
+
+	private static final Log log = LogFactory.getLog(FileSubmitJournal.class);
+
+	private final File file;
+
+	/**
+	 * The serialized pending messages by id, in the order they were appended.
+	 */
+	private final LinkedHashMap<Long, byte[]> pending = new LinkedHashMap<Long, byte[]>();
+
+	private final CRC32 crc = new CRC32();
+
+	private RandomAccessFile output;
+
+	private long nextId = 1;
+
+	private int records;
+
+	private volatile boolean force;
+
+	/**
+	 * Open the journal, creating the file if it does not exist, and replay its records.
+	 *
+	 * @param file the journal file
+	 * @throws IOException if the file cannot be read or written
+	 */
+	public FileSubmitJournal(File file) throws IOException {
+		Assert.notNull(file, "'file' must not be null");
+		this.file = file;
+		File directory = file.getAbsoluteFile().getParentFile();
+		if (directory != null && !directory.exists() && !directory.mkdirs()) {
+			throw new IOException("cannot create the directory " + directory);
+		}
+		long valid = replay();
+		this.output = new RandomAccessFile(file, "rw");
+		if (this.output.length() > valid) {
+			log.warn("Discarding " + (this.output.length() - valid) + " bytes of incomplete record at the end of "
+					+ file);
+			this.output.setLength(valid);
+		}
+		this.output.seek(valid);
+		if (!this.pending.isEmpty()) {
+			log.info("Recovered " + this.pending.size() + " pending message(s) from " + file);
+		}
+	}
+
+	/**
+	 * Set whether each record is forced to the disk before {@link #append} and {@link #remove} return.
+	 * Default is false.
+	 *
+	 * @param force true to force the records to the disk
+	 */
+	public void setForce(boolean force) {
+		this.force = force;
+	}
+
+	/**
+	 * Record a message.
+	 *
+	 * @param message the message
+	 * @return the id of the message in the journal
+	 * @throws IOException if the record cannot be written
+	 */
+	public synchronized long append(Message<?> message) throws IOException {
+		Assert.state(this.output != null, "the journal is closed");
+		byte[] serialized = serialize(message);
+		long id = this.nextId++;
+		write(APPEND, id, serialized);
+		this.pending.put(id, serialized);
+		return id;
+	}
+
+	/**
+	 * Record that a message is no longer pending.
+	 *
+	 * @param id the id returned by {@link #append}
+	 * @throws IOException if the record cannot be written
+	 */
+	public synchronized void remove(long id) throws IOException {
+		Assert.state(this.output != null, "the journal is closed");
+		if (this.pending.remove(id) == null) {
+			return;
+		}
+		write(REMOVE, id, null);
+		if (this.records >= COMPACTION_THRESHOLD && this.records > 2 * this.pending.size()) {
+			compact();
+		}
+	}
+
+	/**
+	 * @return the pending messages by id, in the order they were appended
+	 * @throws IOException if a message cannot be deserialized
+	 */
+	public synchronized Map<Long, Message<?>> getPending() throws IOException {
+		Map<Long, Message<?>> messages = new LinkedHashMap<Long, Message<?>>();
+		for (Map.Entry<Long, byte[]> entry : this.pending.entrySet()) {
+			messages.put(entry.getKey(), deserialize(entry.getValue()));
+		}
+		return messages;
+	}
+
+	/**
+	 * @return the number of pending messages
+	 */
+	public synchronized int getPendingCount() {
+		return this.pending.size();
+	}
+
+	public File getFile() {
+		return this.file;
+	}
+
+	/**
+	 * Close the file. The pending messages are replayed when the journal is opened again.
+	 *
+	 * @throws IOException if the file cannot be closed
+	 */
+	public synchronized void close() throws IOException {
+		if (this.output != null) {
+			this.output.close();
+			this.output = null;
+		}
+	}
+
+	/**
+	 * Read the records of the file.
+	 * @return the length of the valid records
+	 */
+	private long replay() throws IOException {
+		if (!this.file.exists()) {
+			return 0;
+		}
+		DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+		long valid = 0;
+		try {
+			while (true) {
+				byte type = input.readByte();
+				long id = input.readLong();
+				int length = input.readInt();
+				if ((type != APPEND && type != REMOVE) || length < 0 || length > this.file.length()) {
+					break;
+				}
+				byte[] content = new byte[length];
+				input.readFully(content);
+				if (input.readLong() != checksum(type, id, content)) {
+					break;
+				}
+				if (type == APPEND) {
+					this.pending.put(id, content);
+				}
+				else {
+					this.pending.remove(id);
+				}
+				this.nextId = Math.max(this.nextId, id + 1);
+				this.records++;
+				valid += 21 + length;
+			}
+		}
+		catch (EOFException e) {
+			// end of the file, possibly in the middle of a torn record
+		}
+		finally {
+			input.close();
+		}
+		return valid;
+	}
+
+	private void write(byte type, long id, byte[] content) throws IOException {
+		writeRecord(this.output, type, id, content);
+		if (this.force) {
+			this.output.getChannel().force(false);
+		}
+		this.records++;
+	}
+
+	private void writeRecord(RandomAccessFile target, byte type, long id, byte[] content) throws IOException {
+		int length = content != null ? content.length : 0;
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream(21 + length);
+		DataOutputStream record = new DataOutputStream(buffer);
+		record.writeByte(type);
+		record.writeLong(id);
+		record.writeInt(length);
+		if (content != null) {
+			record.write(content);
+		}
+		record.writeLong(checksum(type, id, content != null ? content : new byte[0]));
+		// a single write, so that a failure leaves at most one torn record
+		target.write(buffer.toByteArray());
+	}
+
+	private long checksum(byte type, long id, byte[] content) {
+		this.crc.reset();
+		this.crc.update(type);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			this.crc.update((int) (id >>> shift));
+		}
+		this.crc.update(content);
+		return this.crc.getValue();
+	}
+
+	private void compact() throws IOException {
+		File compacted = new File(this.file.getPath() + ".compact");
+		this.output.close();
+		try {
+			writePending(compacted);
+			if (!compacted.renameTo(this.file)) {
+				// some platforms do not replace an existing file
+				if (!this.file.delete() || !compacted.renameTo(this.file)) {
+					throw new IOException("cannot replace " + this.file + " by " + compacted);
+				}
+			}
+			this.records = this.pending.size();
+			if (log.isDebugEnabled()) {
+				log.debug("Compacted " + this.file + " to " + this.pending.size() + " pending message(s)");
+			}
+		}
+		catch (IOException e) {
+			log.error("Failed to compact " + this.file + "; trying again after " + COMPACTION_THRESHOLD
+					+ " records", e);
+			compacted.delete();
+			if (!this.file.exists()) {
+				writePending(this.file);
+			}
+			this.records = 0;
+		}
+		this.output = new RandomAccessFile(this.file, "rw");
+		this.output.seek(this.output.length());
+	}
+
+	private void writePending(File target) throws IOException {
+		RandomAccessFile out = new RandomAccessFile(target, "rw");
+		try {
+			out.setLength(0);
+			for (Map.Entry<Long, byte[]> entry : this.pending.entrySet()) {
+				writeRecord(out, APPEND, entry.getKey(), entry.getValue());
+			}
+			out.getChannel().force(true);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	private static byte[] serialize(Message<?> message) throws IOException {
+		Object payload = message.getPayload();
+		Assert.isInstanceOf(Serializable.class, payload, "the payload must be serializable");
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		ObjectOutputStream output = new ObjectOutputStream(buffer);
+		output.writeObject(payload);
+		Map<String, Object> headers = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Object> header : message.getHeaders().entrySet()) {
+			String name = header.getKey();
+			Object value = header.getValue();
+			if (MessageHeaders.ID.equals(name) || MessageHeaders.TIMESTAMP.equals(name)) {
+				continue;
+			}
+			if (value instanceof DataCoding) {
+				value = ((DataCoding) value).toByte();
+			}
+			else if (value instanceof ESMClass) {
+				value = ((ESMClass) value).value();
+			}
+			if (value instanceof Serializable) {
+				headers.put(name, value);
+			}
+			else if (log.isDebugEnabled()) {
+				log.debug("Not journaling the header '" + name + "', its value is not serializable");
+			}
+		}
+		output.writeObject(headers);
+		output.close();
+		return buffer.toByteArray();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Message<?> deserialize(byte[] serialized) throws IOException {
+		ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(serialized));
+		try {
+			Object payload = input.readObject();
+			Map<String, Object> headers = (Map<String, Object>) input.readObject();
+			return MessageBuilder.withPayload(payload).copyHeaders(headers).build();
+		}
+		catch (ClassNotFoundException e) {
+			throw new IOException("cannot deserialize a journaled message", e);
+		}
+		finally {
+			input.close();
+		}
+	}
+
+}
@@ -1,4 +1,4 @@
-/* Copyright 2002-2014 the original author or authors.
+/* Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,17 +15,25 @@
 package org.springframework.integration.smpp.outbound;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.jsmpp.bean.BindType;
 import org.jsmpp.bean.TypeOfNumber;
 import org.jsmpp.util.AbsoluteTimeFormatter;
 import org.jsmpp.util.TimeFormatter;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.context.IntegrationObjectSupport;
+import org.springframework.integration.smpp.core.DeliveryReceiptCorrelator;
 import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.core.SmppMetrics;
 import org.springframework.integration.smpp.session.ExtendedSmppSession;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
 import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
 import org.springframework.messaging.MessagingException;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
@@ -39,12 +47,21 @@ import org.springframework.util.StringUtils;
  * <p/>
  * This adapter supports  <em>mobile terminated (MT)</em> messaging, where the recipient
  * is a directory phone number.
+ * <p/>
+ * By default each message is sent synchronously. With a {@link #setWindowSize(int) window size}
+ * greater than 1, up to that many messages are outstanding on the session at the same time
+ * (see {@link SmppSubmitWindow}); the results are then reported to the
+ * {@link #setSubmitCallback(SmppSubmitCallback) submit callback}, and by default failures are
+ * sent to the <code>errorChannel</code>.
+ * <p/>
+ * With a {@link #setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator) delivery receipt correlator},
+ * the message IDs of the messages requesting a delivery receipt are recorded for correlation.
  *
  * @author Josh Long
  * @author Edge Dalmacio
  * @since 1.0
  */
-public class SmppOutboundChannelAdapter extends IntegrationObjectSupport implements MessageHandler {
+public class SmppOutboundChannelAdapter extends IntegrationObjectSupport implements MessageHandler, DisposableBean {
 
 	private String defaultSourceAddress;
 
@@ -54,6 +71,20 @@ public class SmppOutboundChannelAdapter extends IntegrationObjectSupport impleme
 
 	private ExtendedSmppSession smppSession;
 
+	private int windowSize = 1;
+
+	private long windowTimeout = -1;
+
+	private Executor taskExecutor;
+
+	private SmppSubmitCallback submitCallback;
+
+	private SmppSubmitWindow submitWindow;
+
+	private DeliveryReceiptCorrelator deliveryReceiptCorrelator;
+
+	private SmppMetrics metrics;
+
 	public void setDefaultSourceAddress(String defaultSourceAddress) {
 		this.defaultSourceAddress = defaultSourceAddress;
 	}
@@ -66,6 +97,67 @@ public class SmppOutboundChannelAdapter extends IntegrationObjectSupport impleme
 		this.timeFormatter = timeFormatter;
 	}
 
+	/**
+	 * Set the maximum number of messages awaiting their <code>submit_sm_resp</code> at the
+	 * same time. Default is 1, which sends each message synchronously on the caller's thread.
+	 *
+	 * @param windowSize the window size
+	 */
+	public void setWindowSize(int windowSize) {
+		Assert.isTrue(windowSize > 0, "'windowSize' must be greater than 0");
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Set how long to wait for a free slot when the window is full, in milliseconds.
+	 * Default is -1, which waits indefinitely.
+	 *
+	 * @param windowTimeout the timeout in milliseconds
+	 */
+	public void setWindowTimeout(long windowTimeout) {
+		this.windowTimeout = windowTimeout;
+	}
+
+	/**
+	 * Set the executor performing the windowed submissions. By default a fixed thread pool
+	 * of {@link #setWindowSize(int) window size} threads is used.
+	 *
+	 * @param taskExecutor the executor
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the callback notified about the outcome of the windowed submissions.
+	 *
+	 * @param submitCallback the callback
+	 */
+	public void setSubmitCallback(SmppSubmitCallback submitCallback) {
+		this.submitCallback = submitCallback;
+	}
+
+	/**
+	 * Set the correlator recording the message IDs of the messages sent with a delivery receipt
+	 * request, so that the receipts received by an inbound endpoint are correlated with them.
+	 *
+	 * @param deliveryReceiptCorrelator the correlator
+	 */
+	public void setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator deliveryReceiptCorrelator) {
+		this.deliveryReceiptCorrelator = deliveryReceiptCorrelator;
+	}
+
+	/**
+	 * Set the metrics recording the time taken to send each message, from its arrival to the last
+	 * response, and the slots taken in the submit window. Usually shared with the session factory.
+	 *
+	 * @param metrics the metrics
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	@Override
 	protected void onInit() throws Exception {
 		if (this.timeFormatter == null) {
@@ -76,6 +168,14 @@ public class SmppOutboundChannelAdapter extends IntegrationObjectSupport impleme
 		Assert.isTrue(!this.smppSession.getBindType().equals(BindType.BIND_RX),
 				"the BindType must support message production: BindType.TX or BindType.TRX only supported");
 
+		if (this.windowSize > 1) {
+			this.submitWindow = new SmppSubmitWindow(this.windowSize, this.taskExecutor);
+			this.submitWindow.setMetrics(this.metrics);
+			if (this.submitCallback == null) {
+				this.submitCallback = new ErrorChannelSubmitCallback();
+			}
+		}
+
 		this.smppSession.start();
 
 	}
@@ -99,28 +199,94 @@ public class SmppOutboundChannelAdapter extends IntegrationObjectSupport impleme
 	@Override
 	public void handleMessage(Message<?> message) throws MessagingException {
 
+		long start = System.nanoTime();
 		try {
-			// todo support a gateway and have that gateway also handle message delivery receipt notifications
-			// that will correlate this smsMessageId with the ID that comes back asynchronously
-			// from the SMSC indicating that the message has been delivered.
-			// this could require that we keep a correlation map since its possible upstream SMSC
-			// unused return value -- see gateway
-
+			// the message ID(s) are only used to correlate the delivery receipts, when requested
 			SmesMessageSpecification specification = applyDefaultsIfNecessary(
 					SmesMessageSpecification.fromMessage(this.smppSession, message)
-							.setTimeFormatter(this.timeFormatter));
+							.setTimeFormatter(this.timeFormatter)
+							.setDeliveryReceiptCorrelator(this.deliveryReceiptCorrelator, message));
+
+			if (this.submitWindow != null) {
+				if (!this.submitWindow.submit(message, specification, this.submitCallback, this.windowTimeout)) {
+					throw new MessageDeliveryException(message,
+							"no slot was released in the submit window within " + this.windowTimeout + " ms");
+				}
+				return;
+			}
 
-			List<String> smsMessageId = specification.send();
-			logger.debug( "sent message : "+message.getPayload());
-			logger.debug("message ID(s) for the sent message: " + smsMessageId);
+			try {
+				List<String> smsMessageId = specification.send();
+				if (this.metrics != null) {
+					this.metrics.messageSent(start);
+				}
+				logger.debug( "sent message : "+message.getPayload());
+				logger.debug("message ID(s) for the sent message: " + smsMessageId);
+				if (!specification.getUnsuccessfulDeliveries().isEmpty()) {
+					logger.warn("the SMSC did not accept the message for some destinations: "
+							+ specification.getUnsuccessfulDeliveries());
+				}
+			}
+			finally {
+				specification.release();
+			}
+		} catch (MessagingException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(message, "interrupted while waiting for the submit window", e);
 		} catch (Exception e) {
 			throw new RuntimeException("Exception in trying to process the inbound SMPP message", e);
 		}
 	}
 
+	/**
+	 * @return the window of outstanding submissions, or null when sending synchronously
+	 */
+	public SmppSubmitWindow getSubmitWindow() {
+		return this.submitWindow;
+	}
+
+	public void destroy() throws Exception {
+		if (this.submitWindow != null) {
+			this.submitWindow.shutdown();
+		}
+	}
+
 	@Override
 	public String getComponentType() {
 		return "smpp:outbound-channel-adapter";
 	}
 
+	/**
+	 * Default callback for the windowed submissions: logs the message IDs and sends
+	 * an {@link org.springframework.messaging.support.ErrorMessage} for each failure.
+	 */
+	private class ErrorChannelSubmitCallback implements SmppSubmitCallback {
+
+		private final MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+
+		ErrorChannelSubmitCallback() {
+			if (getBeanFactory() != null) {
+				this.errorHandler.setBeanFactory(getBeanFactory());
+			}
+		}
+
+		public void onSubmitted(Message<?> message, List<String> messageIds) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("message ID(s) for the sent message: " + messageIds);
+			}
+			if (message.getHeaders().containsKey(SmppConstants.UNSUCCESSFUL_DELIVERIES)) {
+				logger.warn("the SMSC did not accept the message for some destinations: "
+						+ message.getHeaders().get(SmppConstants.UNSUCCESSFUL_DELIVERIES));
+			}
+		}
+
+		public void onFailure(Message<?> message, Exception exception) {
+			this.errorHandler.handleError(new MessageHandlingException(message,
+					"Exception in trying to send the SMPP message", exception));
+		}
+
+	}
+
 }
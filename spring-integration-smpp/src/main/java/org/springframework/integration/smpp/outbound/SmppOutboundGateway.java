@@ -1,4 +1,4 @@
-/* Copyright 2002-2014 the original author or authors.
+/* Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,17 +15,25 @@
 package org.springframework.integration.smpp.outbound;
 
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import org.jsmpp.bean.BindType;
 import org.jsmpp.bean.TypeOfNumber;
 import org.jsmpp.util.AbsoluteTimeFormatter;
 import org.jsmpp.util.TimeFormatter;
 
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
 import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.integration.smpp.core.DeliveryReceiptCorrelator;
 import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.core.SmppMetrics;
 import org.springframework.integration.smpp.session.ExtendedSmppSession;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandlingException;
 import org.springframework.util.Assert;
 import org.springframework.util.StringUtils;
 
@@ -40,17 +48,30 @@ import org.springframework.util.StringUtils;
  * of waiting for the reply and correlating it to the outbound request.
  * <p/>
  * By default this component assumes one {@link org.jsmpp.session.SMPPSession} in
- * "transceiver" mode - it can both request and reply. Conceptually it should be possible
- * to support two {@link org.jsmpp.session.SMPPSession}running, one in "sender" mode,
- * and another in "receiver" mode and handle the duplexing manually.
+ * "transceiver" mode - it can both request and reply. Two sessions, one in "sender" mode
+ * and another in "receiver" mode, can be used as one transceiver with a
+ * {@link org.springframework.integration.smpp.session.DuplexSmppSession}.
  * The correlation logic is the same, in any event.
  * <p/>
+ * With a {@link #setWindowSize(int) window size} greater than 1 the requests are sent
+ * through a {@link SmppSubmitWindow}: the calling thread returns as soon as the request is
+ * written, and the reply is produced when the <code>submit_sm_resp</code> arrives. Failures
+ * are then sent to the <code>errorChannel</code> header, or the default <code>errorChannel</code>.
+ * <p/>
+ * When the {@link SmppConstants#DST_ADDR} header holds several addresses, the message is sent with
+ * <code>submit_multi</code> and the destinations the SMSC did not accept are reported in the
+ * {@link SmppConstants#UNSUCCESSFUL_DELIVERIES} header of the reply.
+ * <p/>
+ * With a {@link #setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator) delivery receipt correlator} shared
+ * with the inbound endpoint receiving the receipts, the receipts of the requests are emitted with the ID of
+ * the request message as <code>correlationId</code>.
+ * <p/>
  *
  * @author Josh Long
  * @author Edge Dalmacio
  * @since 1.0
  */
-public class SmppOutboundGateway extends AbstractReplyProducingMessageHandler {
+public class SmppOutboundGateway extends AbstractReplyProducingMessageHandler implements DisposableBean {
 	@Override
 	protected void doInit() {
         super.doInit();
@@ -59,22 +80,56 @@ public class SmppOutboundGateway extends AbstractReplyProducingMessageHandler {
 						this.smppSession.getBindType().equals(BindType.BIND_TRX),
 				"the smppSession's bindType must be BindType.BIND_TX or BindType.BIND_TRX");
 
+		if (this.windowSize > 1) {
+			this.submitWindow = new SmppSubmitWindow(this.windowSize, this.taskExecutor);
+			this.submitWindow.setMetrics(this.metrics);
+		}
+
 		this.smppSession.start();
 	}
 
 	@Override
 	protected Object handleRequestMessage(Message<?> requestMessage) {
+		long start = System.nanoTime();
 		try {
 
 			SmesMessageSpecification specification = applyDefaultsIfNecessary(
 					SmesMessageSpecification.fromMessage(this.smppSession, requestMessage)
-							.setTimeFormatter(this.timeFormatter));
+							.setTimeFormatter(this.timeFormatter)
+							.setDeliveryReceiptCorrelator(this.deliveryReceiptCorrelator, requestMessage));
 
-			List<String> smsMessageId = specification.send();
+			if (this.submitWindow != null) {
+				if (!this.submitWindow.submit(requestMessage, specification, this.replyProducingCallback,
+						this.windowTimeout)) {
+					throw new MessageDeliveryException(requestMessage,
+							"no slot was released in the submit window within " + this.windowTimeout + " ms");
+				}
+				// the reply is produced by the callback
+				return null;
+			}
 
-			logger.debug("message ID(s) for the sent message: " + smsMessageId);
+			try {
+				List<String> smsMessageId = specification.send();
+				if (this.metrics != null) {
+					this.metrics.messageSent(start);
+				}
 
-			return MessageBuilder.withPayload(smsMessageId).build();
+				logger.debug("message ID(s) for the sent message: " + smsMessageId);
+
+				MessageBuilder<List<String>> reply = MessageBuilder.withPayload(smsMessageId);
+				if (!specification.getUnsuccessfulDeliveries().isEmpty()) {
+					reply.setHeader(SmppConstants.UNSUCCESSFUL_DELIVERIES, specification.getUnsuccessfulDeliveries());
+				}
+				return reply.build();
+			}
+			finally {
+				specification.release();
+			}
+		} catch (MessageDeliveryException e) {
+			throw e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(requestMessage, "interrupted while waiting for the submit window", e);
 		} catch (Exception e) {
 			throw new RuntimeException("Exception in trying to process the inbound SMPP message", e);
 		}
@@ -88,6 +143,46 @@ public class SmppOutboundGateway extends AbstractReplyProducingMessageHandler {
 
 	private ExtendedSmppSession smppSession;
 
+	private int windowSize = 1;
+
+	private long windowTimeout = -1;
+
+	private Executor taskExecutor;
+
+	private SmppSubmitWindow submitWindow;
+
+	private DeliveryReceiptCorrelator deliveryReceiptCorrelator;
+
+	private SmppMetrics metrics;
+
+	private final SmppSubmitCallback replyProducingCallback = new SmppSubmitCallback() {
+
+		private volatile MessagePublishingErrorHandler errorHandler;
+
+		public void onSubmitted(Message<?> message, List<String> messageIds) {
+			logger.debug("message ID(s) for the sent message: " + messageIds);
+			MessageBuilder<List<String>> reply = MessageBuilder.withPayload(messageIds);
+			if (message.getHeaders().containsKey(SmppConstants.UNSUCCESSFUL_DELIVERIES)) {
+				reply.setHeader(SmppConstants.UNSUCCESSFUL_DELIVERIES,
+						message.getHeaders().get(SmppConstants.UNSUCCESSFUL_DELIVERIES));
+			}
+			produceReply(reply.build(), message.getHeaders());
+		}
+
+		public void onFailure(Message<?> message, Exception exception) {
+			if (this.errorHandler == null) {
+				MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+				if (getBeanFactory() != null) {
+					errorHandler.setBeanFactory(getBeanFactory());
+				}
+				this.errorHandler = errorHandler;
+			}
+			this.errorHandler.handleError(new MessageHandlingException(message,
+					"Exception in trying to send the SMPP message", exception));
+		}
+
+	};
+
 	public void setDefaultSourceAddress(String defaultSourceAddress) {
 		this.defaultSourceAddress = defaultSourceAddress;
 	}
@@ -116,6 +211,71 @@ public class SmppOutboundGateway extends AbstractReplyProducingMessageHandler {
 		this.smppSession = s;
 	}
 
+	/**
+	 * Set the maximum number of requests awaiting their <code>submit_sm_resp</code> at the
+	 * same time. Default is 1, which sends each request synchronously on the caller's thread.
+	 *
+	 * @param windowSize the window size
+	 */
+	public void setWindowSize(int windowSize) {
+		Assert.isTrue(windowSize > 0, "'windowSize' must be greater than 0");
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * Set how long to wait for a free slot when the window is full, in milliseconds.
+	 * Default is -1, which waits indefinitely.
+	 *
+	 * @param windowTimeout the timeout in milliseconds
+	 */
+	public void setWindowTimeout(long windowTimeout) {
+		this.windowTimeout = windowTimeout;
+	}
+
+	/**
+	 * Set the executor performing the windowed submissions. By default a fixed thread pool
+	 * of {@link #setWindowSize(int) window size} threads is used.
+	 *
+	 * @param taskExecutor the executor
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * Set the correlator recording the message IDs of the messages sent with a delivery receipt
+	 * request, so that the receipts received by an inbound endpoint are correlated with them.
+	 *
+	 * @param deliveryReceiptCorrelator the correlator
+	 */
+	public void setDeliveryReceiptCorrelator(DeliveryReceiptCorrelator deliveryReceiptCorrelator) {
+		this.deliveryReceiptCorrelator = deliveryReceiptCorrelator;
+	}
+
+	/**
+	 * Set the metrics recording the time taken to send each message, from its arrival to the last
+	 * response, and the slots taken in the submit window. Usually shared with the session factory.
+	 *
+	 * @param metrics the metrics
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the window of outstanding submissions, or null when sending synchronously
+	 */
+	public SmppSubmitWindow getSubmitWindow() {
+		return this.submitWindow;
+	}
+
+	public void destroy() throws Exception {
+		if (this.submitWindow != null) {
+			this.submitWindow.shutdown();
+		}
+	}
+
 	@Override
 	public String getComponentType() {
 		return "smpp:outbound-gateway";
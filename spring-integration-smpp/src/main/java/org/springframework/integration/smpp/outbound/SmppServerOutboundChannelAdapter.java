@@ -0,0 +1,159 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
+import org.jsmpp.bean.MessageType;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.TypeOfNumber;
+
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.context.IntegrationObjectSupport;
+import org.springframework.integration.smpp.core.DataCodingSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.session.SmppServer;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * Delivers messages to the ESMEs bound to a {@link SmppServer}, as <code>deliver_sm</code> PDUs.
+ * <p/>
+ * The ESME is the one of the {@link SmppConstants#SYSTEM_ID} header. A {@link DeliveryReceipt} payload is
+ * delivered as a delivery receipt, a {@link String} payload as a mobile originated message encoded with the
+ * {@link SmppConstants#DATA_CODING} header, in the <code>message_payload</code> optional parameter when it
+ * exceeds 254 octets. The addresses are taken from the {@link SmppConstants#SRC_ADDR} and
+ * {@link SmppConstants#DST_ADDR} headers.
+ * <p/>
+ * The handler returns once the message is handed to the server, which sends it asynchronously; the
+ * failures are sent to the <code>errorChannel</code>.
+ *
+ * @since 1.1
+ * @see org.springframework.integration.smpp.inbound.SmppServerInboundChannelAdapter
+ */
+public class SmppServerOutboundChannelAdapter extends IntegrationObjectSupport implements MessageHandler {
+
+	private static final int MAX_SHORT_MESSAGE_LENGTH = 254;
+
+	private SmppServer smppServer;
+
+	private volatile MessagePublishingErrorHandler errorHandler;
+
+	/**
+	 * @param smppServer the server accepting the binds of the ESMEs
+	 */
+	public void setSmppServer(SmppServer smppServer) {
+		this.smppServer = smppServer;
+	}
+
+	@Override
+	protected void onInit() throws Exception {
+		Assert.notNull(this.smppServer, "the 'smppServer' property must be set");
+		MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+		if (getBeanFactory() != null) {
+			errorHandler.setBeanFactory(getBeanFactory());
+		}
+		this.errorHandler = errorHandler;
+	}
+
+	public void handleMessage(final Message<?> message) throws MessagingException {
+		String systemId = message.getHeaders().get(SmppConstants.SYSTEM_ID, String.class);
+		if (systemId == null) {
+			throw new MessageHandlingException(message, "the '" + SmppConstants.SYSTEM_ID + "' header is required");
+		}
+		try {
+			this.smppServer.deliver(systemId, toDeliverSm(message)).addCallback(new ListenableFutureCallback<Void>() {
+
+				public void onSuccess(Void result) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("delivered message: " + message);
+					}
+				}
+
+				public void onFailure(Throwable t) {
+					errorHandler.handleError(new MessageHandlingException(message,
+							"Exception in trying to deliver the SMPP message", t));
+				}
+
+			});
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new MessageDeliveryException(message, "interrupted while waiting for the window of the bind", e);
+		}
+		catch (Exception e) {
+			throw new MessageDeliveryException(message, "the message cannot be delivered to '" + systemId + "'", e);
+		}
+	}
+
+	private DeliverSm toDeliverSm(Message<?> message) {
+		DeliverSm deliverSm = new DeliverSm();
+		deliverSm.setSourceAddr(message.getHeaders().get(SmppConstants.SRC_ADDR, String.class));
+		deliverSm.setDestAddress(message.getHeaders().get(SmppConstants.DST_ADDR, String.class));
+		TypeOfNumber sourceTon = message.getHeaders().get(SmppConstants.SRC_TON, TypeOfNumber.class);
+		NumberingPlanIndicator sourceNpi = message.getHeaders().get(SmppConstants.SRC_NPI, NumberingPlanIndicator.class);
+		TypeOfNumber destinationTon = message.getHeaders().get(SmppConstants.DST_TON, TypeOfNumber.class);
+		NumberingPlanIndicator destinationNpi =
+				message.getHeaders().get(SmppConstants.DST_NPI, NumberingPlanIndicator.class);
+		deliverSm.setSourceAddrTon((sourceTon != null ? sourceTon : TypeOfNumber.UNKNOWN).value());
+		deliverSm.setSourceAddrNpi((sourceNpi != null ? sourceNpi : NumberingPlanIndicator.UNKNOWN).value());
+		deliverSm.setDestAddrTon((destinationTon != null ? destinationTon : TypeOfNumber.UNKNOWN).value());
+		deliverSm.setDestAddrNpi((destinationNpi != null ? destinationNpi : NumberingPlanIndicator.UNKNOWN).value());
+
+		Object payload = message.getPayload();
+		if (payload instanceof DeliveryReceipt) {
+			deliverSm.setEsmClass(MessageType.SMSC_DEL_RECEIPT.value());
+			deliverSm.setShortMessage(payload.toString().getBytes());
+			return deliverSm;
+		}
+		Assert.isInstanceOf(String.class, payload, "the payload must be a String or a DeliveryReceipt");
+		byte dataCoding = dataCoding(message.getHeaders().get(SmppConstants.DATA_CODING));
+		byte[] bytes = DataCodingSpecification.getMessageInBytes((String) payload, dataCoding);
+		deliverSm.setDataCoding(dataCoding);
+		if (bytes.length > MAX_SHORT_MESSAGE_LENGTH) {
+			deliverSm.setShortMessage(new byte[0]);
+			deliverSm.setOptionalParameters(
+					new OptionalParameter.OctetString(OptionalParameter.Tag.MESSAGE_PAYLOAD.code(), bytes));
+		}
+		else {
+			deliverSm.setShortMessage(bytes);
+		}
+		return deliverSm;
+	}
+
+	private static byte dataCoding(Object header) {
+		if (header instanceof DataCoding) {
+			return ((DataCoding) header).toByte();
+		}
+		if (header instanceof Byte) {
+			return (Byte) header;
+		}
+		return 0;
+	}
+
+	@Override
+	public String getComponentType() {
+		return "smpp:server-outbound-channel-adapter";
+	}
+
+}
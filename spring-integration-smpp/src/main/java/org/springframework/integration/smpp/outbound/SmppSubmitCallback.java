@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import java.util.List;
+
+import org.springframework.messaging.Message;
+
+/**
+ * Callback notified when a message submitted through a {@link SmppSubmitWindow} has been
+ * acknowledged by the SMSC (<code>submit_sm_resp</code>), or when the submission failed.
+ * <p/>
+ * Callbacks are invoked on the thread which performed the submission, so implementations
+ * should not block for long: the slot of the window is held until the callback returns.
+ *
+ * @since 1.1
+ */
+public interface SmppSubmitCallback {
+
+	/**
+	 * Invoked once all the parts of the message have been accepted by the SMSC.
+	 * <p/>
+	 * For a message sent with <code>submit_multi</code>, the destinations the SMSC did not accept
+	 * are listed in the {@link org.springframework.integration.smpp.core.SmppConstants#UNSUCCESSFUL_DELIVERIES}
+	 * header of the message.
+	 *
+	 * @param message the message that was sent
+	 * @param messageIds the SMSC message ID of each part, in order
+	 */
+	void onSubmitted(Message<?> message, List<String> messageIds);
+
+	/**
+	 * Invoked when the message could not be submitted, e.g. on a negative response,
+	 * a response timeout or a broken connection.
+	 *
+	 * @param message the message that was sent
+	 * @param exception the reason of the failure
+	 */
+	void onFailure(Message<?> message, Exception exception);
+
+}
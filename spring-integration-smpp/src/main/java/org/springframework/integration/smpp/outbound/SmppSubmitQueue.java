@@ -0,0 +1,538 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.extra.ResponseTimeoutException;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.integration.channel.MessagePublishingErrorHandler;
+import org.springframework.integration.smpp.session.ExtendedSmppSession;
+import org.springframework.integration.smpp.util.TokenBucket;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.util.Assert;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * A store-and-forward queue in front of an SMPP outbound endpoint, typically a
+ * {@link SmppOutboundChannelAdapter}.
+ * <p/>
+ * {@link #handleMessage} only records the message in a {@link FileSubmitJournal} and returns, so the
+ * upstream flow is neither blocked nor failed while the SMSC is slow or the session is reconnecting.
+ * The messages are then handed to the delegate handler on a {@link TaskScheduler} thread, in the order
+ * they were recorded, while the {@link #setSmppSession(ExtendedSmppSession) session} is bound and at most at the
+ * {@link #setMaxTps(double) maximum rate}; after a reconnection the queue drains at the sustained rate
+ * instead of a burst.
+ * <p/>
+ * A message failing with a transient error, i.e. a timeout, an I/O error or one of the
+ * {@link #setRetryableCommandStatuses(Set) retryable command statuses}, is retried after an exponential
+ * back-off; the other failures, and the messages exhausting their {@link #setMaxAttempts(int) attempts},
+ * are reported to the {@link ErrorHandler}, by default the error channel. A message leaves the journal
+ * once it was submitted or reported, and the messages left in the journal are sent again when the
+ * application restarts: the delivery is at least once.
+ * <p/>
+ * The delegate must send synchronously, so that its failures reach the queue: do not configure a
+ * submit window on it.
+ *
+ * @since 1.1
+ */
+public class SmppSubmitQueue implements MessageHandler, SmartLifecycle, BeanFactoryAware, InitializingBean,
+		DisposableBean {
+
+	public static final int DEFAULT_CAPACITY = 100000;
+
+	private static final Log log = LogFactory.getLog(SmppSubmitQueue.class);
+
+	private final MessageHandler delegate;
+
+	private final File journalFile;
+
+	/**
+	 * The entries waiting for their next attempt, by due time then journal order.
+	 */
+	private final PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	private final Runnable drainTask = new Runnable() {
+
+		public void run() {
+			drain();
+		}
+
+	};
+
+	private volatile FileSubmitJournal journal;
+
+	private volatile ExtendedSmppSession smppSession;
+
+	private volatile TaskScheduler taskScheduler;
+
+	private volatile boolean internalScheduler;
+
+	private volatile ErrorHandler errorHandler;
+
+	private volatile BeanFactory beanFactory;
+
+	private volatile TokenBucket bucket;
+
+	private volatile ScheduledFuture<?> pollFuture;
+
+	private volatile boolean running;
+
+	private volatile boolean bound;
+
+	private int capacity = DEFAULT_CAPACITY;
+
+	private long pollInterval = 1000;
+
+	private long retryInterval = 1000;
+
+	private long maxRetryInterval = 60000;
+
+	private int maxAttempts;
+
+	private double maxTps;
+
+	private boolean forceWrites;
+
+	private Set<Integer> retryableCommandStatuses = new HashSet<Integer>(Arrays.asList(
+			SMPPConstant.STAT_ESME_RTHROTTLED, SMPPConstant.STAT_ESME_RMSGQFUL, SMPPConstant.STAT_ESME_RSYSERR,
+			SMPPConstant.STAT_ESME_RX_T_APPN));
+
+	private boolean autoStartup = true;
+
+	private int phase = Integer.MAX_VALUE;
+
+	/**
+	 * @param delegate the handler sending the messages, e.g. an {@link SmppOutboundChannelAdapter}
+	 * @param journalFile the file of the journal
+	 */
+	public SmppSubmitQueue(MessageHandler delegate, File journalFile) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		Assert.notNull(journalFile, "'journalFile' must not be null");
+		this.delegate = delegate;
+		this.journalFile = journalFile;
+	}
+
+	/**
+	 * Set the session the messages are sent through; they are only sent while it is bound.
+	 * Default is none, which always sends.
+	 *
+	 * @param smppSession the session of the delegate
+	 */
+	public void setSmppSession(ExtendedSmppSession smppSession) {
+		this.smppSession = smppSession;
+	}
+
+	/**
+	 * Set the scheduler draining the queue; its threads are blocked while sending and waiting for the
+	 * rate limit. By default a dedicated single thread scheduler is used.
+	 *
+	 * @param taskScheduler the scheduler
+	 */
+	public void setTaskScheduler(TaskScheduler taskScheduler) {
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Set the handler of the messages which could not be sent. By default they are sent to the error channel.
+	 *
+	 * @param errorHandler the error handler
+	 */
+	public void setErrorHandler(ErrorHandler errorHandler) {
+		this.errorHandler = errorHandler;
+	}
+
+	/**
+	 * Set the maximum number of pending messages; beyond it {@link #handleMessage} fails with a
+	 * {@link MessageDeliveryException}. Default is {@link #DEFAULT_CAPACITY}.
+	 *
+	 * @param capacity the maximum number of pending messages
+	 */
+	public void setCapacity(int capacity) {
+		Assert.isTrue(capacity > 0, "'capacity' must be greater than 0");
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Set how often the queue checks the session and the retries which became due, in milliseconds.
+	 * Default is 1000.
+	 *
+	 * @param pollInterval the interval in milliseconds
+	 */
+	public void setPollInterval(long pollInterval) {
+		Assert.isTrue(pollInterval > 0, "'pollInterval' must be greater than 0");
+		this.pollInterval = pollInterval;
+	}
+
+	/**
+	 * Set the delay before the first retry of a message, in milliseconds; it doubles with each attempt.
+	 * Default is 1000.
+	 *
+	 * @param retryInterval the initial back-off in milliseconds
+	 */
+	public void setRetryInterval(long retryInterval) {
+		Assert.isTrue(retryInterval > 0, "'retryInterval' must be greater than 0");
+		this.retryInterval = retryInterval;
+	}
+
+	/**
+	 * Set the maximum delay between two attempts of a message, in milliseconds. Default is 60000.
+	 *
+	 * @param maxRetryInterval the maximum back-off in milliseconds
+	 */
+	public void setMaxRetryInterval(long maxRetryInterval) {
+		Assert.isTrue(maxRetryInterval > 0, "'maxRetryInterval' must be greater than 0");
+		this.maxRetryInterval = maxRetryInterval;
+	}
+
+	/**
+	 * Set the maximum number of attempts of a message failing with transient errors. Default is 0,
+	 * which retries until the message is sent.
+	 *
+	 * @param maxAttempts the maximum number of attempts; 0 or less for unlimited
+	 */
+	public void setMaxAttempts(int maxAttempts) {
+		this.maxAttempts = maxAttempts;
+	}
+
+	/**
+	 * Set the maximum number of messages per second handed to the delegate. Default is unlimited.
+	 *
+	 * @param maxTps messages per second; 0 or less for unlimited
+	 */
+	public void setMaxTps(double maxTps) {
+		this.maxTps = maxTps;
+	}
+
+	/**
+	 * Set whether the journal forces each record to the disk. Default is false.
+	 *
+	 * @param forceWrites true to force the records to the disk
+	 * @see FileSubmitJournal#setForce(boolean)
+	 */
+	public void setForceWrites(boolean forceWrites) {
+		this.forceWrites = forceWrites;
+	}
+
+	/**
+	 * Set the command statuses of the negative responses which are retried. Default is
+	 * <code>ESME_RTHROTTLED</code>, <code>ESME_RMSGQFUL</code>, <code>ESME_RSYSERR</code> and
+	 * <code>ESME_RX_T_APPN</code>.
+	 *
+	 * @param retryableCommandStatuses the command statuses
+	 */
+	public void setRetryableCommandStatuses(Set<Integer> retryableCommandStatuses) {
+		Assert.notNull(retryableCommandStatuses, "'retryableCommandStatuses' must not be null");
+		this.retryableCommandStatuses = new HashSet<Integer>(retryableCommandStatuses);
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	public void setBeanFactory(BeanFactory beanFactory) throws BeansException {
+		this.beanFactory = beanFactory;
+	}
+
+	public void afterPropertiesSet() throws Exception {
+		FileSubmitJournal journal = new FileSubmitJournal(this.journalFile);
+		journal.setForce(this.forceWrites);
+		long now = System.currentTimeMillis();
+		synchronized (this.queue) {
+			for (Map.Entry<Long, Message<?>> pending : journal.getPending().entrySet()) {
+				this.queue.add(new Entry(pending.getKey(), pending.getValue(), now));
+			}
+		}
+		this.journal = journal;
+		if (this.maxTps > 0) {
+			this.bucket = new TokenBucket(this.maxTps);
+		}
+		if (this.errorHandler == null) {
+			MessagePublishingErrorHandler errorHandler = new MessagePublishingErrorHandler();
+			if (this.beanFactory != null) {
+				errorHandler.setBeanFactory(this.beanFactory);
+			}
+			this.errorHandler = errorHandler;
+		}
+	}
+
+	/**
+	 * Record the message; it is sent later by the scheduler.
+	 *
+	 * @param message the message to send
+	 * @throws MessageDeliveryException when the queue is full or the message cannot be journaled
+	 */
+	public void handleMessage(Message<?> message) throws MessagingException {
+		Assert.state(this.journal != null, "the queue has not been initialized");
+		synchronized (this.queue) {
+			if (this.journal.getPendingCount() >= this.capacity) {
+				throw new MessageDeliveryException(message, "the submit queue is full: " + this.capacity
+						+ " messages are pending");
+			}
+			long id;
+			try {
+				id = this.journal.append(message);
+			}
+			catch (IOException e) {
+				throw new MessageDeliveryException(message, "cannot journal the message", e);
+			}
+			this.queue.add(new Entry(id, message, System.currentTimeMillis()));
+		}
+		triggerDrain();
+	}
+
+	/**
+	 * @return the number of messages recorded and not yet sent or reported
+	 */
+	public int getPendingCount() {
+		return this.journal != null ? this.journal.getPendingCount() : 0;
+	}
+
+	public void start() {
+		if (this.running) {
+			return;
+		}
+		if (this.taskScheduler == null) {
+			ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+			scheduler.setThreadNamePrefix("smpp-submit-queue-");
+			scheduler.initialize();
+			this.taskScheduler = scheduler;
+			this.internalScheduler = true;
+		}
+		this.running = true;
+		this.pollFuture = this.taskScheduler.scheduleWithFixedDelay(new Runnable() {
+
+			public void run() {
+				triggerDrain();
+			}
+
+		}, this.pollInterval);
+	}
+
+	public void stop() {
+		this.running = false;
+		ScheduledFuture<?> pollFuture = this.pollFuture;
+		if (pollFuture != null) {
+			pollFuture.cancel(false);
+			this.pollFuture = null;
+		}
+	}
+
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	public int getPhase() {
+		return this.phase;
+	}
+
+	public void destroy() throws Exception {
+		stop();
+		if (this.internalScheduler) {
+			((ThreadPoolTaskScheduler) this.taskScheduler).shutdown();
+			this.taskScheduler = null;
+			this.internalScheduler = false;
+		}
+		if (this.journal != null) {
+			this.journal.close();
+		}
+	}
+
+	private void triggerDrain() {
+		if (!this.running || !this.draining.compareAndSet(false, true)) {
+			return;
+		}
+		try {
+			this.taskScheduler.schedule(this.drainTask, new Date());
+		}
+		catch (TaskRejectedException e) {
+			this.draining.set(false);
+			log.warn("Cannot drain the submit queue now: " + e.getMessage());
+		}
+	}
+
+	private void drain() {
+		boolean emptied = false;
+		try {
+			while (this.running) {
+				if (this.smppSession != null && !this.smppSession.getSessionState().isBound()) {
+					this.bound = false;
+					return;
+				}
+				if (!this.bound) {
+					this.bound = true;
+					if (this.bucket != null) {
+						// restart at the sustained rate rather than with the tokens accumulated meanwhile
+						this.bucket.pause(0);
+					}
+				}
+				Entry entry;
+				synchronized (this.queue) {
+					entry = this.queue.peek();
+					if (entry == null) {
+						emptied = true;
+						return;
+					}
+					if (entry.due > System.currentTimeMillis()) {
+						return;
+					}
+					this.queue.poll();
+				}
+				if (this.bucket != null) {
+					this.bucket.acquire();
+				}
+				send(entry);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		finally {
+			this.draining.set(false);
+		}
+		if (emptied) {
+			// a message may have been queued while this drain was finishing
+			synchronized (this.queue) {
+				if (this.queue.isEmpty()) {
+					return;
+				}
+			}
+			triggerDrain();
+		}
+	}
+
+	private void send(Entry entry) {
+		try {
+			this.delegate.handleMessage(entry.message);
+		}
+		catch (Exception e) {
+			entry.attempts++;
+			Throwable transientCause = getTransientCause(e);
+			if (transientCause != null && (this.maxAttempts <= 0 || entry.attempts < this.maxAttempts)) {
+				long delay = Math.min(this.maxRetryInterval,
+						this.retryInterval << Math.min(entry.attempts - 1, 30));
+				if (this.bucket != null && transientCause instanceof NegativeResponseException
+						&& ((NegativeResponseException) transientCause).getCommandStatus()
+								== SMPPConstant.STAT_ESME_RTHROTTLED) {
+					this.bucket.pause(delay);
+				}
+				if (log.isDebugEnabled()) {
+					log.debug("Attempt #" + entry.attempts + " to send message " + entry.id + " failed, retrying in "
+							+ delay + " ms: " + transientCause);
+				}
+				entry.due = System.currentTimeMillis() + delay;
+				synchronized (this.queue) {
+					this.queue.add(entry);
+				}
+				return;
+			}
+			remove(entry);
+			this.errorHandler.handleError(new MessageHandlingException(entry.message,
+					"Exception in trying to send the SMPP message after " + entry.attempts + " attempt(s)", e));
+			return;
+		}
+		remove(entry);
+	}
+
+	private void remove(Entry entry) {
+		try {
+			this.journal.remove(entry.id);
+		}
+		catch (IOException e) {
+			log.error("Cannot remove message " + entry.id + " from the journal; it will be sent again on restart", e);
+		}
+	}
+
+	private Throwable getTransientCause(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof NegativeResponseException) {
+				int status = ((NegativeResponseException) cause).getCommandStatus();
+				return this.retryableCommandStatuses.contains(status) ? cause : null;
+			}
+			if (cause instanceof ResponseTimeoutException || cause instanceof IOException) {
+				return cause;
+			}
+		}
+		return null;
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+
+		private final long id;
+
+		private final Message<?> message;
+
+		private long due;
+
+		private int attempts;
+
+		private Entry(long id, Message<?> message, long due) {
+			this.id = id;
+			this.message = message;
+			this.due = due;
+		}
+
+		public int compareTo(Entry other) {
+			if (this.due != other.due) {
+				return this.due < other.due ? -1 : 1;
+			}
+			return this.id < other.id ? -1 : (this.id == other.id ? 0 : 1);
+		}
+
+	}
+
+}
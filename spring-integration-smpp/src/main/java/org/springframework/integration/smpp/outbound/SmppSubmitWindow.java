@@ -0,0 +1,220 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.core.SmppMetrics;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Implements SMPP <em>windowing</em> for outbound messages: up to {@link #getWindowSize()}
+ * <code>submit_sm</code> requests may be outstanding on a session at the same time,
+ * instead of waiting for each <code>submit_sm_resp</code> before sending the next PDU.
+ * <p/>
+ * Each submission is performed on a worker of the {@link Executor}, and the outcome is
+ * reported through a {@link SmppSubmitCallback}. The jsmpp session writes the PDUs through
+ * a synchronized sender and correlates each <code>submit_sm_resp</code> with its request
+ * by sequence number, so concurrent submissions on one session are pipelined on the wire.
+ * <p/>
+ * When the window is full, {@link #submit} blocks the caller until a slot is released or
+ * the timeout elapses, which pushes back on the upstream flow instead of overrunning the SMSC.
+ *
+ * @since 1.1
+ */
+public class SmppSubmitWindow {
+
+	private static final Log log = LogFactory.getLog(SmppSubmitWindow.class);
+
+	private final int windowSize;
+
+	private final Semaphore window;
+
+	private final Executor executor;
+
+	private final boolean internalExecutor;
+
+	private volatile SmppMetrics metrics;
+
+	/**
+	 * Create a window backed by an internal fixed thread pool with one thread per slot.
+	 *
+	 * @param windowSize the maximum number of outstanding submissions
+	 */
+	public SmppSubmitWindow(int windowSize) {
+		this(windowSize, null);
+	}
+
+	/**
+	 * Create a window which performs the submissions on the provided executor.
+	 * The executor should provide at least <code>windowSize</code> threads,
+	 * otherwise the effective window is the number of its threads.
+	 *
+	 * @param windowSize the maximum number of outstanding submissions
+	 * @param executor the executor, or null to use an internal fixed thread pool
+	 */
+	public SmppSubmitWindow(int windowSize, Executor executor) {
+		Assert.isTrue(windowSize > 0, "'windowSize' must be greater than 0");
+		this.windowSize = windowSize;
+		this.window = new Semaphore(windowSize);
+		if (executor == null) {
+			this.executor = Executors.newFixedThreadPool(windowSize,
+					new CustomizableThreadFactory("smpp-submit-"));
+			this.internalExecutor = true;
+		}
+		else {
+			this.executor = executor;
+			this.internalExecutor = false;
+		}
+	}
+
+	/**
+	 * Set the metrics recording the slots taken and the time from {@link #submit} to the response.
+	 *
+	 * @param metrics the metrics, or null
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Submit the message described by the specification once a slot of the window is free.
+	 *
+	 * @param message the message being sent, handed back to the callback
+	 * @param specification the specification to {@link SmesMessageSpecification#send() send}; it is
+	 * {@link SmesMessageSpecification#release() released} once the callback returned, or at once when
+	 * the submission is not scheduled
+	 * @param callback the callback to notify about the outcome
+	 * @param timeout how long to wait for a free slot in milliseconds; negative to wait indefinitely
+	 * @return true if the submission was scheduled, false if no slot was released in time
+	 * @throws InterruptedException if interrupted while waiting for a free slot
+	 */
+	public boolean submit(final Message<?> message, final SmesMessageSpecification specification,
+			final SmppSubmitCallback callback, long timeout) throws InterruptedException {
+		Assert.notNull(specification, "'specification' must not be null");
+		Assert.notNull(callback, "'callback' must not be null");
+		final long start = System.nanoTime();
+		boolean acquired = false;
+		try {
+			if (timeout < 0) {
+				this.window.acquire();
+				acquired = true;
+			}
+			else {
+				acquired = this.window.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+			}
+		}
+		finally {
+			if (!acquired) {
+				specification.release();
+			}
+		}
+		if (!acquired) {
+			return false;
+		}
+		final SmppMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.windowAcquired();
+		}
+		try {
+			this.executor.execute(new Runnable() {
+
+				public void run() {
+					try {
+						List<String> messageIds;
+						try {
+							messageIds = specification.send();
+						}
+						catch (Exception e) {
+							callback.onFailure(message, e);
+							return;
+						}
+						if (metrics != null) {
+							metrics.messageSent(start);
+						}
+						if (specification.getUnsuccessfulDeliveries().isEmpty()) {
+							callback.onSubmitted(message, messageIds);
+						}
+						else {
+							callback.onSubmitted(MessageBuilder.fromMessage(message)
+									.setHeader(SmppConstants.UNSUCCESSFUL_DELIVERIES,
+											specification.getUnsuccessfulDeliveries())
+									.build(), messageIds);
+						}
+					}
+					catch (RuntimeException e) {
+						log.error("SmppSubmitCallback failed for message " + message, e);
+					}
+					finally {
+						specification.release();
+						release(metrics);
+					}
+				}
+
+			});
+		}
+		catch (RuntimeException e) {
+			specification.release();
+			release(metrics);
+			throw e;
+		}
+		return true;
+	}
+
+	private void release(SmppMetrics metrics) {
+		if (metrics != null) {
+			metrics.windowReleased();
+		}
+		this.window.release();
+	}
+
+	/**
+	 * @return the maximum number of outstanding submissions
+	 */
+	public int getWindowSize() {
+		return this.windowSize;
+	}
+
+	/**
+	 * @return the number of submissions currently awaiting their response
+	 */
+	public int getOutstanding() {
+		return this.windowSize - this.window.availablePermits();
+	}
+
+	/**
+	 * Shut down the internal thread pool, if any. Outstanding submissions are completed.
+	 */
+	public void shutdown() {
+		if (this.internalExecutor) {
+			((ExecutorService) this.executor).shutdown();
+		}
+	}
+
+}
@@ -1,4 +1,4 @@
-/* Copyright 2002-2013 the original author or authors.
+/* Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -21,6 +21,7 @@ import org.jsmpp.extra.ProcessRequestException;
 import org.jsmpp.session.DataSmResult;
 import org.jsmpp.session.MessageReceiverListener;
 import org.jsmpp.session.Session;
+import org.springframework.integration.smpp.core.SmppMetrics;
 
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -39,7 +40,21 @@ public class DelegatingMessageReceiverListener implements MessageReceiverListene
 	private volatile Set<MessageReceiverListener> messageReceiverListenerSet =
 			new CopyOnWriteArraySet<MessageReceiverListener>();
 
+	private volatile SmppMetrics metrics;
+
+	/**
+	 * @param metrics the metrics counting the <code>deliver_sm</code> received, or null
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
 	public void onAcceptDeliverSm(DeliverSm deliverSm) throws ProcessRequestException {
+		SmppMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.deliverSmReceived(deliverSm);
+		}
 		for (MessageReceiverListener l : this.messageReceiverListenerSet)
 			l.onAcceptDeliverSm(deliverSm);
 	}
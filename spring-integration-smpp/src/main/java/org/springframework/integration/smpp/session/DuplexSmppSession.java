@@ -0,0 +1,243 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import java.io.IOException;
+
+import org.jsmpp.InvalidResponseException;
+import org.jsmpp.PDUException;
+import org.jsmpp.bean.Address;
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceIfPresentFlag;
+import org.jsmpp.bean.SubmitMultiResult;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.extra.ResponseTimeoutException;
+import org.jsmpp.extra.SessionState;
+import org.jsmpp.session.DataSmResult;
+import org.jsmpp.session.MessageReceiverListener;
+import org.jsmpp.session.QuerySmResult;
+import org.jsmpp.session.SessionStateListener;
+
+import org.springframework.util.Assert;
+
+/**
+ * An {@link ExtendedSmppSession} pairing a transmitter bind with a receiver bind to the same SMSC, so
+ * that they can be used as one transceiver.
+ * <p/>
+ * Many SMSCs grant each bind its own throughput, and a transmitter and a receiver together
+ * carry more traffic than a transceiver. Each side may be a {@link SmppSessionPool}, e.g. the products of
+ * two {@link SmppSessionFactoryBean}s with a {@link BindType#BIND_TX} and a {@link BindType#BIND_RX}
+ * <code>bindType</code> and a <code>poolSize</code> greater than 1.
+ * <p/>
+ * The requests go to the transmitter and the {@link MessageReceiverListener}s are registered on the
+ * receiver; the session reports a {@link BindType#BIND_TRX} bind type so that it can be used by all the
+ * endpoints. The delivery receipts of the messages sent on the transmitter arrive on the receiver: they
+ * are correlated by sharing one {@link org.springframework.integration.smpp.core.DeliveryReceiptCorrelator}
+ * between the outbound and the inbound endpoints using this session.
+ * <p/>
+ * The session state is the one of the transmitter, which the requests depend on; lifecycle, listener and
+ * timer methods apply to both sides.
+ *
+ * @since 1.1
+ */
+public class DuplexSmppSession implements ExtendedSmppSession {
+
+	private final ExtendedSmppSession transmitter;
+
+	private final ExtendedSmppSession receiver;
+
+	/**
+	 * @param transmitter the session sending the requests, bound as transmitter or transceiver
+	 * @param receiver the session receiving the messages and receipts, bound as receiver or transceiver
+	 */
+	public DuplexSmppSession(ExtendedSmppSession transmitter, ExtendedSmppSession receiver) {
+		Assert.notNull(transmitter, "'transmitter' must not be null");
+		Assert.notNull(receiver, "'receiver' must not be null");
+		Assert.isTrue(transmitter.getBindType().isTransmitable(), "'transmitter' must be bound as transmitter");
+		Assert.isTrue(receiver.getBindType().isReceiveable(), "'receiver' must be bound as receiver");
+		Assert.isTrue(transmitter != receiver, "'transmitter' and 'receiver' must be different sessions");
+		this.transmitter = transmitter;
+		this.receiver = receiver;
+	}
+
+	/**
+	 * @return the session sending the requests
+	 */
+	public ExtendedSmppSession getTransmitter() {
+		return this.transmitter;
+	}
+
+	/**
+	 * @return the session receiving the messages and receipts
+	 */
+	public ExtendedSmppSession getReceiver() {
+		return this.receiver;
+	}
+
+	/**
+	 * @return true when both the transmitter and the receiver are bound
+	 */
+	public boolean isDuplexBound() {
+		return isBound(this.transmitter) && isBound(this.receiver);
+	}
+
+	private static boolean isBound(ExtendedSmppSession session) {
+		SessionState state = session.getSessionState();
+		return state != null && state.isBound();
+	}
+
+	public String submitShortMessage(String serviceType, TypeOfNumber sourceAddrTon, NumberingPlanIndicator sourceAddrNpi,
+			String sourceAddr, TypeOfNumber destAddrTon, NumberingPlanIndicator destAddrNpi, String destinationAddr,
+			ESMClass esmClass, byte protocolId, byte priorityFlag, String scheduleDeliveryTime, String validityPeriod,
+			RegisteredDelivery registeredDelivery, byte replaceIfPresentFlag, DataCoding dataCoding, byte smDefaultMsgId,
+			byte[] shortMessage, OptionalParameter... optionalParameters) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		return this.transmitter.submitShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon,
+				destAddrNpi, destinationAddr, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod,
+				registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters);
+	}
+
+	public SubmitMultiResult submitMultiple(String serviceType, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr, Address[] destinationAddresses, ESMClass esmClass,
+			byte protocolId, byte priorityFlag, String scheduleDeliveryTime, String validityPeriod,
+			RegisteredDelivery registeredDelivery, ReplaceIfPresentFlag replaceIfPresentFlag, DataCoding dataCoding,
+			byte smDefaultMsgId, byte[] shortMessage, OptionalParameter... optionalParameters) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		return this.transmitter.submitMultiple(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr,
+				destinationAddresses, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod,
+				registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters);
+	}
+
+	public QuerySmResult queryShortMessage(String messageId, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		return this.transmitter.queryShortMessage(messageId, sourceAddrTon, sourceAddrNpi, sourceAddr);
+	}
+
+	public void cancelShortMessage(String serviceType, String messageId, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr, TypeOfNumber destAddrTon,
+			NumberingPlanIndicator destAddrNpi, String destinationAddress) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		this.transmitter.cancelShortMessage(serviceType, messageId, sourceAddrTon, sourceAddrNpi, sourceAddr,
+				destAddrTon, destAddrNpi, destinationAddress);
+	}
+
+	public void replaceShortMessage(String messageId, TypeOfNumber sourceAddrTon, NumberingPlanIndicator sourceAddrNpi,
+			String sourceAddr, String scheduleDeliveryTime, String validityPeriod, RegisteredDelivery registeredDelivery,
+			byte smDefaultMsgId, byte[] shortMessage) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		this.transmitter.replaceShortMessage(messageId, sourceAddrTon, sourceAddrNpi, sourceAddr,
+				scheduleDeliveryTime, validityPeriod, registeredDelivery, smDefaultMsgId, shortMessage);
+	}
+
+	public DataSmResult dataShortMessage(String serviceType, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr, TypeOfNumber destAddrTon,
+			NumberingPlanIndicator destAddrNpi, String destinationAddr, ESMClass esmClass,
+			RegisteredDelivery registeredDelivery, DataCoding dataCoding, OptionalParameter... optionalParameters)
+			throws PDUException, ResponseTimeoutException, InvalidResponseException, NegativeResponseException,
+			IOException {
+		return this.transmitter.dataShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon,
+				destAddrNpi, destinationAddr, esmClass, registeredDelivery, dataCoding, optionalParameters);
+	}
+
+	public void addMessageReceiverListener(MessageReceiverListener messageReceiverListener) {
+		this.receiver.addMessageReceiverListener(messageReceiverListener);
+	}
+
+	public BindType getBindType() {
+		return BindType.BIND_TRX;
+	}
+
+	/**
+	 * Start the receiver first, so that no receipt of the first requests is missed.
+	 */
+	public void start() {
+		this.receiver.start();
+		this.transmitter.start();
+	}
+
+	/**
+	 * Stop the transmitter first, so that the receipts of the last requests may still arrive.
+	 */
+	public void stop() {
+		this.transmitter.stop();
+		this.receiver.stop();
+	}
+
+	public String getSessionId() {
+		return this.transmitter.getSessionId();
+	}
+
+	public void setEnquireLinkTimer(int enquireLinkTimer) {
+		this.transmitter.setEnquireLinkTimer(enquireLinkTimer);
+		this.receiver.setEnquireLinkTimer(enquireLinkTimer);
+	}
+
+	public int getEnquireLinkTimer() {
+		return this.transmitter.getEnquireLinkTimer();
+	}
+
+	public void setTransactionTimer(long transactionTimer) {
+		this.transmitter.setTransactionTimer(transactionTimer);
+		this.receiver.setTransactionTimer(transactionTimer);
+	}
+
+	public long getTransactionTimer() {
+		return this.transmitter.getTransactionTimer();
+	}
+
+	/**
+	 * @return the state of the transmitter
+	 * @see #isDuplexBound()
+	 */
+	public SessionState getSessionState() {
+		return this.transmitter.getSessionState();
+	}
+
+	public void addSessionStateListener(SessionStateListener l) {
+		this.transmitter.addSessionStateListener(l);
+		this.receiver.addSessionStateListener(l);
+	}
+
+	public void removeSessionStateListener(SessionStateListener l) {
+		this.transmitter.removeSessionStateListener(l);
+		this.receiver.removeSessionStateListener(l);
+	}
+
+	/**
+	 * @return the most recent activity timestamp of both sides
+	 */
+	public long getLastActivityTimestamp() {
+		return Math.max(this.transmitter.getLastActivityTimestamp(), this.receiver.getLastActivityTimestamp());
+	}
+
+	public void close() {
+		this.transmitter.close();
+		this.receiver.close();
+	}
+
+	public void unbindAndClose() {
+		this.transmitter.unbindAndClose();
+		this.receiver.unbindAndClose();
+	}
+
+}
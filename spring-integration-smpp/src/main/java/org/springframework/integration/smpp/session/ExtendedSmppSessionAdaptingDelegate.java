@@ -1,4 +1,4 @@
-/* Copyright 2002-2013 the original author or authors.
+/* Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -42,9 +42,14 @@ import org.jsmpp.session.SessionStateListener;
 
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.Lifecycle;
+import org.springframework.integration.smpp.core.SmppMetrics;
+import org.springframework.util.Assert;
 
 /**
  * Adapts to the {@link ClientSession} API, while also providing the callbacks for the Spring container
+ * <p/>
+ * The <code>submit_sm</code> and <code>submit_multi</code> requests and the <code>deliver_sm</code> received
+ * are recorded in the {@link #setMetrics(SmppMetrics) metrics}.
  *
  * @author Josh Long
  * @since 1.0
@@ -60,6 +65,7 @@ public class ExtendedSmppSessionAdaptingDelegate implements /*Lifecycle,*/ Exten
 	private volatile boolean running;
 	private BindType bindType;
 	private SMPPSession session;
+	private volatile SmppMetrics metrics = new SmppMetrics();
 
 	public void setBindType(BindType bindType) {
 		this.bindType = bindType;
@@ -69,6 +75,27 @@ public class ExtendedSmppSessionAdaptingDelegate implements /*Lifecycle,*/ Exten
 		return this.session;
 	}
 
+	/**
+	 * Set the metrics recording the requests and the <code>deliver_sm</code> of this session, e.g. shared by
+	 * all the binds of a pool. By default the session has its own.
+	 *
+	 * @param metrics the metrics
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		Assert.notNull(metrics, "'metrics' must not be null");
+		this.metrics = metrics;
+		this.delegatingMessageReceiverListener.setMetrics(metrics);
+	}
+
+	/**
+	 * @return the metrics of this session
+	 * @since 1.1
+	 */
+	public SmppMetrics getMetrics() {
+		return this.metrics;
+	}
+
 	public void start() {
 
 		if( this.running) {
@@ -115,6 +142,7 @@ public class ExtendedSmppSessionAdaptingDelegate implements /*Lifecycle,*/ Exten
 		this.lifecycle = lifecycle;
 		this.session = session;
 		this.session.setMessageReceiverListener(this.delegatingMessageReceiverListener);
+		this.delegatingMessageReceiverListener.setMetrics(this.metrics);
 	}
 
     /**
@@ -132,7 +160,25 @@ public class ExtendedSmppSessionAdaptingDelegate implements /*Lifecycle,*/ Exten
 	public String submitShortMessage(String serviceType, TypeOfNumber sourceAddrTon, NumberingPlanIndicator sourceAddrNpi,
 																	String sourceAddr, TypeOfNumber destAddrTon, NumberingPlanIndicator destAddrNpi,
 																	String destinationAddr, ESMClass esmClass, byte protocolId, byte priorityFlag, String scheduleDeliveryTime, String validityPeriod, RegisteredDelivery registeredDelivery, byte replaceIfPresentFlag, DataCoding dataCoding, byte smDefaultMsgId, byte[] shortMessage, OptionalParameter... optionalParameters) throws PDUException, ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
-		return session.submitShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon, destAddrNpi, destinationAddr, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod, registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters);
+		SmppMetrics metrics = this.metrics;
+		long start = metrics.submitStarted();
+		boolean successful = false;
+		try {
+			String messageId = session.submitShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon, destAddrNpi, destinationAddr, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod, registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters);
+			successful = true;
+			return messageId;
+		}
+		catch (NegativeResponseException e) {
+			metrics.submitRejected(e.getCommandStatus());
+			throw e;
+		}
+		catch (ResponseTimeoutException e) {
+			metrics.submitTimedOut();
+			throw e;
+		}
+		finally {
+			metrics.submitCompleted(start, successful);
+		}
 	}
 
 	public SubmitMultiResult submitMultiple(String serviceType,
@@ -152,9 +198,27 @@ public class ExtendedSmppSessionAdaptingDelegate implements /*Lifecycle,*/ Exten
 			byte[] shortMessage,
 			OptionalParameter... optionalParameters) throws PDUException, ResponseTimeoutException,
 			InvalidResponseException, NegativeResponseException, IOException {
-		return session.submitMultiple(
-				serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destinationAddresses, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod, registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters
-		);
+		SmppMetrics metrics = this.metrics;
+		long start = metrics.submitStarted();
+		boolean successful = false;
+		try {
+			SubmitMultiResult result = session.submitMultiple(
+					serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destinationAddresses, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod, registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters
+			);
+			successful = true;
+			return result;
+		}
+		catch (NegativeResponseException e) {
+			metrics.submitRejected(e.getCommandStatus());
+			throw e;
+		}
+		catch (ResponseTimeoutException e) {
+			metrics.submitTimedOut();
+			throw e;
+		}
+		finally {
+			metrics.submitCompleted(start, successful);
+		}
 	}
 
 	public QuerySmResult queryShortMessage(String messageId, TypeOfNumber sourceAddrTon, NumberingPlanIndicator sourceAddrNpi, String sourceAddr) throws PDUException, ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import java.io.IOException;
+
+import org.jsmpp.InvalidResponseException;
+import org.jsmpp.PDUReader;
+import org.jsmpp.PDUSender;
+import org.jsmpp.extra.ResponseTimeoutException;
+import org.jsmpp.session.SMPPSession;
+import org.jsmpp.session.connection.ConnectionFactory;
+
+/**
+ * A {@link SMPPSession} which lets the {@link SmppSessionFactoryBean} send an <code>enquire_link</code>
+ * on demand and time its response, to detect a degraded bind before jsmpp notices it is closed.
+ *
+ * @since 1.1
+ */
+class ProbingSmppSession extends SMPPSession {
+
+	ProbingSmppSession() {
+		super();
+	}
+
+	ProbingSmppSession(PDUSender pduSender, PDUReader pduReader, ConnectionFactory connFactory) {
+		super(pduSender, pduReader, connFactory);
+	}
+
+	/**
+	 * Send an <code>enquire_link</code> and wait for its response, at most the transaction timer.
+	 *
+	 * @throws ResponseTimeoutException if no response was received in time
+	 * @throws InvalidResponseException if the response is invalid
+	 * @throws IOException if the request cannot be sent
+	 */
+	public void enquireLink() throws ResponseTimeoutException, InvalidResponseException, IOException {
+		sendEnquireLink();
+	}
+
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.CancelSm;
+import org.jsmpp.bean.DataCodings;
+import org.jsmpp.bean.DataSm;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.QuerySm;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceSm;
+import org.jsmpp.bean.SubmitMulti;
+import org.jsmpp.bean.SubmitMultiResult;
+import org.jsmpp.bean.SubmitSm;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.ProcessRequestException;
+import org.jsmpp.extra.SessionState;
+import org.jsmpp.session.BindRequest;
+import org.jsmpp.session.DataSmResult;
+import org.jsmpp.session.QuerySmResult;
+import org.jsmpp.session.SMPPServerSession;
+import org.jsmpp.session.SMPPServerSessionListener;
+import org.jsmpp.session.ServerMessageReceiverListener;
+import org.jsmpp.session.Session;
+import org.jsmpp.session.SessionStateListener;
+import org.jsmpp.util.MessageIDGenerator;
+import org.jsmpp.util.MessageId;
+import org.jsmpp.util.RandomMessageIDGenerator;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureTask;
+
+/**
+ * Accepts the binds of ESMEs, so that the application acts as an SMSC, e.g. to aggregate the traffic of
+ * several ESMEs in front of upstream SMSCs.
+ * <p/>
+ * The binds are authenticated against the {@link #setCredentials(Map) credentials}. Each accepted
+ * <code>submit_sm</code> is answered at once with a new message ID, then passed to the
+ * {@link SubmitSmHandler} on the {@link #setTaskExecutor(Executor) task executor}. Each bind has a window of
+ * {@link #setWindowSize(int) windowSize} messages waiting for or being handled; beyond it the
+ * <code>submit_sm</code> is refused with <code>ESME_RTHROTTLED</code>, so that a fast ESME neither floods the
+ * workers nor starves the other binds.
+ * <p/>
+ * The <code>deliver_sm</code> PDUs, mobile originated messages and delivery receipts, are sent with
+ * {@link #deliver(String, DeliverSm)} on the {@link #setDeliverExecutor(Executor) deliver executor}, to a bind
+ * of the ESME able to receive them. The deliveries awaiting their response are also bounded by the window of
+ * each bind.
+ * <p/>
+ * Usually used with {@link org.springframework.integration.smpp.inbound.SmppServerInboundChannelAdapter} and
+ * {@link org.springframework.integration.smpp.outbound.SmppServerOutboundChannelAdapter}.
+ *
+ * @since 1.1
+ */
+public class SmppServer implements ServerMessageReceiverListener, SmartLifecycle, InitializingBean, DisposableBean {
+
+	public static final int DEFAULT_WINDOW_SIZE = 10;
+
+	public static final int DEFAULT_POOL_SIZE = 10;
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final Map<SMPPServerSession, Bind> binds = new ConcurrentHashMap<SMPPServerSession, Bind>();
+
+	private final AtomicInteger nextBind = new AtomicInteger();
+
+	private final Object lifecycleMonitor = new Object();
+
+	private final MessageIDGenerator messageIdGenerator = new RandomMessageIDGenerator();
+
+	private int port = 2775;
+
+	private Map<String, String> credentials = new HashMap<String, String>();
+
+	private String systemId = "smpp";
+
+	private int windowSize = DEFAULT_WINDOW_SIZE;
+
+	private long deliverTimeout = 60 * 1000;
+
+	private long bindTimeout = 5000;
+
+	private int pduProcessorDegree = 3;
+
+	private int poolSize = DEFAULT_POOL_SIZE;
+
+	private Executor taskExecutor;
+
+	private Executor deliverExecutor;
+
+	private volatile SubmitSmHandler submitSmHandler;
+
+	private boolean autoStartup = true;
+
+	private int phase = Integer.MAX_VALUE;
+
+	private final List<ExecutorService> defaultExecutors = new ArrayList<ExecutorService>();
+
+	private volatile SMPPServerSessionListener sessionListener;
+
+	private volatile ExecutorService acceptor;
+
+	private volatile boolean running;
+
+	/**
+	 * @param port the port on which the ESMEs connect. Default is 2775.
+	 */
+	public void setPort(int port) {
+		this.port = port;
+	}
+
+	public int getPort() {
+		return this.port;
+	}
+
+	/**
+	 * @param credentials the passwords of the ESMEs allowed to bind, by system ID
+	 */
+	public void setCredentials(Map<String, String> credentials) {
+		Assert.notNull(credentials, "'credentials' must not be null");
+		this.credentials = new HashMap<String, String>(credentials);
+	}
+
+	/**
+	 * @param systemId the system ID returned to the ESMEs in the bind responses. Default is "smpp".
+	 */
+	public void setSystemId(String systemId) {
+		this.systemId = systemId;
+	}
+
+	/**
+	 * Set the maximum number of <code>submit_sm</code> of each bind waiting for or being handled, and of
+	 * <code>deliver_sm</code> to each bind awaiting their response. Default is {@link #DEFAULT_WINDOW_SIZE}.
+	 *
+	 * @param windowSize the window size
+	 */
+	public void setWindowSize(int windowSize) {
+		Assert.isTrue(windowSize > 0, "'windowSize' must be greater than 0");
+		this.windowSize = windowSize;
+	}
+
+	/**
+	 * @param deliverTimeout how long {@link #deliver(String, DeliverSm)} waits for a free slot in the window of
+	 * the bind, in milliseconds. Default is 1 minute.
+	 */
+	public void setDeliverTimeout(long deliverTimeout) {
+		this.deliverTimeout = deliverTimeout;
+	}
+
+	/**
+	 * @param bindTimeout how long to wait for the bind request of a new connection, in milliseconds.
+	 * Default is 5 seconds.
+	 */
+	public void setBindTimeout(long bindTimeout) {
+		this.bindTimeout = bindTimeout;
+	}
+
+	/**
+	 * @param pduProcessorDegree the number of threads reading the PDUs of each bind. Default is 3.
+	 */
+	public void setPduProcessorDegree(int pduProcessorDegree) {
+		Assert.isTrue(pduProcessorDegree > 0, "'pduProcessorDegree' must be greater than 0");
+		this.pduProcessorDegree = pduProcessorDegree;
+	}
+
+	/**
+	 * @param poolSize the number of threads of the default task and deliver executors.
+	 * Default is {@link #DEFAULT_POOL_SIZE}.
+	 */
+	public void setPoolSize(int poolSize) {
+		Assert.isTrue(poolSize > 0, "'poolSize' must be greater than 0");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * @param taskExecutor the executor handling the <code>submit_sm</code>. By default a pool of
+	 * {@link #setPoolSize(int) poolSize} threads.
+	 */
+	public void setTaskExecutor(Executor taskExecutor) {
+		this.taskExecutor = taskExecutor;
+	}
+
+	/**
+	 * @param deliverExecutor the executor sending the <code>deliver_sm</code>. By default a pool of
+	 * {@link #setPoolSize(int) poolSize} threads.
+	 */
+	public void setDeliverExecutor(Executor deliverExecutor) {
+		this.deliverExecutor = deliverExecutor;
+	}
+
+	/**
+	 * @param submitSmHandler the handler of the accepted <code>submit_sm</code>
+	 */
+	public void setSubmitSmHandler(SubmitSmHandler submitSmHandler) {
+		this.submitSmHandler = submitSmHandler;
+	}
+
+	public void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	public void setPhase(int phase) {
+		this.phase = phase;
+	}
+
+	public void afterPropertiesSet() {
+		Assert.notEmpty(this.credentials, "at least one ESME must be allowed to bind, set the 'credentials'");
+		if (this.taskExecutor == null) {
+			this.taskExecutor = newDefaultExecutor("smpp-server-");
+		}
+		if (this.deliverExecutor == null) {
+			this.deliverExecutor = newDefaultExecutor("smpp-server-deliver-");
+		}
+	}
+
+	public void start() {
+		synchronized (this.lifecycleMonitor) {
+			if (this.running) {
+				return;
+			}
+			try {
+				this.sessionListener = new SMPPServerSessionListener(this.port);
+				this.sessionListener.setTimeout(1000);
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Failed to listen on port " + this.port, e);
+			}
+			this.sessionListener.setPduProcessorDegree(this.pduProcessorDegree);
+			this.sessionListener.setMessageReceiverListener(this);
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("smpp-server-bind-");
+			threadFactory.setDaemon(true);
+			this.acceptor = Executors.newCachedThreadPool(threadFactory);
+			this.running = true;
+			this.acceptor.execute(new Runnable() {
+
+				public void run() {
+					acceptConnections();
+				}
+
+			});
+			logger.info("Accepting SMPP binds on port " + this.port);
+		}
+	}
+
+	public void stop() {
+		synchronized (this.lifecycleMonitor) {
+			if (!this.running) {
+				return;
+			}
+			this.running = false;
+			for (SMPPServerSession session : this.binds.keySet()) {
+				session.unbindAndClose();
+			}
+			this.binds.clear();
+			try {
+				this.sessionListener.close();
+			}
+			catch (IOException e) {
+				logger.debug("Failed to close the server socket", e);
+			}
+			this.acceptor.shutdownNow();
+		}
+	}
+
+	public void stop(Runnable callback) {
+		stop();
+		callback.run();
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	public int getPhase() {
+		return this.phase;
+	}
+
+	public void destroy() {
+		stop();
+		for (ExecutorService executor : this.defaultExecutors) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * @return the number of binds currently open
+	 */
+	public int getBindCount() {
+		return this.binds.size();
+	}
+
+	/**
+	 * Send a <code>deliver_sm</code> asynchronously to a bind of an ESME, which receives the messages.
+	 * Waits up to the {@link #setDeliverTimeout(long) deliver timeout} for a free slot in the window of the bind.
+	 *
+	 * @param systemId the system ID of the ESME
+	 * @param deliverSm the message to deliver; its command fields are ignored
+	 * @return the future completed once the ESME acknowledged the message
+	 * @throws InterruptedException if interrupted while waiting for the window
+	 * @throws IllegalStateException if the ESME has no bind able to receive the message
+	 * @throws TimeoutException if no slot was released in the window within the deliver timeout
+	 */
+	public ListenableFuture<Void> deliver(String systemId, final DeliverSm deliverSm)
+			throws InterruptedException, TimeoutException {
+		Assert.notNull(deliverSm, "'deliverSm' must not be null");
+		final Map.Entry<SMPPServerSession, Bind> receiver = findReceiver(systemId);
+		if (!receiver.getValue().deliverWindow.tryAcquire(this.deliverTimeout, TimeUnit.MILLISECONDS)) {
+			throw new TimeoutException("no slot was released in the window of '" + systemId + "' within "
+					+ this.deliverTimeout + " ms");
+		}
+		ListenableFutureTask<Void> task = new ListenableFutureTask<Void>(new Callable<Void>() {
+
+			public Void call() throws Exception {
+				try {
+					receiver.getKey().deliverShortMessage(deliverSm.getServiceType(),
+							TypeOfNumber.valueOf(deliverSm.getSourceAddrTon()),
+							NumberingPlanIndicator.valueOf(deliverSm.getSourceAddrNpi()), deliverSm.getSourceAddr(),
+							TypeOfNumber.valueOf(deliverSm.getDestAddrTon()),
+							NumberingPlanIndicator.valueOf(deliverSm.getDestAddrNpi()), deliverSm.getDestAddress(),
+							new ESMClass(deliverSm.getEsmClass()), deliverSm.getProtocolId(),
+							deliverSm.getPriorityFlag(), new RegisteredDelivery(deliverSm.getRegisteredDelivery()),
+							DataCodings.newInstance(deliverSm.getDataCoding()), deliverSm.getShortMessage(),
+							deliverSm.getOptionalParameters() != null ? deliverSm.getOptionalParameters()
+									: new OptionalParameter[0]);
+					return null;
+				}
+				finally {
+					receiver.getValue().deliverWindow.release();
+				}
+			}
+
+		});
+		try {
+			this.deliverExecutor.execute(task);
+		}
+		catch (RejectedExecutionException e) {
+			receiver.getValue().deliverWindow.release();
+			throw e;
+		}
+		return task;
+	}
+
+	public MessageId onAcceptSubmitSm(final SubmitSm submitSm, SMPPServerSession source)
+			throws ProcessRequestException {
+		final Bind bind = this.binds.get(source);
+		if (bind == null || !bind.bindType.isTransmitable()) {
+			throw new ProcessRequestException("the bind cannot submit messages", SMPPConstant.STAT_ESME_RINVBNDSTS);
+		}
+		final SubmitSmHandler handler = this.submitSmHandler;
+		if (handler == null) {
+			throw new ProcessRequestException("no handler for the messages", SMPPConstant.STAT_ESME_RSYSERR);
+		}
+		if (!bind.submitWindow.tryAcquire()) {
+			throw new ProcessRequestException("the window of the bind is full", SMPPConstant.STAT_ESME_RTHROTTLED);
+		}
+		final MessageId messageId = this.messageIdGenerator.newMessageId();
+		try {
+			this.taskExecutor.execute(new Runnable() {
+
+				public void run() {
+					try {
+						handler.onSubmitSm(bind.systemId, messageId.getValue(), submitSm);
+					}
+					catch (Exception e) {
+						logger.error("Failed to handle message " + messageId + " of '" + bind.systemId + "'", e);
+					}
+					finally {
+						bind.submitWindow.release();
+					}
+				}
+
+			});
+		}
+		catch (RejectedExecutionException e) {
+			bind.submitWindow.release();
+			throw new ProcessRequestException("the workers are saturated", SMPPConstant.STAT_ESME_RMSGQFUL);
+		}
+		return messageId;
+	}
+
+	public SubmitMultiResult onAcceptSubmitMulti(SubmitMulti submitMulti, SMPPServerSession source)
+			throws ProcessRequestException {
+		throw new ProcessRequestException("submit_multi is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public QuerySmResult onAcceptQuerySm(QuerySm querySm, SMPPServerSession source) throws ProcessRequestException {
+		throw new ProcessRequestException("query_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public void onAcceptReplaceSm(ReplaceSm replaceSm, SMPPServerSession source) throws ProcessRequestException {
+		throw new ProcessRequestException("replace_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public void onAcceptCancelSm(CancelSm cancelSm, SMPPServerSession source) throws ProcessRequestException {
+		throw new ProcessRequestException("cancel_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public DataSmResult onAcceptDataSm(DataSm dataSm, Session source) throws ProcessRequestException {
+		throw new ProcessRequestException("data_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	/**
+	 * Round robin over the binds of the ESME which receive messages.
+	 */
+	private Map.Entry<SMPPServerSession, Bind> findReceiver(String systemId) {
+		List<Map.Entry<SMPPServerSession, Bind>> receivers = new ArrayList<Map.Entry<SMPPServerSession, Bind>>();
+		for (Map.Entry<SMPPServerSession, Bind> entry : this.binds.entrySet()) {
+			if (entry.getValue().systemId.equals(systemId) && entry.getKey().getSessionState().isReceivable()) {
+				receivers.add(entry);
+			}
+		}
+		if (receivers.isEmpty()) {
+			throw new IllegalStateException("'" + systemId + "' has no bind receiving messages");
+		}
+		return receivers.get((this.nextBind.getAndIncrement() & Integer.MAX_VALUE) % receivers.size());
+	}
+
+	private void acceptConnections() {
+		while (this.running) {
+			try {
+				final SMPPServerSession session = this.sessionListener.accept();
+				this.acceptor.execute(new Runnable() {
+
+					public void run() {
+						waitForBind(session);
+					}
+
+				});
+			}
+			catch (SocketTimeoutException e) {
+				// check whether still running
+			}
+			catch (IOException e) {
+				if (this.running) {
+					logger.error("Failed to accept a connection", e);
+				}
+			}
+			catch (RejectedExecutionException e) {
+				// stopping
+			}
+		}
+	}
+
+	private void waitForBind(final SMPPServerSession session) {
+		try {
+			BindRequest bindRequest = session.waitForBind(this.bindTimeout);
+			String password = this.credentials.get(bindRequest.getSystemId());
+			if (password == null || !password.equals(bindRequest.getPassword())) {
+				logger.warn("Rejecting the bind of '" + bindRequest.getSystemId() + "' from "
+						+ session.getInetAddress() + ", invalid credentials");
+				bindRequest.reject(SMPPConstant.STAT_ESME_RINVPASWD);
+				return;
+			}
+			final Bind bind = new Bind(bindRequest.getSystemId(), bindRequest.getBindType(), this.windowSize);
+			session.addSessionStateListener(new SessionStateListener() {
+
+				public void onStateChange(SessionState newState, SessionState oldState, Object source) {
+					if (newState.equals(SessionState.CLOSED) && binds.remove(session) != null) {
+						logger.info("Closed the " + bind.bindType + " of '" + bind.systemId + "'");
+					}
+				}
+
+			});
+			this.binds.put(session, bind);
+			bindRequest.accept(this.systemId);
+			logger.info("Accepted the " + bind.bindType + " of '" + bind.systemId + "' from "
+					+ session.getInetAddress());
+		}
+		catch (TimeoutException e) {
+			logger.warn("No bind request received from " + session.getInetAddress() + " within "
+					+ this.bindTimeout + " ms");
+			session.close();
+		}
+		catch (Exception e) {
+			logger.error("Failed to bind the session from " + session.getInetAddress(), e);
+			this.binds.remove(session);
+			session.close();
+		}
+	}
+
+	private ExecutorService newDefaultExecutor(String threadNamePrefix) {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(threadNamePrefix);
+		threadFactory.setDaemon(true);
+		ExecutorService executor = Executors.newFixedThreadPool(this.poolSize, threadFactory);
+		this.defaultExecutors.add(executor);
+		return executor;
+	}
+
+	private static class Bind {
+
+		private final String systemId;
+
+		private final BindType bindType;
+
+		private final Semaphore submitWindow;
+
+		private final Semaphore deliverWindow;
+
+		Bind(String systemId, BindType bindType, int windowSize) {
+			this.systemId = systemId;
+			this.bindType = bindType;
+			this.submitWindow = new Semaphore(windowSize);
+			this.deliverWindow = new Semaphore(windowSize);
+		}
+
+	}
+
+	/**
+	 * Handles the <code>submit_sm</code> accepted by a {@link SmppServer}.
+	 */
+	public interface SubmitSmHandler {
+
+		/**
+		 * @param systemId the system ID of the ESME which submitted the message
+		 * @param messageId the ID of the message returned to the ESME
+		 * @param submitSm the message
+		 * @throws Exception if the message cannot be handled; it is logged, the ESME already got its response
+		 */
+		void onSubmitSm(String systemId, String messageId, SubmitSm submitSm) throws Exception;
+
+	}
+
+}
@@ -1,4 +1,4 @@
-/* Copyright 2002-2013 the original author or authors.
+/* Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -23,6 +23,8 @@ import org.jsmpp.bean.BindType;
 import org.jsmpp.bean.NumberingPlanIndicator;
 import org.jsmpp.bean.TypeOfNumber;
 import org.jsmpp.extra.SessionState;
+import org.jsmpp.InvalidResponseException;
+import org.jsmpp.extra.ResponseTimeoutException;
 import org.jsmpp.session.MessageReceiverListener;
 import org.jsmpp.session.SMPPSession;
 import org.jsmpp.session.SessionStateListener;
@@ -39,16 +41,27 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.context.Lifecycle;
 import org.springframework.context.SmartLifecycle;
 import org.springframework.core.Ordered;
+import org.springframework.integration.smpp.core.SmppMetrics;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 
 import javax.net.SocketFactory;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.IOException;
 import java.net.Socket;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Factory bean to create a {@link SMPPSession}. Usually, you need little more than the {@link #host},
@@ -76,7 +89,23 @@ import java.util.concurrent.Executors;
  *     <li>timeout - a good default value is 60000  (1 minute)</li>
  *     <li>transactionTimeout - timeout for doing work with session. e.g. sending message (default 2 seconds)</li>
  *     <li>reconnect - boolean whether we allow the session to reconnect. (default true)</li>
- *     <li>reconnectInterval - interval between reconnection in milliseconds. (default 5 seconds)</li>
+ *     <li>reconnectInterval - delay before the first reconnection attempt in milliseconds. (default 5 seconds)
+ *     The following attempts back off exponentially by reconnectBackOffMultiplier (default 2) up to
+ *     maxReconnectInterval (default 1 minute), each delay randomized by reconnectJitter (default 0.2).</li>
+ *     <li>enquireLinkInterval - interval between the <code>enquire_link</code> probes of a bound session in
+ *     milliseconds. (default 0, the probes are disabled) The session is rebound as soon as a probe fails, or when
+ *     maxDegradedEnquireLinks (default 3) consecutive probes take longer than maxEnquireLinkLatency
+ *     (default 1 second).</li>
+ *     <li>metrics - the {@link SmppMetrics} recording the requests, the <code>deliver_sm</code> and the
+ *     reconnections of all the binds. (default a new instance, available from {@link #getMetrics()})</li>
+ *     <li>poolSize - number of binds to open with these settings. (default 1) When greater than 1, the product
+ *     is a {@link SmppSessionPool} spreading the requests over the binds; keep it within the maximum number of
+ *     binds allowed by the SMSC for the systemId.</li>
+ *     <li>maxTps - maximum number of requests per second sent over each bind. (default unlimited)</li>
+ *     <li>destinationPrefixTps - maximum number of messages per second by destination address prefix, over
+ *     all the binds. (default none) With maxTps, the product is a {@link ThrottlingSmppSession}. With both a pool
+ *     and maxTps, the <code>ESME_RTHROTTLED</code> responses are retried by each bind only, so that a throttled
+ *     message is not resubmitted by two layers.</li>
  * </ul>
  *
  *
@@ -107,14 +136,31 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	private TypeOfNumber addrTon = TypeOfNumber.UNKNOWN;
 	private NumberingPlanIndicator addrNpi = NumberingPlanIndicator.UNKNOWN;
 	private long reconnectInterval = 5 * 1000; // 5 seconds
+	private long maxReconnectInterval = 60 * 1000; // 1 minute
+	private double reconnectBackOffMultiplier = 2;
+	private double reconnectJitter = 0.2;
+	private long enquireLinkInterval = 0; // disabled
+	private long maxEnquireLinkLatency = 1000; // 1 second
+	private int maxDegradedEnquireLinks = 3;
+	private final Random random = new Random();
+	private SmppMetrics metrics;
 	private boolean reconnect = true; // flag whether we want to reconnect
 	private volatile boolean destroyed = false; // flag that this session factory has been disposed
 
+	private int poolSize = 1;
+	private double maxTps;
+	private Map<String, Double> destinationPrefixTps;
+
 	private ExtendedSmppSessionAdaptingDelegate product;
+	private AutoReconnectLifecycle reconnectLifecycle;
+	private SmppSessionPool pool;
+	private ExtendedSmppSession object;
+	private final List<SmppSessionFactoryBean> poolMembers = new ArrayList<SmppSessionFactoryBean>();
 	private final ProxyFactoryBean sessionFactoryBean = new ProxyFactoryBean();
 
+	private ScheduledExecutorService reconnectScheduler;
+	private boolean reconnectSchedulerSet;
 	private ExecutorService reconnectingExecutor;
-	private boolean reconnectingExecutorSet;
 
 	public void setSsl(boolean ssl) {
 		this.ssl = ssl;
@@ -202,9 +248,9 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	private SMPPSession createNewSession() {
 		final SMPPSession newSession;
 		if (!ssl) {
-			newSession = new SMPPSession();
+			newSession = new ProbingSmppSession();
 		} else {
-			newSession = new SMPPSession(new SynchronizedPDUSender(new DefaultPDUSender(
+			newSession = new ProbingSmppSession(new SynchronizedPDUSender(new DefaultPDUSender(
 					new DefaultComposer())), new DefaultPDUReader(), sslConnectionFactory);
 		}
 		newSession.setTransactionTimer(transactionTimeout);
@@ -224,8 +270,9 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 			sessionFactoryBean.setTarget(smppSession);
 			final SMPPSession proxiedSession = (SMPPSession)sessionFactoryBean.getObject();
 
+			this.reconnectLifecycle = new AutoReconnectLifecycle(proxiedSession);
 			extendedSmppSessionAdaptingDelegate = new ExtendedSmppSessionAdaptingDelegate(
-					proxiedSession, new AutoReconnectLifecycle(proxiedSession));
+					proxiedSession, this.reconnectLifecycle);
 		} else {
 			extendedSmppSessionAdaptingDelegate = new ExtendedSmppSessionAdaptingDelegate(
 					smppSession, new ConnectingLifecycle(smppSession));
@@ -268,11 +315,21 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	 */
 	public void start() {
 		log.debug("starting up in " + getClass().getName() + "#start().");
-		if (reconnectingExecutor == null) {
-			this.reconnectingExecutor = Executors.newFixedThreadPool(1);
+		if (reconnectScheduler == null) {
+			CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("smpp-reconnect-");
+			threadFactory.setDaemon(true);
+			this.reconnectScheduler = Executors.newScheduledThreadPool(this.poolSize, threadFactory);
 		}
 
-		( product).start();
+		if (this.pool != null) {
+			for (SmppSessionFactoryBean member : this.poolMembers) {
+				member.setReconnectScheduler(this.reconnectScheduler);
+				member.start();
+			}
+		}
+		else {
+			( product).start();
+		}
 		this.running = true;
 	}
 
@@ -281,12 +338,19 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	 */
 	public void stop() {
 		log.debug("shutting down in " + getClass().getName() + "#stop().");
-		(  product).stop();
+		if (this.pool != null) {
+			for (SmppSessionFactoryBean member : this.poolMembers) {
+				member.stop();
+			}
+		}
+		else {
+			(  product).stop();
+		}
 
-		// if we are running default executor, shut it down
-		if (!reconnectingExecutorSet && reconnectingExecutor != null) {
-			reconnectingExecutor.shutdown();
-			this.reconnectingExecutor = null;
+		// if we are running default scheduler, shut it down
+		if (!reconnectSchedulerSet && reconnectScheduler != null) {
+			reconnectScheduler.shutdownNow();
+			this.reconnectScheduler = null;
 		}
 		this.running = false;
 	}
@@ -311,14 +375,17 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	 * delegates to {@link #buildSmppSession()}
 	 */
 	public ExtendedSmppSession getObject() throws Exception {
-		return product;
+		return this.object;
 	}
 
 	/**
 	 * {@inheritDoc}
 	 */
 	public Class<?> getObjectType() {
-		return ExtendedSmppSessionAdaptingDelegate.class;
+		if (hasDestinationPrefixTps() || (this.poolSize == 1 && this.maxTps > 0)) {
+			return ThrottlingSmppSession.class;
+		}
+		return this.poolSize > 1 ? SmppSessionPool.class : ExtendedSmppSessionAdaptingDelegate.class;
 	}
 
 	/**
@@ -338,7 +405,7 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	}
 
 	/**
-	 * Set session reconnection interval. Default is 5 seconds.
+	 * Set the delay before the first attempt to reconnect the session. Default is 5 seconds.
 	 *
 	 * @param reconnectInterval reconnection interval in milliseconds
 	 */
@@ -347,12 +414,205 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	}
 
 	/**
-	 * Set executor service for performing SMPP reconnection.
+	 * Set the maximum delay between two attempts to reconnect the session. Default is 1 minute.
+	 *
+	 * @param maxReconnectInterval maximum reconnection interval in milliseconds
+	 * @since 1.1
+	 */
+	public void setMaxReconnectInterval(long maxReconnectInterval) {
+		this.maxReconnectInterval = maxReconnectInterval;
+	}
+
+	/**
+	 * Set the factor applied to the delay after each failed attempt to reconnect the session, so that
+	 * an SMSC which is down is not hammered by its clients. Default is 2; 1 keeps the delay constant.
+	 *
+	 * @param reconnectBackOffMultiplier the back-off multiplier, at least 1
+	 * @since 1.1
+	 */
+	public void setReconnectBackOffMultiplier(double reconnectBackOffMultiplier) {
+		Assert.isTrue(reconnectBackOffMultiplier >= 1, "'reconnectBackOffMultiplier' must be at least 1");
+		this.reconnectBackOffMultiplier = reconnectBackOffMultiplier;
+	}
+
+	/**
+	 * Set the fraction by which each reconnection delay is randomly shortened or lengthened, so that the
+	 * binds dropped together by an SMSC restart do not reconnect in the same instant. Default is 0.2.
+	 *
+	 * @param reconnectJitter the jitter, between 0 and 1
+	 * @since 1.1
+	 */
+	public void setReconnectJitter(double reconnectJitter) {
+		Assert.isTrue(reconnectJitter >= 0 && reconnectJitter < 1, "'reconnectJitter' must be between 0 and 1");
+		this.reconnectJitter = reconnectJitter;
+	}
+
+	/**
+	 * Set the interval between the <code>enquire_link</code> probes timing the response of a bound session.
+	 * A link which died silently, e.g. behind a firewall dropping the connection, is only noticed by jsmpp
+	 * after its timers expired; the probes detect it and rebind early. Default is 0: no probes are sent. Choose
+	 * the interval and the {@link #setMaxEnquireLinkLatency(long) latency threshold} from the latency of the link
+	 * to the SMSC, a WAN link can easily exceed the default threshold. Only applies when
+	 * {@link #setReconnect(boolean) reconnect} is true.
+	 *
+	 * @param enquireLinkInterval the interval in milliseconds; 0 or less to disable the probes
+	 * @since 1.1
+	 */
+	public void setEnquireLinkInterval(long enquireLinkInterval) {
+		this.enquireLinkInterval = enquireLinkInterval;
+	}
+
+	/**
+	 * Set the latency above which an <code>enquire_link</code> probe counts as degraded. Default is 1 second.
+	 * A probe without response within the {@link #setTransactionTimeout(long) transactionTimeout} fails.
+	 *
+	 * @param maxEnquireLinkLatency the latency in milliseconds
+	 * @since 1.1
+	 */
+	public void setMaxEnquireLinkLatency(long maxEnquireLinkLatency) {
+		this.maxEnquireLinkLatency = maxEnquireLinkLatency;
+	}
+
+	/**
+	 * Set the number of consecutive degraded <code>enquire_link</code> probes after which the session is
+	 * rebound. Default is 3. A failed probe rebinds the session at once.
+	 *
+	 * @param maxDegradedEnquireLinks number of degraded probes
+	 * @since 1.1
+	 */
+	public void setMaxDegradedEnquireLinks(int maxDegradedEnquireLinks) {
+		Assert.isTrue(maxDegradedEnquireLinks > 0, "'maxDegradedEnquireLinks' must be greater than 0");
+		this.maxDegradedEnquireLinks = maxDegradedEnquireLinks;
+	}
+
+	/**
+	 * Set the metrics recording the requests, the <code>deliver_sm</code> and the reconnections of the binds
+	 * of this factory. Share it with the endpoints using the session to record their latency as well.
+	 *
+	 * @param metrics the metrics
+	 * @since 1.1
+	 */
+	public void setMetrics(SmppMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * @return the metrics of the binds of this factory
+	 * @since 1.1
+	 */
+	public SmppMetrics getMetrics() {
+		return this.metrics;
+	}
+
+	/**
+	 * @return the number of times the session was bound again after it was closed, over all the binds
+	 * @since 1.1
+	 */
+	public long getReconnectCount() {
+		if (this.pool != null) {
+			long count = 0;
+			for (SmppSessionFactoryBean member : this.poolMembers) {
+				count += member.getReconnectCount();
+			}
+			return count;
+		}
+		return this.reconnectLifecycle != null ? this.reconnectLifecycle.reconnects.get() : 0;
+	}
+
+	/**
+	 * @return the latency of the last <code>enquire_link</code> probe in milliseconds, the highest one over
+	 * all the binds, or -1 when no probe succeeded since the sessions were last bound
+	 * @since 1.1
+	 */
+	public long getEnquireLinkLatency() {
+		if (this.pool != null) {
+			long latency = -1;
+			for (SmppSessionFactoryBean member : this.poolMembers) {
+				latency = Math.max(latency, member.getEnquireLinkLatency());
+			}
+			return latency;
+		}
+		return this.reconnectLifecycle != null ? this.reconnectLifecycle.enquireLinkLatency : -1;
+	}
+
+	/**
+	 * Compute the delay before an attempt to reconnect the session.
+	 * @param attempt the number of the attempt, starting at 1
+	 * @return the delay in milliseconds
+	 */
+	long getReconnectDelay(int attempt) {
+		double delay = this.reconnectInterval * Math.pow(this.reconnectBackOffMultiplier, attempt - 1);
+		delay = Math.min(delay, Math.max(this.maxReconnectInterval, this.reconnectInterval));
+		if (this.reconnectJitter > 0) {
+			delay *= 1 - this.reconnectJitter + 2 * this.reconnectJitter * this.random.nextDouble();
+		}
+		return (long) delay;
+	}
+
+	/**
+	 * Set the number of binds to open with these settings. Default is 1. With a greater value
+	 * the product is a {@link SmppSessionPool} sending each request over the bound session with
+	 * the fewest outstanding requests; each bind reconnects on its own when it fails.
+	 *
+	 * @param poolSize number of binds, within the limit of binds allowed by the SMSC
+	 */
+	public void setPoolSize(int poolSize) {
+		Assert.isTrue(poolSize > 0, "'poolSize' must be greater than 0");
+		this.poolSize = poolSize;
+	}
+
+	/**
+	 * Set the maximum number of requests per second sent over each bind, e.g. the throughput agreed with
+	 * the SMSC divided by the {@link #setPoolSize(int) poolSize}. Default is unlimited. Callers block until
+	 * the request can be sent, and messages rejected with <code>ESME_RTHROTTLED</code> are resubmitted after
+	 * a back-off.
+	 *
+	 * @param maxTps requests per second; 0 or less for unlimited
+	 * @see ThrottlingSmppSession#setTps(double)
+	 */
+	public void setMaxTps(double maxTps) {
+		this.maxTps = maxTps;
+	}
+
+	/**
+	 * Set the maximum number of messages per second to the destination addresses starting with each prefix,
+	 * over all the binds of this factory. The longest matching prefix applies. Default is none.
+	 *
+	 * @param destinationPrefixTps messages per second by destination address prefix
+	 * @see ThrottlingSmppSession#setDestinationPrefixTps(Map)
+	 */
+	public void setDestinationPrefixTps(Map<String, Double> destinationPrefixTps) {
+		this.destinationPrefixTps = destinationPrefixTps;
+	}
+
+	private boolean hasDestinationPrefixTps() {
+		return this.destinationPrefixTps != null && !this.destinationPrefixTps.isEmpty();
+	}
+
+	/**
+	 * Set executor service for performing SMPP reconnection. The attempts are triggered by the
+	 * {@link #setReconnectScheduler(ScheduledExecutorService) reconnect scheduler} and run on this executor;
+	 * a {@link ScheduledExecutorService} is used as the reconnect scheduler itself.
 	 * @param reconnectingExecutor executor service
 	 */
 	public void setReconnectingExecutor(ExecutorService reconnectingExecutor) {
-		this.reconnectingExecutor = reconnectingExecutor;
-		this.reconnectingExecutorSet = true;
+		if (reconnectingExecutor instanceof ScheduledExecutorService) {
+			setReconnectScheduler((ScheduledExecutorService) reconnectingExecutor);
+		}
+		else {
+			this.reconnectingExecutor = reconnectingExecutor;
+		}
+	}
+
+	/**
+	 * Set the scheduler running the reconnection attempts and the <code>enquire_link</code> probes. By default
+	 * a scheduler with one daemon thread per bind is created on {@link #start()} and shut down on {@link #stop()}.
+	 * @param reconnectScheduler the scheduler
+	 * @since 1.1
+	 */
+	public void setReconnectScheduler(ScheduledExecutorService reconnectScheduler) {
+		this.reconnectScheduler = reconnectScheduler;
+		this.reconnectSchedulerSet = true;
 	}
 
 	/**
@@ -366,8 +626,75 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 		Assert.notNull(this.systemId, "the systemId can't be null");
 		Assert.notNull(this.host, "the host can't be null");
 		Assert.notNull(this.port, "the port can't be null");
+		if (this.metrics == null) {
+			this.metrics = new SmppMetrics();
+		}
 
-		this.product = buildSmppSession();
+		if (this.poolSize > 1) {
+			List<ExtendedSmppSession> sessions = new ArrayList<ExtendedSmppSession>(this.poolSize);
+			for (int i = 0; i < this.poolSize; i++) {
+				SmppSessionFactoryBean member = createPoolMember();
+				member.afterPropertiesSet();
+				this.poolMembers.add(member);
+				sessions.add(member.getObject());
+			}
+			this.pool = new SmppSessionPool(sessions);
+			this.object = this.pool;
+			if (hasDestinationPrefixTps()) {
+				ThrottlingSmppSession throttlingSession = new ThrottlingSmppSession(this.pool);
+				throttlingSession.setDestinationPrefixTps(this.destinationPrefixTps);
+				if (this.maxTps > 0) {
+					// the binds already back off and resubmit the throttled messages: only rate-limit here
+					throttlingSession.setMaxThrottledRetries(0);
+				}
+				this.object = throttlingSession;
+			}
+		}
+		else {
+			this.product = buildSmppSession();
+			this.product.setMetrics(this.metrics);
+			this.object = this.product;
+			if (this.maxTps > 0 || hasDestinationPrefixTps()) {
+				ThrottlingSmppSession throttlingSession = new ThrottlingSmppSession(this.product);
+				throttlingSession.setTps(this.maxTps);
+				throttlingSession.setDestinationPrefixTps(this.destinationPrefixTps);
+				this.object = throttlingSession;
+			}
+		}
+	}
+
+	/**
+	 * Create a factory for one bind of the pool, sharing the settings of this factory.
+	 * @return the pool member factory
+	 */
+	private SmppSessionFactoryBean createPoolMember() {
+		SmppSessionFactoryBean member = new SmppSessionFactoryBean();
+		member.ssl = this.ssl;
+		member.host = this.host;
+		member.port = this.port;
+		member.bindType = this.bindType;
+		member.systemId = this.systemId;
+		member.password = this.password;
+		member.systemType = this.systemType;
+		member.addrTon = this.addrTon;
+		member.addrNpi = this.addrNpi;
+		member.addressRange = this.addressRange;
+		member.timeout = this.timeout;
+		member.transactionTimeout = this.transactionTimeout;
+		member.reconnect = this.reconnect;
+		member.reconnectInterval = this.reconnectInterval;
+		member.maxReconnectInterval = this.maxReconnectInterval;
+		member.reconnectBackOffMultiplier = this.reconnectBackOffMultiplier;
+		member.reconnectJitter = this.reconnectJitter;
+		member.reconnectingExecutor = this.reconnectingExecutor;
+		member.enquireLinkInterval = this.enquireLinkInterval;
+		member.maxEnquireLinkLatency = this.maxEnquireLinkLatency;
+		member.maxDegradedEnquireLinks = this.maxDegradedEnquireLinks;
+		member.metrics = this.metrics;
+		member.maxTps = this.maxTps;
+		member.sessionStateListener = this.sessionStateListener;
+		member.messageReceiverListeners = this.messageReceiverListeners;
+		return member;
 	}
 
 	/**
@@ -376,6 +703,9 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	@Override
 	public void destroy() throws Exception {
 		this.destroyed = true;
+		for (SmppSessionFactoryBean member : this.poolMembers) {
+			member.destroy();
+		}
 	}
 
 	/**
@@ -439,8 +769,8 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 	}
 
 	/**
-	 * Lifecycle implementation that will try to re-establish connection with specific interval. At the start of the
-	 * connection.
+	 * Lifecycle implementation that will try to re-establish connection, backing off between the attempts. While
+	 * the session is bound, it probes the link with <code>enquire_link</code> and rebinds when the link degrades.
 	 *
 	 * @author Johanes Soetanto
 	 */
@@ -449,9 +779,19 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 		private final Logger log = LoggerFactory.getLogger(AutoReconnectLifecycle.class);
 		private final SMPPSession session;
 		private volatile boolean running;
+		/** between {@link #start()} and {@link #stop()}: a closed session must be reconnected */
+		private volatile boolean active;
+		private volatile int attempt;
+		private volatile ScheduledFuture<?> reconnectFuture;
+		/** an attempt handed to the reconnecting executor has not completed yet */
+		private boolean reconnecting;
+		private volatile ScheduledFuture<?> probeFuture;
+		private int degradedEnquireLinks;
+		private volatile long enquireLinkLatency = -1;
+		private final AtomicLong reconnects = new AtomicLong();
 
 		/**
-		 * Creating auto reconnect lifecycle using SMPP session and reconnect interval in milliseconds
+		 * Creating auto reconnect lifecycle using SMPP session
 		 * @param smppSession reference to SMPP session
 		 */
 		private AutoReconnectLifecycle(SMPPSession smppSession) {
@@ -465,6 +805,9 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 
 		@Override
 		public void stop() {
+			this.active = false;
+			cancel(reconnectFuture);
+			cancel(probeFuture);
 			if (session != null) {
 				if (session.getSessionState().isBound()) {
 					try {
@@ -480,16 +823,23 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 
 		@Override
 		public void start() {
+			this.active = true;
 			connect();
 
 			if (!running) {
-				log.debug("Try to connect at later time. The delay is {}ms", reconnectInterval);
 				scheduleReconnect();
 			} else {
-				registerSessionCloseListener();
+				onBound();
 			}
 		}
 
+		private void onBound() {
+			this.attempt = 0;
+			this.enquireLinkLatency = -1;
+			registerSessionCloseListener();
+			scheduleProbes();
+		}
+
 		/**
 		 * Register session state listener to reconnect when session is closed by server.
 		 */
@@ -498,17 +848,18 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 			session.addSessionStateListener(new SessionStateListener() {
 				@Override
 				public void onStateChange(SessionState newState, SessionState oldState, Object source) {
-					// when session is closed but client session has not been destroyed can indicates client
-					// lose connection to server
+					// when session is closed but client session has not been destroyed nor stopped can indicates
+					// client lose connection to server
 					if (newState.equals(SessionState.CLOSED)) {
 						running = false;
-						if (!destroyed) {
+						cancel(probeFuture);
+						if (!destroyed && active) {
 							log.info("Session to {}:{} has been closed. Try to reconnect later", host, port);
 
 							final SMPPSession newSession = createNewSession();
 							newSession.setMessageReceiverListener(product.getDelegateMessageListener());
 							if (sessionStateListener != null) {
-								session.addSessionStateListener(sessionStateListener);
+								newSession.addSessionStateListener(sessionStateListener);
 							}
 							sessionFactoryBean.setTarget(newSession);
 
@@ -541,39 +892,167 @@ public class SmppSessionFactoryBean implements FactoryBean<ExtendedSmppSession>,
 		}
 
 		/**
-		 * Schedule a session reconnection.
+		 * Schedule the next session reconnection attempt, unless one is already pending.
 		 */
-		private void scheduleReconnect() {
-
-			reconnectingExecutor.submit(new Runnable() {
+		private synchronized void scheduleReconnect() {
+			ScheduledExecutorService scheduler = reconnectScheduler;
+			if (scheduler == null || !active || destroyed) {
+				log.debug("Not reconnecting to {}:{}, the session factory is stopped", host, port);
+				return;
+			}
+			if (reconnecting || reconnectFuture != null && !reconnectFuture.isDone()) {
+				return;
+			}
+			long delay = getReconnectDelay(++attempt);
+			log.debug("Try to connect at later time. The delay is {}ms", delay);
+			final Runnable reconnectAttempt = new Runnable() {
 				@Override
 				public void run() {
 					try {
-						Thread.sleep(reconnectInterval);
-
-						int attempt = 0;
-						// if this session is still not run and the session has not been destroyed, re-connect
-						while (!running && !destroyed) {
-							log.info("Reconnecting attempt #{} ...", ++attempt);
-							connect();
-
-							if (!running) {
-								// if still not running, then perform another sleep
-								Thread.sleep(reconnectInterval);
+						reconnect();
+					}
+					finally {
+						reconnectDone();
+					}
+				}
+			};
+			try {
+				reconnectFuture = scheduler.schedule(new Runnable() {
+					@Override
+					public void run() {
+						ExecutorService executor = reconnectingExecutor;
+						if (executor == null) {
+							reconnectAttempt.run();
+							return;
+						}
+						synchronized (AutoReconnectLifecycle.this) {
+							reconnecting = true;
+						}
+						try {
+							executor.execute(reconnectAttempt);
+						}
+						catch (RejectedExecutionException e) {
+							log.info("Not reconnecting to {}:{}, the reconnecting executor is shut down", host, port);
+							synchronized (AutoReconnectLifecycle.this) {
+								reconnecting = false;
 							}
 						}
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+			catch (RejectedExecutionException e) {
+				log.info("Not reconnecting to {}:{}, the scheduler is shut down", host, port);
+			}
+		}
 
-						if (running) {
-							log.info("Successfully reconnect at attempt #{}", attempt);
-							// if finish re-connection loop and session is run we register session close listener
-							registerSessionCloseListener();
-						}
+		/**
+		 * Run one reconnection attempt, scheduling the next one when it fails.
+		 */
+		private void reconnect() {
+			// if this session is still not run and the session has not been destroyed, re-connect
+			if (running || !active || destroyed) {
+				return;
+			}
+			log.info("Reconnecting attempt #{} ...", attempt);
+			connect();
+			if (running) {
+				log.info("Successfully reconnect at attempt #{}", attempt);
+				reconnects.incrementAndGet();
+				metrics.reconnected();
+				onBound();
+			}
+		}
+
+		/**
+		 * Schedule the next attempt after a failed one.
+		 */
+		private synchronized void reconnectDone() {
+			reconnecting = false;
+			reconnectFuture = null;
+			if (!running) {
+				scheduleReconnect();
+			}
+		}
 
-					} catch (InterruptedException e) {
-						log.info("Interrupted when trying to connect to {}:{}", host, port);
+		/**
+		 * Schedule the <code>enquire_link</code> probes of the bound session.
+		 */
+		private void scheduleProbes() {
+			ScheduledExecutorService scheduler = reconnectScheduler;
+			if (enquireLinkInterval <= 0 || scheduler == null || !(session instanceof ProbingSmppSession)) {
+				return;
+			}
+			this.degradedEnquireLinks = 0;
+			cancel(probeFuture);
+			try {
+				probeFuture = scheduler.scheduleWithFixedDelay(new Runnable() {
+					@Override
+					public void run() {
+						probe();
 					}
-				}
-			});
+				}, enquireLinkInterval, enquireLinkInterval, TimeUnit.MILLISECONDS);
+			}
+			catch (RejectedExecutionException e) {
+				log.info("Not probing {}:{}, the scheduler is shut down", host, port);
+			}
+		}
+
+		/**
+		 * Time an <code>enquire_link</code> and rebind the session when it fails or is repeatedly too slow.
+		 */
+		private void probe() {
+			if (!running || !session.getSessionState().isBound()) {
+				return;
+			}
+			long start = System.nanoTime();
+			try {
+				((ProbingSmppSession) session).enquireLink();
+			}
+			catch (ResponseTimeoutException e) {
+				rebind("no response to enquire_link within " + transactionTimeout + "ms");
+				return;
+			}
+			catch (InvalidResponseException e) {
+				rebind("invalid response to enquire_link: " + e.getMessage());
+				return;
+			}
+			catch (IOException e) {
+				rebind("enquire_link failed: " + e.getMessage());
+				return;
+			}
+			long latency = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			this.enquireLinkLatency = latency;
+			metrics.enquireLinkCompleted(latency);
+			if (latency <= maxEnquireLinkLatency) {
+				this.degradedEnquireLinks = 0;
+			}
+			else if (++this.degradedEnquireLinks >= maxDegradedEnquireLinks) {
+				rebind(degradedEnquireLinks + " enquire_link responses slower than " + maxEnquireLinkLatency + "ms");
+			}
+			else {
+				log.debug("Slow enquire_link response from {}:{} in {}ms", new Object[]{host, port, latency});
+			}
+		}
+
+		/**
+		 * Close the degraded session; the close listener binds a new one.
+		 * @param reason the reason, for the log
+		 */
+		private void rebind(String reason) {
+			log.warn("Rebinding session to {}:{}, {}", new Object[]{host, port, reason});
+			cancel(probeFuture);
+			try {
+				session.close();
+			}
+			catch (Exception e) {
+				log.warn("Couldn't close the session", e);
+			}
+		}
+
+		private void cancel(ScheduledFuture<?> future) {
+			if (future != null) {
+				future.cancel(false);
+			}
 		}
 	}
 
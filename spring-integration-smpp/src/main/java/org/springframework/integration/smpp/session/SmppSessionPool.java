@@ -0,0 +1,357 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jsmpp.InvalidResponseException;
+import org.jsmpp.PDUException;
+import org.jsmpp.bean.Address;
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceIfPresentFlag;
+import org.jsmpp.bean.SubmitMultiResult;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.extra.ResponseTimeoutException;
+import org.jsmpp.extra.SessionState;
+import org.jsmpp.session.DataSmResult;
+import org.jsmpp.session.MessageReceiverListener;
+import org.jsmpp.session.QuerySmResult;
+import org.jsmpp.session.SessionStateListener;
+
+import org.springframework.util.Assert;
+
+/**
+ * An {@link ExtendedSmppSession} spreading the requests over several binds to the same SMSC.
+ * <p/>
+ * Each request goes to the bound member with the fewest requests awaiting their response
+ * (ties are broken round-robin), so a slow or failed bind does not hold up the others.
+ * Members which are not bound are skipped; each member reconnects on its own, e.g. when
+ * created by a {@link SmppSessionFactoryBean} with {@link SmppSessionFactoryBean#setReconnect(boolean) reconnect}
+ * enabled, which is what {@link SmppSessionFactoryBean#setPoolSize(int)} does.
+ * <p/>
+ * Lifecycle, listener and timer methods apply to every member.
+ *
+ * @since 1.1
+ */
+public class SmppSessionPool implements ExtendedSmppSession {
+
+	private final List<Member> members;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	/**
+	 * Create a pool over the provided sessions, which must all have the same {@link BindType}.
+	 *
+	 * @param sessions the member sessions
+	 */
+	public SmppSessionPool(List<? extends ExtendedSmppSession> sessions) {
+		Assert.notEmpty(sessions, "'sessions' must not be empty");
+		List<Member> members = new ArrayList<Member>(sessions.size());
+		BindType bindType = sessions.get(0).getBindType();
+		for (ExtendedSmppSession session : sessions) {
+			Assert.notNull(session, "'sessions' must not contain null elements");
+			Assert.isTrue(session.getBindType() == bindType, "all the sessions of the pool must have the same bindType");
+			members.add(new Member(session));
+		}
+		this.members = Collections.unmodifiableList(members);
+	}
+
+	/**
+	 * @return the member sessions, in order
+	 */
+	public List<ExtendedSmppSession> getSessions() {
+		List<ExtendedSmppSession> sessions = new ArrayList<ExtendedSmppSession>(this.members.size());
+		for (Member member : this.members) {
+			sessions.add(member.session);
+		}
+		return sessions;
+	}
+
+	/**
+	 * @return the number of requests awaiting their response on each member, in order
+	 */
+	public int[] getOutstanding() {
+		int[] outstanding = new int[this.members.size()];
+		for (int i = 0; i < outstanding.length; i++) {
+			outstanding[i] = this.members.get(i).outstanding.get();
+		}
+		return outstanding;
+	}
+
+	/**
+	 * @return the number of members currently bound
+	 */
+	public int getBoundCount() {
+		int bound = 0;
+		for (Member member : this.members) {
+			if (member.isBound()) {
+				bound++;
+			}
+		}
+		return bound;
+	}
+
+	/**
+	 * Select the bound member with the fewest outstanding requests, starting from a rotating
+	 * index so that idle members share the load. Falls back to the least loaded member when
+	 * none is bound, which then reports the failure.
+	 */
+	private Member select() {
+		int size = this.members.size();
+		int start = (this.next.getAndIncrement() & Integer.MAX_VALUE) % size;
+		Member selected = null;
+		Member fallback = null;
+		for (int i = 0; i < size; i++) {
+			Member member = this.members.get((start + i) % size);
+			int outstanding = member.outstanding.get();
+			if (member.isBound()) {
+				if (selected == null || outstanding < selected.outstanding.get()) {
+					selected = member;
+				}
+			}
+			else if (fallback == null || outstanding < fallback.outstanding.get()) {
+				fallback = member;
+			}
+		}
+		return selected != null ? selected : fallback;
+	}
+
+	public String submitShortMessage(String serviceType, TypeOfNumber sourceAddrTon, NumberingPlanIndicator sourceAddrNpi,
+			String sourceAddr, TypeOfNumber destAddrTon, NumberingPlanIndicator destAddrNpi, String destinationAddr,
+			ESMClass esmClass, byte protocolId, byte priorityFlag, String scheduleDeliveryTime, String validityPeriod,
+			RegisteredDelivery registeredDelivery, byte replaceIfPresentFlag, DataCoding dataCoding, byte smDefaultMsgId,
+			byte[] shortMessage, OptionalParameter... optionalParameters) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		Member member = select();
+		member.outstanding.incrementAndGet();
+		try {
+			return member.session.submitShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon,
+					destAddrNpi, destinationAddr, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod,
+					registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters);
+		}
+		finally {
+			member.outstanding.decrementAndGet();
+		}
+	}
+
+	public SubmitMultiResult submitMultiple(String serviceType, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr, Address[] destinationAddresses, ESMClass esmClass,
+			byte protocolId, byte priorityFlag, String scheduleDeliveryTime, String validityPeriod,
+			RegisteredDelivery registeredDelivery, ReplaceIfPresentFlag replaceIfPresentFlag, DataCoding dataCoding,
+			byte smDefaultMsgId, byte[] shortMessage, OptionalParameter... optionalParameters) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		Member member = select();
+		member.outstanding.incrementAndGet();
+		try {
+			return member.session.submitMultiple(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr,
+					destinationAddresses, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod,
+					registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage, optionalParameters);
+		}
+		finally {
+			member.outstanding.decrementAndGet();
+		}
+	}
+
+	public QuerySmResult queryShortMessage(String messageId, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		Member member = select();
+		member.outstanding.incrementAndGet();
+		try {
+			return member.session.queryShortMessage(messageId, sourceAddrTon, sourceAddrNpi, sourceAddr);
+		}
+		finally {
+			member.outstanding.decrementAndGet();
+		}
+	}
+
+	public void cancelShortMessage(String serviceType, String messageId, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr, TypeOfNumber destAddrTon,
+			NumberingPlanIndicator destAddrNpi, String destinationAddress) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		Member member = select();
+		member.outstanding.incrementAndGet();
+		try {
+			member.session.cancelShortMessage(serviceType, messageId, sourceAddrTon, sourceAddrNpi, sourceAddr,
+					destAddrTon, destAddrNpi, destinationAddress);
+		}
+		finally {
+			member.outstanding.decrementAndGet();
+		}
+	}
+
+	public void replaceShortMessage(String messageId, TypeOfNumber sourceAddrTon, NumberingPlanIndicator sourceAddrNpi,
+			String sourceAddr, String scheduleDeliveryTime, String validityPeriod, RegisteredDelivery registeredDelivery,
+			byte smDefaultMsgId, byte[] shortMessage) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		Member member = select();
+		member.outstanding.incrementAndGet();
+		try {
+			member.session.replaceShortMessage(messageId, sourceAddrTon, sourceAddrNpi, sourceAddr,
+					scheduleDeliveryTime, validityPeriod, registeredDelivery, smDefaultMsgId, shortMessage);
+		}
+		finally {
+			member.outstanding.decrementAndGet();
+		}
+	}
+
+	public DataSmResult dataShortMessage(String serviceType, TypeOfNumber sourceAddrTon,
+			NumberingPlanIndicator sourceAddrNpi, String sourceAddr, TypeOfNumber destAddrTon,
+			NumberingPlanIndicator destAddrNpi, String destinationAddr, ESMClass esmClass,
+			RegisteredDelivery registeredDelivery, DataCoding dataCoding, OptionalParameter... optionalParameters)
+			throws PDUException, ResponseTimeoutException, InvalidResponseException, NegativeResponseException,
+			IOException {
+		Member member = select();
+		member.outstanding.incrementAndGet();
+		try {
+			return member.session.dataShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon,
+					destAddrNpi, destinationAddr, esmClass, registeredDelivery, dataCoding, optionalParameters);
+		}
+		finally {
+			member.outstanding.decrementAndGet();
+		}
+	}
+
+	public void addMessageReceiverListener(MessageReceiverListener messageReceiverListener) {
+		for (Member member : this.members) {
+			member.session.addMessageReceiverListener(messageReceiverListener);
+		}
+	}
+
+	public BindType getBindType() {
+		return this.members.get(0).session.getBindType();
+	}
+
+	public void start() {
+		for (Member member : this.members) {
+			member.session.start();
+		}
+	}
+
+	public void stop() {
+		for (Member member : this.members) {
+			member.session.stop();
+		}
+	}
+
+	/**
+	 * @return the session ID of the first bound member, or of the first member if none is bound
+	 */
+	public String getSessionId() {
+		for (Member member : this.members) {
+			if (member.isBound()) {
+				return member.session.getSessionId();
+			}
+		}
+		return this.members.get(0).session.getSessionId();
+	}
+
+	public void setEnquireLinkTimer(int enquireLinkTimer) {
+		for (Member member : this.members) {
+			member.session.setEnquireLinkTimer(enquireLinkTimer);
+		}
+	}
+
+	public int getEnquireLinkTimer() {
+		return this.members.get(0).session.getEnquireLinkTimer();
+	}
+
+	public void setTransactionTimer(long transactionTimer) {
+		for (Member member : this.members) {
+			member.session.setTransactionTimer(transactionTimer);
+		}
+	}
+
+	public long getTransactionTimer() {
+		return this.members.get(0).session.getTransactionTimer();
+	}
+
+	/**
+	 * @return the state of a bound member if any, otherwise the state of the first member
+	 */
+	public SessionState getSessionState() {
+		for (Member member : this.members) {
+			SessionState state = member.session.getSessionState();
+			if (state != null && state.isBound()) {
+				return state;
+			}
+		}
+		return this.members.get(0).session.getSessionState();
+	}
+
+	public void addSessionStateListener(SessionStateListener l) {
+		for (Member member : this.members) {
+			member.session.addSessionStateListener(l);
+		}
+	}
+
+	public void removeSessionStateListener(SessionStateListener l) {
+		for (Member member : this.members) {
+			member.session.removeSessionStateListener(l);
+		}
+	}
+
+	/**
+	 * @return the most recent activity timestamp of the members
+	 */
+	public long getLastActivityTimestamp() {
+		long last = 0;
+		for (Member member : this.members) {
+			last = Math.max(last, member.session.getLastActivityTimestamp());
+		}
+		return last;
+	}
+
+	public void close() {
+		for (Member member : this.members) {
+			member.session.close();
+		}
+	}
+
+	public void unbindAndClose() {
+		for (Member member : this.members) {
+			member.session.unbindAndClose();
+		}
+	}
+
+	private static final class Member {
+
+		private final ExtendedSmppSession session;
+
+		private final AtomicInteger outstanding = new AtomicInteger();
+
+		private Member(ExtendedSmppSession session) {
+			this.session = session;
+		}
+
+		private boolean isBound() {
+			SessionState state = this.session.getSessionState();
+			return state != null && state.isBound();
+		}
+
+	}
+
+}
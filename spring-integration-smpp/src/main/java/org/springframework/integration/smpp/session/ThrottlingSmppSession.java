@@ -0,0 +1,445 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.InvalidResponseException;
+import org.jsmpp.PDUException;
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.Address;
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceIfPresentFlag;
+import org.jsmpp.bean.SubmitMultiResult;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.extra.ResponseTimeoutException;
+import org.jsmpp.extra.SessionState;
+import org.jsmpp.session.DataSmResult;
+import org.jsmpp.session.MessageReceiverListener;
+import org.jsmpp.session.QuerySmResult;
+import org.jsmpp.session.SessionStateListener;
+
+import org.springframework.integration.smpp.util.TokenBucket;
+import org.springframework.util.Assert;
+
+/**
+ * An {@link ExtendedSmppSession} decorator which keeps the traffic within the throughput
+ * agreed with the SMSC.
+ * <p/>
+ * Each request takes a token from a bucket refilled at {@link #setTps(double) tps} per second,
+ * and the messages also take a token from the bucket of the longest matching
+ * {@link #setDestinationPrefixTps(Map) destination prefix}, if any, e.g. to respect
+ * the lower rate of an international route. Callers block until a token is available.
+ * <p/>
+ * When the SMSC nevertheless rejects a message with <code>ESME_RTHROTTLED</code>, the buckets
+ * involved are paused for an exponentially growing back-off and the message is resubmitted,
+ * up to {@link #setMaxThrottledRetries(int) maxThrottledRetries} times before the
+ * {@link NegativeResponseException} is propagated.
+ * <p/>
+ * All the other methods delegate to the target session.
+ *
+ * @since 1.1
+ */
+public class ThrottlingSmppSession implements ExtendedSmppSession {
+
+	private final Log log = LogFactory.getLog(getClass());
+
+	private final ExtendedSmppSession delegate;
+
+	private volatile TokenBucket bucket;
+
+	private volatile List<PrefixBucket> prefixBuckets = Collections.emptyList();
+
+	private volatile long initialBackoff = 100;
+
+	private volatile long maxBackoff = 10 * 1000;
+
+	private volatile int maxThrottledRetries = 3;
+
+	private final AtomicInteger consecutiveThrottles = new AtomicInteger();
+
+	/**
+	 * @param delegate the session to throttle
+	 */
+	public ThrottlingSmppSession(ExtendedSmppSession delegate) {
+		Assert.notNull(delegate, "'delegate' must not be null");
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return the throttled session
+	 */
+	public ExtendedSmppSession getDelegate() {
+		return this.delegate;
+	}
+
+	/**
+	 * Set the maximum number of requests per second sent over the session.
+	 * Default is unlimited.
+	 *
+	 * @param tps requests per second; 0 or less for unlimited
+	 */
+	public void setTps(double tps) {
+		this.bucket = tps > 0 ? new TokenBucket(tps) : null;
+	}
+
+	/**
+	 * Set the maximum number of messages per second to the destination addresses starting
+	 * with each prefix. The longest matching prefix applies. Default is none.
+	 *
+	 * @param destinationPrefixTps messages per second by destination address prefix
+	 */
+	public void setDestinationPrefixTps(Map<String, Double> destinationPrefixTps) {
+		List<PrefixBucket> prefixBuckets = new ArrayList<PrefixBucket>();
+		if (destinationPrefixTps != null) {
+			for (Map.Entry<String, Double> entry : destinationPrefixTps.entrySet()) {
+				Assert.hasText(entry.getKey(), "destination prefixes must not be empty");
+				Assert.notNull(entry.getValue(), "the rate for the prefix '" + entry.getKey() + "' must not be null");
+				prefixBuckets.add(new PrefixBucket(entry.getKey(), new TokenBucket(entry.getValue())));
+			}
+		}
+		Collections.sort(prefixBuckets, new Comparator<PrefixBucket>() {
+
+			public int compare(PrefixBucket o1, PrefixBucket o2) {
+				return o2.prefix.length() - o1.prefix.length();
+			}
+
+		});
+		this.prefixBuckets = prefixBuckets;
+	}
+
+	/**
+	 * Set the first pause after an <code>ESME_RTHROTTLED</code> response. It doubles with each
+	 * consecutive throttled response. Default is 100 milliseconds.
+	 *
+	 * @param initialBackoff the back-off in milliseconds
+	 */
+	public void setInitialBackoff(long initialBackoff) {
+		Assert.isTrue(initialBackoff >= 0, "'initialBackoff' must not be negative");
+		this.initialBackoff = initialBackoff;
+	}
+
+	/**
+	 * Set the maximum pause after an <code>ESME_RTHROTTLED</code> response. Default is 10 seconds.
+	 *
+	 * @param maxBackoff the back-off in milliseconds
+	 */
+	public void setMaxBackoff(long maxBackoff) {
+		Assert.isTrue(maxBackoff >= 0, "'maxBackoff' must not be negative");
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Set how many times a throttled message is resubmitted before the
+	 * {@link NegativeResponseException} is propagated. Default is 3; 0 only rate-limits,
+	 * e.g. in front of sessions which retry themselves.
+	 *
+	 * @param maxThrottledRetries the number of retries
+	 */
+	public void setMaxThrottledRetries(int maxThrottledRetries) {
+		Assert.isTrue(maxThrottledRetries >= 0, "'maxThrottledRetries' must not be negative");
+		this.maxThrottledRetries = maxThrottledRetries;
+	}
+
+	public String submitShortMessage(final String serviceType, final TypeOfNumber sourceAddrTon,
+			final NumberingPlanIndicator sourceAddrNpi, final String sourceAddr, final TypeOfNumber destAddrTon,
+			final NumberingPlanIndicator destAddrNpi, final String destinationAddr, final ESMClass esmClass,
+			final byte protocolId, final byte priorityFlag, final String scheduleDeliveryTime,
+			final String validityPeriod, final RegisteredDelivery registeredDelivery, final byte replaceIfPresentFlag,
+			final DataCoding dataCoding, final byte smDefaultMsgId, final byte[] shortMessage,
+			final OptionalParameter... optionalParameters) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		return execute(destinationBuckets(destinationAddr), new Request<String>() {
+
+			public String execute() throws PDUException, ResponseTimeoutException, InvalidResponseException,
+					NegativeResponseException, IOException {
+				return delegate.submitShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon,
+						destAddrNpi, destinationAddr, esmClass, protocolId, priorityFlag, scheduleDeliveryTime,
+						validityPeriod, registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId,
+						shortMessage, optionalParameters);
+			}
+
+		});
+	}
+
+	/**
+	 * Takes a token for each destination address from the bucket of its prefix, if any,
+	 * and a single token from the session bucket.
+	 */
+	public SubmitMultiResult submitMultiple(final String serviceType, final TypeOfNumber sourceAddrTon,
+			final NumberingPlanIndicator sourceAddrNpi, final String sourceAddr, final Address[] destinationAddresses,
+			final ESMClass esmClass, final byte protocolId, final byte priorityFlag, final String scheduleDeliveryTime,
+			final String validityPeriod, final RegisteredDelivery registeredDelivery,
+			final ReplaceIfPresentFlag replaceIfPresentFlag, final DataCoding dataCoding, final byte smDefaultMsgId,
+			final byte[] shortMessage, final OptionalParameter... optionalParameters) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		List<TokenBucket> buckets = new ArrayList<TokenBucket>();
+		if (destinationAddresses != null) {
+			for (Address address : destinationAddresses) {
+				buckets.addAll(destinationBuckets(address.getAddress()));
+			}
+		}
+		return execute(buckets, new Request<SubmitMultiResult>() {
+
+			public SubmitMultiResult execute() throws PDUException, ResponseTimeoutException,
+					InvalidResponseException, NegativeResponseException, IOException {
+				return delegate.submitMultiple(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr,
+						destinationAddresses, esmClass, protocolId, priorityFlag, scheduleDeliveryTime, validityPeriod,
+						registeredDelivery, replaceIfPresentFlag, dataCoding, smDefaultMsgId, shortMessage,
+						optionalParameters);
+			}
+
+		});
+	}
+
+	public QuerySmResult queryShortMessage(final String messageId, final TypeOfNumber sourceAddrTon,
+			final NumberingPlanIndicator sourceAddrNpi, final String sourceAddr) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		return execute(Collections.<TokenBucket>emptyList(), new Request<QuerySmResult>() {
+
+			public QuerySmResult execute() throws PDUException, ResponseTimeoutException, InvalidResponseException,
+					NegativeResponseException, IOException {
+				return delegate.queryShortMessage(messageId, sourceAddrTon, sourceAddrNpi, sourceAddr);
+			}
+
+		});
+	}
+
+	public void cancelShortMessage(final String serviceType, final String messageId, final TypeOfNumber sourceAddrTon,
+			final NumberingPlanIndicator sourceAddrNpi, final String sourceAddr, final TypeOfNumber destAddrTon,
+			final NumberingPlanIndicator destAddrNpi, final String destinationAddress) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		execute(Collections.<TokenBucket>emptyList(), new Request<Void>() {
+
+			public Void execute() throws PDUException, ResponseTimeoutException, InvalidResponseException,
+					NegativeResponseException, IOException {
+				delegate.cancelShortMessage(serviceType, messageId, sourceAddrTon, sourceAddrNpi, sourceAddr,
+						destAddrTon, destAddrNpi, destinationAddress);
+				return null;
+			}
+
+		});
+	}
+
+	public void replaceShortMessage(final String messageId, final TypeOfNumber sourceAddrTon,
+			final NumberingPlanIndicator sourceAddrNpi, final String sourceAddr, final String scheduleDeliveryTime,
+			final String validityPeriod, final RegisteredDelivery registeredDelivery, final byte smDefaultMsgId,
+			final byte[] shortMessage) throws PDUException, ResponseTimeoutException, InvalidResponseException,
+			NegativeResponseException, IOException {
+		execute(Collections.<TokenBucket>emptyList(), new Request<Void>() {
+
+			public Void execute() throws PDUException, ResponseTimeoutException, InvalidResponseException,
+					NegativeResponseException, IOException {
+				delegate.replaceShortMessage(messageId, sourceAddrTon, sourceAddrNpi, sourceAddr,
+						scheduleDeliveryTime, validityPeriod, registeredDelivery, smDefaultMsgId, shortMessage);
+				return null;
+			}
+
+		});
+	}
+
+	public DataSmResult dataShortMessage(final String serviceType, final TypeOfNumber sourceAddrTon,
+			final NumberingPlanIndicator sourceAddrNpi, final String sourceAddr, final TypeOfNumber destAddrTon,
+			final NumberingPlanIndicator destAddrNpi, final String destinationAddr, final ESMClass esmClass,
+			final RegisteredDelivery registeredDelivery, final DataCoding dataCoding,
+			final OptionalParameter... optionalParameters) throws PDUException, ResponseTimeoutException,
+			InvalidResponseException, NegativeResponseException, IOException {
+		return execute(destinationBuckets(destinationAddr), new Request<DataSmResult>() {
+
+			public DataSmResult execute() throws PDUException, ResponseTimeoutException, InvalidResponseException,
+					NegativeResponseException, IOException {
+				return delegate.dataShortMessage(serviceType, sourceAddrTon, sourceAddrNpi, sourceAddr, destAddrTon,
+						destAddrNpi, destinationAddr, esmClass, registeredDelivery, dataCoding, optionalParameters);
+			}
+
+		});
+	}
+
+	/**
+	 * Take the tokens and perform the request, backing off and resubmitting it
+	 * while the SMSC answers <code>ESME_RTHROTTLED</code>.
+	 */
+	private <T> T execute(List<TokenBucket> destinationBuckets, Request<T> request) throws PDUException,
+			ResponseTimeoutException, InvalidResponseException, NegativeResponseException, IOException {
+		int retries = 0;
+		while (true) {
+			acquire(destinationBuckets);
+			try {
+				T result = request.execute();
+				this.consecutiveThrottles.set(0);
+				return result;
+			}
+			catch (NegativeResponseException e) {
+				if (e.getCommandStatus() != SMPPConstant.STAT_ESME_RTHROTTLED || retries++ >= this.maxThrottledRetries) {
+					throw e;
+				}
+				long backoff = nextBackoff();
+				if (log.isDebugEnabled()) {
+					log.debug("Throttled by the SMSC, backing off for " + backoff + "ms before retry #" + retries);
+				}
+				TokenBucket bucket = this.bucket;
+				if (bucket != null) {
+					bucket.pause(backoff);
+				}
+				for (TokenBucket destinationBucket : destinationBuckets) {
+					destinationBucket.pause(backoff);
+				}
+				if (bucket == null && destinationBuckets.isEmpty()) {
+					sleep(backoff);
+				}
+			}
+		}
+	}
+
+	private long nextBackoff() {
+		int throttles = this.consecutiveThrottles.getAndIncrement();
+		long backoff = this.initialBackoff << Math.min(throttles, 30);
+		return backoff < 0 || backoff > this.maxBackoff ? this.maxBackoff : backoff;
+	}
+
+	private void acquire(List<TokenBucket> destinationBuckets) throws InterruptedIOException {
+		try {
+			for (TokenBucket destinationBucket : destinationBuckets) {
+				destinationBucket.acquire();
+			}
+			TokenBucket bucket = this.bucket;
+			if (bucket != null) {
+				bucket.acquire();
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the throttling rate");
+		}
+	}
+
+	private void sleep(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off");
+		}
+	}
+
+	private List<TokenBucket> destinationBuckets(String destinationAddr) {
+		if (destinationAddr != null) {
+			for (PrefixBucket prefixBucket : this.prefixBuckets) {
+				if (destinationAddr.startsWith(prefixBucket.prefix)) {
+					return Collections.singletonList(prefixBucket.bucket);
+				}
+			}
+		}
+		return Collections.emptyList();
+	}
+
+	public void addMessageReceiverListener(MessageReceiverListener messageReceiverListener) {
+		this.delegate.addMessageReceiverListener(messageReceiverListener);
+	}
+
+	public BindType getBindType() {
+		return this.delegate.getBindType();
+	}
+
+	public void start() {
+		this.delegate.start();
+	}
+
+	public void stop() {
+		this.delegate.stop();
+	}
+
+	public String getSessionId() {
+		return this.delegate.getSessionId();
+	}
+
+	public void setEnquireLinkTimer(int enquireLinkTimer) {
+		this.delegate.setEnquireLinkTimer(enquireLinkTimer);
+	}
+
+	public int getEnquireLinkTimer() {
+		return this.delegate.getEnquireLinkTimer();
+	}
+
+	public void setTransactionTimer(long transactionTimer) {
+		this.delegate.setTransactionTimer(transactionTimer);
+	}
+
+	public long getTransactionTimer() {
+		return this.delegate.getTransactionTimer();
+	}
+
+	public SessionState getSessionState() {
+		return this.delegate.getSessionState();
+	}
+
+	public void addSessionStateListener(SessionStateListener l) {
+		this.delegate.addSessionStateListener(l);
+	}
+
+	public void removeSessionStateListener(SessionStateListener l) {
+		this.delegate.removeSessionStateListener(l);
+	}
+
+	public long getLastActivityTimestamp() {
+		return this.delegate.getLastActivityTimestamp();
+	}
+
+	public void close() {
+		this.delegate.close();
+	}
+
+	public void unbindAndClose() {
+		this.delegate.unbindAndClose();
+	}
+
+	private interface Request<T> {
+
+		T execute() throws PDUException, ResponseTimeoutException, InvalidResponseException,
+				NegativeResponseException, IOException;
+
+	}
+
+	private static final class PrefixBucket {
+
+		private final String prefix;
+
+		private final TokenBucket bucket;
+
+		private PrefixBucket(String prefix, TokenBucket bucket) {
+			this.prefix = prefix;
+			this.bucket = bucket;
+		}
+
+	}
+
+}
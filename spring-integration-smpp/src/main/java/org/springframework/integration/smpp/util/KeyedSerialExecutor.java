@@ -0,0 +1,161 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.util;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.Assert;
+
+/**
+ * Runs tasks on an {@link Executor} while preserving the order of the tasks sharing a key:
+ * the tasks of one key run one after the other, in submission order, and the tasks of
+ * different keys run concurrently on the threads of the executor.
+ * <p/>
+ * The number of tasks waiting or running is bounded by the capacity; beyond it
+ * {@link #execute(Object, Runnable)} refuses the task instead of queueing it, so that the
+ * caller can push back on its producer. When the executor rejects the worker of a key, the
+ * caller refusing its task runs the tasks of that key accepted in the meantime.
+ *
+ * @since 1.1
+ */
+public class KeyedSerialExecutor {
+
+	private static final Log log = LogFactory.getLog(KeyedSerialExecutor.class);
+
+	private final Executor executor;
+
+	private final int capacity;
+
+	/**
+	 * Tasks not run yet, by key. A key is present while one of its tasks is scheduled or running.
+	 */
+	private final Map<Object, ArrayDeque<Runnable>> queues = new HashMap<Object, ArrayDeque<Runnable>>();
+
+	private int pending;
+
+	/**
+	 * @param executor the executor running the tasks
+	 * @param capacity the maximum number of tasks waiting or running
+	 */
+	public KeyedSerialExecutor(Executor executor, int capacity) {
+		Assert.notNull(executor, "'executor' must not be null");
+		Assert.isTrue(capacity > 0, "'capacity' must be greater than 0");
+		this.executor = executor;
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Run the task after the tasks previously submitted with the same key.
+	 *
+	 * @param key the key whose tasks must run in order; null keys share one queue
+	 * @param task the task
+	 * @return true if the task was accepted, false if the capacity is reached or the
+	 * executor rejected the task
+	 */
+	public boolean execute(Object key, Runnable task) {
+		Assert.notNull(task, "'task' must not be null");
+		final Object queueKey = key != null ? key : Void.TYPE;
+		synchronized (this) {
+			if (this.pending >= this.capacity) {
+				return false;
+			}
+			this.pending++;
+			ArrayDeque<Runnable> queue = this.queues.get(queueKey);
+			if (queue != null) {
+				// a worker is draining the queue of this key
+				queue.add(task);
+				return true;
+			}
+			queue = new ArrayDeque<Runnable>();
+			queue.add(task);
+			this.queues.put(queueKey, queue);
+		}
+		try {
+			this.executor.execute(new Runnable() {
+
+				public void run() {
+					drain(queueKey);
+				}
+
+			});
+			return true;
+		}
+		catch (RejectedExecutionException e) {
+			log.warn("Executor rejected the task for key '" + key + "'", e);
+			boolean accepted;
+			synchronized (this) {
+				// the rejected task heads the queue; the tasks of this key accepted since then must still run
+				ArrayDeque<Runnable> queue = this.queues.get(queueKey);
+				queue.poll();
+				this.pending--;
+				accepted = !queue.isEmpty();
+				if (!accepted) {
+					this.queues.remove(queueKey);
+				}
+			}
+			if (accepted) {
+				// the caller stands in for the worker, which keeps the order of the key
+				drain(queueKey);
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * @return the number of tasks waiting or running
+	 */
+	public synchronized int getPending() {
+		return this.pending;
+	}
+
+	public int getCapacity() {
+		return this.capacity;
+	}
+
+	private void drain(Object key) {
+		while (true) {
+			Runnable task;
+			synchronized (this) {
+				ArrayDeque<Runnable> queue = this.queues.get(key);
+				task = queue.peek();
+				if (task == null) {
+					this.queues.remove(key);
+					return;
+				}
+			}
+			try {
+				task.run();
+			}
+			catch (RuntimeException e) {
+				log.error("Task failed for key '" + key + "'", e);
+			}
+			finally {
+				synchronized (this) {
+					this.queues.get(key).poll();
+					this.pending--;
+				}
+			}
+		}
+	}
+
+}
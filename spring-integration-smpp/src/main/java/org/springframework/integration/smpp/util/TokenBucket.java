@@ -0,0 +1,148 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+/**
+ * A thread safe token bucket rate limiter. Tokens are added continuously at the configured
+ * rate, up to a burst capacity, and each {@link #acquire()} takes one token, waiting
+ * for it if the bucket is empty.
+ * <p/>
+ * The bucket can also be {@link #pause(long) paused}, e.g. when the remote side reported that
+ * it is overloaded: no token is handed out until the pause elapses.
+ *
+ * @since 1.1
+ */
+public class TokenBucket {
+
+	private final double permitsPerSecond;
+
+	private final double tokensPerNano;
+
+	private final double capacity;
+
+	private double tokens;
+
+	private long lastRefill;
+
+	private long pausedUntil;
+
+	/**
+	 * Create a bucket allowing bursts of one second worth of permits (at least one).
+	 *
+	 * @param permitsPerSecond the sustained rate
+	 */
+	public TokenBucket(double permitsPerSecond) {
+		this(permitsPerSecond, Math.max(1, permitsPerSecond));
+	}
+
+	/**
+	 * Create a bucket with the provided burst capacity. The bucket starts full.
+	 *
+	 * @param permitsPerSecond the sustained rate
+	 * @param capacity the maximum number of tokens accumulated while idle
+	 */
+	public TokenBucket(double permitsPerSecond, double capacity) {
+		Assert.isTrue(permitsPerSecond > 0, "'permitsPerSecond' must be greater than 0");
+		Assert.isTrue(capacity >= 1, "'capacity' must be at least 1");
+		this.permitsPerSecond = permitsPerSecond;
+		this.tokensPerNano = permitsPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.capacity = capacity;
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+		this.pausedUntil = this.lastRefill;
+	}
+
+	/**
+	 * Take a token, waiting as long as necessary.
+	 *
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public void acquire() throws InterruptedException {
+		tryAcquire(-1, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Take a token if one becomes available within the timeout.
+	 *
+	 * @param timeout the maximum time to wait; negative to wait as long as necessary
+	 * @param unit the unit of the timeout
+	 * @return true if a token was taken
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public boolean tryAcquire(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = timeout < 0 ? Long.MAX_VALUE : System.nanoTime() + unit.toNanos(timeout);
+		while (true) {
+			long now;
+			long wait;
+			synchronized (this) {
+				now = System.nanoTime();
+				refill(now);
+				if (now - this.pausedUntil < 0) {
+					wait = this.pausedUntil - now;
+				}
+				else if (this.tokens >= 1) {
+					this.tokens -= 1;
+					return true;
+				}
+				else {
+					wait = (long) Math.ceil((1 - this.tokens) / this.tokensPerNano);
+				}
+			}
+			if (timeout >= 0 && deadline - now < wait) {
+				return false;
+			}
+			TimeUnit.NANOSECONDS.sleep(Math.max(wait, 1));
+		}
+	}
+
+	/**
+	 * Stop handing out tokens for the given time, and drop the accumulated ones so that
+	 * the traffic restarts at the sustained rate instead of a burst.
+	 *
+	 * @param millis the pause in milliseconds
+	 */
+	public synchronized void pause(long millis) {
+		long now = System.nanoTime();
+		refill(now);
+		long until = now + TimeUnit.MILLISECONDS.toNanos(millis);
+		if (until - this.pausedUntil > 0) {
+			this.pausedUntil = until;
+		}
+		this.tokens = 0;
+		// no token accrues during the pause
+		this.lastRefill = this.pausedUntil;
+	}
+
+	/**
+	 * @return the sustained rate of this bucket
+	 */
+	public double getPermitsPerSecond() {
+		return this.permitsPerSecond;
+	}
+
+	private void refill(long now) {
+		long elapsed = now - this.lastRefill;
+		if (elapsed > 0) {
+			this.tokens = Math.min(this.capacity, this.tokens + elapsed * this.tokensPerNano);
+			this.lastRefill = now;
+		}
+	}
+
+}
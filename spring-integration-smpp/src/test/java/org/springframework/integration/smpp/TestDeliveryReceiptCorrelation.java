@@ -0,0 +1,116 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.jsmpp.bean.DeliveryReceipt;
+import org.jsmpp.bean.SMSCDeliveryReceipt;
+import org.jsmpp.util.DeliveryReceiptState;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.smpp.core.DeliveryReceiptCorrelator;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.core.SmppMetrics;
+import org.springframework.integration.smpp.simulator.SmscSimulator;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Sends messages requesting a delivery receipt through the outbound gateway and
+ * correlates the receipts received by the inbound channel adapter.
+ *
+ * @since 1.1
+ */
+@ContextConfiguration("classpath:TestDeliveryReceiptCorrelation-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class TestDeliveryReceiptCorrelation {
+
+	@Autowired
+	@Qualifier("outboundSms")
+	private MessageChannel outboundSms;
+
+	@Autowired
+	private QueueChannel replies;
+
+	@Autowired
+	private QueueChannel receipts;
+
+	@Autowired
+	private DeliveryReceiptCorrelator correlator;
+
+	@Autowired
+	private SmppMetrics metrics;
+
+	@Autowired
+	private SmscSimulator simulator;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testReceiptIsCorrelatedWithTheRequest() throws Exception {
+		long accepted = this.simulator.getAcceptedCount();
+		Message<String> request = MessageBuilder.withPayload("receipt please")
+				.setHeader(SmppConstants.SRC_ADDR, "1616")
+				.setHeader(SmppConstants.DST_ADDR, "628176504657")
+				.setHeader(SmppConstants.REGISTERED_DELIVERY_MODE, SMSCDeliveryReceipt.SUCCESS_FAILURE)
+				.build();
+		this.outboundSms.send(request);
+
+		Message<?> reply = this.replies.receive(10000);
+		assertNotNull(reply);
+		String messageId = ((List<String>) reply.getPayload()).get(0);
+
+		Message<?> receipt = this.receipts.receive(10000);
+		assertNotNull(receipt);
+		assertTrue(receipt.getPayload() instanceof DeliveryReceipt);
+		assertEquals(DeliveryReceiptState.DELIVRD, ((DeliveryReceipt) receipt.getPayload()).getFinalStatus());
+		assertEquals(request.getHeaders().getId(), receipt.getHeaders().get("correlationId"));
+		assertEquals(messageId.toUpperCase(),
+				receipt.getHeaders().get(SmppConstants.DELIVERY_RECEIPT_MESSAGE_ID, String.class).toUpperCase());
+		assertEquals(0, this.correlator.getPendingCount());
+		assertEquals(accepted + 1, this.simulator.getAcceptedCount());
+
+		// the bind, the gateway and the inbound adapter share the metrics
+		assertTrue(this.metrics.getSubmitCount() > 0);
+		assertTrue(this.metrics.getSendLatency().getCount() > 0);
+		assertTrue(this.metrics.getDeliveryReceiptCount() > 0);
+		assertTrue(this.metrics.getDeliverSmRate() > 0);
+		assertEquals(0, this.metrics.getOutstanding());
+	}
+
+	@Test
+	public void testNoReceiptRequestedIsNotRecorded() throws Exception {
+		this.outboundSms.send(MessageBuilder.withPayload("no receipt")
+				.setHeader(SmppConstants.SRC_ADDR, "1616")
+				.setHeader(SmppConstants.DST_ADDR, "628176504657")
+				.build());
+
+		assertNotNull(this.replies.receive(10000));
+		assertEquals(0, this.correlator.getPendingCount());
+	}
+
+}
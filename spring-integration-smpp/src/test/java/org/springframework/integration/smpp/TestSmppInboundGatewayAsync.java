@@ -0,0 +1,74 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jsmpp.bean.SubmitSm;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.integration.smpp.simulator.SmscSimulator;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * @since 1.1
+ */
+@ContextConfiguration("classpath:TestSmppInboundGatewayAsync-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class TestSmppInboundGatewayAsync {
+
+	@Autowired
+	private SmscSimulator simulator;
+
+	@Test
+	public void testRepliesAreSentAsynchronously() throws Exception {
+		final BlockingQueue<SubmitSm> replies = new LinkedBlockingQueue<SubmitSm>();
+		this.simulator.addListener(new SmscSimulator.Listener() {
+
+			public void onMessage(SubmitSm submitSm, String text) {
+				replies.add(submitSm);
+			}
+
+		});
+		for (int i = 0; i < 5; i++) {
+			this.simulator.deliver("1111", "33333", "request " + i);
+		}
+		// the replies are submitted concurrently through the reply window, so they may come in any order
+		Set<Object> payloads = new HashSet<Object>();
+		for (int i = 0; i < 5; i++) {
+			SubmitSm reply = replies.poll(10, TimeUnit.SECONDS);
+			assertNotNull(reply);
+			assertEquals("33333", reply.getSourceAddr());
+			assertEquals("1111", reply.getDestAddress());
+			payloads.add(new String(reply.getShortMessage()));
+		}
+		for (int i = 0; i < 5; i++) {
+			assertTrue(payloads.contains("reply to request " + i));
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.extra.NegativeResponseException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.outbound.SmppOutboundGateway;
+import org.springframework.integration.smpp.simulator.SmscSimulator;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.TestUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.support.ErrorMessage;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Exercises the outbound gateway with a submit window, where the replies are produced
+ * asynchronously once the SMSC acknowledged the messages.
+ *
+ * @since 1.1
+ */
+@ContextConfiguration("classpath:TestSmppOutboundGatewayWindowed-context.xml")
+@RunWith(SpringJUnit4ClassRunner.class)
+public class TestSmppOutboundGatewayWindowed {
+
+	@Autowired
+	@Qualifier("outboundSms")
+	private MessageChannel outboundSms;
+
+	@Autowired
+	private QueueChannel replies;
+
+	@Autowired
+	private QueueChannel failures;
+
+	@Autowired
+	@Qualifier("windowedGateway")
+	private Object windowedGateway;
+
+	@Autowired
+	private SmscSimulator simulator;
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testAllMessagesAreAcknowledged() throws Exception {
+		// slow responses keep the window full
+		this.simulator.setResponseLatency(50);
+		int count = 30;
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			this.outboundSms.send(MessageBuilder.withPayload("windowed message " + i)
+					.setHeader(SmppConstants.SRC_ADDR, "1616")
+					.setHeader(SmppConstants.DST_ADDR, "628176504657")
+					.setHeader("sequence", i)
+					.build());
+		}
+		Set<Object> sequences = new HashSet<Object>();
+		for (int i = 0; i < count; i++) {
+			Message<?> reply = this.replies.receive(10000);
+			assertNotNull(reply);
+			assertEquals(1, ((List<String>) reply.getPayload()).size());
+			sequences.add(reply.getHeaders().get("sequence"));
+		}
+		assertEquals(count, sequences.size());
+		this.simulator.setResponseLatency(0);
+		// one response at a time would have taken count * 50 ms
+		assertTrue(System.currentTimeMillis() - start < count * 50);
+
+		SmppOutboundGateway gateway = TestUtils.getPropertyValue(this.windowedGateway, "handler",
+				SmppOutboundGateway.class);
+		assertEquals(10, gateway.getSubmitWindow().getWindowSize());
+	}
+
+	@Test
+	public void testFailureIsSentToErrorChannel() throws Exception {
+		Message<String> message = MessageBuilder.withPayload("throttled")
+				.setHeader(SmppConstants.SRC_ADDR, "1616")
+				.setHeader(SmppConstants.DST_ADDR, "628176504657")
+				.setErrorChannel(this.failures)
+				.build();
+		this.simulator.setThrottleEvery(1);
+		try {
+			this.outboundSms.send(message);
+
+			Message<?> error = this.failures.receive(10000);
+			assertNotNull(error);
+			assertTrue(error instanceof ErrorMessage);
+			MessageHandlingException exception = (MessageHandlingException) error.getPayload();
+			assertEquals(message, exception.getFailedMessage());
+			assertTrue(exception.getCause() instanceof NegativeResponseException);
+			assertEquals(SMPPConstant.STAT_ESME_RTHROTTLED,
+					((NegativeResponseException) exception.getCause()).getCommandStatus());
+		}
+		finally {
+			this.simulator.setThrottleEvery(0);
+		}
+	}
+
+}
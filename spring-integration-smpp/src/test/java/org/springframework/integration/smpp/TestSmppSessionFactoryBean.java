@@ -1,4 +1,4 @@
-/* Copyright 2002-2013 the original author or authors.
+/* Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -15,6 +15,7 @@
 package org.springframework.integration.smpp;
 
 import java.lang.reflect.Field;
+import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.logging.Log;
@@ -34,10 +35,15 @@ import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
 import org.springframework.integration.smpp.session.DelegatingMessageReceiverListener;
 import org.springframework.integration.smpp.session.ExtendedSmppSession;
 import org.springframework.integration.smpp.session.ExtendedSmppSessionAdaptingDelegate;
 import org.springframework.integration.smpp.session.SmppSessionFactoryBean;
+import org.springframework.integration.smpp.session.SmppSessionPool;
+import org.springframework.integration.smpp.simulator.SmscSimulator;
+import org.springframework.integration.support.MessageBuilder;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
@@ -74,6 +80,9 @@ public class TestSmppSessionFactoryBean {
 	@Value("${smpp.password}")
 	private String password;
 
+	@Autowired
+	private SmscSimulator simulator;
+
 	@Test
 	public void testSmppSessionFactory() throws Throwable {
 
@@ -131,6 +140,50 @@ public class TestSmppSessionFactoryBean {
 		});
 	}
 
+	@Test
+	public void testPooledSmppSessionFactory() throws Throwable {
+		SmppSessionFactoryBean smppSessionFactoryBean = new SmppSessionFactoryBean();
+		smppSessionFactoryBean.setSystemId(this.systemId);
+		smppSessionFactoryBean.setPort(this.port);
+		smppSessionFactoryBean.setPassword(this.password);
+		smppSessionFactoryBean.setHost(this.host);
+		smppSessionFactoryBean.setBindType(BindType.BIND_TX);
+		smppSessionFactoryBean.setPoolSize(3);
+		smppSessionFactoryBean.afterPropertiesSet();
+
+		Assert.assertEquals(SmppSessionPool.class, smppSessionFactoryBean.getObjectType());
+		SmppSessionPool pool = (SmppSessionPool) smppSessionFactoryBean.getObject();
+		Assert.assertEquals(3, pool.getSessions().size());
+		Assert.assertEquals(BindType.BIND_TX, pool.getBindType());
+
+		int boundSessions = this.simulator.getBoundSessionCount();
+		long accepted = this.simulator.getAcceptedCount();
+		smppSessionFactoryBean.start();
+		try {
+			Assert.assertEquals(3, pool.getBoundCount());
+			// the simulator records a session once it responded to the bind
+			for (int i = 0; i < 100 && this.simulator.getBoundSessionCount() < boundSessions + 3; i++) {
+				Thread.sleep(10);
+			}
+			Assert.assertEquals(boundSessions + 3, this.simulator.getBoundSessionCount());
+			for (int i = 0; i < 5; i++) {
+				List<String> messageIds = SmesMessageSpecification.fromMessage(pool,
+						MessageBuilder.withPayload("pooled message " + i)
+								.setHeader(SmppConstants.SRC_ADDR, "1616")
+								.setHeader(SmppConstants.DST_ADDR, "628176504657")
+								.build())
+						.send();
+				Assert.assertEquals(1, messageIds.size());
+			}
+			Assert.assertArrayEquals(new int[] {0, 0, 0}, pool.getOutstanding());
+			Assert.assertEquals(accepted + 5, this.simulator.getAcceptedCount());
+		}
+		finally {
+			smppSessionFactoryBean.stop();
+			smppSessionFactoryBean.destroy();
+		}
+	}
+
 	@Test
 	public void testWhetherTheBeansAlreadyStarted() throws Throwable {
 
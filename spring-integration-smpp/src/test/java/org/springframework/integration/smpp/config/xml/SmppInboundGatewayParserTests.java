@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -26,6 +26,7 @@ import org.springframework.integration.test.util.TestUtils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 
 /**
@@ -75,6 +76,12 @@ public class SmppInboundGatewayParserTests {
 		OutboundMessageMapper<?> outboundMessageMapper = TestUtils.getPropertyValue(gateway, "messageConverter.outboundMessageMapper", OutboundMessageMapper.class);
 		assertNotNull(outboundMessageMapper);
 
+		// asynchronous processing
+		assertSame(context.getBean("executor"), TestUtils.getPropertyValue(gateway, "taskExecutor"));
+		assertEquals(50, TestUtils.getPropertyValue(gateway, "queueCapacity"));
+		assertEquals(5, TestUtils.getPropertyValue(gateway, "replyWindowSize"));
+		assertNotNull(TestUtils.getPropertyValue(gateway, "abstractReceivingMessageListener.dispatcher"));
+		assertNotNull(TestUtils.getPropertyValue(gateway, "replyWindow"));
 	}
 
 	@After
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2013 the original author or authors.
+ * Copyright 2002-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with
  * the License. You may obtain a copy of the License at
@@ -26,12 +26,14 @@ import org.springframework.integration.endpoint.EventDrivenConsumer;
 import org.springframework.integration.handler.advice.AbstractRequestHandlerAdvice;
 import org.springframework.integration.smpp.core.SmppConstants;
 import org.springframework.integration.smpp.outbound.SmppOutboundGateway;
+import org.springframework.integration.smpp.outbound.SmppSubmitWindow;
 import org.springframework.integration.smpp.session.ExtendedSmppSession;
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 
 /**
@@ -78,6 +80,20 @@ public class SmppOutboundGatewayParserTests {
 		assertNotNull(timeFormatter);
 	}
 
+	@Test
+	public void testWindowedOutboundGateway() throws Exception {
+		setUp("SmppOutboundGatewayParserTests.xml", getClass(), "smppOutboundGatewayWindowed");
+
+		final SmppOutboundGateway gateway = TestUtils.getPropertyValue(this.consumer, "handler", SmppOutboundGateway.class);
+
+		SmppSubmitWindow window = gateway.getSubmitWindow();
+		assertNotNull(window);
+		assertEquals(8, window.getWindowSize());
+		assertEquals(0, window.getOutstanding());
+		assertEquals(500L, TestUtils.getPropertyValue(gateway, "windowTimeout"));
+		assertSame(context.getBean("submitExecutor"), TestUtils.getPropertyValue(window, "executor"));
+	}
+
     @Test
     public void testWithAdvice() throws Exception {
         context = new ClassPathXmlApplicationContext("SmppOutboundGatewayParserTests.xml", getClass());
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.GSMSpecificFeature;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.OptionalParameters;
+import org.junit.Test;
+
+/**
+ * @since 1.1
+ */
+public class ConcatenatedMessageAssemblerTest {
+
+	@Test
+	public void testSingleMessageIsDecoded() throws Exception {
+		ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler();
+		DeliverSm deliverSm = deliverSm("1111", (byte) 8, "سلام".getBytes("UTF-16"));
+		assertEquals("سلام", assembler.assemble(deliverSm));
+	}
+
+	@Test
+	public void testUdhSegmentsAreReassembled() throws Exception {
+		ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler();
+		byte[] udh = {0x05, 0x00, 0x03, 0x2A, 0x03, 0x00};
+
+		udh[5] = 0x03;
+		assertNull(assembler.assemble(udhDeliverSm("1111", udh, "is long.")));
+		udh[5] = 0x01;
+		assertNull(assembler.assemble(udhDeliverSm("1111", udh, "This mess")));
+		// same reference from another source
+		assertNull(assembler.assemble(udhDeliverSm("2222", udh, "Other ")));
+		assertEquals(2, assembler.getIncompleteCount());
+		udh[5] = 0x02;
+		assertEquals("This message is long.", assembler.assemble(udhDeliverSm("1111", udh, "age ")));
+		assertEquals(1, assembler.getIncompleteCount());
+	}
+
+	@Test
+	public void testUdhSegmentsWith16BitReference() throws Exception {
+		ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler();
+		byte[] udh = {0x06, 0x08, 0x04, 0x12, 0x34, 0x02, 0x01};
+		assertNull(assembler.assemble(udhDeliverSm("1111", udh, "Hello ")));
+		// a duplicate segment is ignored
+		assertNull(assembler.assemble(udhDeliverSm("1111", udh, "Hello ")));
+		udh[6] = 0x02;
+		assertEquals("Hello world", assembler.assemble(udhDeliverSm("1111", udh, "world")));
+	}
+
+	@Test
+	public void testSarSegmentsAreReassembled() throws Exception {
+		ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler();
+		DeliverSm first = deliverSm("1111", (byte) 0, "Hello ".getBytes());
+		first.setOptionalParameters(OptionalParameters.newSarMsgRefNum(300),
+				OptionalParameters.newSarTotalSegments(2), OptionalParameters.newSarSegmentSeqnum(1));
+		DeliverSm second = deliverSm("1111", (byte) 0, "world".getBytes());
+		second.setOptionalParameters(OptionalParameters.newSarMsgRefNum(300),
+				OptionalParameters.newSarTotalSegments(2), OptionalParameters.newSarSegmentSeqnum(2));
+		assertNull(assembler.assemble(first));
+		assertEquals("Hello world", assembler.assemble(second));
+	}
+
+	@Test
+	public void testMessagePayloadIsDecoded() throws Exception {
+		ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler();
+		DeliverSm deliverSm = deliverSm("1111", (byte) 0, new byte[0]);
+		deliverSm.setOptionalParameters(new OptionalParameter.OctetString(
+				OptionalParameter.Tag.MESSAGE_PAYLOAD.code(), "a long payload".getBytes()));
+		assertEquals("a long payload", assembler.assemble(deliverSm));
+	}
+
+	@Test
+	public void testIncompleteMessagesAreEvicted() throws Exception {
+		ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler(2, 50);
+		byte[] udh = {0x05, 0x00, 0x03, 0x01, 0x02, 0x01};
+		assertNull(assembler.assemble(udhDeliverSm("1111", udh, "a")));
+		assertNull(assembler.assemble(udhDeliverSm("2222", udh, "b")));
+		assertNull(assembler.assemble(udhDeliverSm("3333", udh, "c")));
+		assertEquals(2, assembler.getIncompleteCount());
+
+		Thread.sleep(100);
+		assertNull(assembler.assemble(udhDeliverSm("4444", udh, "d")));
+		assertEquals(1, assembler.getIncompleteCount());
+		udh[5] = 0x02;
+		// the first segment was discarded
+		assertNull(assembler.assemble(udhDeliverSm("3333", udh, "c")));
+	}
+
+	private static DeliverSm udhDeliverSm(String source, byte[] udh, String text) {
+		byte[] content = text.getBytes();
+		byte[] shortMessage = new byte[udh.length + content.length];
+		System.arraycopy(udh, 0, shortMessage, 0, udh.length);
+		System.arraycopy(content, 0, shortMessage, udh.length, content.length);
+		DeliverSm deliverSm = deliverSm(source, (byte) 0, shortMessage);
+		deliverSm.setEsmClass(GSMSpecificFeature.UDHI.value());
+		return deliverSm;
+	}
+
+	private static DeliverSm deliverSm(String source, byte dataCoding, byte[] shortMessage) {
+		DeliverSm deliverSm = new DeliverSm();
+		deliverSm.setSourceAddr(source);
+		deliverSm.setDataCoding(dataCoding);
+		deliverSm.setShortMessage(shortMessage);
+		return deliverSm;
+	}
+
+}
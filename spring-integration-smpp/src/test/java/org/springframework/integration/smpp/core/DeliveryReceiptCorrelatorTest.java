@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
+import org.jsmpp.util.DeliveryReceiptState;
+import org.junit.Test;
+
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+/**
+ * @since 1.1
+ */
+public class DeliveryReceiptCorrelatorTest {
+
+	@Test
+	public void testReceiptCompletesTheFuture() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+		Message<String> request = MessageBuilder.withPayload("test").build();
+		Future<DeliveryReceipt> future = correlator.register("a1b2", request);
+		assertSame(future, correlator.getPendingReceipt("A1B2"));
+
+		DeliveryReceipt receipt = receipt("41394");
+		Message<DeliveryReceipt> message = correlator.correlate(new DeliverSm(), "A1B2", receipt);
+
+		assertSame(receipt, future.get(0, TimeUnit.SECONDS));
+		assertSame(receipt, message.getPayload());
+		assertEquals(request.getHeaders().getId(), message.getHeaders().get("correlationId"));
+		assertEquals("A1B2", message.getHeaders().get(SmppConstants.DELIVERY_RECEIPT_MESSAGE_ID));
+		assertEquals(0, correlator.getPendingCount());
+	}
+
+	@Test
+	public void testReceiptArrivingBeforeTheRegistration() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+		DeliveryReceipt receipt = receipt("41394");
+		Message<DeliveryReceipt> message = correlator.correlate(new DeliverSm(), "A1B2", receipt);
+		assertNull(message.getHeaders().get("correlationId"));
+
+		Future<DeliveryReceipt> future = correlator.register("a1b2", MessageBuilder.withPayload("test").build());
+		assertTrue(future.isDone());
+		assertSame(receipt, future.get());
+		assertEquals(0, correlator.getPendingCount());
+	}
+
+	@Test
+	public void testHeldReceiptIsHandledOnceRegistered() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+		List<Message<?>> handled = new ArrayList<Message<?>>();
+		DeliveryReceipt receipt = receipt("41394");
+		assertNull(correlator.correlate(new DeliverSm(), "A1B2", receipt, collector(handled)));
+		assertTrue(handled.isEmpty());
+
+		Message<String> request = MessageBuilder.withPayload("test").build();
+		Future<DeliveryReceipt> future = correlator.register("a1b2", request);
+		assertSame(receipt, future.get(0, TimeUnit.SECONDS));
+		assertEquals(1, handled.size());
+		assertSame(receipt, handled.get(0).getPayload());
+		assertEquals(request.getHeaders().getId(), handled.get(0).getHeaders().get("correlationId"));
+		assertEquals("A1B2", handled.get(0).getHeaders().get(SmppConstants.DELIVERY_RECEIPT_MESSAGE_ID));
+	}
+
+	@Test
+	public void testHeldReceiptIsHandledUncorrelatedOnceExpired() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+		correlator.setEarlyReceiptTimeToLive(50);
+		List<Message<?>> handled = new ArrayList<Message<?>>();
+		DeliveryReceipt receipt = receipt("41394");
+		assertNull(correlator.correlate(deliverSm("6281"), "A1B2", receipt, collector(handled)));
+		Thread.sleep(100);
+		correlator.purgeExpired();
+
+		// handled once, although held under several keys
+		assertEquals(1, handled.size());
+		assertSame(receipt, handled.get(0).getPayload());
+		assertNull(handled.get(0).getHeaders().get("correlationId"));
+		assertFalse(correlator.register("a1b2", MessageBuilder.withPayload("test").build()).isDone());
+		assertEquals(1, handled.size());
+	}
+
+	@Test
+	public void testEarlyReceiptCompletesOneRegistrationOnly() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+		// stored under both A1B2/6281 and A1B2
+		DeliveryReceipt receipt = receipt("41394");
+		correlator.correlate(deliverSm("6281"), "A1B2", receipt);
+
+		Map<String, Future<DeliveryReceipt>> futures =
+				correlator.register("a1b2", Arrays.asList("6281"), MessageBuilder.withPayload("test").build());
+		assertSame(receipt, futures.get("6281").get(0, TimeUnit.SECONDS));
+
+		// the message ID is reused by a later message
+		Future<DeliveryReceipt> future = correlator.register("a1b2", MessageBuilder.withPayload("test").build());
+		assertFalse(future.isDone());
+		assertEquals(1, correlator.getPendingCount());
+	}
+
+	@Test
+	public void testEveryDestinationOfASubmitMultiIsCorrelated() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+		Message<String> request = MessageBuilder.withPayload("test").build();
+		Map<String, Future<DeliveryReceipt>> futures =
+				correlator.register("a1b2", Arrays.asList("6281", "6282"), request);
+		assertEquals(2, correlator.getPendingCount());
+
+		DeliveryReceipt first = receipt("41394");
+		Message<DeliveryReceipt> message = correlator.correlate(deliverSm("6282"), "A1B2", first);
+		assertEquals(request.getHeaders().getId(), message.getHeaders().get("correlationId"));
+		assertSame(first, futures.get("6282").get(0, TimeUnit.SECONDS));
+		assertSame(futures.get("6281"), correlator.getPendingReceipt("A1B2", "6281"));
+
+		DeliveryReceipt second = receipt("41394");
+		message = correlator.correlate(deliverSm("6281"), "A1B2", second);
+		assertEquals(request.getHeaders().getId(), message.getHeaders().get("correlationId"));
+		assertSame(second, futures.get("6281").get(0, TimeUnit.SECONDS));
+		assertEquals(0, correlator.getPendingCount());
+	}
+
+	@Test
+	public void testMessageIdsAreMatchedUnderAnyDefaultLocale() throws Exception {
+		Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(new Locale("tr", "TR"));
+		try {
+			DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+			Future<DeliveryReceipt> future = correlator.register("id1", MessageBuilder.withPayload("test").build());
+			DeliveryReceipt receipt = receipt("41394");
+			correlator.correlate(new DeliverSm(), "ID1", receipt);
+			assertSame(receipt, future.get(0, TimeUnit.SECONDS));
+		}
+		finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	@Test
+	public void testOldestEntriesAreEvictedBeyondCapacity() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator(2, 60000);
+		Future<DeliveryReceipt> first = correlator.register("1", MessageBuilder.withPayload("1").build());
+		correlator.register("2", MessageBuilder.withPayload("2").build());
+		correlator.register("3", MessageBuilder.withPayload("3").build());
+
+		assertEquals(2, correlator.getPendingCount());
+		assertNull(correlator.getPendingReceipt("1"));
+		assertTimedOut(first);
+	}
+
+	@Test
+	public void testExpiredEntriesArePurged() throws Exception {
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator(10, 50);
+		Future<DeliveryReceipt> future = correlator.register("1", MessageBuilder.withPayload("1").build());
+		Thread.sleep(100);
+		correlator.purgeExpired();
+
+		assertEquals(0, correlator.getPendingCount());
+		assertTimedOut(future);
+	}
+
+	private static void assertTimedOut(Future<DeliveryReceipt> future) throws InterruptedException {
+		try {
+			future.get(0, TimeUnit.SECONDS);
+			fail("ExecutionException expected");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		catch (TimeoutException e) {
+			fail("the future should have been failed");
+		}
+	}
+
+	private static MessageHandler collector(final List<Message<?>> handled) {
+		return new MessageHandler() {
+
+			public void handleMessage(Message<?> message) {
+				handled.add(message);
+			}
+
+		};
+	}
+
+	private static DeliverSm deliverSm(String sourceAddress) {
+		DeliverSm deliverSm = new DeliverSm();
+		deliverSm.setSourceAddr(sourceAddress);
+		return deliverSm;
+	}
+
+	private static DeliveryReceipt receipt(String id) {
+		return new DeliveryReceipt(id, 1, 1, new Date(), new Date(), DeliveryReceiptState.DELIVRD, null, "test");
+	}
+
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @since 1.1
+ */
+public class Gsm7BitCodecTest {
+
+	@Test
+	public void testBasicAndExtensionCharacters() {
+		String text = "æøå {€}";
+		assertTrue(Gsm7BitCodec.canEncode(text));
+		assertEquals(10, Gsm7BitCodec.septetCount(text, 0, text.length()));
+
+		byte[] septets = new byte[10];
+		assertEquals(10, Gsm7BitCodec.encode(text, 0, text.length(), septets, 0));
+		assertArrayEquals(new byte[] {0x1D, 0x0C, 0x0F, 0x20, 0x1B, 0x28, 0x1B, 0x65, 0x1B, 0x29}, septets);
+		assertEquals(text, Gsm7BitCodec.decode(septets, 0, septets.length));
+	}
+
+	@Test
+	public void testUnknownCharactersAreReplaced() {
+		String text = "aжb";
+		assertFalse(Gsm7BitCodec.canEncode(text));
+		byte[] septets = new byte[3];
+		Gsm7BitCodec.encode(text, 0, text.length(), septets, 0);
+		assertEquals("a?b", Gsm7BitCodec.decode(septets, 0, septets.length));
+	}
+
+	@Test
+	public void testPackAndUnpack() {
+		String text = "hellohello";
+		byte[] septets = new byte[text.length()];
+		Gsm7BitCodec.encode(text, 0, text.length(), septets, 0);
+
+		byte[] packed = new byte[9];
+		assertEquals(9, Gsm7BitCodec.pack(septets, 0, septets.length, packed, 0, 0));
+		assertArrayEquals(new byte[] {(byte) 0xE8, 0x32, (byte) 0x9B, (byte) 0xFD, 0x46, (byte) 0x97, (byte) 0xD9,
+				(byte) 0xEC, 0x37}, packed);
+
+		byte[] unpacked = new byte[septets.length];
+		Gsm7BitCodec.unpack(packed, 0, septets.length, unpacked, 0, 0);
+		assertArrayEquals(septets, unpacked);
+	}
+
+	@Test
+	public void testPackAfterUserDataHeader() {
+		byte[] septets = new byte[153];
+		for (int i = 0; i < septets.length; i++) {
+			septets[i] = (byte) (i % 128);
+		}
+		// 6 octets of header are followed by 1 fill bit
+		byte[] packed = new byte[134];
+		assertEquals(134, Gsm7BitCodec.pack(septets, 0, septets.length, packed, 0, 1));
+		byte[] unpacked = new byte[septets.length];
+		Gsm7BitCodec.unpack(packed, 0, septets.length, unpacked, 0, 1);
+		assertArrayEquals(septets, unpacked);
+	}
+
+}
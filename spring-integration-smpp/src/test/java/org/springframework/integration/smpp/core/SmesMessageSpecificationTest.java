@@ -1,4 +1,4 @@
-/* Copyright 2014 the original author or authors.
+/* Copyright 2014-2016 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -16,15 +16,42 @@
 package org.springframework.integration.smpp.core;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.Address;
 import org.jsmpp.bean.DataCoding;
 import org.jsmpp.bean.DataCodings;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceIfPresentFlag;
+import org.jsmpp.bean.SMSCDeliveryReceipt;
 import org.jsmpp.bean.SimpleDataCoding;
+import org.jsmpp.bean.SubmitMultiResult;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.bean.UnsuccessDelivery;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.session.ClientSession;
 import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import org.springframework.integration.support.MessageBuilder;
 import org.springframework.integration.test.util.TestUtils;
@@ -138,8 +165,167 @@ public class SmesMessageSpecificationTest {
         verifyMessageSplitCorrectlyForDataCoding(MULTI_LINE_PAYLOAD, null, 99);
     }
 
+    @Test
+    public void longMessageWithoutDataCodingIsSegmentedInGsmSeptets() throws Exception {
+        StringBuilder text = new StringBuilder("aa");
+        for (int i = 0; i < 100; i++) {
+            text.append('\u20AC');
+        }
+        SmesMessageSpecification spec = getSmesMessageSpecification(text.toString(), null, null);
+
+        DataCoding dataCoding = (DataCoding) ReflectionTestUtils.getField(spec, "dataCoding");
+        assertEquals(0x11, dataCoding.toByte());
+        @SuppressWarnings("unchecked")
+        List<byte[]> messageParts = (List<byte[]>) TestUtils.getPropertyValue(spec, "shortMessageParts", List.class);
+        // a euro sign takes 2 septets and is never split: 2 + 75 * 2 septets, then 25 * 2 septets
+        assertEquals(2, messageParts.size());
+        assertEquals(152, messageParts.get(0).length);
+        assertEquals(50, messageParts.get(1).length);
+        assertEquals(text.toString(), DataCodingSpecification.getMessageFromBytes(messageParts.get(0), (byte) 0x11)
+                + DataCodingSpecification.getMessageFromBytes(messageParts.get(1), (byte) 0x11));
+    }
+
+    /* ********** submit_multi tests ************* */
+
+    @Test
+    public void multipleDestinationsAreSentInChunks() throws Exception {
+        final List<Integer> chunkSizes = new ArrayList<Integer>();
+        ClientSession session = mock(ClientSession.class);
+        when(submitMultiple(session)).thenAnswer(new Answer<SubmitMultiResult>() {
+
+            public SubmitMultiResult answer(InvocationOnMock invocation) throws Throwable {
+                Address[] destinations = (Address[]) invocation.getArguments()[4];
+                chunkSizes.add(destinations.length);
+                if (chunkSizes.size() == 2) {
+                    throw new NegativeResponseException(SMPPConstant.STAT_ESME_RMSGQFUL);
+                }
+                return new SubmitMultiResult("id" + chunkSizes.size(),
+                        new UnsuccessDelivery(destinations[0], SMPPConstant.STAT_ESME_RINVDSTADR));
+            }
+
+        });
+        List<String> destinations = new ArrayList<String>();
+        for (int i = 0; i < 600; i++) {
+            destinations.add(String.valueOf(6281000000L + i));
+        }
+        Message<String> message = MessageBuilder.withPayload("bulk")
+                .setHeader(SmppConstants.SRC_ADDR, "1616")
+                .setHeader(SmppConstants.DST_ADDR, destinations)
+                .build();
+
+        SmesMessageSpecification specification = SmesMessageSpecification.fromMessage(session, message);
+        List<String> messageIds = specification.send();
+
+        assertEquals(3, chunkSizes.size());
+        assertEquals(254, chunkSizes.get(0).intValue());
+        assertEquals(254, chunkSizes.get(1).intValue());
+        assertEquals(92, chunkSizes.get(2).intValue());
+        assertEquals(2, messageIds.size());
+        assertEquals("id1", messageIds.get(0));
+        assertEquals("id3", messageIds.get(1));
+
+        Map<String, Integer> unsuccessful = specification.getUnsuccessfulDeliveries();
+        // the first address of the first and last chunks, and the whole rejected chunk
+        assertEquals(256, unsuccessful.size());
+        assertEquals(SMPPConstant.STAT_ESME_RINVDSTADR, unsuccessful.get(destinations.get(0)).intValue());
+        assertEquals(SMPPConstant.STAT_ESME_RMSGQFUL, unsuccessful.get(destinations.get(254)).intValue());
+        assertEquals(SMPPConstant.STAT_ESME_RMSGQFUL, unsuccessful.get(destinations.get(507)).intValue());
+        assertEquals(SMPPConstant.STAT_ESME_RINVDSTADR, unsuccessful.get(destinations.get(508)).intValue());
+    }
+
+    @Test(expected = NegativeResponseException.class)
+    public void multipleDestinationsFailWhenEveryChunkIsRejected() throws Exception {
+        ClientSession session = mock(ClientSession.class);
+        when(submitMultiple(session)).thenThrow(new NegativeResponseException(SMPPConstant.STAT_ESME_RSUBMITFAIL));
+        Message<String> message = MessageBuilder.withPayload("bulk")
+                .setHeader(SmppConstants.SRC_ADDR, "1616")
+                .setHeader(SmppConstants.DST_ADDR, new String[] {"6281000000", "6281000001"})
+                .build();
+
+        SmesMessageSpecification.fromMessage(session, message).send();
+    }
+
+    @Test
+    public void multipleDestinationsAwaitTheReceiptOfEachAcceptedDestination() throws Exception {
+        ClientSession session = mock(ClientSession.class);
+        when(submitMultiple(session)).thenReturn(new SubmitMultiResult("id",
+                new UnsuccessDelivery(new Address(TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "6281000001"),
+                        SMPPConstant.STAT_ESME_RINVDSTADR)));
+        Message<String> message = MessageBuilder.withPayload("bulk")
+                .setHeader(SmppConstants.SRC_ADDR, "1616")
+                .setHeader(SmppConstants.DST_ADDR, new String[] {"6281000000", "6281000001", "6281000002"})
+                .setHeader(SmppConstants.REGISTERED_DELIVERY_MODE, SMSCDeliveryReceipt.SUCCESS_FAILURE)
+                .build();
+        DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator();
+
+        SmesMessageSpecification.fromMessage(session, message)
+                .setDeliveryReceiptCorrelator(correlator, message)
+                .send();
+
+        assertEquals(2, correlator.getPendingCount());
+        assertNotNull(correlator.getPendingReceipt("id", "6281000000"));
+        assertNull(correlator.getPendingReceipt("id", "6281000001"));
+        assertNotNull(correlator.getPendingReceipt("id", "6281000002"));
+    }
+
+    @Test
+    public void releasedSpecificationIsResetAndKeepsItsResults() throws Exception {
+        ClientSession session = mock(ClientSession.class);
+        when(submitMultiple(session)).thenReturn(new SubmitMultiResult("id",
+                new UnsuccessDelivery(new Address(TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "6281000001"),
+                        SMPPConstant.STAT_ESME_RINVDSTADR)));
+        Message<String> message = MessageBuilder.withPayload(SINGLE_LINE_PAYLOAD)
+                .setHeader(SmppConstants.SRC_ADDR, "1616")
+                .setHeader(SmppConstants.DST_ADDR, new String[] {"6281000000", "6281000001"})
+                .setHeader(SmppConstants.ESM_CLASS, (byte) 3)
+                .build();
+
+        SmesMessageSpecification specification = SmesMessageSpecification.fromMessage(session, message);
+        specification.send();
+        Map<String, Integer> unsuccessful = specification.getUnsuccessfulDeliveries();
+        specification.release();
+        // releasing twice must not pool the specification twice
+        specification.release();
+
+        assertEquals(1, unsuccessful.size());
+        assertTrue(specification.getUnsuccessfulDeliveries().isEmpty());
+        assertNull(ReflectionTestUtils.getField(specification, "sourceAddress"));
+        assertNull(ReflectionTestUtils.getField(specification, "destinationAddresses"));
+        assertNull(ReflectionTestUtils.getField(specification, "smppSession"));
+        assertTrue(((List<?>) ReflectionTestUtils.getField(specification, "shortMessageParts")).isEmpty());
+        assertEquals(new ESMClass(), ReflectionTestUtils.getField(specification, "esmClass"));
+
+        SmesMessageSpecification first = SmesMessageSpecification.newSmesMessageSpecification(session, "1", "2", "a");
+        SmesMessageSpecification second = SmesMessageSpecification.newSmesMessageSpecification(session, "1", "2", "b");
+        assertNotSame(first, second);
+    }
+
+    @Test
+    public void defaultsAndHeaderValuesAreShared() {
+        Message<String> message = MessageBuilder.withPayload("hello")
+                .setHeader(SmppConstants.DATA_CODING, (byte) 8)
+                .setHeader(SmppConstants.ESM_CLASS, (byte) 3)
+                .build();
+        SmesMessageSpecification first = SmesMessageSpecification.fromMessage(null, message);
+        SmesMessageSpecification second = SmesMessageSpecification.fromMessage(null, message);
+        assertNotSame(first, second);
+        assertSame(ReflectionTestUtils.getField(first, "dataCoding"), ReflectionTestUtils.getField(second, "dataCoding"));
+        assertSame(ReflectionTestUtils.getField(first, "esmClass"), ReflectionTestUtils.getField(second, "esmClass"));
+        assertSame(ReflectionTestUtils.getField(first, "registeredDelivery"),
+                ReflectionTestUtils.getField(second, "registeredDelivery"));
+        assertSame(ReflectionTestUtils.getField(first, "timeFormatter"),
+                ReflectionTestUtils.getField(second, "timeFormatter"));
+    }
+
     /* ***************** Helper methods ****************** */
 
+    private static SubmitMultiResult submitMultiple(ClientSession session) throws Exception {
+        return session.submitMultiple(anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class),
+                anyString(), any(Address[].class), any(ESMClass.class), anyByte(), anyByte(), anyString(),
+                anyString(), any(RegisteredDelivery.class), any(ReplaceIfPresentFlag.class), any(DataCoding.class),
+                anyByte(), any(byte[].class), Matchers.<OptionalParameter>anyVararg());
+    }
+
     private void verifySingleLineMessageSplitCorrectlyForDataCoding(DataCoding dataCoding)
             throws UnsupportedEncodingException {
         verifyMessageSplitCorrectlyForDataCoding(SINGLE_LINE_PAYLOAD, dataCoding, null);
@@ -167,7 +353,10 @@ public class SmesMessageSpecificationTest {
             maxCharacters = maxMessageSize;
         }
 
-        int maxCharactersWithRoomForPrefix = maxCharacters - PREFIX_BYTES;
+        // the segmenter leaves room for a 6 octet header: 7 septets or 3 UCS2 characters
+        boolean segmented = SmsSegmenter.supports(dataCoding.toByte());
+        int prefix = !segmented ? PREFIX_BYTES : SmsSegmenter.isGsm(dataCoding.toByte()) ? 7 : 3;
+        int maxCharactersWithRoomForPrefix = maxCharacters - prefix;
         String charsetName = DataCodingSpecification.getCharsetName(dataCoding.toByte());
 
         @SuppressWarnings("unchecked")
@@ -182,7 +371,9 @@ public class SmesMessageSpecificationTest {
 
         // Assert if individual parts are longer than allowed max characters
         for (byte[] messagePart : messageParts) {
-            String string = new String(messagePart, charsetName);
+            String string = segmented
+                    ? DataCodingSpecification.getMessageFromBytes(messagePart, dataCoding.toByte())
+                    : new String(messagePart, charsetName);
             assertTrue("MessagePart is longer than allowed max message size for data coding - Actual part length: "
                                + string.length() + " vs. max size: " + maxCharacters
                     , string.length() <= maxCharacters);
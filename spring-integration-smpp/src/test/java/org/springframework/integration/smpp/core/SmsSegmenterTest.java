@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @since 1.1
+ */
+public class SmsSegmenterTest {
+
+	@Test
+	public void testGsmTextWithinBudgetIsOnePart() {
+		List<byte[]> parts = SmsSegmenter.split(repeat('a', 160), (byte) 0, 160);
+		assertEquals(1, parts.size());
+		assertEquals(160, parts.get(0).length);
+	}
+
+	@Test
+	public void testGsmTextIsSplitIn153Septets() {
+		List<byte[]> parts = SmsSegmenter.split(repeat('a', 161), (byte) 0, 160);
+		assertEquals(2, parts.size());
+		assertEquals(153, parts.get(0).length);
+		assertEquals(8, parts.get(1).length);
+	}
+
+	@Test
+	public void testEscapeSequenceIsNotSplit() {
+		String text = repeat('a', 152) + "€" + repeat('a', 10);
+		List<byte[]> parts = SmsSegmenter.split(text, (byte) 0, 160);
+		assertEquals(2, parts.size());
+		assertEquals(152, parts.get(0).length);
+		assertEquals(Gsm7BitCodec.ESCAPE, parts.get(1)[0]);
+		assertEquals(text, DataCodingSpecification.getMessageFromBytes(parts.get(0), (byte) 0)
+				+ DataCodingSpecification.getMessageFromBytes(parts.get(1), (byte) 0));
+	}
+
+	@Test
+	public void testUcs2TextIsSplitIn67Characters() throws Exception {
+		String text = repeat('ж', 71);
+		List<byte[]> parts = SmsSegmenter.split(text, (byte) 8, 70);
+		assertEquals(2, parts.size());
+		assertEquals(134, parts.get(0).length);
+		assertEquals(8, parts.get(1).length);
+		// big endian, without byte order mark
+		assertArrayEquals(new byte[] {0x04, 0x36}, Arrays.copyOf(parts.get(1), 2));
+		assertEquals(repeat('ж', 67), new String(parts.get(0), "UTF-16BE"));
+	}
+
+	@Test
+	public void testSurrogatePairIsNotSplit() throws Exception {
+		String text = repeat('a', 66) + "😀" + "bbb";
+		List<byte[]> parts = SmsSegmenter.split(text, (byte) 8, 70);
+		assertEquals(2, parts.size());
+		assertEquals(repeat('a', 66), new String(parts.get(0), "UTF-16BE"));
+		assertEquals("😀bbb", new String(parts.get(1), "UTF-16BE"));
+	}
+
+	@Test
+	public void testPartsWithUserDataHeader() {
+		List<byte[]> parts = SmsSegmenter.splitWithUdh(repeat('a', 200), (byte) 0, 160, 0x1A5);
+		assertEquals(2, parts.size());
+		assertEquals(SmsSegmenter.UDH_LENGTH + 153, parts.get(0).length);
+		assertArrayEquals(new byte[] {0x05, 0x00, 0x03, (byte) 0xA5, 0x02, 0x01}, Arrays.copyOf(parts.get(0), 6));
+		assertArrayEquals(new byte[] {0x05, 0x00, 0x03, (byte) 0xA5, 0x02, 0x02}, Arrays.copyOf(parts.get(1), 6));
+		assertEquals(SmsSegmenter.UDH_LENGTH + 47, parts.get(1).length);
+	}
+
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.jsmpp.bean.DataCodings;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * @since 1.1
+ */
+public class FileSubmitJournalTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testPendingMessagesAreReplayed() throws Exception {
+		File file = new File(this.folder.getRoot(), "journal/submits");
+		FileSubmitJournal journal = new FileSubmitJournal(file);
+		long first = journal.append(MessageBuilder.withPayload("first")
+				.setHeader(SmppConstants.DST_ADDR, "1111")
+				.setHeader(SmppConstants.DATA_CODING, DataCodings.newInstance((byte) 8))
+				.setReplyChannel(new QueueChannel())
+				.build());
+		long second = journal.append(MessageBuilder.withPayload("second").build());
+		long third = journal.append(MessageBuilder.withPayload("third").build());
+		journal.remove(second);
+		journal.close();
+
+		journal = new FileSubmitJournal(file);
+		Map<Long, Message<?>> pending = journal.getPending();
+		assertEquals(Arrays.asList(first, third), Arrays.asList(pending.keySet().toArray()));
+		Message<?> message = pending.get(first);
+		assertEquals("first", message.getPayload());
+		assertEquals("1111", message.getHeaders().get(SmppConstants.DST_ADDR));
+		assertEquals((byte) 8, message.getHeaders().get(SmppConstants.DATA_CODING));
+		assertFalse(message.getHeaders().containsKey("replyChannel"));
+		// ids are not reused
+		assertTrue(journal.append(MessageBuilder.withPayload("fourth").build()) > third);
+		journal.close();
+	}
+
+	@Test
+	public void testTornRecordIsDiscarded() throws Exception {
+		File file = this.folder.newFile("submits");
+		FileSubmitJournal journal = new FileSubmitJournal(file);
+		journal.append(MessageBuilder.withPayload("complete").build());
+		journal.append(MessageBuilder.withPayload("torn").build());
+		journal.close();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		raf.setLength(raf.length() - 3);
+		raf.close();
+
+		journal = new FileSubmitJournal(file);
+		assertEquals(1, journal.getPendingCount());
+		long id = journal.append(MessageBuilder.withPayload("after").build());
+		journal.close();
+
+		journal = new FileSubmitJournal(file);
+		Map<Long, Message<?>> pending = journal.getPending();
+		assertEquals(2, pending.size());
+		assertEquals("after", pending.get(id).getPayload());
+		journal.close();
+	}
+
+	@Test
+	public void testJournalIsCompacted() throws Exception {
+		File file = this.folder.newFile("submits");
+		FileSubmitJournal journal = new FileSubmitJournal(file);
+		long kept = journal.append(MessageBuilder.withPayload("kept").build());
+		for (int i = 0; i < FileSubmitJournal.COMPACTION_THRESHOLD; i++) {
+			journal.remove(journal.append(MessageBuilder.withPayload("sent " + i).build()));
+		}
+		assertTrue("the journal should have been compacted", file.length() < 1000);
+		journal.append(MessageBuilder.withPayload("last").build());
+		journal.close();
+
+		journal = new FileSubmitJournal(file);
+		Map<Long, Message<?>> pending = journal.getPending();
+		assertEquals(2, pending.size());
+		assertEquals("kept", pending.get(kept).getPayload());
+		journal.close();
+	}
+
+}
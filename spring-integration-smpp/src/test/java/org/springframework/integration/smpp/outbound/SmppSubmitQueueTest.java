@@ -0,0 +1,178 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.extra.SessionState;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import org.springframework.integration.smpp.session.ExtendedSmppSession;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessageHandlingException;
+import org.springframework.messaging.MessagingException;
+import org.springframework.util.ErrorHandler;
+
+/**
+ * @since 1.1
+ */
+public class SmppSubmitQueueTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testTransientFailuresAreRetried() throws Exception {
+		final List<Object> sent = Collections.synchronizedList(new ArrayList<Object>());
+		final CountDownLatch latch = new CountDownLatch(2);
+		MessageHandler delegate = new MessageHandler() {
+
+			private int calls;
+
+			public void handleMessage(Message<?> message) throws MessagingException {
+				if (++this.calls == 1) {
+					throw new RuntimeException("Exception in trying to process the inbound SMPP message",
+							new NegativeResponseException(SMPPConstant.STAT_ESME_RTHROTTLED));
+				}
+				sent.add(message.getPayload());
+				latch.countDown();
+			}
+
+		};
+		SmppSubmitQueue queue = queue(delegate, new File(this.folder.getRoot(), "submits"));
+		queue.handleMessage(MessageBuilder.withPayload("first").build());
+		queue.handleMessage(MessageBuilder.withPayload("second").build());
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		// the retried message goes after the second one
+		assertEquals(Arrays.asList("second", "first"), sent);
+		// a sent message leaves the journal once the delegate returns
+		awaitDrained(queue);
+		assertEquals(0, queue.getPendingCount());
+		queue.destroy();
+	}
+
+	@Test
+	public void testPermanentFailuresAreReported() throws Exception {
+		final CountDownLatch latch = new CountDownLatch(1);
+		final List<Throwable> errors = new ArrayList<Throwable>();
+		MessageHandler delegate = new MessageHandler() {
+
+			public void handleMessage(Message<?> message) throws MessagingException {
+				throw new RuntimeException(new NegativeResponseException(SMPPConstant.STAT_ESME_RINVDSTADR));
+			}
+
+		};
+		SmppSubmitQueue queue = new SmppSubmitQueue(delegate, new File(this.folder.getRoot(), "submits"));
+		queue.setErrorHandler(new ErrorHandler() {
+
+			public void handleError(Throwable t) {
+				errors.add(t);
+				latch.countDown();
+			}
+
+		});
+		queue.afterPropertiesSet();
+		queue.start();
+		queue.handleMessage(MessageBuilder.withPayload("lost").build());
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertEquals("lost", ((MessageHandlingException) errors.get(0)).getFailedMessage().getPayload());
+		assertEquals(0, queue.getPendingCount());
+		queue.destroy();
+	}
+
+	@Test
+	public void testMessagesWaitForTheSessionAndSurviveRestarts() throws Exception {
+		File file = new File(this.folder.getRoot(), "submits");
+		ExtendedSmppSession session = mock(ExtendedSmppSession.class);
+		when(session.getSessionState()).thenReturn(SessionState.CLOSED);
+		final List<Object> sent = Collections.synchronizedList(new ArrayList<Object>());
+		MessageHandler delegate = new MessageHandler() {
+
+			public void handleMessage(Message<?> message) throws MessagingException {
+				sent.add(message.getPayload());
+			}
+
+		};
+		SmppSubmitQueue queue = new SmppSubmitQueue(delegate, file);
+		queue.setSmppSession(session);
+		queue.setPollInterval(20);
+		queue.setCapacity(2);
+		queue.afterPropertiesSet();
+		queue.start();
+		queue.handleMessage(MessageBuilder.withPayload("first").build());
+		queue.handleMessage(MessageBuilder.withPayload("second").build());
+		try {
+			queue.handleMessage(MessageBuilder.withPayload("third").build());
+		}
+		catch (MessageDeliveryException e) {
+			// the queue is full
+		}
+		Thread.sleep(100);
+		assertTrue(sent.isEmpty());
+		queue.destroy();
+
+		when(session.getSessionState()).thenReturn(SessionState.BOUND_TRX);
+		queue = queue(delegate, file);
+		queue.setSmppSession(session);
+		awaitDrained(queue);
+		assertEquals(Arrays.asList("first", "second"), sent);
+		queue.destroy();
+	}
+
+	private static void awaitDrained(SmppSubmitQueue queue) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 10000;
+		while (queue.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+	}
+
+	private static SmppSubmitQueue queue(MessageHandler delegate, File file) throws Exception {
+		SmppSubmitQueue queue = new SmppSubmitQueue(delegate, file);
+		queue.setPollInterval(20);
+		queue.setRetryInterval(50);
+		queue.setErrorHandler(new ErrorHandler() {
+
+			public void handleError(Throwable t) {
+				throw new AssertionError(t);
+			}
+
+		});
+		queue.afterPropertiesSet();
+		queue.start();
+		return queue;
+	}
+
+}
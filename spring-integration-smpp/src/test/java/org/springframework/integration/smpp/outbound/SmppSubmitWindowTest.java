@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.outbound;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.junit.Test;
+
+import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.Message;
+
+/**
+ * @since 1.1
+ */
+public class SmppSubmitWindowTest {
+
+	private final Message<String> message = MessageBuilder.withPayload("hello").build();
+
+	private final SmppSubmitCallback callback = mock(SmppSubmitCallback.class);
+
+	@Test
+	public void testSpecificationIsReleasedWhenTheWindowTimesOut() throws Exception {
+		// the submissions never run, so the first one keeps the only slot
+		SmppSubmitWindow window = new SmppSubmitWindow(1, mock(Executor.class));
+		SmesMessageSpecification first = mock(SmesMessageSpecification.class);
+		SmesMessageSpecification second = mock(SmesMessageSpecification.class);
+
+		assertTrue(window.submit(this.message, first, this.callback, 0));
+		assertFalse(window.submit(this.message, second, this.callback, 10));
+
+		verify(first, never()).release();
+		verify(second).release();
+		assertEquals(1, window.getOutstanding());
+	}
+
+	@Test
+	public void testSpecificationIsReleasedWhenInterrupted() throws Exception {
+		SmppSubmitWindow window = new SmppSubmitWindow(1, mock(Executor.class));
+		SmesMessageSpecification first = mock(SmesMessageSpecification.class);
+		SmesMessageSpecification second = mock(SmesMessageSpecification.class);
+		window.submit(this.message, first, this.callback, -1);
+
+		Thread.currentThread().interrupt();
+		try {
+			window.submit(this.message, second, this.callback, -1);
+			fail("InterruptedException expected");
+		}
+		catch (InterruptedException e) {
+			// expected
+		}
+
+		verify(second).release();
+	}
+
+	@Test
+	public void testSpecificationIsReleasedWhenTheSubmissionIsRejected() throws Exception {
+		Executor executor = mock(Executor.class);
+		doThrow(new RejectedExecutionException()).when(executor).execute(any(Runnable.class));
+		SmppSubmitWindow window = new SmppSubmitWindow(1, executor);
+		SmesMessageSpecification specification = mock(SmesMessageSpecification.class);
+
+		try {
+			window.submit(this.message, specification, this.callback, 0);
+			fail("RejectedExecutionException expected");
+		}
+		catch (RejectedExecutionException e) {
+			// expected
+		}
+
+		verify(specification).release();
+		assertEquals(0, window.getOutstanding());
+	}
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.DataCodings;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.SMSCDeliveryReceipt;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.SessionState;
+import org.jsmpp.session.MessageReceiverListener;
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.smpp.core.DeliveryReceiptCorrelator;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.inbound.SmppInboundChannelAdapter;
+import org.springframework.integration.smpp.outbound.SmppOutboundChannelAdapter;
+import org.springframework.integration.smpp.simulator.SmscSimulator;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+
+/**
+ * @since 1.1
+ */
+public class DuplexSmppSessionTest {
+
+	private final List<SmppSessionFactoryBean> factories = new ArrayList<SmppSessionFactoryBean>();
+
+	private SmscSimulator simulator;
+
+	@After
+	public void tearDown() throws Exception {
+		for (SmppSessionFactoryBean factory : this.factories) {
+			factory.destroy();
+		}
+		if (this.simulator != null) {
+			this.simulator.stop();
+		}
+	}
+
+	@Test
+	public void testRequestsGoToTheTransmitterAndListenersToTheReceiver() throws Exception {
+		ExtendedSmppSession transmitter = session(BindType.BIND_TX, SessionState.BOUND_TX);
+		ExtendedSmppSession receiver = session(BindType.BIND_RX, SessionState.CLOSED);
+		DuplexSmppSession duplex = new DuplexSmppSession(transmitter, receiver);
+		MessageReceiverListener listener = mock(MessageReceiverListener.class);
+
+		duplex.addMessageReceiverListener(listener);
+		duplex.submitShortMessage("", TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "1616",
+				TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "628176504657", new ESMClass(), (byte) 0,
+				(byte) 0, null, null, new RegisteredDelivery(), (byte) 0, DataCodings.ZERO, (byte) 0, new byte[0]);
+
+		verify(receiver).addMessageReceiverListener(listener);
+		verify(transmitter, never()).addMessageReceiverListener(listener);
+		verify(transmitter).submitShortMessage(anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class),
+				anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class), anyString(),
+				any(ESMClass.class), anyByte(), anyByte(), anyString(), anyString(), any(RegisteredDelivery.class),
+				anyByte(), any(DataCoding.class), anyByte(), any(byte[].class), Matchers.<OptionalParameter>anyVararg());
+		assertEquals(BindType.BIND_TRX, duplex.getBindType());
+		assertEquals(SessionState.BOUND_TX, duplex.getSessionState());
+		assertFalse(duplex.isDuplexBound());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testReceiverMustReceive() {
+		new DuplexSmppSession(session(BindType.BIND_TX, SessionState.BOUND_TX),
+				session(BindType.BIND_TX, SessionState.BOUND_TX));
+	}
+
+	@Test
+	public void testReceiptsAreCorrelatedAcrossTheBinds() throws Exception {
+		assertReceiptsCorrelated(new DeliveryReceiptCorrelator(), 10);
+	}
+
+	@Test
+	public void testReceiptReceivedBeforeTheRegistrationIsCorrelated() throws Exception {
+		final CountDownLatch receiptReceived = new CountDownLatch(1);
+		// the receipt reaches the receiver bind before the transmitter registers the message ID
+		DeliveryReceiptCorrelator correlator = new DeliveryReceiptCorrelator() {
+
+			@Override
+			public Message<DeliveryReceipt> correlate(DeliverSm deliverSm, String messageId,
+					DeliveryReceipt deliveryReceipt, MessageHandler earlyReceiptHandler) {
+				Message<DeliveryReceipt> message =
+						super.correlate(deliverSm, messageId, deliveryReceipt, earlyReceiptHandler);
+				receiptReceived.countDown();
+				return message;
+			}
+
+			@Override
+			public Future<DeliveryReceipt> register(String messageId, Message<?> request) {
+				try {
+					assertTrue(receiptReceived.await(5, TimeUnit.SECONDS));
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.register(messageId, request);
+			}
+
+		};
+		assertReceiptsCorrelated(correlator, 1);
+	}
+
+	private void assertReceiptsCorrelated(DeliveryReceiptCorrelator correlator, int count) throws Exception {
+		this.simulator = new SmscSimulator(SocketUtils.findAvailableServerSocket(16000));
+		this.simulator.start();
+		DuplexSmppSession duplex = new DuplexSmppSession(bind(BindType.BIND_TX, 2), bind(BindType.BIND_RX, 1));
+		assertTrue(duplex.isDuplexBound());
+
+		QueueChannel receipts = new QueueChannel();
+		SmppInboundChannelAdapter inbound = new SmppInboundChannelAdapter();
+		inbound.setSmppSession(duplex);
+		inbound.setChannel(new QueueChannel());
+		inbound.setDeliveryReceiptChannel(receipts);
+		inbound.setDeliveryReceiptCorrelator(correlator);
+		inbound.afterPropertiesSet();
+		inbound.start();
+		SmppOutboundChannelAdapter outbound = new SmppOutboundChannelAdapter();
+		outbound.setSmppSession(duplex);
+		outbound.setDeliveryReceiptCorrelator(correlator);
+		outbound.afterPropertiesSet();
+		try {
+			Set<Object> sent = new HashSet<Object>();
+			for (int i = 0; i < count; i++) {
+				Message<String> message = MessageBuilder.withPayload("message " + i)
+						.setHeader(SmppConstants.SRC_ADDR, "1616")
+						.setHeader(SmppConstants.DST_ADDR, "628176504657")
+						.setHeader(SmppConstants.REGISTERED_DELIVERY_MODE, SMSCDeliveryReceipt.SUCCESS_FAILURE)
+						.build();
+				outbound.handleMessage(message);
+				sent.add(message.getHeaders().getId());
+			}
+			Set<Object> correlated = new HashSet<Object>();
+			for (int i = 0; i < count; i++) {
+				Message<?> receipt = receipts.receive(5000);
+				assertNotNull(receipt);
+				correlated.add(receipt.getHeaders().get("correlationId"));
+			}
+			assertEquals(sent, correlated);
+		}
+		finally {
+			outbound.destroy();
+			inbound.stop();
+		}
+	}
+
+	private static ExtendedSmppSession session(BindType bindType, SessionState state) {
+		ExtendedSmppSession session = mock(ExtendedSmppSession.class);
+		when(session.getBindType()).thenReturn(bindType);
+		when(session.getSessionState()).thenReturn(state);
+		return session;
+	}
+
+	private ExtendedSmppSession bind(BindType bindType, int poolSize) throws Exception {
+		SmppSessionFactoryBean factory = new SmppSessionFactoryBean();
+		factory.setPort(this.simulator.getPort());
+		factory.setSystemId("smppclient1");
+		factory.setPassword("password");
+		factory.setBindType(bindType);
+		factory.setPoolSize(poolSize);
+		factory.afterPropertiesSet();
+		this.factories.add(factory);
+		factory.start();
+		return factory.getObject();
+	}
+
+}
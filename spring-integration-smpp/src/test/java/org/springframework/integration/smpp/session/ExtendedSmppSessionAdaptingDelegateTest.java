@@ -0,0 +1,115 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.MessageType;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.extra.ResponseTimeoutException;
+import org.jsmpp.session.SMPPSession;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+import org.springframework.integration.smpp.core.SmppMetrics;
+
+/**
+ * @since 1.1
+ */
+public class ExtendedSmppSessionAdaptingDelegateTest {
+
+	@Test
+	public void testSubmissionsAreRecorded() throws Exception {
+		SMPPSession target = mock(SMPPSession.class);
+		when(submit(target)).thenReturn("1").thenThrow(new NegativeResponseException(SMPPConstant.STAT_ESME_RTHROTTLED))
+				.thenThrow(new NegativeResponseException(0x400)).thenThrow(new ResponseTimeoutException("no response"));
+		ExtendedSmppSessionAdaptingDelegate session = new ExtendedSmppSessionAdaptingDelegate(target);
+		SmppMetrics metrics = new SmppMetrics();
+		session.setMetrics(metrics);
+
+		assertEquals("1", submit(session));
+		for (int i = 0; i < 3; i++) {
+			try {
+				submit(session);
+				fail("expected a failure");
+			}
+			catch (Exception e) {
+				// expected
+			}
+		}
+
+		assertEquals(1, metrics.getSubmitCount());
+		assertEquals(1, metrics.getSubmitLatency().getCount());
+		assertEquals(3, metrics.getFailureCount());
+		assertEquals(1, metrics.getThrottledCount());
+		assertEquals(1, metrics.getTimeoutCount());
+		assertEquals(Long.valueOf(1), metrics.getCommandStatusCounts().get("ESME_RTHROTTLED"));
+		assertEquals(Long.valueOf(1), metrics.getCommandStatusCounts().get("0x00000400"));
+		assertEquals(0, metrics.getOutstanding());
+		assertEquals(1, metrics.getPeakOutstanding());
+	}
+
+	@Test
+	public void testDeliverSmAreCounted() throws Exception {
+		ExtendedSmppSessionAdaptingDelegate session = new ExtendedSmppSessionAdaptingDelegate(mock(SMPPSession.class));
+		SmppMetrics metrics = session.getMetrics();
+		DeliverSm message = new DeliverSm();
+		DeliverSm receipt = new DeliverSm();
+		receipt.setEsmClass(MessageType.SMSC_DEL_RECEIPT.value());
+
+		session.getDelegateMessageListener().onAcceptDeliverSm(message);
+		session.getDelegateMessageListener().onAcceptDeliverSm(receipt);
+
+		assertEquals(2, metrics.getDeliverSmCount());
+		assertEquals(1, metrics.getDeliveryReceiptCount());
+		assertTrue(metrics.getDeliverSmRate() > 0);
+		metrics.reset();
+		assertEquals(0, metrics.getDeliverSmCount());
+		assertEquals(0, metrics.getDeliverSmRate(), 0.0);
+		assertEquals(Collections.emptyMap(), metrics.getCommandStatusCounts());
+	}
+
+	private static String submit(SMPPSession session) throws Exception {
+		return session.submitShortMessage(anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class),
+				anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class), anyString(),
+				any(ESMClass.class), anyByte(), anyByte(), anyString(), anyString(), any(RegisteredDelivery.class),
+				anyByte(), any(DataCoding.class), anyByte(), any(byte[].class), Matchers.<OptionalParameter>anyVararg());
+	}
+
+	private static String submit(ExtendedSmppSession session) throws Exception {
+		return session.submitShortMessage("", TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "1616",
+				TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "628176504657", new ESMClass(), (byte) 0,
+				(byte) 0, null, null, new RegisteredDelivery(), (byte) 0, null, (byte) 0, "hello".getBytes());
+	}
+
+}
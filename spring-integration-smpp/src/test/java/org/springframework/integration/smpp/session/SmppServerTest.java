@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.AlertNotification;
+import org.jsmpp.bean.DataCodings;
+import org.jsmpp.bean.DataSm;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.SMSCDeliveryReceipt;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.NegativeResponseException;
+import org.jsmpp.session.DataSmResult;
+import org.jsmpp.session.MessageReceiverListener;
+import org.jsmpp.session.Session;
+import org.jsmpp.util.DeliveryReceiptState;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.channel.QueueChannel;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.inbound.SmppServerInboundChannelAdapter;
+import org.springframework.integration.smpp.outbound.SmppServerOutboundChannelAdapter;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.MessagingException;
+
+/**
+ * @since 1.1
+ */
+public class SmppServerTest {
+
+	private final List<SmppSessionFactoryBean> clients = new ArrayList<SmppSessionFactoryBean>();
+
+	private final BlockingQueue<DeliverSm> delivered = new LinkedBlockingQueue<DeliverSm>();
+
+	private SmppServer server;
+
+	@Before
+	public void setUp() {
+		this.server = new SmppServer();
+		this.server.setPort(SocketUtils.findAvailableServerSocket(15000));
+		this.server.setCredentials(Collections.singletonMap("esme1", "secret"));
+		this.server.setWindowSize(1);
+		this.server.afterPropertiesSet();
+		this.server.start();
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		for (SmppSessionFactoryBean client : this.clients) {
+			client.destroy();
+		}
+		this.server.destroy();
+	}
+
+	@Test
+	public void testBindsAreAuthenticated() throws Exception {
+		ExtendedSmppSession session = bind("esme1", "wrong");
+		assertFalse(session.getSessionState().isBound());
+		assertEquals(0, this.server.getBindCount());
+
+		session = bind("esme1", "secret");
+		assertTrue(session.getSessionState().isBound());
+		assertEquals(1, this.server.getBindCount());
+	}
+
+	@Test
+	public void testSubmittedMessagesAreSentAndRepliesDelivered() throws Exception {
+		QueueChannel channel = new QueueChannel();
+		SmppServerInboundChannelAdapter inbound = new SmppServerInboundChannelAdapter();
+		inbound.setChannel(channel);
+		inbound.setSmppServer(this.server);
+		inbound.afterPropertiesSet();
+		inbound.start();
+		SmppServerOutboundChannelAdapter outbound = new SmppServerOutboundChannelAdapter();
+		outbound.setSmppServer(this.server);
+		outbound.afterPropertiesSet();
+		ExtendedSmppSession session = bind("esme1", "secret");
+
+		String messageId = submit(session, "ping");
+		Message<?> message = channel.receive(5000);
+		assertNotNull(message);
+		assertEquals("ping", message.getPayload());
+		assertEquals("esme1", message.getHeaders().get(SmppConstants.SYSTEM_ID));
+		assertEquals(messageId, message.getHeaders().get(SmppConstants.MESSAGE_ID));
+		assertEquals("1616", message.getHeaders().get(SmppConstants.SRC_ADDR));
+		assertEquals("628176504657", message.getHeaders().get(SmppConstants.DST_ADDR));
+
+		outbound.handleMessage(MessageBuilder.withPayload("pong")
+				.setHeader(SmppConstants.SYSTEM_ID, "esme1")
+				.setHeader(SmppConstants.SRC_ADDR, "628176504657")
+				.setHeader(SmppConstants.DST_ADDR, "1616")
+				.build());
+		DeliverSm deliverSm = this.delivered.poll(5, TimeUnit.SECONDS);
+		assertNotNull(deliverSm);
+		assertEquals("pong", new String(deliverSm.getShortMessage()));
+		assertEquals("1616", deliverSm.getDestAddress());
+
+		Date now = new Date();
+		outbound.handleMessage(MessageBuilder.withPayload(new DeliveryReceipt(messageId, 1, 1, now, now,
+						DeliveryReceiptState.DELIVRD, null, "ping"))
+				.setHeader(SmppConstants.SYSTEM_ID, "esme1")
+				.build());
+		deliverSm = this.delivered.poll(5, TimeUnit.SECONDS);
+		assertNotNull(deliverSm);
+		assertTrue(deliverSm.isSmscDeliveryReceipt());
+		assertEquals(messageId, deliverSm.getShortMessageAsDeliveryReceipt().getId());
+		inbound.stop();
+	}
+
+	@Test
+	public void testSubmissionsBeyondTheWindowAreThrottled() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		final CountDownLatch handled = new CountDownLatch(2);
+		DirectChannel channel = new DirectChannel();
+		channel.subscribe(new MessageHandler() {
+
+			public void handleMessage(Message<?> message) throws MessagingException {
+				try {
+					release.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				handled.countDown();
+			}
+
+		});
+		SmppServerInboundChannelAdapter inbound = new SmppServerInboundChannelAdapter();
+		inbound.setChannel(channel);
+		inbound.setSmppServer(this.server);
+		inbound.afterPropertiesSet();
+		inbound.start();
+		ExtendedSmppSession session = bind("esme1", "secret");
+
+		submit(session, "first");
+		try {
+			submit(session, "second");
+			fail("expected ESME_RTHROTTLED");
+		}
+		catch (NegativeResponseException e) {
+			assertEquals(SMPPConstant.STAT_ESME_RTHROTTLED, e.getCommandStatus());
+		}
+		release.countDown();
+		// the slot is released once the first message is handled
+		for (int i = 0; i < 100; i++) {
+			try {
+				submit(session, "third");
+				break;
+			}
+			catch (NegativeResponseException e) {
+				Thread.sleep(20);
+			}
+		}
+		assertTrue(handled.await(5, TimeUnit.SECONDS));
+		inbound.stop();
+	}
+
+	private ExtendedSmppSession bind(String systemId, String password) throws Exception {
+		SmppSessionFactoryBean client = new SmppSessionFactoryBean();
+		client.setPort(this.server.getPort());
+		client.setSystemId(systemId);
+		client.setPassword(password);
+		client.afterPropertiesSet();
+		this.clients.add(client);
+		ExtendedSmppSession session = client.getObject();
+		session.addMessageReceiverListener(new MessageReceiverListener() {
+
+			public void onAcceptDeliverSm(DeliverSm deliverSm) {
+				delivered.add(deliverSm);
+			}
+
+			public void onAcceptAlertNotification(AlertNotification alertNotification) {
+			}
+
+			public DataSmResult onAcceptDataSm(DataSm dataSm, Session source) {
+				return null;
+			}
+
+		});
+		client.start();
+		return session;
+	}
+
+	private static String submit(ExtendedSmppSession session, String text) throws Exception {
+		return session.submitShortMessage("", TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "1616",
+				TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "628176504657", new ESMClass(), (byte) 0,
+				(byte) 0, null, null, new RegisteredDelivery(SMSCDeliveryReceipt.DEFAULT), (byte) 0,
+				DataCodings.ZERO, (byte) 0, text.getBytes());
+	}
+
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.BindType;
+import org.jsmpp.extra.NegativeResponseException;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.integration.smpp.MockSmppServer;
+import org.springframework.integration.smpp.core.SmesMessageSpecification;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.simulator.SmscSimulator;
+import org.springframework.integration.support.MessageBuilder;
+
+/**
+ * @since 1.1
+ */
+public class SmppSessionFactoryBeanTest {
+
+	@Test
+	public void testReconnectDelayBacksOffUpToTheMaximum() {
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setReconnectInterval(100);
+		factoryBean.setMaxReconnectInterval(1000);
+		factoryBean.setReconnectJitter(0);
+		assertEquals(100, factoryBean.getReconnectDelay(1));
+		assertEquals(200, factoryBean.getReconnectDelay(2));
+		assertEquals(800, factoryBean.getReconnectDelay(4));
+		assertEquals(1000, factoryBean.getReconnectDelay(5));
+		assertEquals(1000, factoryBean.getReconnectDelay(100));
+	}
+
+	@Test
+	public void testReconnectDelayIsJittered() {
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setReconnectInterval(1000);
+		factoryBean.setReconnectJitter(0.2);
+		boolean varies = false;
+		long first = factoryBean.getReconnectDelay(1);
+		for (int i = 0; i < 100; i++) {
+			long delay = factoryBean.getReconnectDelay(1);
+			assertTrue("unexpected delay " + delay, delay >= 800 && delay <= 1200);
+			varies |= delay != first;
+		}
+		assertTrue(varies);
+	}
+
+	@Test
+	public void testReconnectIsScheduledAndStopsWithTheFactory() throws Exception {
+		ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setPort(freePort());
+		factoryBean.setReconnectInterval(100);
+		factoryBean.setReconnectJitter(0);
+		factoryBean.setReconnectScheduler(scheduler);
+		factoryBean.afterPropertiesSet();
+
+		factoryBean.start();
+		ArgumentCaptor<Runnable> attempt = ArgumentCaptor.forClass(Runnable.class);
+		verify(scheduler).schedule(attempt.capture(), eq(100L), eq(TimeUnit.MILLISECONDS));
+
+		// the attempt fails again, and the next one backs off
+		attempt.getValue().run();
+		verify(scheduler).schedule(any(Runnable.class), eq(200L), eq(TimeUnit.MILLISECONDS));
+
+		factoryBean.stop();
+		attempt.getValue().run();
+		verifyNoMoreInteractions(scheduler);
+		assertFalse(factoryBean.getObject().getSessionState().isBound());
+		assertEquals(0, factoryBean.getReconnectCount());
+	}
+
+	@Test
+	public void testPlainReconnectingExecutorRunsTheScheduledAttempts() throws Exception {
+		ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+		ExecutorService executor = mock(ExecutorService.class);
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setPort(freePort());
+		factoryBean.setReconnectInterval(100);
+		factoryBean.setReconnectJitter(0);
+		factoryBean.setReconnectScheduler(scheduler);
+		factoryBean.setReconnectingExecutor(executor);
+		factoryBean.afterPropertiesSet();
+
+		factoryBean.start();
+		ArgumentCaptor<Runnable> trigger = ArgumentCaptor.forClass(Runnable.class);
+		verify(scheduler).schedule(trigger.capture(), eq(100L), eq(TimeUnit.MILLISECONDS));
+		trigger.getValue().run();
+		ArgumentCaptor<Runnable> attempt = ArgumentCaptor.forClass(Runnable.class);
+		verify(executor).execute(attempt.capture());
+
+		// no other attempt is scheduled while this one runs on the executor
+		verify(scheduler).schedule(any(Runnable.class), any(Long.class), any(TimeUnit.class));
+		attempt.getValue().run();
+		verify(scheduler).schedule(any(Runnable.class), eq(200L), eq(TimeUnit.MILLISECONDS));
+
+		factoryBean.stop();
+	}
+
+	@Test
+	public void testEnquireLinksAreDisabledByDefault() throws Exception {
+		ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+		SmscSimulator simulator = new SmscSimulator(freePort());
+		simulator.start();
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setPort(simulator.getPort());
+		factoryBean.setSystemId("smppclient1");
+		factoryBean.setPassword("password");
+		factoryBean.setReconnectScheduler(scheduler);
+		factoryBean.afterPropertiesSet();
+		try {
+			factoryBean.start();
+			assertTrue(factoryBean.getObject().getSessionState().isBound());
+			verifyZeroInteractions(scheduler);
+		}
+		finally {
+			factoryBean.stop();
+			factoryBean.destroy();
+			simulator.stop();
+		}
+	}
+
+	@Test
+	public void testEnquireLinkLatencyIsMeasured() throws Exception {
+		int port = freePort();
+		MockSmppServer server = new MockSmppServer(port, "smppclient1", "password");
+		server.startServer();
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setPort(port);
+		factoryBean.setSystemId("smppclient1");
+		factoryBean.setPassword("password");
+		factoryBean.setEnquireLinkInterval(50);
+		factoryBean.afterPropertiesSet();
+		try {
+			Thread.sleep(200);
+			factoryBean.start();
+			assertTrue(factoryBean.getObject().getSessionState().isBound());
+			for (int i = 0; i < 100 && factoryBean.getEnquireLinkLatency() < 0; i++) {
+				Thread.sleep(20);
+			}
+			assertTrue(factoryBean.getEnquireLinkLatency() >= 0);
+			assertTrue(factoryBean.getObject().getSessionState().isBound());
+		}
+		finally {
+			factoryBean.stop();
+			factoryBean.destroy();
+			server.onDestroy();
+		}
+	}
+
+	@Test
+	public void testPooledThrottledMessagesAreRetriedByOneLayer() throws Exception {
+		SmscSimulator simulator = new SmscSimulator(freePort());
+		simulator.setThrottleEvery(1);
+		simulator.start();
+		SmppSessionFactoryBean factoryBean = new SmppSessionFactoryBean();
+		factoryBean.setPort(simulator.getPort());
+		factoryBean.setSystemId("smppclient1");
+		factoryBean.setPassword("password");
+		factoryBean.setBindType(BindType.BIND_TX);
+		factoryBean.setPoolSize(2);
+		factoryBean.setMaxTps(1000);
+		factoryBean.setDestinationPrefixTps(Collections.singletonMap("62", 1000.0));
+		factoryBean.afterPropertiesSet();
+		try {
+			factoryBean.start();
+			assertTrue(factoryBean.getObject() instanceof ThrottlingSmppSession);
+			try {
+				SmesMessageSpecification.fromMessage(factoryBean.getObject(),
+						MessageBuilder.withPayload("throttled")
+								.setHeader(SmppConstants.SRC_ADDR, "1616")
+								.setHeader(SmppConstants.DST_ADDR, "628176504657")
+								.build())
+						.send();
+				fail("NegativeResponseException expected");
+			}
+			catch (NegativeResponseException e) {
+				assertEquals(SMPPConstant.STAT_ESME_RTHROTTLED, e.getCommandStatus());
+			}
+			// the first submit and the 3 retries of the bind, not retried again over the pool
+			assertEquals(4, simulator.getSubmitCount());
+		}
+		finally {
+			factoryBean.stop();
+			factoryBean.destroy();
+			simulator.stop();
+		}
+	}
+
+	private static int freePort() throws IOException {
+		ServerSocket socket = new ServerSocket(0);
+		try {
+			return socket.getLocalPort();
+		}
+		finally {
+			socket.close();
+		}
+	}
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.SessionState;
+import org.junit.Test;
+import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * @since 1.1
+ */
+public class SmppSessionPoolTest {
+
+	@Test
+	public void testUnboundSessionsAreSkipped() throws Exception {
+		ExtendedSmppSession closed = session(SessionState.CLOSED);
+		ExtendedSmppSession bound = session(SessionState.BOUND_TX);
+		SmppSessionPool pool = new SmppSessionPool(Arrays.asList(closed, bound));
+
+		for (int i = 0; i < 4; i++) {
+			submit(pool);
+		}
+
+		verifySubmitted(closed, never());
+		verifySubmitted(bound, times(4));
+		assertEquals(1, pool.getBoundCount());
+		assertEquals(SessionState.BOUND_TX, pool.getSessionState());
+	}
+
+	@Test
+	public void testLeastOutstandingSessionIsSelected() throws Exception {
+		ExtendedSmppSession slow = session(SessionState.BOUND_TX);
+		ExtendedSmppSession fast = session(SessionState.BOUND_TX);
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		when(slow.submitShortMessage(anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class),
+				anyString(), any(TypeOfNumber.class), any(NumberingPlanIndicator.class), anyString(),
+				any(ESMClass.class), anyByte(), anyByte(), anyString(), anyString(), any(RegisteredDelivery.class),
+				anyByte(), any(DataCoding.class), anyByte(), any(byte[].class), Matchers.<OptionalParameter>anyVararg()))
+				.thenAnswer(new Answer<String>() {
+
+					public String answer(InvocationOnMock invocation) throws Throwable {
+						entered.countDown();
+						release.await(10, TimeUnit.SECONDS);
+						return "slow";
+					}
+
+				});
+		final SmppSessionPool pool = new SmppSessionPool(Arrays.asList(slow, fast));
+
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			// the first request goes to the first member and blocks there
+			Future<?> pending = executor.submit(new Runnable() {
+
+				public void run() {
+					try {
+						submit(pool);
+					}
+					catch (Exception e) {
+						throw new IllegalStateException(e);
+					}
+				}
+
+			});
+			assertTrue(entered.await(10, TimeUnit.SECONDS));
+			assertArrayEquals(new int[] {1, 0}, pool.getOutstanding());
+
+			for (int i = 0; i < 5; i++) {
+				submit(pool);
+			}
+			verifySubmitted(slow, times(1));
+			verifySubmitted(fast, times(5));
+
+			release.countDown();
+			pending.get(10, TimeUnit.SECONDS);
+			assertArrayEquals(new int[] {0, 0}, pool.getOutstanding());
+		}
+		finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMixedBindTypesAreRejected() {
+		ExtendedSmppSession tx = session(SessionState.BOUND_TX);
+		ExtendedSmppSession rx = mock(ExtendedSmppSession.class);
+		when(rx.getBindType()).thenReturn(BindType.BIND_RX);
+		new SmppSessionPool(Arrays.asList(tx, rx));
+	}
+
+	private static ExtendedSmppSession session(SessionState state) {
+		ExtendedSmppSession session = mock(ExtendedSmppSession.class);
+		when(session.getBindType()).thenReturn(BindType.BIND_TX);
+		when(session.getSessionState()).thenReturn(state);
+		return session;
+	}
+
+	private static void submit(SmppSessionPool pool) throws Exception {
+		pool.submitShortMessage("CMT", TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "1616",
+				TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "628176504657", new ESMClass(), (byte) 0,
+				(byte) 1, null, null, new RegisteredDelivery(), (byte) 0, null, (byte) 0, "test".getBytes());
+	}
+
+	private static void verifySubmitted(ExtendedSmppSession session,
+			org.mockito.verification.VerificationMode mode) throws Exception {
+		verify(session, mode).submitShortMessage(anyString(), any(TypeOfNumber.class),
+				any(NumberingPlanIndicator.class), anyString(), any(TypeOfNumber.class),
+				any(NumberingPlanIndicator.class), anyString(), any(ESMClass.class), anyByte(), anyByte(),
+				anyString(), anyString(), any(RegisteredDelivery.class), anyByte(), any(DataCoding.class), anyByte(),
+				any(byte[].class), Matchers.<OptionalParameter>anyVararg());
+	}
+
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.session;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyByte;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.DataCoding;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.OptionalParameter;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.extra.NegativeResponseException;
+import org.junit.Test;
+import org.mockito.Matchers;
+
+/**
+ * @since 1.1
+ */
+public class ThrottlingSmppSessionTest {
+
+	@Test
+	public void testThrottledMessageIsResubmitted() throws Exception {
+		ExtendedSmppSession target = session();
+		whenSubmitted(target).thenThrow(new NegativeResponseException(SMPPConstant.STAT_ESME_RTHROTTLED))
+				.thenThrow(new NegativeResponseException(SMPPConstant.STAT_ESME_RTHROTTLED))
+				.thenReturn("id");
+		ThrottlingSmppSession session = new ThrottlingSmppSession(target);
+		session.setTps(1000);
+		session.setInitialBackoff(50);
+
+		long start = System.currentTimeMillis();
+		assertEquals("id", submit(session, "628176504657"));
+		// 50ms then 100ms of back-off
+		assertTrue(System.currentTimeMillis() - start >= 140);
+		verifySubmitted(target, 3);
+	}
+
+	@Test
+	public void testThrottledMessageFailsAfterMaxRetries() throws Exception {
+		ExtendedSmppSession target = session();
+		whenSubmitted(target).thenThrow(new NegativeResponseException(SMPPConstant.STAT_ESME_RTHROTTLED));
+		ThrottlingSmppSession session = new ThrottlingSmppSession(target);
+		session.setInitialBackoff(1);
+		session.setMaxThrottledRetries(2);
+
+		try {
+			submit(session, "628176504657");
+			fail("NegativeResponseException expected");
+		}
+		catch (NegativeResponseException e) {
+			assertEquals(SMPPConstant.STAT_ESME_RTHROTTLED, e.getCommandStatus());
+		}
+		verifySubmitted(target, 3);
+	}
+
+	@Test
+	public void testOtherNegativeResponsesAreNotRetried() throws Exception {
+		ExtendedSmppSession target = session();
+		whenSubmitted(target).thenThrow(new NegativeResponseException(SMPPConstant.STAT_ESME_RINVDSTADR));
+		ThrottlingSmppSession session = new ThrottlingSmppSession(target);
+
+		try {
+			submit(session, "628176504657");
+			fail("NegativeResponseException expected");
+		}
+		catch (NegativeResponseException e) {
+			assertEquals(SMPPConstant.STAT_ESME_RINVDSTADR, e.getCommandStatus());
+		}
+		verifySubmitted(target, 1);
+	}
+
+	@Test
+	public void testDestinationPrefixRate() throws Exception {
+		ExtendedSmppSession target = session();
+		whenSubmitted(target).thenReturn("id");
+		ThrottlingSmppSession session = new ThrottlingSmppSession(target);
+		session.setTps(1000);
+		session.setDestinationPrefixTps(Collections.singletonMap("62", 20d));
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < 30; i++) {
+			submit(session, "1555000" + i);
+		}
+		long unthrottled = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < 25; i++) {
+			submit(session, "62817650" + i);
+		}
+		// a burst of 20, then 5 at 20 per second
+		assertTrue(System.currentTimeMillis() - start >= 200);
+		assertTrue(unthrottled < 200);
+		verifySubmitted(target, 55);
+	}
+
+	private static ExtendedSmppSession session() {
+		ExtendedSmppSession session = mock(ExtendedSmppSession.class);
+		when(session.getBindType()).thenReturn(BindType.BIND_TX);
+		return session;
+	}
+
+	private static org.mockito.stubbing.OngoingStubbing<String> whenSubmitted(ExtendedSmppSession session)
+			throws Exception {
+		return when(session.submitShortMessage(anyString(), any(TypeOfNumber.class),
+				any(NumberingPlanIndicator.class), anyString(), any(TypeOfNumber.class),
+				any(NumberingPlanIndicator.class), anyString(), any(ESMClass.class), anyByte(), anyByte(),
+				anyString(), anyString(), any(RegisteredDelivery.class), anyByte(), any(DataCoding.class), anyByte(),
+				any(byte[].class), Matchers.<OptionalParameter>anyVararg()));
+	}
+
+	private static String submit(ThrottlingSmppSession session, String destination) throws Exception {
+		return session.submitShortMessage("CMT", TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, "1616",
+				TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, destination, new ESMClass(), (byte) 0,
+				(byte) 1, null, null, new RegisteredDelivery(), (byte) 0, null, (byte) 0, "test".getBytes());
+	}
+
+	private static void verifySubmitted(ExtendedSmppSession session, int count) throws Exception {
+		verify(session, times(count)).submitShortMessage(anyString(), any(TypeOfNumber.class),
+				any(NumberingPlanIndicator.class), anyString(), any(TypeOfNumber.class),
+				any(NumberingPlanIndicator.class), anyString(), any(ESMClass.class), anyByte(), anyByte(),
+				anyString(), anyString(), any(RegisteredDelivery.class), anyByte(), any(DataCoding.class), anyByte(),
+				any(byte[].class), Matchers.<OptionalParameter>anyVararg());
+	}
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.simulator;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.bean.SubmitSm;
+
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.util.LatencyHistogram;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * Measures the end-to-end throughput and latency of the SMPP endpoints against a {@link SmscSimulator}.
+ * <ul>
+ *     <li>{@link #runOutbound(MessageHandler, String, String, int) runOutbound} hands messages to an
+ *     outbound channel adapter, and measures the time until the simulator accepted each of them;</li>
+ *     <li>{@link #runInbound(String, int) runInbound} sends mobile originated messages to an inbound
+ *     gateway, and measures the time until the simulator accepted the reply of the flow.</li>
+ * </ul>
+ * The messages are sent by {@link #setThreads(int) threads} concurrent senders; a run ends once all the
+ * messages completed or failed, or after the {@link #setTimeout(long) timeout}.
+ *
+ * @since 1.1
+ */
+public class SmppLoadDriver {
+
+	private static final AtomicInteger runs = new AtomicInteger();
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final SmscSimulator simulator;
+
+	private volatile int threads = 4;
+
+	private volatile long timeout = 60000;
+
+	/**
+	 * @param simulator the simulator to which the endpoints are bound
+	 */
+	public SmppLoadDriver(SmscSimulator simulator) {
+		Assert.notNull(simulator, "'simulator' must not be null");
+		this.simulator = simulator;
+	}
+
+	/**
+	 * @param threads the number of concurrent senders. Default is 4.
+	 */
+	public void setThreads(int threads) {
+		Assert.isTrue(threads > 0, "'threads' must be greater than 0");
+		this.threads = threads;
+	}
+
+	/**
+	 * @param timeout the maximum duration of a run, in milliseconds. Default is 60 s.
+	 */
+	public void setTimeout(long timeout) {
+		Assert.isTrue(timeout > 0, "'timeout' must be greater than 0");
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Send messages through an outbound channel adapter, or any handler sending them to the simulator.
+	 * The latency of a message runs from the call of the handler to the acceptance by the simulator,
+	 * including the waits for the submit window and the resubmissions of the throttled messages.
+	 *
+	 * @param handler the outbound channel adapter
+	 * @param sourceAddress the source address of the messages
+	 * @param destinationAddress the destination address of the messages
+	 * @param count the number of messages
+	 * @return the report of the run
+	 * @throws InterruptedException if interrupted while waiting for the messages
+	 */
+	public Report runOutbound(final MessageHandler handler, final String sourceAddress, final String destinationAddress,
+			int count) throws InterruptedException {
+		final String prefix = "load-" + runs.incrementAndGet() + "-";
+		final Run run = new Run("outbound", count);
+		SmscSimulator.Listener listener = new SmscSimulator.Listener() {
+
+			public void onMessage(SubmitSm submitSm, String text) {
+				run.completed(text);
+			}
+
+		};
+		return execute(run, listener, new Sender() {
+
+			public void send(int i) throws Exception {
+				String text = prefix + i;
+				run.started(text);
+				handler.handleMessage(MessageBuilder.withPayload(text)
+						.setHeader(SmppConstants.SRC_ADDR, sourceAddress)
+						.setHeader(SmppConstants.DST_ADDR, destinationAddress)
+						.build());
+			}
+
+		});
+	}
+
+	/**
+	 * Send mobile originated messages to an inbound gateway, from a distinct source address each.
+	 * The latency of a message runs from its <code>deliver_sm</code> to the acceptance of the reply,
+	 * sent by the gateway to the source address.
+	 *
+	 * @param gatewayAddress the address in the range the session of the gateway is bound to
+	 * @param count the number of messages
+	 * @return the report of the run
+	 * @throws InterruptedException if interrupted while waiting for the replies
+	 */
+	public Report runInbound(final String gatewayAddress, int count) throws InterruptedException {
+		final String prefix = "9" + runs.incrementAndGet() + "0";
+		final Run run = new Run("inbound", count);
+		SmscSimulator.Listener listener = new SmscSimulator.Listener() {
+
+			public void onMessage(SubmitSm submitSm, String text) {
+				run.completed(submitSm.getDestAddress());
+			}
+
+		};
+		return execute(run, listener, new Sender() {
+
+			public void send(int i) throws Exception {
+				String mobile = prefix + i;
+				run.started(mobile);
+				simulator.deliver(mobile, gatewayAddress, "load " + i);
+			}
+
+		});
+	}
+
+	private Report execute(final Run run, SmscSimulator.Listener listener, final Sender sender)
+			throws InterruptedException {
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("smpp-load-");
+		threadFactory.setDaemon(true);
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads, threadFactory);
+		final AtomicInteger next = new AtomicInteger();
+		this.simulator.addListener(listener);
+		long start = System.nanoTime();
+		try {
+			for (int t = 0; t < this.threads; t++) {
+				executor.execute(new Runnable() {
+
+					public void run() {
+						int i;
+						while ((i = next.getAndIncrement()) < run.count && !Thread.currentThread().isInterrupted()) {
+							try {
+								sender.send(i);
+							}
+							catch (Exception e) {
+								run.failed(e);
+							}
+						}
+					}
+
+				});
+			}
+			if (!run.latch.await(this.timeout, TimeUnit.MILLISECONDS)) {
+				logger.warn("The " + run.name + " run timed out with " + run.latch.getCount()
+						+ " message(s) pending");
+			}
+		}
+		finally {
+			executor.shutdownNow();
+			this.simulator.removeListener(listener);
+		}
+		Report report = new Report(run, System.nanoTime() - start);
+		logger.info(report);
+		return report;
+	}
+
+	private interface Sender {
+
+		void send(int i) throws Exception;
+
+	}
+
+	private static class Run {
+
+		private final String name;
+
+		private final int count;
+
+		private final CountDownLatch latch;
+
+		private final ConcurrentMap<String, Long> pending = new ConcurrentHashMap<String, Long>();
+
+		private final LatencyHistogram latency = new LatencyHistogram();
+
+		private final AtomicLong failures = new AtomicLong();
+
+		Run(String name, int count) {
+			Assert.isTrue(count > 0, "'count' must be greater than 0");
+			this.name = name;
+			this.count = count;
+			this.latch = new CountDownLatch(count);
+		}
+
+		void started(String key) {
+			this.pending.put(key, System.nanoTime());
+		}
+
+		void completed(String key) {
+			Long start = this.pending.remove(key);
+			if (start != null) {
+				this.latency.recordSince(start);
+				this.latch.countDown();
+			}
+		}
+
+		void failed(Exception e) {
+			this.failures.incrementAndGet();
+			this.latch.countDown();
+		}
+
+	}
+
+	/**
+	 * The outcome of a run.
+	 */
+	public static class Report {
+
+		private final String name;
+
+		private final int count;
+
+		private final long failures;
+
+		private final long elapsedNanos;
+
+		private final LatencyHistogram latency;
+
+		Report(Run run, long elapsedNanos) {
+			this.name = run.name;
+			this.count = run.count;
+			this.failures = run.failures.get();
+			this.elapsedNanos = elapsedNanos;
+			this.latency = run.latency;
+		}
+
+		/**
+		 * @return the number of messages sent
+		 */
+		public int getCount() {
+			return this.count;
+		}
+
+		/**
+		 * @return the number of messages which reached the simulator
+		 */
+		public long getCompleted() {
+			return this.latency.getCount();
+		}
+
+		/**
+		 * @return the number of messages which failed to be sent
+		 */
+		public long getFailures() {
+			return this.failures;
+		}
+
+		/**
+		 * @return the duration of the run, in milliseconds
+		 */
+		public long getElapsed() {
+			return TimeUnit.NANOSECONDS.toMillis(this.elapsedNanos);
+		}
+
+		/**
+		 * @return the completed messages per second
+		 */
+		public double getTps() {
+			return this.elapsedNanos > 0 ? getCompleted() * 1e9 / this.elapsedNanos : 0;
+		}
+
+		/**
+		 * @return the latencies of the completed messages
+		 */
+		public LatencyHistogram getLatency() {
+			return this.latency;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d/%d message(s) in %d ms, %d failure(s), %.1f TPS, latency mean %.1f ms, "
+					+ "p50 %.0f ms, p99 %.0f ms, max %.1f ms", this.name, getCompleted(), this.count, getElapsed(),
+					this.failures, getTps(), this.latency.getMean(), this.latency.getPercentile(50),
+					this.latency.getPercentile(99), this.latency.getMax());
+		}
+
+	}
+
+}
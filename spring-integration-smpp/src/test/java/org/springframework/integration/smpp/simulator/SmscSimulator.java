@@ -0,0 +1,594 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.simulator;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jsmpp.PDUStringException;
+import org.jsmpp.SMPPConstant;
+import org.jsmpp.bean.CancelSm;
+import org.jsmpp.bean.DataCodings;
+import org.jsmpp.bean.DataSm;
+import org.jsmpp.bean.DeliverSm;
+import org.jsmpp.bean.DeliveryReceipt;
+import org.jsmpp.bean.ESMClass;
+import org.jsmpp.bean.GSMSpecificFeature;
+import org.jsmpp.bean.MessageMode;
+import org.jsmpp.bean.MessageType;
+import org.jsmpp.bean.NumberingPlanIndicator;
+import org.jsmpp.bean.QuerySm;
+import org.jsmpp.bean.RegisteredDelivery;
+import org.jsmpp.bean.ReplaceSm;
+import org.jsmpp.bean.SMSCDeliveryReceipt;
+import org.jsmpp.bean.SubmitMulti;
+import org.jsmpp.bean.SubmitMultiResult;
+import org.jsmpp.bean.SubmitSm;
+import org.jsmpp.bean.TypeOfNumber;
+import org.jsmpp.bean.UnsuccessDelivery;
+import org.jsmpp.extra.ProcessRequestException;
+import org.jsmpp.extra.SessionState;
+import org.jsmpp.session.BindRequest;
+import org.jsmpp.session.DataSmResult;
+import org.jsmpp.session.QuerySmResult;
+import org.jsmpp.session.SMPPServerSession;
+import org.jsmpp.session.SMPPServerSessionListener;
+import org.jsmpp.session.ServerMessageReceiverListener;
+import org.jsmpp.session.Session;
+import org.jsmpp.session.SessionStateListener;
+import org.jsmpp.util.DeliveryReceiptState;
+import org.jsmpp.util.MessageId;
+
+import org.springframework.integration.smpp.core.ConcatenatedMessageAssembler;
+import org.springframework.integration.smpp.util.TokenBucket;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.Assert;
+
+/**
+ * An embedded SMSC, built on the jsmpp {@link SMPPServerSession}, to test and load the SMPP endpoints
+ * without an external simulator.
+ * <p/>
+ * Unlike the SMSC of a carrier, its behaviour can be tuned for each test:
+ * <ul>
+ *     <li>the <code>submit_sm_resp</code> is delayed by the {@link #setResponseLatency(long) response latency},
+ *     on up to {@link #setPduProcessorDegree(int) pduProcessorDegree} requests at the same time per session;</li>
+ *     <li>the requests are rejected with <code>ESME_RTHROTTLED</code> beyond {@link #setMaxTps(double) maxTps},
+ *     or one in {@link #setThrottleEvery(int) throttleEvery};</li>
+ *     <li>a delivery receipt is sent {@link #setDeliveryReceiptDelay(long) deliveryReceiptDelay} after each
+ *     accepted message which requested one, on the session which submitted it or, when that session is
+ *     bound as transmitter, on a session bound as receiver;</li>
+ *     <li>the segments of the long messages are reassembled, so that a test can check the messages
+ *     {@link #takeMessage(long) received} as a whole and the {@link #getIncompleteCount() incomplete} ones.</li>
+ * </ul>
+ * Mobile originated messages are sent with {@link #deliver(String, String, String)} to a session bound
+ * with an address range matching the destination.
+ * <p/>
+ * The simulator is packaged in the <code>tests</code> jar of the module.
+ *
+ * @since 1.1
+ * @see SmppLoadDriver
+ */
+public class SmscSimulator implements ServerMessageReceiverListener {
+
+	public static final int DEFAULT_PDU_PROCESSOR_DEGREE = 10;
+
+	public static final int MESSAGE_QUEUE_CAPACITY = 10000;
+
+	private final Log logger = LogFactory.getLog(getClass());
+
+	private final int port;
+
+	private final Map<SMPPServerSession, String> boundSessions = new ConcurrentHashMap<SMPPServerSession, String>();
+
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final BlockingQueue<String> messages = new LinkedBlockingQueue<String>(MESSAGE_QUEUE_CAPACITY);
+
+	private final ConcatenatedMessageAssembler assembler = new ConcatenatedMessageAssembler();
+
+	private final AtomicLong messageIds = new AtomicLong();
+
+	private final AtomicLong submitCount = new AtomicLong();
+
+	private final AtomicLong throttledCount = new AtomicLong();
+
+	private final AtomicLong acceptedCount = new AtomicLong();
+
+	private final AtomicLong messageCount = new AtomicLong();
+
+	private final AtomicLong deliveryReceiptCount = new AtomicLong();
+
+	private final AtomicLong deliverSmCount = new AtomicLong();
+
+	private volatile String systemId;
+
+	private volatile String password;
+
+	private volatile int pduProcessorDegree = DEFAULT_PDU_PROCESSOR_DEGREE;
+
+	private volatile long responseLatency;
+
+	private volatile int throttleEvery;
+
+	private volatile TokenBucket throttle;
+
+	private volatile boolean deliveryReceipts = true;
+
+	private volatile long deliveryReceiptDelay;
+
+	private volatile SMPPServerSessionListener sessionListener;
+
+	private volatile ExecutorService executor;
+
+	private volatile ScheduledExecutorService scheduler;
+
+	private volatile boolean running;
+
+	/**
+	 * @param port the port on which the ESMEs connect
+	 */
+	public SmscSimulator(int port) {
+		this.port = port;
+	}
+
+	/**
+	 * Set the credentials expected from the ESMEs. By default any bind is accepted.
+	 *
+	 * @param systemId the system ID
+	 * @param password the password
+	 */
+	public void setCredentials(String systemId, String password) {
+		this.systemId = systemId;
+		this.password = password;
+	}
+
+	/**
+	 * Set the maximum number of PDUs processed at the same time for each session, which bounds the
+	 * throughput of a session to <code>pduProcessorDegree / responseLatency</code>. Default is
+	 * {@link #DEFAULT_PDU_PROCESSOR_DEGREE}. Must be set before the simulator is started.
+	 *
+	 * @param pduProcessorDegree the number of PDU processing threads per session
+	 */
+	public void setPduProcessorDegree(int pduProcessorDegree) {
+		Assert.isTrue(pduProcessorDegree > 0, "'pduProcessorDegree' must be greater than 0");
+		this.pduProcessorDegree = pduProcessorDegree;
+	}
+
+	/**
+	 * @param responseLatency the time to wait before responding to each <code>submit_sm</code> and
+	 * <code>submit_multi</code>, in milliseconds. Default is 0.
+	 */
+	public void setResponseLatency(long responseLatency) {
+		Assert.isTrue(responseLatency >= 0, "'responseLatency' must not be negative");
+		this.responseLatency = responseLatency;
+	}
+
+	/**
+	 * @param throttleEvery reject one request in this number with <code>ESME_RTHROTTLED</code>; 0, the default,
+	 * disables it
+	 */
+	public void setThrottleEvery(int throttleEvery) {
+		Assert.isTrue(throttleEvery >= 0, "'throttleEvery' must not be negative");
+		this.throttleEvery = throttleEvery;
+	}
+
+	/**
+	 * @param maxTps reject the requests beyond this rate with <code>ESME_RTHROTTLED</code>, over all the
+	 * sessions; 0, the default, disables it
+	 */
+	public void setMaxTps(double maxTps) {
+		Assert.isTrue(maxTps >= 0, "'maxTps' must not be negative");
+		this.throttle = maxTps > 0 ? new TokenBucket(maxTps) : null;
+	}
+
+	/**
+	 * @param deliveryReceipts whether to send the delivery receipts requested by the messages. Default is true.
+	 */
+	public void setDeliveryReceipts(boolean deliveryReceipts) {
+		this.deliveryReceipts = deliveryReceipts;
+	}
+
+	/**
+	 * @param deliveryReceiptDelay the time between the acceptance of a message and its delivery receipt,
+	 * in milliseconds. Default is 0.
+	 */
+	public void setDeliveryReceiptDelay(long deliveryReceiptDelay) {
+		Assert.isTrue(deliveryReceiptDelay >= 0, "'deliveryReceiptDelay' must not be negative");
+		this.deliveryReceiptDelay = deliveryReceiptDelay;
+	}
+
+	/**
+	 * @param listener notified of each complete message accepted by the simulator
+	 */
+	public void addListener(Listener listener) {
+		this.listeners.add(listener);
+	}
+
+	public void removeListener(Listener listener) {
+		this.listeners.remove(listener);
+	}
+
+	public int getPort() {
+		return this.port;
+	}
+
+	/**
+	 * Listen for connections.
+	 *
+	 * @throws IOException if the port cannot be bound
+	 */
+	public synchronized void start() throws IOException {
+		if (this.running) {
+			return;
+		}
+		this.sessionListener = new SMPPServerSessionListener(this.port);
+		this.sessionListener.setTimeout(1000);
+		this.sessionListener.setPduProcessorDegree(this.pduProcessorDegree);
+		this.sessionListener.setMessageReceiverListener(this);
+		CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("smsc-simulator-");
+		threadFactory.setDaemon(true);
+		this.executor = Executors.newCachedThreadPool(threadFactory);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		this.running = true;
+		this.executor.execute(new Runnable() {
+
+			public void run() {
+				acceptConnections();
+			}
+
+		});
+		logger.info("SMSC simulator listening on port " + this.port);
+	}
+
+	/**
+	 * Close the sessions and stop listening.
+	 */
+	public synchronized void stop() {
+		if (!this.running) {
+			return;
+		}
+		this.running = false;
+		for (SMPPServerSession session : this.boundSessions.keySet()) {
+			session.unbindAndClose();
+		}
+		this.boundSessions.clear();
+		try {
+			this.sessionListener.close();
+		}
+		catch (IOException e) {
+			logger.debug("Failed to close the listener", e);
+		}
+		this.scheduler.shutdownNow();
+		this.executor.shutdownNow();
+	}
+
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	/**
+	 * @return the number of sessions currently bound
+	 */
+	public int getBoundSessionCount() {
+		return this.boundSessions.size();
+	}
+
+	/**
+	 * Send a mobile originated message to the session bound with an address range matching the
+	 * destination, either equal to it or a regular expression matching it.
+	 *
+	 * @param sourceAddress the address of the mobile
+	 * @param destinationAddress the address of the ESME
+	 * @param text the text of the message, in the GSM default alphabet
+	 * @throws Exception if no receiving session matches the destination, or the ESME did not accept the message
+	 */
+	public void deliver(String sourceAddress, String destinationAddress, String text) throws Exception {
+		SMPPServerSession session = findReceiver(destinationAddress);
+		Assert.state(session != null, "no session is bound to receive the messages to " + destinationAddress);
+		session.deliverShortMessage("", TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, sourceAddress,
+				TypeOfNumber.UNKNOWN, NumberingPlanIndicator.UNKNOWN, destinationAddress,
+				new ESMClass(MessageMode.DEFAULT, MessageType.DEFAULT, GSMSpecificFeature.DEFAULT), (byte) 0, (byte) 0,
+				new RegisteredDelivery(0), DataCodings.ZERO, text.getBytes());
+		this.deliverSmCount.incrementAndGet();
+	}
+
+	/**
+	 * Wait for the next complete message accepted by the simulator. The last {@link #MESSAGE_QUEUE_CAPACITY}
+	 * messages not taken yet are kept.
+	 *
+	 * @param timeout how long to wait, in milliseconds
+	 * @return the text of the message, or null if none was received in time
+	 * @throws InterruptedException if interrupted while waiting
+	 */
+	public String takeMessage(long timeout) throws InterruptedException {
+		return this.messages.poll(timeout, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @return the number of <code>submit_sm</code> and <code>submit_multi</code> received, throttled ones included
+	 */
+	public long getSubmitCount() {
+		return this.submitCount.get();
+	}
+
+	/**
+	 * @return the number of requests rejected with <code>ESME_RTHROTTLED</code>
+	 */
+	public long getThrottledCount() {
+		return this.throttledCount.get();
+	}
+
+	/**
+	 * @return the number of <code>submit_sm</code> accepted, each segment of a long message counting once
+	 */
+	public long getAcceptedCount() {
+		return this.acceptedCount.get();
+	}
+
+	/**
+	 * @return the number of complete messages accepted, each long message counting once
+	 */
+	public long getMessageCount() {
+		return this.messageCount.get();
+	}
+
+	/**
+	 * @return the number of long messages with segments still missing
+	 */
+	public int getIncompleteCount() {
+		return this.assembler.getIncompleteCount();
+	}
+
+	/**
+	 * @return the number of delivery receipts sent
+	 */
+	public long getDeliveryReceiptCount() {
+		return this.deliveryReceiptCount.get();
+	}
+
+	/**
+	 * @return the number of mobile originated messages sent
+	 */
+	public long getDeliverSmCount() {
+		return this.deliverSmCount.get();
+	}
+
+	public MessageId onAcceptSubmitSm(SubmitSm submitSm, SMPPServerSession source) throws ProcessRequestException {
+		respondLater();
+		MessageId messageId = newMessageId();
+		DeliverSm segment = new DeliverSm();
+		segment.setSourceAddr(submitSm.getSourceAddr());
+		segment.setEsmClass(submitSm.getEsmClass());
+		segment.setDataCoding(submitSm.getDataCoding());
+		segment.setShortMessage(submitSm.getShortMessage());
+		segment.setOptionalParameters(submitSm.getOptionalParameters());
+		this.acceptedCount.incrementAndGet();
+		String text = this.assembler.assemble(segment);
+		if (text != null) {
+			this.messageCount.incrementAndGet();
+			if (!this.messages.offer(text)) {
+				this.messages.poll();
+				this.messages.offer(text);
+			}
+			for (Listener listener : this.listeners) {
+				listener.onMessage(submitSm, text);
+			}
+		}
+		if (this.deliveryReceipts && (SMSCDeliveryReceipt.SUCCESS.containedIn(submitSm.getRegisteredDelivery())
+				|| SMSCDeliveryReceipt.SUCCESS_FAILURE.containedIn(submitSm.getRegisteredDelivery()))) {
+			scheduleDeliveryReceipt(source, submitSm, messageId);
+		}
+		return messageId;
+	}
+
+	public SubmitMultiResult onAcceptSubmitMulti(SubmitMulti submitMulti, SMPPServerSession source)
+			throws ProcessRequestException {
+		respondLater();
+		this.acceptedCount.incrementAndGet();
+		this.messageCount.incrementAndGet();
+		return new SubmitMultiResult(newMessageId().getValue(), new UnsuccessDelivery[0]);
+	}
+
+	public QuerySmResult onAcceptQuerySm(QuerySm querySm, SMPPServerSession source) throws ProcessRequestException {
+		throw new ProcessRequestException("query_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public void onAcceptReplaceSm(ReplaceSm replaceSm, SMPPServerSession source) throws ProcessRequestException {
+		throw new ProcessRequestException("replace_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public void onAcceptCancelSm(CancelSm cancelSm, SMPPServerSession source) throws ProcessRequestException {
+		throw new ProcessRequestException("cancel_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	public DataSmResult onAcceptDataSm(DataSm dataSm, Session source) throws ProcessRequestException {
+		throw new ProcessRequestException("data_sm is not supported", SMPPConstant.STAT_ESME_RINVCMDID);
+	}
+
+	/**
+	 * Count the request, then throttle it or wait for the response latency.
+	 */
+	private void respondLater() throws ProcessRequestException {
+		long count = this.submitCount.incrementAndGet();
+		int throttleEvery = this.throttleEvery;
+		TokenBucket throttle = this.throttle;
+		try {
+			if ((throttleEvery > 0 && count % throttleEvery == 0)
+					|| (throttle != null && !throttle.tryAcquire(0, TimeUnit.MILLISECONDS))) {
+				this.throttledCount.incrementAndGet();
+				throw new ProcessRequestException("Throttled", SMPPConstant.STAT_ESME_RTHROTTLED);
+			}
+			if (this.responseLatency > 0) {
+				Thread.sleep(this.responseLatency);
+			}
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessRequestException("Interrupted", SMPPConstant.STAT_ESME_RSYSERR);
+		}
+	}
+
+	/**
+	 * The receipts refer to the message ID in decimal, which the listeners of the adapter convert back.
+	 */
+	private MessageId newMessageId() throws ProcessRequestException {
+		try {
+			return new MessageId(Long.toHexString(this.messageIds.incrementAndGet()).toUpperCase());
+		}
+		catch (PDUStringException e) {
+			throw new ProcessRequestException(e.getMessage(), SMPPConstant.STAT_ESME_RSYSERR);
+		}
+	}
+
+	private void scheduleDeliveryReceipt(final SMPPServerSession session, final SubmitSm submitSm,
+			final MessageId messageId) {
+		this.scheduler.schedule(new Runnable() {
+
+			public void run() {
+				SMPPServerSession receiver = session.getSessionState().isReceivable() ? session : findReceiver();
+				if (receiver == null) {
+					logger.debug("Not sending the delivery receipt of message " + messageId
+							+ ", no session can receive it");
+					return;
+				}
+				Date now = new Date();
+				DeliveryReceipt receipt = new DeliveryReceipt(Long.toString(Long.parseLong(messageId.getValue(), 16)),
+						1, 1, now, now, DeliveryReceiptState.DELIVRD, null, "");
+				try {
+					receiver.deliverShortMessage("", TypeOfNumber.valueOf(submitSm.getDestAddrTon()),
+							NumberingPlanIndicator.valueOf(submitSm.getDestAddrNpi()), submitSm.getDestAddress(),
+							TypeOfNumber.valueOf(submitSm.getSourceAddrTon()),
+							NumberingPlanIndicator.valueOf(submitSm.getSourceAddrNpi()), submitSm.getSourceAddr(),
+							new ESMClass(MessageMode.DEFAULT, MessageType.SMSC_DEL_RECEIPT, GSMSpecificFeature.DEFAULT),
+							(byte) 0, (byte) 0, new RegisteredDelivery(0), DataCodings.ZERO,
+							receipt.toString().getBytes());
+					deliveryReceiptCount.incrementAndGet();
+				}
+				catch (Exception e) {
+					logger.warn("Failed to send the delivery receipt of message " + messageId, e);
+				}
+			}
+
+		}, this.deliveryReceiptDelay, TimeUnit.MILLISECONDS);
+	}
+
+	private SMPPServerSession findReceiver() {
+		for (SMPPServerSession session : this.boundSessions.keySet()) {
+			if (session.getSessionState().isReceivable()) {
+				return session;
+			}
+		}
+		return null;
+	}
+
+	private SMPPServerSession findReceiver(String destinationAddress) {
+		for (Map.Entry<SMPPServerSession, String> entry : this.boundSessions.entrySet()) {
+			String range = entry.getValue();
+			if (entry.getKey().getSessionState().isReceivable() && range.length() > 0
+					&& (range.equals(destinationAddress) || destinationAddress.matches(range))) {
+				return entry.getKey();
+			}
+		}
+		return null;
+	}
+
+	private void acceptConnections() {
+		while (this.running) {
+			try {
+				final SMPPServerSession session = this.sessionListener.accept();
+				this.executor.execute(new Runnable() {
+
+					public void run() {
+						waitForBind(session);
+					}
+
+				});
+			}
+			catch (SocketTimeoutException e) {
+				// check whether still running
+			}
+			catch (IOException e) {
+				if (this.running) {
+					logger.warn("Failed to accept a connection", e);
+				}
+			}
+		}
+	}
+
+	private void waitForBind(SMPPServerSession session) {
+		try {
+			BindRequest bindRequest = session.waitForBind(5000);
+			if (this.systemId != null && (!this.systemId.equals(bindRequest.getSystemId())
+					|| !this.password.equals(bindRequest.getPassword()))) {
+				logger.warn("Rejecting the bind of " + bindRequest.getSystemId() + ", invalid credentials");
+				bindRequest.reject(SMPPConstant.STAT_ESME_RINVPASWD);
+				return;
+			}
+			bindRequest.accept("simulator");
+			session.addSessionStateListener(new SessionStateListener() {
+
+				public void onStateChange(SessionState newState, SessionState oldState, Object source) {
+					if (newState.equals(SessionState.CLOSED)) {
+						boundSessions.remove(source);
+					}
+				}
+
+			});
+			String range = bindRequest.getAddressRange();
+			this.boundSessions.put(session, range != null ? range : "");
+			if (logger.isDebugEnabled()) {
+				logger.debug("Bound session " + session.getSessionId() + " as " + bindRequest.getBindType()
+						+ " for address range '" + range + "'");
+			}
+		}
+		catch (TimeoutException e) {
+			logger.warn("No bind request received in time, closing the session");
+			session.close();
+		}
+		catch (Exception e) {
+			logger.warn("Failed to bind session " + session.getSessionId(), e);
+			session.close();
+		}
+	}
+
+	/**
+	 * Callback notified of the messages accepted by the {@link SmscSimulator}.
+	 */
+	public interface Listener {
+
+		/**
+		 * @param submitSm the <code>submit_sm</code> which completed the message, the last segment of a long one
+		 * @param text the text of the complete message
+		 */
+		void onMessage(SubmitSm submitSm, String text);
+
+	}
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.simulator;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.jsmpp.bean.BindType;
+import org.jsmpp.bean.SMSCDeliveryReceipt;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import org.springframework.integration.channel.DirectChannel;
+import org.springframework.integration.handler.AbstractReplyProducingMessageHandler;
+import org.springframework.integration.smpp.core.SmppConstants;
+import org.springframework.integration.smpp.inbound.SmppInboundGateway;
+import org.springframework.integration.smpp.outbound.SmppOutboundChannelAdapter;
+import org.springframework.integration.smpp.session.ExtendedSmppSession;
+import org.springframework.integration.smpp.session.SmppSessionFactoryBean;
+import org.springframework.integration.smpp.session.ThrottlingSmppSession;
+import org.springframework.integration.support.MessageBuilder;
+import org.springframework.integration.test.util.SocketUtils;
+import org.springframework.messaging.Message;
+
+/**
+ * Runs small loads; raise <code>smpp.load.count</code> to measure the endpoints.
+ *
+ * @since 1.1
+ */
+public class SmscSimulatorTest {
+
+	private static final int COUNT = Integer.getInteger("smpp.load.count", 200);
+
+	private SmscSimulator simulator;
+
+	private SmppLoadDriver driver;
+
+	private SmppSessionFactoryBean sessionFactory;
+
+	@Before
+	public void setUp() throws Exception {
+		this.simulator = new SmscSimulator(SocketUtils.findAvailableServerSocket(14000));
+		this.simulator.setCredentials("smppclient1", "password");
+		this.simulator.start();
+		this.driver = new SmppLoadDriver(this.simulator);
+		this.driver.setTimeout(30000);
+	}
+
+	@After
+	public void tearDown() throws Exception {
+		if (this.sessionFactory != null) {
+			this.sessionFactory.destroy();
+		}
+		this.simulator.stop();
+	}
+
+	@Test
+	public void testOutboundChannelAdapterIsThrottled() throws Exception {
+		this.simulator.setResponseLatency(5);
+		this.simulator.setThrottleEvery(25);
+		ThrottlingSmppSession session = new ThrottlingSmppSession(session(BindType.BIND_TX, null));
+		session.setInitialBackoff(1);
+		SmppOutboundChannelAdapter adapter = new SmppOutboundChannelAdapter();
+		adapter.setSmppSession(session);
+		adapter.setWindowSize(10);
+		adapter.afterPropertiesSet();
+		try {
+			SmppLoadDriver.Report report = this.driver.runOutbound(adapter, "1616", "628176504657", COUNT);
+			assertEquals(COUNT, report.getCompleted());
+			assertEquals(0, report.getFailures());
+			assertTrue(report.getTps() > 0);
+			assertTrue(report.getLatency().getPercentile(50) >= 5);
+			assertTrue(this.simulator.getThrottledCount() > 0);
+			assertEquals(COUNT + this.simulator.getThrottledCount(), this.simulator.getSubmitCount());
+		}
+		finally {
+			adapter.destroy();
+		}
+	}
+
+	@Test
+	public void testLongMessagesAreReassembledAndReceiptsSent() throws Exception {
+		ExtendedSmppSession session = session(BindType.BIND_TRX, null);
+		SmppOutboundChannelAdapter adapter = new SmppOutboundChannelAdapter();
+		adapter.setSmppSession(session);
+		adapter.afterPropertiesSet();
+		StringBuilder text = new StringBuilder();
+		while (text.length() < 400) {
+			text.append("a long message in several segments ");
+		}
+		adapter.handleMessage(MessageBuilder.withPayload(text.toString())
+				.setHeader(SmppConstants.SRC_ADDR, "1616")
+				.setHeader(SmppConstants.DST_ADDR, "628176504657")
+				.setHeader(SmppConstants.REGISTERED_DELIVERY_MODE, SMSCDeliveryReceipt.SUCCESS_FAILURE)
+				.build());
+
+		assertEquals(text.toString(), this.simulator.takeMessage(5000));
+		assertEquals(1, this.simulator.getMessageCount());
+		long segments = this.simulator.getAcceptedCount();
+		assertTrue(segments > 1);
+		assertEquals(0, this.simulator.getIncompleteCount());
+		for (int i = 0; i < 100 && this.simulator.getDeliveryReceiptCount() < segments; i++) {
+			Thread.sleep(50);
+		}
+		assertEquals(segments, this.simulator.getDeliveryReceiptCount());
+	}
+
+	@Test
+	public void testInboundGatewayRepliesAreMeasured() throws Exception {
+		DirectChannel requests = new DirectChannel();
+		requests.subscribe(new AbstractReplyProducingMessageHandler() {
+
+			@Override
+			protected Object handleRequestMessage(Message<?> requestMessage) {
+				return "re: " + requestMessage.getPayload();
+			}
+
+		});
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		SmppInboundGateway gateway = new SmppInboundGateway();
+		gateway.setSmppSession(session(BindType.BIND_TRX, "5555"));
+		gateway.setRequestChannel(requests);
+		// the replies must not wait for their response on the threads reading the PDUs
+		gateway.setTaskExecutor(executor);
+		gateway.afterPropertiesSet();
+		gateway.start();
+		try {
+			SmppLoadDriver.Report report = this.driver.runInbound("5555", COUNT);
+			assertEquals(COUNT, report.getCompleted());
+			assertEquals(0, report.getFailures());
+			assertEquals(COUNT, this.simulator.getDeliverSmCount());
+		}
+		finally {
+			gateway.stop();
+			executor.shutdownNow();
+		}
+	}
+
+	private ExtendedSmppSession session(BindType bindType, String addressRange) throws Exception {
+		this.sessionFactory = new SmppSessionFactoryBean();
+		this.sessionFactory.setPort(this.simulator.getPort());
+		this.sessionFactory.setSystemId("smppclient1");
+		this.sessionFactory.setPassword("password");
+		this.sessionFactory.setBindType(bindType);
+		this.sessionFactory.setAddressRange(addressRange);
+		this.sessionFactory.afterPropertiesSet();
+		return this.sessionFactory.getObject();
+	}
+
+}
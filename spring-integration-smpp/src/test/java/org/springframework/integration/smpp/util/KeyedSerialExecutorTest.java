@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * @since 1.1
+ */
+public class KeyedSerialExecutorTest {
+
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		this.executor.shutdownNow();
+	}
+
+	@Test
+	public void testTasksOfOneKeyRunInOrder() throws Exception {
+		KeyedSerialExecutor serialExecutor = new KeyedSerialExecutor(this.executor, 1000);
+		final List<Integer> first = Collections.synchronizedList(new ArrayList<Integer>());
+		final List<Integer> second = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch done = new CountDownLatch(200);
+		for (int i = 0; i < 100; i++) {
+			final int sequence = i;
+			assertTrue(serialExecutor.execute("1111", new Runnable() {
+
+				public void run() {
+					first.add(sequence);
+					done.countDown();
+				}
+
+			}));
+			assertTrue(serialExecutor.execute("2222", new Runnable() {
+
+				public void run() {
+					second.add(sequence);
+					done.countDown();
+				}
+
+			}));
+		}
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		for (int i = 0; i < 100; i++) {
+			assertEquals(i, first.get(i).intValue());
+			assertEquals(i, second.get(i).intValue());
+		}
+	}
+
+	@Test
+	public void testKeysRunConcurrently() throws Exception {
+		KeyedSerialExecutor serialExecutor = new KeyedSerialExecutor(this.executor, 10);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(1);
+		serialExecutor.execute("1111", new Runnable() {
+
+			public void run() {
+				try {
+					blocked.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+		});
+		serialExecutor.execute("2222", new Runnable() {
+
+			public void run() {
+				done.countDown();
+			}
+
+		});
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		blocked.countDown();
+	}
+
+	@Test
+	public void testTasksBeyondCapacityAreRefused() throws Exception {
+		KeyedSerialExecutor serialExecutor = new KeyedSerialExecutor(this.executor, 2);
+		final CountDownLatch blocked = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(2);
+		Runnable task = new Runnable() {
+
+			public void run() {
+				try {
+					blocked.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				done.countDown();
+			}
+
+		};
+		assertTrue(serialExecutor.execute("1111", task));
+		assertTrue(serialExecutor.execute("1111", task));
+		assertFalse(serialExecutor.execute("2222", task));
+		assertEquals(2, serialExecutor.getPending());
+
+		blocked.countDown();
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		int n = 0;
+		while (serialExecutor.getPending() > 0 && n++ < 100) {
+			Thread.sleep(10);
+		}
+		assertEquals(0, serialExecutor.getPending());
+		assertTrue(serialExecutor.execute("2222", task));
+	}
+
+	@Test
+	public void testTasksAcceptedWhileTheWorkerIsRejectedStillRun() throws Exception {
+		final CountDownLatch scheduling = new CountDownLatch(1);
+		final CountDownLatch othersAccepted = new CountDownLatch(1);
+		Executor rejecting = new Executor() {
+
+			public void execute(Runnable command) {
+				scheduling.countDown();
+				try {
+					othersAccepted.await(10, TimeUnit.SECONDS);
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new RejectedExecutionException("overloaded");
+			}
+
+		};
+		final KeyedSerialExecutor serialExecutor = new KeyedSerialExecutor(rejecting, 10);
+		final List<String> ran = Collections.synchronizedList(new ArrayList<String>());
+		final AtomicBoolean firstAccepted = new AtomicBoolean(true);
+		Thread first = new Thread(new Runnable() {
+
+			public void run() {
+				firstAccepted.set(serialExecutor.execute("1111", record(ran, "first")));
+			}
+
+		});
+		first.start();
+		assertTrue(scheduling.await(10, TimeUnit.SECONDS));
+		assertTrue(serialExecutor.execute("1111", record(ran, "second")));
+		assertTrue(serialExecutor.execute("1111", record(ran, "third")));
+		othersAccepted.countDown();
+		first.join(10000);
+
+		assertFalse(firstAccepted.get());
+		assertEquals(Arrays.asList("second", "third"), ran);
+		assertEquals(0, serialExecutor.getPending());
+	}
+
+	private static Runnable record(final List<String> ran, final String name) {
+		return new Runnable() {
+
+			public void run() {
+				ran.add(name);
+			}
+
+		};
+	}
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @since 1.1
+ */
+public class LatencyHistogramTest {
+
+	@Test
+	public void testSamplesAreCountedByBucket() {
+		LatencyHistogram histogram = new LatencyHistogram(10, 100);
+		histogram.record(millis(3));
+		histogram.record(millis(10));
+		histogram.record(millis(50));
+		histogram.record(millis(500));
+
+		Map<String, Long> buckets = histogram.getBuckets();
+		assertEquals(Long.valueOf(2), buckets.get("<=10ms"));
+		assertEquals(Long.valueOf(1), buckets.get("<=100ms"));
+		assertEquals(Long.valueOf(1), buckets.get(">100ms"));
+		assertEquals(4, histogram.getCount());
+		assertEquals(140.75, histogram.getMean(), 0.001);
+		assertEquals(500, histogram.getMax(), 0.001);
+	}
+
+	@Test
+	public void testPercentileIsTheUpperBoundOfItsBucket() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 0; i < 98; i++) {
+			histogram.record(millis(3));
+		}
+		histogram.record(millis(150));
+		histogram.record(millis(40000));
+
+		assertEquals(5, histogram.getPercentile(50), 0.001);
+		assertEquals(5, histogram.getPercentile(98), 0.001);
+		assertEquals(200, histogram.getPercentile(99), 0.001);
+		// beyond the last bound
+		assertEquals(40000, histogram.getPercentile(100), 0.001);
+	}
+
+	@Test
+	public void testReset() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		histogram.record(millis(3));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getPercentile(99), 0.001);
+		assertEquals(0, histogram.getMax(), 0.001);
+	}
+
+	private static long millis(long millis) {
+		return TimeUnit.MILLISECONDS.toNanos(millis);
+	}
+
+}
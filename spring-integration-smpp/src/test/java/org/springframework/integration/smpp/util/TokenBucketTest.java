@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.integration.smpp.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @since 1.1
+ */
+public class TokenBucketTest {
+
+	@Test
+	public void testNoTokenIsHandedOutDuringAPause() throws Exception {
+		TokenBucket bucket = new TokenBucket(50);
+		bucket.pause(200);
+
+		assertFalse(bucket.tryAcquire(100, TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testTrafficRestartsAtTheSustainedRateAfterAPause() throws Exception {
+		TokenBucket bucket = new TokenBucket(50);
+		drain(bucket);
+		bucket.pause(1000);
+		// 50 ms after the end of the pause, about 2.5 tokens accrued
+		Thread.sleep(1050);
+
+		int available = drain(bucket);
+		assertTrue("unexpected burst of " + available + " tokens", available <= 10);
+	}
+
+	private static int drain(TokenBucket bucket) throws InterruptedException {
+		int count = 0;
+		while (bucket.tryAcquire(0, TimeUnit.MILLISECONDS)) {
+			count++;
+		}
+		return count;
+	}
+
+}